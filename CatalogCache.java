@@ -0,0 +1,667 @@
+package com.example;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Catalog Cache
+ *
+ * Read-through, in-memory copy of the genres and games tables. Both tables are loaded
+ * on the first read and then served from memory by id or by genre. Writes made through
+ * GameStore update the cache precisely (gameAdded, refreshGame) instead of dropping it,
+ * so listings shown inside every workflow stop scanning the database.
+ *
+ * Changes made by other processes are not seen until the cache is invalidated or, if a
+ * maximum age is configured, until the next read after the data has become too old. A game
+ * that is not cached is looked up in the database before it is reported as missing, so rows
+ * inserted elsewhere are picked up on first use.
+ *
+ * Readers see one immutable Snapshot published through a single volatile field. Writers build
+ * a changed copy under the cache's monitor and publish it in one step, and invalidate() loads
+ * the replacement before swapping it in, so a reader never sees a half-updated or emptied catalog.
+ * The games are kept in blocks of consecutive ids, so a changed copy shares every block and
+ * genre it does not touch with the previous snapshot instead of copying the whole catalog.
+ *
+ * Derived in-memory structures (such as the game search index) register a Listener to
+ * follow every change of the cached games.
+ */
+public class CatalogCache {
+    private final ConnectionPool pool; // Source of database connections
+    private final long maxAgeMillis; // Reload everything when older than this (0 = never expire)
+
+    private volatile Snapshot snapshot = null; // The cached catalog, null until the tables have been read
+    private volatile long lastWriteAtMillis = 0; // When the cache was last updated for a write
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>(); // Notified of every change to the cached games
+
+    // Metrics
+    private final AtomicLong hits = new AtomicLong(); // Reads served from memory
+    private final AtomicLong misses = new AtomicLong(); // Reads that had to load from the database
+    private final AtomicLong loads = new AtomicLong(); // Full table loads
+    private final AtomicLong rowRefreshes = new AtomicLong(); // Single games updated after a write
+    private final AtomicLong invalidations = new AtomicLong(); // Explicit invalidations
+    private final AtomicLong rowLoads = new AtomicLong(); // Games read from the database after a miss
+
+    /**
+     * Create a catalog cache that never expires on its own
+     * @param pool The connection pool to load from
+     */
+    public CatalogCache(ConnectionPool pool) {
+        this(pool, 0);
+    }
+
+    /**
+     * Create a catalog cache
+     * @param pool The connection pool to load from
+     * @param maxAgeMillis Reload the catalog on read once it is older than this (0 = never expire)
+     */
+    public CatalogCache(ConnectionPool pool, long maxAgeMillis) {
+        this.pool = pool;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Receives the changes of the cached games. Callbacks run while the cache's monitor is
+     * held, so they see changes one at a time and in order; they must not block on anything
+     * that waits for the cache.
+     */
+    public interface Listener {
+        /**
+         * Called after all games were loaded from the database
+         * @param games The loaded games ordered by id
+         */
+        void catalogLoaded(Collection<Game> games);
+
+        /**
+         * Called after a single game was added, updated or removed
+         * @param previous The cached game before the change, or null if it was added
+         * @param current The game after the change, or null if it was removed
+         */
+        void gameChanged(Game previous, Game current);
+
+        /**
+         * Called after the cached data was dropped
+         */
+        void catalogInvalidated();
+    }
+
+    /**
+     * Method to register a listener for changes of the cached games
+     * @param listener The listener
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    // Lookups
+
+    /**
+     * Method to get all genres ordered by id
+     * @return The cached genres
+     * @throws SQLException if the catalog has to be loaded and loading fails
+     */
+    public List<Genre> getGenres() throws SQLException {
+        return new ArrayList<>(current().genresById.values());
+    }
+
+    /**
+     * Method to get a genre by id
+     * @param genreId The genre ID
+     * @return The genre, or null if there is none
+     * @throws SQLException if the catalog has to be loaded and loading fails
+     */
+    public Genre getGenre(int genreId) throws SQLException {
+        return current().genresById.get(genreId);
+    }
+
+    /**
+     * Method to get all games ordered by id
+     * @return A read-only view of the cached games; later writes do not change it
+     * @throws SQLException if the catalog has to be loaded and loading fails
+     */
+    public List<Game> getGames() throws SQLException {
+        return current().gamesById.values();
+    }
+
+    /**
+     * Method to get a game by id. A game that is not cached is read from the database and added.
+     * @param gameId The game ID
+     * @return The game, or null if there is none
+     * @throws SQLException if the catalog has to be loaded and loading fails
+     */
+    public Game getGame(int gameId) throws SQLException {
+        Game game = current().gamesById.get(gameId);
+        if (game != null) {
+            return game;
+        }
+        game = readGame(gameId); // Inserted by another process, or does not exist
+        rowLoads.incrementAndGet();
+        if (game != null) {
+            synchronized (this) {
+                if (snapshot != null && !snapshot.gamesById.containsKey(gameId)) {
+                    putGames(Collections.singletonList(game)); // Unless a write cached a newer state meanwhile
+                }
+            }
+        }
+        return game;
+    }
+
+    /**
+     * Method to get the games of one genre ordered by id
+     * @param genreId The genre ID
+     * @return A read-only view of the games of the genre, empty if there are none
+     * @throws SQLException if the catalog has to be loaded and loading fails
+     */
+    public List<Game> getGamesByGenre(int genreId) throws SQLException {
+        GameBlocks games = current().gamesByGenre.get(genreId);
+        return games == null ? Collections.emptyList() : games.values();
+    }
+
+    // Write notifications
+
+    /**
+     * Method to add a game that has just been inserted
+     * @param game The inserted game including its generated id
+     */
+    public synchronized void gameAdded(Game game) {
+        if (snapshot == null) {
+            return; // Nothing cached yet, the next read loads the new row anyway
+        }
+        putGames(Collections.singletonList(game));
+        rowRefreshes.incrementAndGet();
+        lastWriteAtMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Method to store games whose new state is already known, e.g. after a batched update
+     * @param games The games as they are now in the database
+     */
+    public synchronized void gamesUpdated(Collection<Game> games) {
+        if (snapshot == null) {
+            return; // Nothing cached yet, the next read loads the new rows anyway
+        }
+        putGames(games);
+        rowRefreshes.addAndGet(games.size());
+        lastWriteAtMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Method to re-read one game after it has been updated. The row is read without holding
+     * the cache's monitor, so a newer version of the game cached by a write in the meantime
+     * is kept.
+     * @param gameId The ID of the updated game
+     * @throws SQLException if the row cannot be read
+     */
+    public void refreshGame(int gameId) throws SQLException {
+        if (snapshot == null) {
+            return; // Nothing cached yet, the next read loads the new row anyway
+        }
+        Game game = readGame(gameId);
+        synchronized (this) {
+            if (snapshot == null) {
+                return; // Dropped while reading
+            }
+            Game cached = snapshot.gamesById.get(gameId);
+            if (game == null) {
+                removeGame(gameId); // Deleted outside the cache
+            } else if (cached == null || cached.getVersion() <= game.getVersion()) {
+                putGames(Collections.singletonList(game));
+            }
+            rowRefreshes.incrementAndGet();
+            lastWriteAtMillis = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Method to reload both tables. Readers keep the previous catalog until the new one is
+     * published; if the reload fails the cache is dropped and the next read loads it.
+     */
+    public synchronized void invalidate() {
+        invalidations.incrementAndGet();
+        if (snapshot == null) {
+            return; // Nothing cached, the next read loads anyway
+        }
+        try {
+            load();
+        } catch (SQLException e) {
+            snapshot = null;
+            for (Listener listener : listeners) {
+                listener.catalogInvalidated();
+            }
+        }
+    }
+
+    // Loading
+
+    /**
+     * Method to get the current catalog, loading it if it is not loaded yet or has expired
+     * @return The snapshot to serve the read from
+     * @throws SQLException if loading fails
+     */
+    private Snapshot current() throws SQLException {
+        Snapshot current = snapshot;
+        if (current != null && !isExpired(current)) {
+            hits.incrementAndGet();
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current != null && !isExpired(current)) {
+                hits.incrementAndGet(); // Another thread loaded while we waited
+                return current;
+            }
+            misses.incrementAndGet();
+            return load();
+        }
+    }
+
+    private boolean isExpired(Snapshot current) {
+        return maxAgeMillis > 0 && System.currentTimeMillis() - current.loadedAtMillis > maxAgeMillis;
+    }
+
+    /**
+     * Method to read both tables into memory and publish them. Called with the monitor held.
+     * @return The published snapshot
+     * @throws SQLException if a query fails
+     */
+    private Snapshot load() throws SQLException {
+        TreeMap<Integer, Genre> genres = new TreeMap<>();
+        TreeMap<Integer, Game> games = new TreeMap<>();
+        try (Connection con = pool.getConnection()) {
+            try (PreparedStatement preparedStatement = con.prepareStatement("SELECT * FROM genres")) {
+                ResultSet resultSet = preparedStatement.executeQuery(); // Execute query
+                while (resultSet.next()) {
+                    int genreId = resultSet.getInt("genre_id"); // Get genre ID from result set
+                    genres.put(genreId, new Genre(genreId, resultSet.getString("genre_name")));
+                }
+            }
+            try (PreparedStatement preparedStatement = con.prepareStatement("SELECT * FROM games")) {
+                ResultSet resultSet = preparedStatement.executeQuery(); // Execute query
+                while (resultSet.next()) {
+                    Game game = readGame(resultSet);
+                    games.put(game.getGameId(), game);
+                }
+            }
+        }
+
+        Snapshot.Editor editor = new Snapshot(genres, System.currentTimeMillis()).edit();
+        for (Game game : games.values()) {
+            editor.put(game);
+        }
+        Snapshot loaded = editor.build();
+        snapshot = loaded;
+        loads.incrementAndGet();
+        for (Listener listener : listeners) {
+            listener.catalogLoaded(loaded.gamesById.values());
+        }
+        return loaded;
+    }
+
+    /**
+     * Method to read one game from the database
+     * @param gameId The game ID
+     * @return The game, or null if there is none
+     * @throws SQLException if the query fails
+     */
+    private Game readGame(int gameId) throws SQLException {
+        try (Connection con = pool.getConnection();
+             PreparedStatement preparedStatement = con.prepareStatement("SELECT * FROM games WHERE game_id = ?")) {
+            preparedStatement.setInt(1, gameId); // Set game ID parameter
+            ResultSet resultSet = preparedStatement.executeQuery(); // Execute query
+            return resultSet.next() ? readGame(resultSet) : null;
+        }
+    }
+
+    /**
+     * Method to build a game from the current row of a result set
+     * @param resultSet A result set positioned on a games row
+     * @return The game
+     * @throws SQLException if a column cannot be read
+     */
+    static Game readGame(ResultSet resultSet) throws SQLException {
+        return new Game(
+                resultSet.getInt("game_id"),
+                resultSet.getString("game_name"),
+                resultSet.getInt("genre_id"),
+                resultSet.getDouble("price"),
+                resultSet.getInt("age_limit"),
+                resultSet.getString("storage"),
+                resultSet.getInt("version"));
+    }
+
+    /**
+     * Method to publish a copy of the catalog with the given games added or replaced. Prices
+     * are rounded like the DECIMAL(10,2) column stores them. Called with the monitor held.
+     * @param games The games as they are now in the database
+     */
+    private void putGames(Collection<Game> games) {
+        Snapshot.Editor editor = snapshot.edit();
+        List<Game[]> changes = new ArrayList<>(); // {previous, current} per game, reported once published
+        for (Game game : games) {
+            Game stored = new Game(game.getGameId(), game.getGameName(), game.getGenreId(), roundPrice(game.getPrice()),
+                    game.getAgeLimit(), game.getStorage(), game.getVersion());
+            changes.add(new Game[]{editor.put(stored), stored});
+        }
+        snapshot = editor.build();
+        for (Game[] change : changes) {
+            for (Listener listener : listeners) {
+                listener.gameChanged(change[0], change[1]);
+            }
+        }
+    }
+
+    /**
+     * Method to publish a copy of the catalog without the given game. Called with the monitor held.
+     * @param gameId The ID of the removed game
+     */
+    private void removeGame(int gameId) {
+        Snapshot current = snapshot;
+        if (!current.gamesById.containsKey(gameId)) {
+            return;
+        }
+        Snapshot.Editor editor = current.edit();
+        Game previous = editor.remove(gameId);
+        snapshot = editor.build();
+        for (Listener listener : listeners) {
+            listener.gameChanged(previous, null);
+        }
+    }
+
+    /**
+     * Method to round a price to the two decimals the price column keeps
+     * @param price The price as given
+     * @return The price as it is stored
+     */
+    static double roundPrice(double price) {
+        return BigDecimal.valueOf(price).setScale(2, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    /**
+     * One immutable state of the cached catalog, ordered by id like the original listings
+     */
+    private static final class Snapshot {
+        final Map<Integer, Genre> genresById;
+        final GameBlocks gamesById;
+        final Map<Integer, GameBlocks> gamesByGenre; // Derived from gamesById
+        final long loadedAtMillis; // When the tables were last fully read
+
+        /**
+         * Create a catalog without games
+         */
+        Snapshot(Map<Integer, Genre> genresById, long loadedAtMillis) {
+            this(Collections.unmodifiableMap(genresById), GameBlocks.EMPTY, Collections.emptyMap(), loadedAtMillis);
+        }
+
+        private Snapshot(Map<Integer, Genre> genresById, GameBlocks gamesById, Map<Integer, GameBlocks> gamesByGenre,
+                         long loadedAtMillis) {
+            this.genresById = genresById;
+            this.gamesById = gamesById;
+            this.gamesByGenre = gamesByGenre;
+            this.loadedAtMillis = loadedAtMillis;
+        }
+
+        Editor edit() {
+            return new Editor();
+        }
+
+        /**
+         * Builds the next snapshot from this one. Only the blocks and genres a change touches are copied.
+         */
+        final class Editor {
+            private final GameBlocks.Editor games = gamesById.edit();
+            private final Map<Integer, GameBlocks.Editor> genres = new HashMap<>(); // Genres touched so far
+
+            /**
+             * @return The game the new one replaces, or null if it was added
+             */
+            Game put(Game game) {
+                Game previous = games.put(game);
+                if (previous != null && previous.getGenreId() != game.getGenreId()) {
+                    genre(previous.getGenreId()).remove(previous.getGameId());
+                }
+                genre(game.getGenreId()).put(game);
+                return previous;
+            }
+
+            /**
+             * @return The removed game, or null if there was none
+             */
+            Game remove(int gameId) {
+                Game previous = games.remove(gameId);
+                if (previous != null) {
+                    genre(previous.getGenreId()).remove(gameId);
+                }
+                return previous;
+            }
+
+            private GameBlocks.Editor genre(int genreId) {
+                return genres.computeIfAbsent(genreId, id -> gamesByGenre.getOrDefault(id, GameBlocks.EMPTY).edit());
+            }
+
+            Snapshot build() {
+                Map<Integer, GameBlocks> byGenre = new HashMap<>(gamesByGenre); // One entry per genre, the games are shared
+                for (Map.Entry<Integer, GameBlocks.Editor> genre : genres.entrySet()) {
+                    GameBlocks games = genre.getValue().build();
+                    if (games.size() == 0) {
+                        byGenre.remove(genre.getKey());
+                    } else {
+                        byGenre.put(genre.getKey(), games);
+                    }
+                }
+                return new Snapshot(genresById, games.build(), byGenre, loadedAtMillis);
+            }
+        }
+    }
+
+    /**
+     * Immutable games ordered by id, kept in blocks of BLOCK_SIZE consecutive ids. A changed
+     * copy copies the block index and the blocks it changes and shares all other blocks.
+     */
+    private static final class GameBlocks {
+        static final int BLOCK_BITS = 8; // 256 ids per block
+        static final GameBlocks EMPTY = new GameBlocks(new TreeMap<>(), 0);
+
+        private final TreeMap<Integer, TreeMap<Integer, Game>> blocks; // Block number -> games of the block, never empty
+        private final int size; // Number of games
+
+        private GameBlocks(TreeMap<Integer, TreeMap<Integer, Game>> blocks, int size) {
+            this.blocks = blocks;
+            this.size = size;
+        }
+
+        Game get(int gameId) {
+            TreeMap<Integer, Game> block = blocks.get(gameId >> BLOCK_BITS);
+            return block == null ? null : block.get(gameId);
+        }
+
+        boolean containsKey(int gameId) {
+            return get(gameId) != null;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return A read-only view of the games ordered by id; the blocks are never modified, so neither is the view
+         */
+        List<Game> values() {
+            return new Values();
+        }
+
+        Editor edit() {
+            return new Editor();
+        }
+
+        /**
+         * Collects changes to a copy; each block is copied at most once
+         */
+        final class Editor {
+            private final TreeMap<Integer, TreeMap<Integer, Game>> edited = new TreeMap<>(blocks);
+            private final Set<Integer> copied = new HashSet<>(); // Blocks already private to this copy
+            private int editedSize = size;
+
+            Game put(Game game) {
+                Game previous = block(game.getGameId()).put(game.getGameId(), game);
+                if (previous == null) {
+                    editedSize++;
+                }
+                return previous;
+            }
+
+            Game remove(int gameId) {
+                if (!edited.containsKey(gameId >> BLOCK_BITS)) {
+                    return null;
+                }
+                TreeMap<Integer, Game> block = block(gameId);
+                Game previous = block.remove(gameId);
+                if (previous != null) {
+                    editedSize--;
+                }
+                if (block.isEmpty()) {
+                    edited.remove(gameId >> BLOCK_BITS);
+                    copied.remove(gameId >> BLOCK_BITS);
+                }
+                return previous;
+            }
+
+            private TreeMap<Integer, Game> block(int gameId) {
+                int number = gameId >> BLOCK_BITS;
+                if (copied.add(number)) {
+                    TreeMap<Integer, Game> shared = edited.get(number);
+                    edited.put(number, shared == null ? new TreeMap<>() : new TreeMap<>(shared));
+                }
+                return edited.get(number);
+            }
+
+            GameBlocks build() {
+                return new GameBlocks(edited, editedSize);
+            }
+        }
+
+        /**
+         * All games as one list without copying them. Iterating walks the blocks; get(index)
+         * finds the block by binary search and steps through at most one block.
+         */
+        private final class Values extends AbstractList<Game> {
+            private final List<TreeMap<Integer, Game>> blockList = new ArrayList<>(blocks.values());
+            private final int[] starts = new int[blockList.size()]; // List index of the first game of each block
+
+            Values() {
+                for (int b = 1; b < starts.length; b++) {
+                    starts[b] = starts[b - 1] + blockList.get(b - 1).size();
+                }
+            }
+
+            @Override
+            public Game get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+                }
+                int b = Arrays.binarySearch(starts, index);
+                if (b < 0) {
+                    b = -b - 2; // The block that starts before the index
+                }
+                Iterator<Game> games = blockList.get(b).values().iterator();
+                for (int skip = index - starts[b]; skip > 0; skip--) {
+                    games.next();
+                }
+                return games.next();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Game> iterator() {
+                return new Iterator<Game>() {
+                    private final Iterator<TreeMap<Integer, Game>> nextBlocks = blockList.iterator();
+                    private Iterator<Game> games = Collections.emptyIterator();
+
+                    @Override
+                    public boolean hasNext() {
+                        while (!games.hasNext() && nextBlocks.hasNext()) {
+                            games = nextBlocks.next().values().iterator();
+                        }
+                        return games.hasNext();
+                    }
+
+                    @Override
+                    public Game next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return games.next();
+                    }
+                };
+            }
+        }
+    }
+
+    // Metrics
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getLoadCount() {
+        return loads.get();
+    }
+
+    public long getRowRefreshCount() {
+        return rowRefreshes.get();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    public long getRowLoadCount() {
+        return rowLoads.get();
+    }
+
+    /**
+     * Method to get the share of reads served from memory
+     * @return Hit ratio between 0.0 and 1.0
+     */
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : hits.get() / (double) total;
+    }
+
+    /**
+     * Method to get how long ago the catalog was fully loaded from the database
+     * @return Age of the full load in milliseconds, or -1 if nothing is loaded
+     */
+    public long getStalenessMillis() {
+        Snapshot current = snapshot;
+        return current != null ? System.currentTimeMillis() - current.loadedAtMillis : -1;
+    }
+
+    /**
+     * Method to get how long ago the cache was last updated for a write
+     * @return Milliseconds since the last write, or -1 if there was none
+     */
+    public long getMillisSinceLastWrite() {
+        return lastWriteAtMillis == 0 ? -1 : System.currentTimeMillis() - lastWriteAtMillis;
+    }
+
+    @Override
+    public String toString() {
+        Snapshot current = snapshot;
+        return String.format("CatalogCache[genres=%d, games=%d, hits=%d, misses=%d, loads=%d, refreshes=%d, " +
+                        "rowLoads=%d, invalidations=%d, hitRatio=%.1f%%, staleness=%dms]",
+                current == null ? 0 : current.genresById.size(), current == null ? 0 : current.gamesById.size(),
+                getHitCount(), getMissCount(), getLoadCount(), getRowRefreshCount(), getRowLoadCount(),
+                getInvalidationCount(), getHitRatio() * 100.0, getStalenessMillis());
+    }
+}
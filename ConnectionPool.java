@@ -0,0 +1,528 @@
+package com.example;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection Pool
+ *
+ * Bounded pool of JDBC connections shared by all GameStore operations. Callers borrow
+ * a connection with getConnection() and give it back by closing it, so the usual
+ * try-with-resources blocks work unchanged.
+ *
+ * The pool validates connections on borrow, evicts connections that sit idle too long,
+ * reports connections that are held past the leak threshold and keeps wait-time and
+ * utilization metrics. A returned connection is rolled back and gets its auto-commit and
+ * isolation level back before the next borrower sees it.
+ *
+ * Each physical connection also owns a StatementCache. Single-argument prepareStatement
+ * calls on a borrowed connection are served from that cache, so the constant SQL used by
+ * the menu operations is only parsed and planned once per connection.
+ *
+ * Statements created on a borrowed connection are wrapped so that every execution, commit
+ * and rollback is recorded in the pool's OperationMetrics, which also writes the slow-query log.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2; // Timeout passed to Connection.isValid on borrow
+
+    private final String url; // JDBC URL of the database
+    private final String user; // Database user
+    private final String pass; // Database password
+    private final int maxSize; // Maximum number of physical connections
+    private final long maxWaitMillis; // How long a caller may wait for a free connection
+    private final long idleTimeoutMillis; // Idle connections older than this are evicted
+    private final long leakThresholdMillis; // Borrowed connections held longer than this are reported
+    private final int statementCacheSize; // Prepared statements cached per connection (0 disables caching)
+
+    private final Semaphore permits; // One permit per connection that may be handed out
+    private final Deque<PooledEntry> idle = new ArrayDeque<>(); // Idle connections, most recently used first
+    private final Set<PooledEntry> borrowed = ConcurrentHashMap.newKeySet(); // Connections currently handed out
+    private final ScheduledExecutorService housekeeper; // Runs idle eviction and leak detection
+    private final OperationMetrics metrics = new OperationMetrics(); // Timings of every statement executed through the pool
+    private volatile boolean closed = false;
+
+    // Metrics
+    private final AtomicLong borrowCount = new AtomicLong(); // Number of successful borrows
+    private final AtomicLong totalWaitNanos = new AtomicLong(); // Total time spent waiting for a connection
+    private final AtomicLong maxWaitNanos = new AtomicLong(); // Longest single wait
+    private final AtomicLong timeoutCount = new AtomicLong(); // Borrows that gave up waiting
+    private final AtomicLong createdCount = new AtomicLong(); // Physical connections opened
+    private final AtomicLong evictedCount = new AtomicLong(); // Connections closed by idle eviction or failed validation
+    private final AtomicLong leakCount = new AtomicLong(); // Leaks reported
+    private final AtomicLong busyNanos = new AtomicLong(); // Total time connections spent borrowed
+    private final long startNanos = System.nanoTime(); // Used to compute utilization
+
+    /**
+     * Create a pool with default wait, idle and leak settings
+     * @param url The JDBC URL
+     * @param user The database user
+     * @param pass The database password
+     * @param maxSize The maximum number of connections
+     */
+    public ConnectionPool(String url, String user, String pass, int maxSize) {
+        this(url, user, pass, maxSize, 30_000, 600_000, 60_000, 32);
+    }
+
+    /**
+     * Create a pool
+     * @param url The JDBC URL
+     * @param user The database user
+     * @param pass The database password
+     * @param maxSize The maximum number of connections
+     * @param maxWaitMillis How long getConnection waits before failing
+     * @param idleTimeoutMillis How long a connection may stay idle before it is closed
+     * @param leakThresholdMillis How long a connection may be held before it is reported as leaked (0 disables)
+     * @param statementCacheSize How many prepared statements to cache per connection (0 disables)
+     */
+    public ConnectionPool(String url, String user, String pass, int maxSize,
+                          long maxWaitMillis, long idleTimeoutMillis, long leakThresholdMillis,
+                          int statementCacheSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.pass = pass;
+        this.maxSize = maxSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true); // Never keep the JVM alive just for housekeeping
+            return thread;
+        });
+        long period = Math.max(1_000, Math.min(idleTimeoutMillis, leakThresholdMillis > 0 ? leakThresholdMillis : idleTimeoutMillis) / 2);
+        housekeeper.scheduleAtFixedRate(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Method to borrow a connection from the pool. Closing the returned connection gives it back.
+     * @return A validated connection
+     * @throws SQLException if the pool is closed, no connection frees up in time, or a new connection cannot be opened
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long waitStart = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLTransientConnectionException("Timed out after " + maxWaitMillis + " ms waiting for a connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        long waited = System.nanoTime() - waitStart;
+
+        try {
+            PooledEntry entry = takeValidIdle();
+            if (entry == null) {
+                entry = new PooledEntry(openPhysical()); // No usable idle connection, open a new one
+            }
+            entry.borrowedAtNanos = System.nanoTime();
+            entry.borrowTrace = leakThresholdMillis > 0 ? new Throwable("Connection borrowed here") : null;
+            entry.leakReported = false;
+            borrowed.add(entry);
+
+            borrowCount.incrementAndGet();
+            totalWaitNanos.addAndGet(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+            return entry.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release(); // Give the permit back if we could not hand out a connection
+            throw e;
+        }
+    }
+
+    /**
+     * Method to take the most recently used idle connection that still passes validation
+     * @return A valid idle entry, or null if none is available
+     */
+    private PooledEntry takeValidIdle() {
+        while (true) {
+            PooledEntry entry;
+            synchronized (idle) {
+                entry = idle.pollFirst();
+            }
+            if (entry == null) {
+                return null;
+            }
+            if (isValid(entry.physical)) {
+                return entry;
+            }
+            evictedCount.incrementAndGet();
+            entry.discard(); // Drop broken connections, e.g. after a server restart
+        }
+    }
+
+    /**
+     * Method to open a new physical connection
+     * @return The new connection
+     * @throws SQLException if the driver cannot connect
+     */
+    private Connection openPhysical() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, pass);
+        physical.setAutoCommit(true); // Same default as the original single connection
+        createdCount.incrementAndGet();
+        return physical;
+    }
+
+    /**
+     * Method to return a borrowed connection to the pool
+     * @param entry The entry being returned
+     */
+    private void release(PooledEntry entry) {
+        busyNanos.addAndGet(System.nanoTime() - entry.borrowedAtNanos);
+        borrowed.remove(entry);
+        entry.borrowTrace = null;
+        if (entry.statementCache != null) {
+            entry.statementCache.releaseAll(); // Take back statements the borrower never closed
+        }
+
+        boolean reusable = !closed && resetForReuse(entry);
+        if (reusable) {
+            entry.lastReturnedNanos = System.nanoTime();
+            synchronized (idle) {
+                idle.addFirst(entry);
+            }
+        } else {
+            entry.discard();
+        }
+        permits.release();
+    }
+
+    /**
+     * Method to undo any session changes a caller left behind before the connection is reused
+     * @param entry The returned connection
+     * @return true if the connection can be reused
+     */
+    private boolean resetForReuse(PooledEntry entry) {
+        Connection physical = entry.physical;
+        try {
+            if (physical.isClosed()) {
+                return false;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback(); // Never let uncommitted work leak into the next borrower
+                physical.setAutoCommit(true);
+            }
+            if (physical.getTransactionIsolation() != entry.defaultIsolation) {
+                physical.setTransactionIsolation(entry.defaultIsolation); // E.g. after a snapshot export
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Method run periodically to evict idle connections and report leaks
+     */
+    private void housekeep() {
+        long now = System.nanoTime();
+
+        // Evict connections that have been idle too long
+        List<PooledEntry> expired = new ArrayList<>();
+        synchronized (idle) {
+            Iterator<PooledEntry> iterator = idle.iterator();
+            while (iterator.hasNext()) {
+                PooledEntry entry = iterator.next();
+                if (TimeUnit.NANOSECONDS.toMillis(now - entry.lastReturnedNanos) >= idleTimeoutMillis) {
+                    iterator.remove();
+                    expired.add(entry);
+                }
+            }
+        }
+        for (PooledEntry entry : expired) {
+            evictedCount.incrementAndGet();
+            entry.discard();
+        }
+
+        // Report connections held past the leak threshold, once per borrow
+        if (leakThresholdMillis > 0) {
+            for (PooledEntry entry : borrowed) {
+                Throwable trace = entry.borrowTrace;
+                if (!entry.leakReported && trace != null
+                        && TimeUnit.NANOSECONDS.toMillis(now - entry.borrowedAtNanos) >= leakThresholdMillis) {
+                    entry.leakReported = true;
+                    leakCount.incrementAndGet();
+                    System.err.println("Possible connection leak: connection held for more than " + leakThresholdMillis + " ms");
+                    trace.printStackTrace(); // Print where the connection was borrowed
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to close the pool and all idle connections. Borrowed connections are closed when returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        metrics.close();
+        synchronized (idle) {
+            for (PooledEntry entry : idle) {
+                entry.discard();
+            }
+            idle.clear();
+        }
+    }
+
+    private static boolean isValid(Connection physical) {
+        try {
+            return physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(Connection physical) {
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            // Nothing useful to do, the connection is being discarded anyway
+        }
+    }
+
+    // Metrics
+
+    /**
+     * Method to get the statement and operation timings recorded through this pool
+     */
+    public OperationMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    public int getIdleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    /**
+     * Method to get the number of callers currently waiting for a connection
+     * @return The approximate number of waiting threads
+     */
+    public int getWaitingCount() {
+        return permits.getQueueLength();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    public long getLeakCount() {
+        return leakCount.get();
+    }
+
+    /**
+     * Method to get the average time callers waited for a connection
+     * @return The average wait in milliseconds
+     */
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.get();
+        return borrows == 0 ? 0.0 : totalWaitNanos.get() / (double) borrows / 1_000_000.0;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Method to get the fraction of pool capacity that has been in use since the pool was created
+     * @return Utilization between 0.0 and 1.0
+     */
+    public double getUtilization() {
+        long elapsed = System.nanoTime() - startNanos;
+        long busy = busyNanos.get();
+        long now = System.nanoTime();
+        for (PooledEntry entry : borrowed) {
+            busy += now - entry.borrowedAtNanos; // Count connections that are still out
+        }
+        return elapsed <= 0 ? 0.0 : Math.min(1.0, busy / ((double) elapsed * maxSize));
+    }
+
+    /**
+     * Method to add up the statement cache counters of all open connections
+     * @return {hits, misses, evictions}
+     */
+    public long[] getStatementCacheCounts() {
+        List<PooledEntry> entries = new ArrayList<>(borrowed);
+        synchronized (idle) {
+            entries.addAll(idle);
+        }
+        long[] counts = new long[3];
+        for (PooledEntry entry : entries) {
+            if (entry.statementCache != null) {
+                counts[0] += entry.statementCache.getHitCount();
+                counts[1] += entry.statementCache.getMissCount();
+                counts[2] += entry.statementCache.getEvictionCount();
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public String toString() {
+        long[] cache = getStatementCacheCounts();
+        return String.format("ConnectionPool[max=%d, active=%d, idle=%d, waiting=%d, borrows=%d, timeouts=%d, " +
+                        "created=%d, evicted=%d, leaks=%d, avgWait=%.3fms, maxWait=%.3fms, utilization=%.1f%%, " +
+                        "stmtHits=%d, stmtMisses=%d, stmtEvictions=%d]",
+                maxSize, getActiveCount(), getIdleCount(), getWaitingCount(), getBorrowCount(), getTimeoutCount(),
+                getCreatedCount(), getEvictedCount(), getLeakCount(), getAverageWaitMillis(), getMaxWaitMillis(),
+                getUtilization() * 100.0, cache[0], cache[1], cache[2]);
+    }
+
+    /**
+     * A physical connection owned by the pool
+     */
+    private final class PooledEntry {
+        final Connection physical; // The real driver connection
+        final StatementCache statementCache; // Prepared statements for this connection, or null if disabled
+        final int defaultIsolation; // Isolation level the driver opened the connection with
+        volatile long borrowedAtNanos; // When the current borrow started
+        volatile long lastReturnedNanos = System.nanoTime(); // When the connection last went idle
+        volatile Throwable borrowTrace; // Stack trace of the current borrower, for leak reports
+        volatile boolean leakReported; // Whether the current borrow was already reported
+
+        PooledEntry(Connection physical) throws SQLException {
+            this.physical = physical;
+            try {
+                this.defaultIsolation = physical.getTransactionIsolation();
+            } catch (SQLException e) {
+                closeQuietly(physical);
+                throw e;
+            }
+            this.statementCache = statementCacheSize > 0 ? new StatementCache(physical, statementCacheSize) : null;
+        }
+
+        /**
+         * Method to close the cached statements and the physical connection
+         */
+        void discard() {
+            if (statementCache != null) {
+                statementCache.clear();
+            }
+            closeQuietly(physical);
+        }
+
+        /**
+         * Method to create the connection handle handed to a borrower
+         * @return A proxy whose close() returns the connection to the pool
+         */
+        Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Handle(this));
+        }
+    }
+
+    /**
+     * Borrower-facing view of a pooled connection. Each borrow gets its own handle so a
+     * caller that keeps a stale reference cannot use the connection after returning it.
+     */
+    private final class Handle implements InvocationHandler {
+        private final PooledEntry entry;
+        private final OperationMetrics.OpenResults openResults = new OperationMetrics.OpenResults(); // Slow queries still being read
+        private boolean returned = false;
+
+        Handle(PooledEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        openResults.finishAll(); // Log slow queries whose result sets were left open
+                        release(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || entry.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + entry.physical + "]";
+                default:
+                    if (returned) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    if (!metrics.isEnabled()) {
+                        return invokePhysical(method, args);
+                    }
+                    switch (method.getName()) {
+                        case "createStatement":
+                        case "prepareStatement":
+                        case "prepareCall":
+                            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                            return metrics.wrap((Statement) invokePhysical(method, args), method.getReturnType(), sql, openResults);
+                        case "commit":
+                        case "rollback":
+                            long start = System.nanoTime();
+                            boolean failed = true;
+                            try {
+                                Object result = invokePhysical(method, args);
+                                failed = false;
+                                return result;
+                            } finally {
+                                metrics.recordSql(method.getName().toUpperCase(Locale.ROOT), System.nanoTime() - start, -1, failed);
+                            }
+                        default:
+                            return invokePhysical(method, args);
+                    }
+            }
+        }
+
+        private Object invokePhysical(Method method, Object[] args) throws Throwable {
+            if (entry.statementCache != null && "prepareStatement".equals(method.getName())
+                    && args.length == 1) {
+                return entry.statementCache.prepare((String) args[0]); // Plain prepares are cached
+            }
+            try {
+                return method.invoke(entry.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause(); // Surface the driver's own exception
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example;
+
+/**
+ * A row of the customers table
+ */
+public final class Customer {
+    private final int customerId; // Primary key
+    private final String customerName; // Name, not unique
+    private final String email; // Email address, unique
+
+    public Customer(int customerId, String customerName, String email) {
+        this.customerId = customerId;
+        this.customerName = customerName;
+        this.email = email;
+    }
+
+    public int getCustomerId() {
+        return customerId;
+    }
+
+    public String getCustomerName() {
+        return customerName;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    @Override
+    public String toString() {
+        return "Customer[" + customerId + ", " + customerName + ", " + email + "]";
+    }
+}
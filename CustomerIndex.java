@@ -0,0 +1,250 @@
+package com.example;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Customer Index
+ *
+ * In-process lookup index over the customers table. Names are indexed case-insensitively
+ * in a sorted map, so exact, case-insensitive and prefix lookups never touch the database
+ * and always return every matching customer instead of an arbitrary first row.
+ *
+ * The index is loaded on first use and kept in sync by calling customerAdded after each
+ * insert. An exact or by-ID lookup that finds nothing is repeated against the database and
+ * the customers it finds are added, so customers added by other processes are found on first
+ * use; prefix lookups only see them after invalidate(). resolveByNameIgnoreCase always asks
+ * the database before it reports a name as unique.
+ */
+public class CustomerIndex {
+    private final ConnectionPool pool; // Source of database connections
+
+    private volatile Maps maps = null; // The loaded index, null until first use; replaced as a whole
+
+    /**
+     * Create a customer index
+     * @param pool The connection pool to load from
+     */
+    public CustomerIndex(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Method to find customers whose name equals the given name exactly
+     * @param customerName The name to look up
+     * @return All matching customers ordered by ID, empty if none
+     * @throws SQLException if loading the index or the database lookup fails
+     */
+    public List<Customer> findByName(String customerName) throws SQLException {
+        List<Customer> matches = exactMatches(indexed(customerName), customerName);
+        if (matches.isEmpty()) {
+            matches = exactMatches(loadByName(customerName), customerName); // Added elsewhere, or with a different case
+        }
+        return matches;
+    }
+
+    private static List<Customer> exactMatches(List<Customer> customers, String customerName) {
+        List<Customer> matches = new ArrayList<>();
+        for (Customer customer : customers) {
+            if (customer.getCustomerName().equals(customerName)) {
+                matches.add(customer);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Method to find customers whose name equals the given name ignoring case,
+     * which is how MySQL compares names under its default collation
+     * @param customerName The name to look up
+     * @return All matching customers ordered by ID, empty if none
+     * @throws SQLException if loading the index or the database lookup fails
+     */
+    public List<Customer> findByNameIgnoreCase(String customerName) throws SQLException {
+        List<Customer> matches = indexed(customerName);
+        return matches.isEmpty() ? loadByName(customerName) : matches;
+    }
+
+    /**
+     * Method to find every customer whose name equals the given name ignoring case, for
+     * callers that act on a single match, such as placing an order by name. The index may
+     * miss a customer with the same name added by another process, so unless it already
+     * holds several matches the name is looked up in the database as well.
+     * @param customerName The name to look up
+     * @return All matching customers ordered by ID, empty if none
+     * @throws SQLException if loading the index or the database lookup fails
+     */
+    public List<Customer> resolveByNameIgnoreCase(String customerName) throws SQLException {
+        List<Customer> matches = indexed(customerName);
+        return matches.size() > 1 ? matches : loadByName(customerName);
+    }
+
+    private List<Customer> indexed(String customerName) throws SQLException {
+        List<Customer> matches = loaded().byName.get(key(customerName));
+        return matches == null ? new ArrayList<>() : new ArrayList<>(matches);
+    }
+
+    /**
+     * Method to find customers whose name starts with a prefix, ignoring case
+     * @param prefix The name prefix
+     * @param limit The maximum number of customers to return
+     * @return Matching customers ordered by name, then ID
+     * @throws SQLException if the index has to be loaded and loading fails
+     */
+    public List<Customer> findByNamePrefix(String prefix, int limit) throws SQLException {
+        String from = key(prefix);
+        List<Customer> matches = new ArrayList<>();
+        for (List<Customer> customers : loaded().byName.subMap(from, true, from + Character.MAX_VALUE, false).values()) {
+            for (Customer customer : customers) {
+                if (matches.size() >= limit) {
+                    return matches;
+                }
+                matches.add(customer);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Method to get a customer by ID
+     * @param customerId The customer ID
+     * @return The customer, or null if there is none
+     * @throws SQLException if loading the index or the database lookup fails
+     */
+    public Customer getCustomer(int customerId) throws SQLException {
+        Customer customer = loaded().byId.get(customerId);
+        if (customer == null) {
+            List<Customer> found = load("SELECT customer_id, customer_name, email FROM customers WHERE customer_id = ?",
+                    preparedStatement -> preparedStatement.setInt(1, customerId)); // Set customer ID parameter
+            customer = found.isEmpty() ? null : found.get(0);
+        }
+        return customer;
+    }
+
+    /**
+     * Method to add a customer that has just been inserted
+     * @param customer The inserted customer including its generated ID
+     */
+    public synchronized void customerAdded(Customer customer) {
+        if (maps == null) {
+            return; // Nothing indexed yet, the next lookup loads the new row anyway
+        }
+        put(maps, customer);
+    }
+
+    /**
+     * Method to drop the index so the next lookup reloads it. Lookups already running finish
+     * on the old index.
+     */
+    public synchronized void invalidate() {
+        maps = null;
+    }
+
+    public int size() {
+        Maps current = maps;
+        return current == null ? 0 : current.byId.size();
+    }
+
+    /**
+     * Method to look up customers in the database and add the ones not indexed yet
+     * @param customerName The name to look up; the database decides how case is compared
+     * @return The customers found, ordered by ID
+     * @throws SQLException if the query fails
+     */
+    private List<Customer> loadByName(String customerName) throws SQLException {
+        return load("SELECT customer_id, customer_name, email FROM customers WHERE customer_name = ? ORDER BY customer_id",
+                preparedStatement -> preparedStatement.setString(1, customerName)); // Set customer name parameter
+    }
+
+    private List<Customer> load(String sql, Binder binder) throws SQLException {
+        List<Customer> found = new ArrayList<>();
+        try (Connection con = pool.getConnection();
+             PreparedStatement preparedStatement = con.prepareStatement(sql)) {
+            binder.bind(preparedStatement);
+            ResultSet resultSet = preparedStatement.executeQuery(); // Execute query
+            while (resultSet.next()) {
+                found.add(new Customer(
+                        resultSet.getInt("customer_id"),
+                        resultSet.getString("customer_name"),
+                        resultSet.getString("email")));
+            }
+        }
+        if (!found.isEmpty()) {
+            synchronized (this) {
+                Maps current = maps;
+                if (current != null) {
+                    for (Customer customer : found) {
+                        if (!current.byId.containsKey(customer.getCustomerId())) {
+                            put(current, customer);
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private interface Binder {
+        void bind(PreparedStatement preparedStatement) throws SQLException;
+    }
+
+    /**
+     * Method to get the index, loading it if it is not loaded yet
+     * @return The loaded index
+     * @throws SQLException if loading fails
+     */
+    private Maps loaded() throws SQLException {
+        Maps current = maps;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (maps != null) {
+                return maps; // Another thread loaded while we waited
+            }
+            Maps loaded = new Maps();
+            try (Connection con = pool.getConnection();
+                 PreparedStatement preparedStatement = con.prepareStatement(
+                         "SELECT customer_id, customer_name, email FROM customers ORDER BY customer_id")) {
+                preparedStatement.setFetchSize(10_000);
+                ResultSet resultSet = preparedStatement.executeQuery(); // Execute query
+                while (resultSet.next()) {
+                    put(loaded, new Customer(
+                            resultSet.getInt("customer_id"),
+                            resultSet.getString("customer_name"),
+                            resultSet.getString("email")));
+                }
+            }
+            maps = loaded;
+            return loaded;
+        }
+    }
+
+    private static void put(Maps maps, Customer customer) {
+        maps.byId.put(customer.getCustomerId(), customer);
+        maps.byName.compute(key(customer.getCustomerName()), (name, customers) -> {
+            List<Customer> updated = customers == null ? new ArrayList<>(1) : new ArrayList<>(customers);
+            int position = updated.size();
+            while (position > 0 && updated.get(position - 1).getCustomerId() > customer.getCustomerId()) {
+                position--; // Keep the list ordered by ID
+            }
+            updated.add(position, customer);
+            return Collections.unmodifiableList(updated);
+        });
+    }
+
+    /**
+     * The index maps, published together
+     */
+    private static final class Maps {
+        // Lower-cased name -> customers with that name, ordered by ID. Lists are replaced, never modified.
+        final ConcurrentSkipListMap<String, List<Customer>> byName = new ConcurrentSkipListMap<>();
+        final ConcurrentHashMap<Integer, Customer> byId = new ConcurrentHashMap<>();
+    }
+
+    private static String key(String customerName) {
+        return customerName.toLowerCase(Locale.ROOT);
+    }
+}
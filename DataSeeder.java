@@ -0,0 +1,199 @@
+package com.example;
+
+import java.sql.*;
+import java.sql.Date; // Import Date from java.sql package (to avoid conflict with java.util.Date)
+import java.util.*;
+
+/**
+ * Data Seeder
+ *
+ * Fills a migrated database with synthetic games, customers and orders for load tests,
+ * benchmarks and demos. Rows are inserted with JDBC batches inside large transactions, and
+ * the generated data is the same on every run, so a table that already holds enough rows
+ * is left alone and a run against a partly seeded database continues where it stopped.
+ *
+ * Seeded rows assume the IDs of each table start at 1 and have no gaps, as they do in a
+ * fresh database: customer N is named customerName(N) and orders refer to games and
+ * customers by those IDs. Orders are inserted directly rather than through the order
+ * processor, so the sales rollups are rebuilt once afterwards.
+ */
+public class DataSeeder {
+    private static final int BATCH_SIZE = 1000; // Rows per JDBC batch
+    private static final int COMMIT_INTERVAL = 50_000; // Rows per transaction
+    private static final int[] AGE_LIMITS = {3, 7, 12, 16, 18}; // Age limits given to seeded games
+
+    private DataSeeder() {
+    }
+
+    /**
+     * Method to seed the tables up to the requested volumes
+     * @param con The connection to use; the schema must be migrated
+     * @param games Minimum number of games
+     * @param customers Minimum number of customers
+     * @param orders Minimum number of orders, dated over the last year
+     * @return The row counts after seeding and how long inserting took
+     * @throws SQLException if an insert fails, or if games or orders are requested without the
+     *         genres, games or customers they refer to; nothing is inserted then
+     */
+    public static SeedResult seed(Connection con, int games, int customers, int orders) throws SQLException {
+        SeedResult result = new SeedResult();
+        long start = System.nanoTime();
+        int[] genreIds = readInts(con, "SELECT genre_id FROM genres ORDER BY genre_id");
+        long existingGames = SchemaMigrations.countRows(con, "games");
+        if (games > existingGames && genreIds.length == 0) {
+            throw new SQLException("Cannot seed games without genres; migrate the schema first");
+        }
+        if (orders > SchemaMigrations.countRows(con, "orders")) {
+            long gamesAfter = Math.max(games, existingGames);
+            long customersAfter = Math.max(customers, SchemaMigrations.countRows(con, "customers"));
+            if (gamesAfter == 0 || customersAfter == 0) {
+                throw new SQLException("Cannot seed orders without games and customers: " + gamesAfter + " games, "
+                        + customersAfter + " customers requested");
+            }
+        }
+
+        result.games = seedTable(con, "games", games, result,
+                "INSERT INTO games (game_name, genre_id, price, age_limit, storage) VALUES (?, ?, ?, ?, ?)",
+                (preparedStatement, id, random) -> {
+                    preparedStatement.setString(1, "Game " + id);
+                    preparedStatement.setInt(2, genreIds[random.nextInt(genreIds.length)]);
+                    preparedStatement.setDouble(3, 5 + random.nextInt(6_000) / 100.0);
+                    preparedStatement.setInt(4, AGE_LIMITS[random.nextInt(AGE_LIMITS.length)]);
+                    preparedStatement.setString(5, random.nextBoolean() ? "Disc" : "Digital");
+                });
+        result.customers = seedTable(con, "customers", customers, result,
+                "INSERT INTO customers (customer_name, email) VALUES (?, ?)",
+                (preparedStatement, id, random) -> {
+                    preparedStatement.setString(1, customerName(id));
+                    preparedStatement.setString(2, "customer" + id + "@example.com");
+                });
+
+        long insertedBefore = result.inserted;
+        long today = System.currentTimeMillis();
+        int gameCount = result.games;
+        int customerCount = result.customers;
+        result.orders = seedTable(con, "orders", orders, result,
+                "INSERT INTO orders (customer_id, game_id, order_date) VALUES (?, ?, ?)",
+                (preparedStatement, id, random) -> {
+                    preparedStatement.setInt(1, 1 + random.nextInt(customerCount));
+                    preparedStatement.setInt(2, 1 + random.nextInt(gameCount));
+                    preparedStatement.setDate(3, new Date(today - random.nextInt(365) * 86_400_000L));
+                });
+        result.elapsedNanos = System.nanoTime() - start; // Insert time only, for rows per second
+
+        if (result.inserted != insertedBefore) {
+            SalesAnalytics.rebuild(con); // Seeded orders bypass the rollup maintenance
+        }
+        return result;
+    }
+
+    /**
+     * Method to get the name of a seeded customer
+     * @param id The customer ID
+     */
+    public static String customerName(int id) {
+        return "Customer " + id;
+    }
+
+    /**
+     * Binds one synthetic row
+     */
+    interface RowBinder {
+        void bind(PreparedStatement preparedStatement, int id, Random random) throws SQLException;
+    }
+
+    /**
+     * Method to insert synthetic rows until a table holds at least the target count
+     * @return The row count after seeding
+     */
+    private static int seedTable(Connection con, String table, int target, SeedResult result, String sql, RowBinder binder)
+            throws SQLException {
+        int existing = (int) SchemaMigrations.countRows(con, table);
+        if (existing >= target) {
+            return existing;
+        }
+
+        Random random = new Random(table.hashCode() * 31L + existing); // Same data on every run
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        try (PreparedStatement preparedStatement = con.prepareStatement(sql)) {
+            for (int id = existing + 1; id <= target; id++) {
+                binder.bind(preparedStatement, id, random);
+                preparedStatement.addBatch();
+                if (id % BATCH_SIZE == 0 || id == target) {
+                    preparedStatement.executeBatch();
+                }
+                if (id % COMMIT_INTERVAL == 0 || id == target) {
+                    con.commit();
+                }
+            }
+        } catch (SQLException e) {
+            try {
+                con.rollback(); // Rows of earlier transactions stay; the next run continues after them
+            } catch (SQLException rollbackFailure) {
+                e.addSuppressed(rollbackFailure); // Keep the original cause, e.g. a full disk
+            }
+            throw e;
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+        result.inserted += target - existing;
+        return target;
+    }
+
+    private static int[] readInts(Connection con, String sql) throws SQLException {
+        List<Integer> values = new ArrayList<>();
+        try (Statement statement = con.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            while (resultSet.next()) {
+                values.add(resultSet.getInt(1));
+            }
+        }
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Row counts after seeding and the insert throughput
+     */
+    public static final class SeedResult {
+        private int games; // Rows in games
+        private int customers; // Rows in customers
+        private int orders; // Rows in orders
+        private long inserted = 0; // Rows inserted by this run
+        private long elapsedNanos = 0; // Time spent inserting
+
+        public int getGames() {
+            return games;
+        }
+
+        public int getCustomers() {
+            return customers;
+        }
+
+        public int getOrders() {
+            return orders;
+        }
+
+        public long getInserted() {
+            return inserted;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : inserted / (elapsedNanos / 1_000_000_000.0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d games, %d customers, %d orders (%d rows inserted in %.1f s, %.0f rows/s)",
+                    games, customers, orders, inserted, elapsedNanos / 1_000_000_000.0, getRowsPerSecond());
+        }
+    }
+}
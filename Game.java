@@ -0,0 +1,61 @@
+package com.example;
+
+/**
+ * A row of the games table
+ */
+public final class Game {
+    private final int gameId; // Primary key
+    private final String gameName; // Title of the game
+    private final int genreId; // Foreign key to genres
+    private final double price; // Price of the game
+    private final int ageLimit; // Minimum age of the player
+    private final String storage; // Storage medium, e.g. Disc or Digital
+    private final int version; // Incremented by every update, for optimistic concurrency
+
+    public Game(int gameId, String gameName, int genreId, double price, int ageLimit, String storage) {
+        this(gameId, gameName, genreId, price, ageLimit, storage, 0);
+    }
+
+    public Game(int gameId, String gameName, int genreId, double price, int ageLimit, String storage, int version) {
+        this.gameId = gameId;
+        this.gameName = gameName;
+        this.genreId = genreId;
+        this.price = price;
+        this.ageLimit = ageLimit;
+        this.storage = storage;
+        this.version = version;
+    }
+
+    public int getGameId() {
+        return gameId;
+    }
+
+    public String getGameName() {
+        return gameName;
+    }
+
+    public int getGenreId() {
+        return genreId;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public int getAgeLimit() {
+        return ageLimit;
+    }
+
+    public String getStorage() {
+        return storage;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "Game[" + gameId + ", " + gameName + "]";
+    }
+}
@@ -0,0 +1,558 @@
+package com.example;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Game Search Index
+ *
+ * In-memory full-text and faceted search over the games catalog. Game names are split into
+ * lower-case words; a query matches games that contain every query word, with the last word
+ * also matching as a prefix so results can follow the user's typing. Queries can be narrowed
+ * by genre, price band, maximum age limit and storage medium, and every result reports how
+ * many matching games fall into each value of those facets.
+ *
+ * The index follows the CatalogCache as a listener: it is built from the catalog on the
+ * first search and then updated game by game as games are added or changed, so searches
+ * never touch the database.
+ *
+ * Every game has a slot number in load order. Words map to posting lists of slots, stored
+ * as sorted int arrays while short and as bit sets once common; facet values are bit sets.
+ * A query starts from its most selective word and intersects the rest into one bit set,
+ * so its cost depends on the rarest word and the catalog size in 64-slot words, not on the
+ * number of games scanned one by one.
+ */
+public class GameSearchIndex implements CatalogCache.Listener {
+    static final double[] PRICE_BAND_LIMITS = {10, 20, 40, 60}; // Exclusive upper price of every band but the last
+    static final String[] PRICE_BANDS = {"Under 10", "10 - 20", "20 - 40", "40 - 60", "60 and over"}; // Band labels
+    private static final int DENSE_POSTINGS = 4096; // Posting lists longer than this switch to a bit set
+
+    private final CatalogCache catalog; // Source of the indexed games
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(); // Searches read, catalog changes write
+
+    // Index data, guarded by lock
+    private boolean built = false; // Whether the index reflects the catalog
+    private Game[] docs = new Game[0]; // Game in each slot, null once removed
+    private int slotCount = 0; // Slots in use, including removed ones
+    private final Map<Integer, Integer> slotByGameId = new HashMap<>(); // Game ID -> slot
+    private final BitSet live = new BitSet(); // Slots that hold a game
+    private final TreeMap<String, Postings> terms = new TreeMap<>(); // Word -> slots of games containing it
+    private final Map<Integer, BitSet> byGenre = new HashMap<>(); // Genre ID -> slots
+    private final Map<Integer, BitSet> byPriceBand = new HashMap<>(); // Price band -> slots
+    private final TreeMap<Integer, BitSet> byAgeLimit = new TreeMap<>(); // Age limit -> slots
+    private final Map<String, BitSet> byStorage = new HashMap<>(); // Storage medium in lower case -> slots
+
+    /**
+     * Create a search index over a catalog and register it for the catalog's changes
+     * @param catalog The catalog cache
+     */
+    public GameSearchIndex(CatalogCache catalog) {
+        this.catalog = catalog;
+        catalog.addListener(this);
+    }
+
+    // Searching
+
+    /**
+     * Method to search the catalog
+     * @param query The query
+     * @return The matching games in catalog order, up to the query's limit, with the total and facet counts
+     * @throws SQLException if the catalog has to be loaded and loading fails
+     */
+    public SearchResult search(GameQuery query) throws SQLException {
+        long start = System.nanoTime();
+        ensureBuilt();
+        lock.readLock().lock();
+        try {
+            BitSet matches = match(query);
+            SearchResult result = new SearchResult();
+            result.total = matches.cardinality();
+            for (int slot = matches.nextSetBit(0); slot >= 0 && result.games.size() < query.limit;
+                 slot = matches.nextSetBit(slot + 1)) {
+                result.games.add(docs[slot]);
+            }
+            countFacets(matches, result.total, result);
+            result.elapsedNanos = System.nanoTime() - start;
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Method to find the slots matching every part of a query
+     * @return A bit set owned by the caller
+     */
+    private BitSet match(GameQuery query) {
+        List<String> words = tokenize(query.text);
+        String prefix = null;
+        if (!words.isEmpty() && !query.text.isEmpty()
+                && Character.isLetterOrDigit(query.text.charAt(query.text.length() - 1))) {
+            prefix = words.remove(words.size() - 1); // The word still being typed
+        }
+
+        // Whole words, rarest first
+        List<Postings> postings = new ArrayList<>();
+        for (String word : words) {
+            Postings wordPostings = terms.get(word);
+            if (wordPostings == null) {
+                return new BitSet();
+            }
+            postings.add(wordPostings);
+        }
+        postings.sort(Comparator.comparingInt(Postings::size));
+
+        BitSet matches;
+        if (!postings.isEmpty()) {
+            matches = postings.get(0).toBitSet();
+            for (int i = 1; i < postings.size() && !matches.isEmpty(); i++) {
+                postings.get(i).retainIn(matches);
+            }
+        } else if (prefix == null) {
+            matches = (BitSet) live.clone();
+        } else {
+            matches = null;
+        }
+
+        if (prefix != null) {
+            BitSet prefixed = new BitSet();
+            for (Postings wordPostings : terms.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+                wordPostings.orInto(prefixed);
+            }
+            if (matches == null) {
+                matches = prefixed;
+            } else {
+                matches.and(prefixed);
+            }
+        }
+
+        if (query.genreId != null) {
+            matches.and(byGenre.getOrDefault(query.genreId, new BitSet()));
+        }
+        if (query.priceBand != null) {
+            matches.and(byPriceBand.getOrDefault(query.priceBand, new BitSet()));
+        }
+        if (query.maxAgeLimit != null) {
+            BitSet allowed = new BitSet();
+            for (BitSet ageLimit : byAgeLimit.headMap(query.maxAgeLimit, true).values()) {
+                allowed.or(ageLimit);
+            }
+            matches.and(allowed);
+        }
+        if (query.storage != null) {
+            matches.and(byStorage.getOrDefault(storageKey(query.storage), new BitSet()));
+        }
+        return matches;
+    }
+
+    /**
+     * Method to count the matches per facet value. Few matches are counted game by game,
+     * many by intersecting the facet bit sets.
+     */
+    private void countFacets(BitSet matches, int total, SearchResult result) {
+        if (total <= Math.max(1024, slotCount / 16)) {
+            for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+                Game game = docs[slot];
+                result.genreCounts.merge(game.getGenreId(), 1, Integer::sum);
+                result.priceBandCounts.merge(priceBand(game.getPrice()), 1, Integer::sum);
+                result.ageLimitCounts.merge(game.getAgeLimit(), 1, Integer::sum);
+                if (game.getStorage() != null) {
+                    result.storageCounts.merge(storageKey(game.getStorage()), 1, Integer::sum);
+                }
+            }
+            return;
+        }
+        boolean everything = total == slotByGameId.size(); // An empty query needs no intersections
+        countIntersections(matches, everything, byGenre, result.genreCounts);
+        countIntersections(matches, everything, byPriceBand, result.priceBandCounts);
+        countIntersections(matches, everything, byAgeLimit, result.ageLimitCounts);
+        countIntersections(matches, everything, byStorage, result.storageCounts);
+    }
+
+    private static <K> void countIntersections(BitSet matches, boolean everything, Map<K, BitSet> facet, Map<K, Integer> counts) {
+        for (Map.Entry<K, BitSet> entry : facet.entrySet()) {
+            BitSet both = entry.getValue();
+            if (!everything) {
+                both = (BitSet) both.clone();
+                both.and(matches);
+            }
+            int count = both.cardinality();
+            if (count > 0) {
+                counts.put(entry.getKey(), count);
+            }
+        }
+    }
+
+    // Catalog changes
+
+    /**
+     * Method to build the index from the catalog if it is not built yet
+     * @throws SQLException if the catalog has to be loaded and loading fails
+     */
+    private void ensureBuilt() throws SQLException {
+        lock.readLock().lock();
+        try {
+            if (built) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        synchronized (catalog) { // No catalog change can slip in between reading the games and indexing them
+            List<Game> games = catalog.getGames(); // A load here builds the index through catalogLoaded
+            lock.writeLock().lock();
+            try {
+                if (!built) {
+                    rebuild(games);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public void catalogLoaded(Collection<Game> games) {
+        lock.writeLock().lock();
+        try {
+            rebuild(games);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void gameChanged(Game previous, Game current) {
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                return; // The first search indexes the whole catalog
+            }
+            int gameId = current != null ? current.getGameId() : previous.getGameId();
+            Integer slot = slotByGameId.get(gameId);
+            if (slot != null) {
+                unindex(slot);
+            }
+            if (current == null) {
+                slotByGameId.remove(gameId);
+                return;
+            }
+            if (slot == null) {
+                slot = slotCount++;
+                slotByGameId.put(gameId, slot);
+            }
+            index(slot, current);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void catalogInvalidated() {
+        lock.writeLock().lock();
+        try {
+            clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void rebuild(Collection<Game> games) {
+        clear();
+        docs = new Game[Math.max(16, games.size())];
+        for (Game game : games) {
+            int slot = slotCount++;
+            slotByGameId.put(game.getGameId(), slot);
+            index(slot, game);
+        }
+        built = true;
+    }
+
+    private void clear() {
+        built = false;
+        docs = new Game[0];
+        slotCount = 0;
+        slotByGameId.clear();
+        live.clear();
+        terms.clear();
+        byGenre.clear();
+        byPriceBand.clear();
+        byAgeLimit.clear();
+        byStorage.clear();
+    }
+
+    private void index(int slot, Game game) {
+        if (slot >= docs.length) {
+            docs = Arrays.copyOf(docs, Math.max(16, docs.length * 2));
+        }
+        docs[slot] = game;
+        live.set(slot);
+        for (String word : new HashSet<>(tokenize(game.getGameName()))) {
+            terms.computeIfAbsent(word, key -> new Postings()).add(slot);
+        }
+        byGenre.computeIfAbsent(game.getGenreId(), key -> new BitSet()).set(slot);
+        byPriceBand.computeIfAbsent(priceBand(game.getPrice()), key -> new BitSet()).set(slot);
+        byAgeLimit.computeIfAbsent(game.getAgeLimit(), key -> new BitSet()).set(slot);
+        if (game.getStorage() != null) {
+            byStorage.computeIfAbsent(storageKey(game.getStorage()), key -> new BitSet()).set(slot);
+        }
+    }
+
+    private void unindex(int slot) {
+        Game game = docs[slot];
+        docs[slot] = null;
+        live.clear(slot);
+        for (String word : new HashSet<>(tokenize(game.getGameName()))) {
+            Postings postings = terms.get(word);
+            if (postings != null && postings.remove(slot)) {
+                terms.remove(word);
+            }
+        }
+        clearFacet(byGenre, game.getGenreId(), slot);
+        clearFacet(byPriceBand, priceBand(game.getPrice()), slot);
+        clearFacet(byAgeLimit, game.getAgeLimit(), slot);
+        if (game.getStorage() != null) {
+            clearFacet(byStorage, storageKey(game.getStorage()), slot);
+        }
+    }
+
+    private static <K> void clearFacet(Map<K, BitSet> facet, K key, int slot) {
+        BitSet slots = facet.get(key);
+        if (slots != null) {
+            slots.clear(slot);
+            if (slots.isEmpty()) {
+                facet.remove(key); // Keep facet counts free of values no game has any more
+            }
+        }
+    }
+
+    /**
+     * Method to split text into lower-case words of letters and digits
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Method to get the storage facet value of a storage medium; filters and counts ignore case alike
+     */
+    static String storageKey(String storage) {
+        return storage.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Method to get the price band of a price
+     * @return An index into PRICE_BANDS
+     */
+    static int priceBand(double price) {
+        int band = 0;
+        while (band < PRICE_BAND_LIMITS.length && price >= PRICE_BAND_LIMITS[band]) {
+            band++;
+        }
+        return band;
+    }
+
+    /**
+     * Method to get the number of indexed games
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotByGameId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Slots of the games containing one word: a sorted array while short, a bit set once long
+     */
+    private static final class Postings {
+        private int[] slots = new int[1]; // Sorted slots while sparse
+        private BitSet dense; // Slots once there are more than DENSE_POSTINGS
+        private int size = 0; // Number of slots
+
+        int size() {
+            return size;
+        }
+
+        void add(int slot) {
+            if (dense != null) {
+                if (!dense.get(slot)) {
+                    dense.set(slot);
+                    size++;
+                }
+                return;
+            }
+            int position = Arrays.binarySearch(slots, 0, size, slot);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            if (size == DENSE_POSTINGS) {
+                dense = toBitSet();
+                slots = null;
+                dense.set(slot);
+                size++;
+                return;
+            }
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            System.arraycopy(slots, position, slots, position + 1, size - position);
+            slots[position] = slot;
+            size++;
+        }
+
+        /**
+         * @return true if no slot is left
+         */
+        boolean remove(int slot) {
+            if (dense != null) {
+                if (dense.get(slot)) {
+                    dense.clear(slot);
+                    size--;
+                }
+            } else {
+                int position = Arrays.binarySearch(slots, 0, size, slot);
+                if (position >= 0) {
+                    System.arraycopy(slots, position + 1, slots, position, size - position - 1);
+                    size--;
+                }
+            }
+            return size == 0;
+        }
+
+        BitSet toBitSet() {
+            if (dense != null) {
+                return (BitSet) dense.clone();
+            }
+            BitSet bits = new BitSet();
+            orInto(bits);
+            return bits;
+        }
+
+        void orInto(BitSet target) {
+            if (dense != null) {
+                target.or(dense);
+                return;
+            }
+            for (int i = 0; i < size; i++) {
+                target.set(slots[i]);
+            }
+        }
+
+        /**
+         * Method to clear every slot of the target that is not in this list
+         */
+        void retainIn(BitSet target) {
+            if (dense != null) {
+                target.and(dense);
+                return;
+            }
+            for (int slot = target.nextSetBit(0); slot >= 0; slot = target.nextSetBit(slot + 1)) {
+                if (Arrays.binarySearch(slots, 0, size, slot) < 0) {
+                    target.clear(slot);
+                }
+            }
+        }
+    }
+
+    /**
+     * Search criteria; every part that is set must match
+     */
+    public static final class GameQuery {
+        private String text = ""; // Words in the game name, the last one as a prefix unless followed by a space
+        private Integer genreId; // Only games of this genre
+        private Integer priceBand; // Only games in this price band (index into PRICE_BANDS)
+        private Integer maxAgeLimit; // Only games with at most this age limit
+        private String storage; // Only games on this storage medium, ignoring case
+        private int limit = 50; // Games returned at most
+
+        public GameQuery text(String text) {
+            this.text = text == null ? "" : text;
+            return this;
+        }
+
+        public GameQuery genre(int genreId) {
+            this.genreId = genreId;
+            return this;
+        }
+
+        public GameQuery priceBand(int priceBand) {
+            this.priceBand = priceBand;
+            return this;
+        }
+
+        public GameQuery maxAgeLimit(int maxAgeLimit) {
+            this.maxAgeLimit = maxAgeLimit;
+            return this;
+        }
+
+        public GameQuery storage(String storage) {
+            this.storage = storage;
+            return this;
+        }
+
+        public GameQuery limit(int limit) {
+            this.limit = limit;
+            return this;
+        }
+    }
+
+    /**
+     * Matching games and how they spread over the facets
+     */
+    public static final class SearchResult {
+        private int total; // Number of matching games
+        private final List<Game> games = new ArrayList<>(); // First matching games in catalog order
+        private final Map<Integer, Integer> genreCounts = new TreeMap<>(); // Genre ID -> matches
+        private final Map<Integer, Integer> priceBandCounts = new TreeMap<>(); // Price band -> matches
+        private final Map<Integer, Integer> ageLimitCounts = new TreeMap<>(); // Age limit -> matches
+        private final Map<String, Integer> storageCounts = new TreeMap<>(); // Storage medium in lower case -> matches
+        private long elapsedNanos; // Time the search took
+
+        public int getTotal() {
+            return total;
+        }
+
+        public List<Game> getGames() {
+            return games;
+        }
+
+        public Map<Integer, Integer> getGenreCounts() {
+            return genreCounts;
+        }
+
+        public Map<Integer, Integer> getPriceBandCounts() {
+            return priceBandCounts;
+        }
+
+        public Map<Integer, Integer> getAgeLimitCounts() {
+            return ageLimitCounts;
+        }
+
+        public Map<String, Integer> getStorageCounts() {
+            return storageCounts;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+}
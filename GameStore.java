@@ -1,8 +1,7 @@
 package com.example;
 
 import java.io.*;
-import java.sql.*;
-import java.sql.Date; // Import Date from java.sql package (to avoid conflict with java.util.Date)
+import java.sql.SQLException;
 import java.util.*;
 
 /**
@@ -16,31 +15,44 @@ import java.util.*;
  */
 public class GameStore {
     private static final Scanner scanner = new Scanner(System.in); // Scanner object for user input
-    private static Connection con = null; // Connection object for database connection
+    private static GameStoreService service = null; // Data-access API used by every menu option
 
     public static void main(String[] args) {
-        try {
-            // Establish database connection
-            String DB_URL = "jdbc:mysql://localhost:3306/games_db";
-            String USER = "root";
-            String PASS = "root";
-
-            con = DriverManager.getConnection(DB_URL, USER, PASS); // Connect to the database
-            con.setAutoCommit(true); // Set auto-commit to true
+        // Establish database connection
+        String DB_URL = "jdbc:mysql://localhost:3306/games_db";
+        String USER = "root";
+        String PASS = "root";
+
+        int poolSize = Integer.getInteger("gamestore.poolSize", 10); // Maximum number of database sessions
+        // Connections are opened on demand; the pool is closed however the program ends
+        try (ConnectionPool pool = new ConnectionPool(DB_URL, USER, PASS, poolSize)) {
+            service = new GameStoreService(pool);
+            try {
+                // Publish operation metrics over JMX and, if configured, to a file every few seconds
+                OperationMetrics metrics = pool.getMetrics();
+                metrics.registerMBean("gamestore");
+                int dumpSeconds = Integer.getInteger("gamestore.metricsDumpSeconds", 0); // 0 disables the dump
+                if (dumpSeconds > 0) {
+                    String dumpFile = System.getProperty("gamestore.metricsFile", "gamestore-metrics.json");
+                    metrics.startDump(new File(dumpFile).toPath(), dumpSeconds * 1000L, dumpFile.endsWith(".json"));
+                }
 
-            // Instantiate the game store management object
-            GameStore manager = new GameStore();
+                // Instantiate the game store management object
+                GameStore manager = new GameStore();
 
-            // Check if tables exist, create if not
-            manager.createDatabaseTables();
+                // Check if tables exist, create if not
+                manager.createDatabaseTables();
 
-            // Run the main menu
-            manager.mainMenu();
+                // Accept orders through the write-behind log if one is configured
+                manager.openOrderLog(System.getProperty("gamestore.orderLog"));
 
-            // Close the database connection
-            con.close();
-        } catch (SQLException e) {
-            e.printStackTrace(); // Print SQL exception details if connection or query fails
+                // Run the main menu
+                manager.mainMenu();
+            } finally {
+                service.close(); // Finish pending orders before the pool goes away
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace(); // Print details if the pool cannot be created or the menu fails
         }
     }
 
@@ -49,56 +61,31 @@ public class GameStore {
      */
     private void createDatabaseTables() {
         try {
-            Statement statement = con.createStatement(); // Create statement object
-
-            // Create tables if they don't exist
-            statement.executeUpdate("CREATE TABLE IF NOT EXISTS genres (" +
-                    "genre_id INT PRIMARY KEY AUTO_INCREMENT," +
-                    "genre_name VARCHAR(100) NOT NULL UNIQUE" +
-                    ")");
-            statement.executeUpdate("CREATE TABLE IF NOT EXISTS games (" +
-                    "game_id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "game_name VARCHAR(100) NOT NULL," +
-                    "genre_id INT," +
-                    "price DECIMAL(10,2)," +
-                    "age_limit INT," +
-                    "storage VARCHAR(50)," +
-                    "FOREIGN KEY (genre_id) REFERENCES genres(genre_id)" +
-                    ")");
-            statement.executeUpdate("CREATE TABLE IF NOT EXISTS customers (" +
-                    "customer_id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "customer_name VARCHAR(100) NOT NULL," +
-                    "email VARCHAR(100) NOT NULL UNIQUE" +
-                    ")");
-            statement.executeUpdate("CREATE TABLE IF NOT EXISTS orders (" +
-                    "order_id INT AUTO_INCREMENT PRIMARY KEY," +
-                    "customer_id INT," +
-                    "game_id INT," +
-                    "order_date DATE," +
-                    "FOREIGN KEY (customer_id) REFERENCES customers(customer_id)," +
-                    "FOREIGN KEY (game_id) REFERENCES games(game_id)" +
-                    ")");
-
-            // Populate genres table with initial data if it's empty
-            ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM genres");
-            resultSet.next();
-            int count = resultSet.getInt(1);
-
-            if (count == 0) {
-                String[] genres = {"Action-adventure", "Battle royale game", "First-person shooter", "Horror", "RPG", "Sports", "Strategy", "Survival game", "Survival horror"};
-
-                // Insert initial genres into the table
-                for (String genre : genres) {
-                    statement.executeUpdate("INSERT INTO genres (genre_name) VALUES ('" + genre + "')");
-                }
-            }
-
-            statement.close(); // Close the statement
+            service.createTables();
         } catch (SQLException e) {
             e.printStackTrace(); // Print SQL exception details if table creation or population fails
         }
     }
 
+    /**
+     * Method to open the write-behind order log, storing any orders left in it by a crash
+     * @param path The log file, or null to place orders synchronously
+     */
+    private void openOrderLog(String path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            OrderLog log = service.openOrderLog(new File(path).toPath(), Boolean.getBoolean("gamestore.orderLogForce"),
+                    Boolean.getBoolean("gamestore.orderLogReplayWithoutCheckpoint"));
+            if (log.getReplayedCount() > 0) {
+                System.out.println("Storing " + log.getReplayedCount() + " orders left in the order log"); // Replay message
+            }
+        } catch (IOException | SQLException e) {
+            e.printStackTrace(); // Print file or SQL exception details
+        }
+    }
+
     /**
      * Method to display the main menu and handle user input
      */
@@ -112,7 +99,14 @@ public class GameStore {
             System.out.println("4. Add New Customer");
             System.out.println("5. Place Order");
             System.out.println("6. View Ordered Games");
-            System.out.println("7. Exit");
+            System.out.println("7. Import Orders from File");
+            System.out.println("8. Sales Reports");
+            System.out.println("9. Restock Game");
+            System.out.println("10. Search Games");
+            System.out.println("11. Operation Metrics");
+            System.out.println("12. Export Snapshot");
+            System.out.println("13. Load Snapshot");
+            System.out.println("14. Exit");
 
             System.out.print("Enter your choice: ");
             String choice = scanner.nextLine(); // Read user choice
@@ -137,6 +131,27 @@ public class GameStore {
                     viewOrderedGames(); // Call method to view ordered games
                     break;
                 case "7":
+                    importOrdersFromFile(); // Call method to bulk import orders
+                    break;
+                case "8":
+                    viewSalesReports(); // Call method to display sales reports
+                    break;
+                case "9":
+                    restockGame(); // Call method to add stock to a game
+                    break;
+                case "10":
+                    searchGames(); // Call method to search games
+                    break;
+                case "11":
+                    viewOperationMetrics(); // Call method to display operation timings
+                    break;
+                case "12":
+                    exportSnapshot(); // Call method to write a snapshot file
+                    break;
+                case "13":
+                    loadSnapshot(); // Call method to restore a snapshot file
+                    break;
+                case "14":
                     System.out.println("Exiting..."); // Exit the program
                     return;
                 default:
@@ -170,17 +185,18 @@ public class GameStore {
             System.out.print("Enter Storage Medium: ");
             String storage = scanner.nextLine(); // Read storage medium
 
-            // Insert into games table
-            String sql = "INSERT INTO games (game_name, genre_id, price, age_limit, storage) " +
-                    "VALUES (?, ?, ?, ?, ?)";
-            try (PreparedStatement preparedStatement = con.prepareStatement(sql)) {
-                preparedStatement.setString(1, gameName); // Set game name parameter
-                preparedStatement.setInt(2, genreId); // Set genre ID parameter
-                preparedStatement.setDouble(3, price); // Set price parameter
-                preparedStatement.setInt(4, ageLimit); // Set age limit parameter
-                preparedStatement.setString(5, storage); // Set storage parameter
+            System.out.print("Enter Stock (leave blank if unlimited): ");
+            String stockInput = scanner.nextLine().trim(); // Read stock
+            Integer stock = stockInput.isEmpty() ? null : Integer.parseInt(stockInput); // Parsed before anything is inserted
+            if (stock != null && stock < 0) {
+                System.out.println("Stock cannot be negative."); // Validation message
+                return;
+            }
 
-                preparedStatement.executeUpdate(); // Execute update
+            // Insert into games table
+            Game game = service.addGame(gameName, genreId, price, ageLimit, storage);
+            if (stock != null) {
+                service.setStock(game.getGameId(), stock);
             }
 
             System.out.println("Game added successfully!"); // Success message
@@ -202,27 +218,48 @@ public class GameStore {
             System.out.print("Enter Game ID: ");
             int gameId = Integer.parseInt(scanner.nextLine()); // Read game ID
 
-            System.out.print("Enter Field to Update (game_name, price, age_limit, storage): ");
-            String field = scanner.nextLine(); // Read field to update
+            Game game = service.getGame(gameId);
+            if (game == null) {
+                System.out.println("Game not found with ID: " + gameId); // Game not found message
+                return;
+            }
 
-            System.out.print("Enter New Value: ");
-            String newValue = scanner.nextLine(); // Read new value
+            // Every field is optional; the update only applies if nobody changed the game meanwhile
+            GameUpdater.GameUpdate update = new GameUpdater.GameUpdate(gameId).expectedVersion(game.getVersion());
+            System.out.print("Enter New Name (leave blank to keep " + game.getGameName() + "): ");
+            String gameName = scanner.nextLine().trim(); // Read new name
+            if (!gameName.isEmpty()) {
+                update.gameName(gameName);
+            }
+            System.out.printf("Enter New Price (leave blank to keep %.2f): ", game.getPrice());
+            String price = scanner.nextLine().trim(); // Read new price
+            if (!price.isEmpty()) {
+                update.price(Double.parseDouble(price));
+            }
+            System.out.print("Enter New Age Limit (leave blank to keep " + game.getAgeLimit() + "): ");
+            String ageLimit = scanner.nextLine().trim(); // Read new age limit
+            if (!ageLimit.isEmpty()) {
+                update.ageLimit(Integer.parseInt(ageLimit));
+            }
+            System.out.print("Enter New Storage Medium (leave blank to keep " + game.getStorage() + "): ");
+            String storage = scanner.nextLine().trim(); // Read new storage medium
+            if (!storage.isEmpty()) {
+                update.storage(storage);
+            }
 
             // Update game details
-            String sql = "UPDATE games SET " + field + " = ? WHERE game_id = ?";
-            try (PreparedStatement preparedStatement = con.prepareStatement(sql)) {
-                preparedStatement.setString(1, newValue); // Set new value parameter
-                preparedStatement.setInt(2, gameId); // Set game ID parameter
-
-                int affectedRows = preparedStatement.executeUpdate(); // Execute update
-                if (affectedRows > 0) {
-                    System.out.println("Game details updated successfully!"); // Success message
-                } else {
-                    System.out.println("Game not found with ID: " + gameId); // Game not found message
-                }
+            GameUpdater.UpdateResult result = service.updateGame(update);
+            if (result.getUpdated() > 0) {
+                System.out.println("Game details updated successfully!"); // Success message
+            } else if (!result.getConflicts().isEmpty()) {
+                System.out.println("The game was changed by someone else meanwhile. Please try again."); // Conflict message
+            } else if (!result.getMissing().isEmpty()) {
+                System.out.println("Game not found with ID: " + gameId); // Game not found message
+            } else {
+                System.out.println("Nothing to update."); // No field entered
             }
-        } catch (SQLException | NumberFormatException e) {
-            e.printStackTrace(); // Print SQL or number format exception details
+        } catch (SQLException | IllegalArgumentException e) {
+            e.printStackTrace(); // Print SQL, number format or invalid value exception details
         }
     }
 
@@ -237,13 +274,7 @@ public class GameStore {
             System.out.print("\nEnter Genre ID: ");
             int genreId = Integer.parseInt(scanner.nextLine()); // Read genre ID
 
-            String sql = "SELECT * FROM games WHERE genre_id = ?";
-            try (PreparedStatement preparedStatement = con.prepareStatement(sql)) {
-                preparedStatement.setInt(1, genreId); // Set genre ID parameter
-
-                ResultSet resultSet = preparedStatement.executeQuery(); // Execute query
-                displayGameResultSet(resultSet); // Display games from result set
-            }
+            displayGames(service.getGamesByGenre(genreId)); // Display games of the genre
         } catch (SQLException | NumberFormatException e) {
             e.printStackTrace(); // Print SQL or number format exception details
         }
@@ -263,20 +294,8 @@ public class GameStore {
             String email = scanner.nextLine(); // Read email
 
             // Insert into customers table
-            String sql = "INSERT INTO customers (customer_name, email) " +
-                    "VALUES (?, ?)";
-            try (PreparedStatement preparedStatement = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                preparedStatement.setString(1, customerName); // Set customer name parameter
-                preparedStatement.setString(2, email); // Set email parameter
-
-                preparedStatement.executeUpdate(); // Execute update
-
-                ResultSet generatedKeys = preparedStatement.getGeneratedKeys();
-                if (generatedKeys.next()) {
-                    int customerId = generatedKeys.getInt(1);
-                    displayCustomerDetails(customerId); // Display customer details
-                }
-            }
+            Customer customer = service.addCustomer(customerName, email);
+            displayCustomerDetails(customer.getCustomerId()); // Display customer details
 
             System.out.println("Customer added successfully!"); // Success message
         } catch (SQLException e) {
@@ -306,47 +325,237 @@ public class GameStore {
             System.out.print("Enter Game ID: ");
             int gameId = Integer.parseInt(scanner.nextLine()); // Read game ID
 
-            // Insert into orders table
-            String sql = "INSERT INTO orders (customer_id, game_id, order_date) " +
-                    "VALUES (?, ?, NOW())";
-            try (PreparedStatement preparedStatement = con.prepareStatement(sql)) {
-                preparedStatement.setInt(1, customerId); // Set customer ID parameter
-                preparedStatement.setInt(2, gameId); // Set game ID parameter
+            if (service.getOrderLog() != null) {
+                // Write-behind: acknowledged once logged, stored in the background
+                long sequence = service.acceptOrder(customerId, gameId);
+                System.out.println("Order accepted! Log sequence: " + sequence); // Success message
+                return;
+            }
+
+            // Insert into orders table and wait for the result
+            int orderId = service.placeOrder(customerId, gameId);
+
+            System.out.println("Order placed successfully! Order ID: " + orderId); // Success message
+        } catch (Inventory.OutOfStockException e) {
+            System.out.println("Sorry, this game is out of stock."); // Sold out message
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Keep the interrupt for the caller
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace(); // Print SQL, number format or other exception details
+        }
+    }
+
+    /**
+     * Method to view ordered games along with customer data
+     */
+    private void viewOrderedGames() {
+        try {
+            // Orders are streamed page by page, so memory use does not grow with the order history
+            Iterator<OrderRow> orders = service.getOrders(null);
+            TableRenderer table = TableRenderer.toStdout(10, 20, 30, 30, 15);
+            table.line("").header("Order ID", "Customer Name", "Email", "Game Name", "Order Date");
+            table.line("--------------------------------------------------------------------------------------------");
+            while (orders.hasNext()) {
+                OrderRow order = orders.next();
+                table.cell(order.getOrderId()).cell(order.getCustomerName()).cell(order.getEmail())
+                        .cell(order.getGameName()).cell(order.getOrderDate()); // Print formatted order details
+            }
+            table.flush();
+        } catch (OrderReport.UncheckedSqlException e) {
+            e.getCause().printStackTrace(); // Print SQL exception details
+        } catch (IOException e) {
+            e.printStackTrace(); // Print output exception details
+        }
+    }
+
+    /**
+     * Method to bulk import orders from a CSV file (customer_name,game_id[,order_date])
+     */
+    private void importOrdersFromFile() {
+        try {
+            System.out.println("\nImporting Orders:");
+
+            System.out.print("Enter File Path: ");
+            String path = scanner.nextLine(); // Read file path
+
+            // 1000 rows per batch, commit every 10000 rows
+            OrderImporter.ImportResult result = service.importOrders(new File(path).toPath(), 1000, 10_000);
+
+            System.out.println(result); // Print import summary
+            for (OrderImporter.RowFailure failure : result.getFailures()) {
+                System.out.println(failure); // Print each rejected row
+            }
+        } catch (IOException | SQLException e) {
+            e.printStackTrace(); // Print file or SQL exception details
+        }
+    }
+
+    /**
+     * Method to export the store's tables to a snapshot file
+     */
+    private void exportSnapshot() {
+        try {
+            System.out.println("\nExporting Snapshot:");
+
+            System.out.print("Enter File Path: ");
+            String path = scanner.nextLine(); // Read file path
 
-                preparedStatement.executeUpdate(); // Execute update
+            System.out.println(service.exportSnapshot(new File(path).toPath())); // Print export summary
+        } catch (IOException | SQLException e) {
+            e.printStackTrace(); // Print file or SQL exception details
+        }
+    }
+
+    /**
+     * Method to load a snapshot file into an empty store
+     */
+    private void loadSnapshot() {
+        try {
+            System.out.println("\nLoading Snapshot:");
+
+            System.out.print("Enter File Path: ");
+            String path = scanner.nextLine(); // Read file path
+
+            System.out.println(service.loadSnapshot(new File(path).toPath())); // Print load summary
+        } catch (IOException | SQLException e) {
+            e.printStackTrace(); // Print file or SQL exception details
+        }
+    }
+
+    /**
+     * Method to search games by name and optional filters, showing how the matches spread over the filters
+     */
+    private void searchGames() {
+        try {
+            System.out.println("\nSearching Games:");
+
+            GameSearchIndex.GameQuery query = new GameSearchIndex.GameQuery().limit(50);
+            System.out.print("Enter Name (leave blank for all): ");
+            query.text(scanner.nextLine()); // Read search words
+
+            System.out.print("Enter Genre ID (leave blank for any): ");
+            String genreId = scanner.nextLine().trim(); // Read genre ID
+            if (!genreId.isEmpty()) {
+                query.genre(Integer.parseInt(genreId));
             }
 
-            System.out.println("Order placed successfully!"); // Success message
+            for (int band = 0; band < GameSearchIndex.PRICE_BANDS.length; band++) {
+                System.out.printf("%d: %s\n", band, GameSearchIndex.PRICE_BANDS[band]); // Print price bands
+            }
+            System.out.print("Enter Price Band (leave blank for any): ");
+            String priceBand = scanner.nextLine().trim(); // Read price band
+            if (!priceBand.isEmpty()) {
+                query.priceBand(Integer.parseInt(priceBand));
+            }
+
+            System.out.print("Enter Maximum Age Limit (leave blank for any): ");
+            String maxAgeLimit = scanner.nextLine().trim(); // Read maximum age limit
+            if (!maxAgeLimit.isEmpty()) {
+                query.maxAgeLimit(Integer.parseInt(maxAgeLimit));
+            }
+
+            System.out.print("Enter Storage Medium (leave blank for any): ");
+            String storage = scanner.nextLine().trim(); // Read storage medium
+            if (!storage.isEmpty()) {
+                query.storage(storage);
+            }
+
+            GameSearchIndex.SearchResult result = service.searchGames(query);
+            displayGames(result.getGames());
+            System.out.printf("%d matching games (showing %d, %.3f ms)\n", result.getTotal(), result.getGames().size(),
+                    result.getElapsedNanos() / 1_000_000.0);
+
+            // Print how the matches spread over the filters
+            System.out.print("By genre:");
+            for (Map.Entry<Integer, Integer> entry : result.getGenreCounts().entrySet()) {
+                Genre genre = service.getGenre(entry.getKey());
+                System.out.print("  " + (genre == null ? "Unknown" : genre.getGenreName()) + " (" + entry.getValue() + ")");
+            }
+            System.out.print("\nBy price:");
+            for (Map.Entry<Integer, Integer> entry : result.getPriceBandCounts().entrySet()) {
+                System.out.print("  " + GameSearchIndex.PRICE_BANDS[entry.getKey()] + " (" + entry.getValue() + ")");
+            }
+            System.out.print("\nBy age limit:");
+            for (Map.Entry<Integer, Integer> entry : result.getAgeLimitCounts().entrySet()) {
+                System.out.print("  " + entry.getKey() + " (" + entry.getValue() + ")");
+            }
+            System.out.print("\nBy storage:");
+            for (Map.Entry<String, Integer> entry : result.getStorageCounts().entrySet()) {
+                System.out.print("  " + entry.getKey() + " (" + entry.getValue() + ")");
+            }
+            System.out.println();
         } catch (SQLException | NumberFormatException e) {
             e.printStackTrace(); // Print SQL or number format exception details
         }
     }
 
     /**
-     * Method to view ordered games along with customer data
+     * Method to display call counts, error rates and latencies of every operation and statement
      */
-    private void viewOrderedGames() {
+    private void viewOperationMetrics() {
+        OperationMetrics metrics = service.getMetrics();
+        System.out.println("\nOperation Metrics:");
+        System.out.print(metrics.toText()); // Print one row per operation
+        for (String slowQuery : metrics.getRecentSlowQueries()) {
+            System.out.println(slowQuery); // Print the latest slow-query log lines
+        }
+    }
+
+    /**
+     * Method to add copies of a game to its stock
+     */
+    private void restockGame() {
         try {
-            String sql = "SELECT o.order_id, c.customer_name, c.email, g.game_name, o.order_date " +
-                         "FROM orders o " +
-                         "JOIN customers c ON o.customer_id = c.customer_id " +
-                         "JOIN games g ON o.game_id = g.game_id " +
-                         "ORDER BY o.order_id ASC";
-            try (PreparedStatement preparedStatement = con.prepareStatement(sql)) {
-                ResultSet resultSet = preparedStatement.executeQuery(); // Execute query
-                System.out.printf("\n%-10s %-20s %-30s %-30s %-15s\n", "Order ID", "Customer Name", "Email", "Game Name", "Order Date");
-                System.out.println("--------------------------------------------------------------------------------------------");
-                while (resultSet.next()) {
-                    int orderId = resultSet.getInt("order_id"); // Get order ID from result set
-                    String customerName = resultSet.getString("customer_name"); // Get customer name from result set
-                    String email = resultSet.getString("email"); // Get email from result set
-                    String gameName = resultSet.getString("game_name"); // Get game name from result set
-                    Date orderDate = resultSet.getDate("order_date"); // Get order date from result set
-                    System.out.printf("%-10d %-20s %-30s %-30s %-15s\n", orderId, customerName, email, gameName, orderDate); // Print formatted order details
-                }
+            System.out.println("\nRestocking a Game:");
+
+            // Display all games with genres
+            displayGamesWithGenres();
+
+            System.out.print("Enter Game ID: ");
+            int gameId = Integer.parseInt(scanner.nextLine()); // Read game ID
+
+            System.out.print("Enter Quantity: ");
+            int quantity = Integer.parseInt(scanner.nextLine()); // Read quantity
+
+            if (service.restock(gameId, quantity)) {
+                System.out.println("Game restocked successfully! Stock: " + service.getStock(gameId)); // Success message
+            } else {
+                System.out.println("Game not found."); // Game not found message
             }
-        } catch (SQLException e) {
-            e.printStackTrace(); // Print SQL exception details
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace(); // Print SQL, number format or argument exception details
+        }
+    }
+
+    /**
+     * Method to display revenue by genre, the top 10 games and orders per day for the last 30 days
+     */
+    private void viewSalesReports() {
+        try {
+            TableRenderer table = TableRenderer.toStdout(30, 15, 15);
+
+            table.line("\nRevenue by Genre:");
+            table.header("Genre", "Orders", "Revenue").separator(60);
+            for (SalesAnalytics.SalesFigure figure : service.getRevenueByGenre()) {
+                table.cell(figure.getLabel()).cell(figure.getOrderCount()).cell(figure.getRevenue());
+            }
+
+            table.line("\nTop 10 Games:");
+            table.header("Game", "Orders", "Revenue").separator(60);
+            for (SalesAnalytics.SalesFigure figure : service.getTopGames(10)) {
+                table.cell(figure.getLabel()).cell(figure.getOrderCount()).cell(figure.getRevenue());
+            }
+
+            long now = System.currentTimeMillis();
+            java.sql.Date from = new java.sql.Date(now - 29L * 24 * 60 * 60 * 1000);
+            table.line("\nOrders per Day (last 30 days):");
+            table.header("Date", "Orders", "Revenue").separator(60);
+            for (SalesAnalytics.SalesFigure figure : service.getOrdersPerDay(from, new java.sql.Date(now))) {
+                table.cell(figure.getLabel()).cell(figure.getOrderCount()).cell(figure.getRevenue());
+            }
+            table.flush();
+        } catch (SQLException | IOException e) {
+            e.printStackTrace(); // Print SQL or output exception details
         }
     }
 
@@ -357,15 +566,9 @@ public class GameStore {
      */
     private void displayGenres() {
         try {
-            String sql = "SELECT * FROM genres";
-            try (PreparedStatement preparedStatement = con.prepareStatement(sql)) {
-                ResultSet resultSet = preparedStatement.executeQuery(); // Execute query
-                System.out.println("\nAvailable Genres:");
-                while (resultSet.next()) {
-                    int genreId = resultSet.getInt("genre_id"); // Get genre ID from result set
-                    String genreName = resultSet.getString("genre_name"); // Get genre name from result set
-                    System.out.printf("%d: %s\n", genreId, genreName); // Print formatted genre ID and name
-                }
+            System.out.println("\nAvailable Genres:");
+            for (Genre genre : service.getGenres()) {
+                System.out.printf("%d: %s\n", genre.getGenreId(), genre.getGenreName()); // Print formatted genre ID and name
             }
         } catch (SQLException e) {
             e.printStackTrace(); // Print SQL exception details
@@ -377,63 +580,71 @@ public class GameStore {
      */
     private void displayGamesWithGenres() {
         try {
-            String sql = "SELECT g.game_id, g.game_name, g.price, g.age_limit, g.storage, gn.genre_name " +
-                         "FROM games g " +
-                         "JOIN genres gn ON g.genre_id = gn.genre_id";
-            try (PreparedStatement preparedStatement = con.prepareStatement(sql)) {
-                ResultSet resultSet = preparedStatement.executeQuery(); // Execute query
-                System.out.printf("\n%-10s %-30s %-15s %-10s %-15s %-20s\n", "Game ID", "Game Name", "Price", "Age Limit", "Storage", "Genre");
-                System.out.println("--------------------------------------------------------------------------------------------");
-                while (resultSet.next()) {
-                    int gameId = resultSet.getInt("game_id"); // Get game ID from result set
-                    String gameName = resultSet.getString("game_name"); // Get game name from result set
-                    double price = resultSet.getDouble("price"); // Get price from result set
-                    int ageLimit = resultSet.getInt("age_limit"); // Get age limit from result set
-                    String storage = resultSet.getString("storage"); // Get storage from result set
-                    String genreName = resultSet.getString("genre_name"); // Get genre name from result set
-                    System.out.printf("%-10d %-30s %-15.2f %-10d %-15s %-20s\n", gameId, gameName, price, ageLimit, storage, genreName); // Print formatted game details
+            List<Game> games = service.getGames(); // Served from the catalog cache
+            TableRenderer table = TableRenderer.toStdout(10, 30, 15, 10, 15, 20);
+            table.line("").header("Game ID", "Game Name", "Price", "Age Limit", "Storage", "Genre");
+            table.line("--------------------------------------------------------------------------------------------");
+            for (Game game : games) {
+                Genre genre = service.getGenre(game.getGenreId());
+                if (genre == null) {
+                    continue; // Same as the inner join on genres: skip games without a known genre
                 }
+                table.cell(game.getGameId()).cell(game.getGameName()).cell(game.getPrice())
+                        .cell(game.getAgeLimit()).cell(game.getStorage()).cell(genre.getGenreName()); // Print formatted game details
             }
-        } catch (SQLException e) {
-            e.printStackTrace(); // Print SQL exception details
+            table.flush();
+        } catch (SQLException | IOException e) {
+            e.printStackTrace(); // Print SQL or output exception details
         }
     }
 
     /**
-     * Method to display games from a result set
-     * @param resultSet The result set containing game data
-     * @throws SQLException if an SQL exception occurs
+     * Method to display a list of games
+     * @param games The games to display
      */
-    private void displayGameResultSet(ResultSet resultSet) throws SQLException {
-        System.out.printf("\n%-10s %-30s %-15s %-10s %-15s\n", "Game ID", "Game Name", "Price", "Age Limit", "Storage");
-        System.out.println("--------------------------------------------------------------------------");
-        while (resultSet.next()) {
-            int gameId = resultSet.getInt("game_id"); // Get game ID from result set
-            String gameName = resultSet.getString("game_name"); // Get game name from result set
-            double price = resultSet.getDouble("price"); // Get price from result set
-            int ageLimit = resultSet.getInt("age_limit"); // Get age limit from result set
-            String storage = resultSet.getString("storage"); // Get storage from result set
-            System.out.printf("%-10d %-30s %-15.2f %-10d %-15s\n", gameId, gameName, price, ageLimit, storage); // Print formatted game details
+    private void displayGames(List<Game> games) {
+        try {
+            TableRenderer table = TableRenderer.toStdout(10, 30, 15, 10, 15);
+            table.line("").header("Game ID", "Game Name", "Price", "Age Limit", "Storage");
+            table.line("--------------------------------------------------------------------------");
+            for (Game game : games) {
+                table.cell(game.getGameId()).cell(game.getGameName()).cell(game.getPrice())
+                        .cell(game.getAgeLimit()).cell(game.getStorage()); // Print formatted game details
+            }
+            table.flush();
+        } catch (IOException e) {
+            e.printStackTrace(); // Print output exception details
         }
     }
 
     /**
-     * Method to get the customer ID by customer name
+     * Method to get the customer ID by customer name. If several customers share the name,
+     * they are listed and the user picks one.
      * @param customerName The name of the customer
      * @return The customer ID, or -1 if the customer is not found
      */
     private int getCustomerIdByName(String customerName) {
         try {
-            String sql = "SELECT customer_id FROM customers WHERE customer_name = ?";
-            try (PreparedStatement preparedStatement = con.prepareStatement(sql)) {
-                preparedStatement.setString(1, customerName); // Set customer name parameter
-                ResultSet resultSet = preparedStatement.executeQuery(); // Execute query
-                if (resultSet.next()) {
-                    return resultSet.getInt("customer_id"); // Return customer ID from result set
+            // Names compare case-insensitively, as they did in the database query
+            List<Customer> matches = service.resolveCustomersByName(customerName); // Also finds namesakes added elsewhere
+            if (matches.size() == 1) {
+                return matches.get(0).getCustomerId(); // Return the only matching customer ID
+            }
+            if (matches.size() > 1) {
+                System.out.println("\nSeveral customers have this name:");
+                for (Customer customer : matches) {
+                    System.out.printf("%d: %s <%s>\n", customer.getCustomerId(), customer.getCustomerName(), customer.getEmail()); // Print each match
+                }
+                System.out.print("Enter Customer ID: ");
+                int customerId = Integer.parseInt(scanner.nextLine()); // Read chosen customer ID
+                for (Customer customer : matches) {
+                    if (customer.getCustomerId() == customerId) {
+                        return customerId; // Return the chosen customer ID
+                    }
                 }
             }
-        } catch (SQLException e) {
-            e.printStackTrace(); // Print SQL exception details
+        } catch (SQLException | NumberFormatException e) {
+            e.printStackTrace(); // Print SQL or number format exception details
         }
         return -1; // Return -1 if customer not found
     }
@@ -444,15 +655,10 @@ public class GameStore {
      */
     private void displayCustomerDetails(int customerId) {
         try {
-            String sql = "SELECT * FROM customers WHERE customer_id = ?";
-            try (PreparedStatement preparedStatement = con.prepareStatement(sql)) {
-                preparedStatement.setInt(1, customerId); // Set customer ID parameter
-                ResultSet resultSet = preparedStatement.executeQuery(); // Execute query
-                if (resultSet.next()) {
-                    String customerName = resultSet.getString("customer_name"); // Get customer name from result set
-                    String email = resultSet.getString("email"); // Get email from result set
-                    System.out.printf("\nCustomer ID: %d\nCustomer Name: %s\nEmail: %s\n", customerId, customerName, email); // Print formatted customer details
-                }
+            Customer customer = service.getCustomer(customerId);
+            if (customer != null) {
+                System.out.printf("\nCustomer ID: %d\nCustomer Name: %s\nEmail: %s\n", customerId,
+                        customer.getCustomerName(), customer.getEmail()); // Print formatted customer details
             }
         } catch (SQLException e) {
             e.printStackTrace(); // Print SQL exception details
@@ -0,0 +1,1208 @@
+package com.example;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.sql.Date; // Import Date from java.sql package (to avoid conflict with java.util.Date)
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Game Store Benchmark
+ *
+ * Benchmark harness for the GameStore data-access paths. It migrates a database to the
+ * current schema, seeds it up to the configured catalog, customer and order volumes with
+ * the DataSeeder, then measures throughput and latency of each operation and writes the
+ * results as JSON so runs can be compared across releases. Migration time (first and warm
+ * start) and seed throughput are reported as the startup.* results; against a fresh
+ * embedded database the first migration is a cold start.
+ *
+ * All operations run with the pool's OperationMetrics recording. placeOrder.metrics.off and
+ * placeOrder.metrics.on measure the order path without and with it to show its overhead, and
+ * metrics.record measures the cost of recording one sample on its own.
+ *
+ * placeOrder.sync.ack and placeOrder.writeBehind.ack compare the acknowledgement latency of
+ * the synchronous order path with the write-behind order log. placeOrder.writeBehind.crash
+ * starts a second JVM that accepts orders into a log, kills it while the log is being flushed,
+ * replays the log and checks that every accepted order was stored exactly once.
+ *
+ * snapshot.* compares the columnar StoreSnapshot with a CSV dump of the same four store tables:
+ * export throughput and file size, decoding throughput without a database, and, when
+ * bench.loadUrl names a second database, load throughput into it. The CSV dump is written and
+ * loaded one table after the other as a plain dump tool would; orders dominate both formats,
+ * so the table-level parallelism of the snapshot matters little. Both loads run twice and only
+ * the second round is reported, since the first load is about half as fast whichever format it
+ * is; the database's inserts then dominate and the two load about equally fast. Seed with
+ * -Dbench.orders=10000000 for the 10M-order comparison; StoreSnapshotTest runs the same
+ * comparison with its results checked (mvn test -Dtest=StoreSnapshotTest -DstoreSnapshot.orders=10000000).
+ *
+ * The harness uses only the JDK and a JDBC driver; the Maven build puts the H2 and MySQL
+ * drivers on the runtime class path. An embedded database in MySQL compatibility mode works,
+ * for example -Dbench.url=jdbc:h2:mem:games_db;MODE=MySQL;DB_CLOSE_DELAY=-1
+ *
+ * Focused JMH benchmarks live in src/jmh/java (mvn -Pjmh package, then
+ * java -jar target/benchmarks.jar -rf json): pool-size scaling, statement cache on and off,
+ * import batch sizes and customer lookups over one million customers.
+ *
+ * Settings (system properties):
+ *   bench.url, bench.user, bench.pass    Database to run against (default: the in-memory H2 database above).
+ *                                        The harness seeds it and places, reprices and restocks its games,
+ *                                        so never point it at a production database
+ *   bench.games, bench.customers,
+ *   bench.orders                         Minimum row counts to seed (default 10000 / 100000 / 1000000)
+ *   bench.warmupSeconds,
+ *   bench.measureSeconds                 Time per benchmark (default 2 / 5)
+ *   bench.threads                        Worker threads calling each operation concurrently (default 1)
+ *   bench.include                        Regular expression selecting benchmarks by name
+ *   bench.searchGames                    Synthetic games in the searchGames.* index (default 1000000)
+ *   bench.hotStock, bench.hotThreads     Copies of the hot game and threads ordering it in placeOrder.hotGame
+ *                                        (default 10000 / 64)
+ *   bench.repriceGames                   Games repriced by updateGames.reprice (default 100000, at most bench.games)
+ *   bench.writerThreads                  Threads repricing the same games in updateGames.concurrent (default 8)
+ *   bench.orderLogCapacity               Records in the write-behind log of placeOrder.writeBehind (default 100000)
+ *   bench.crashOrders                    Orders accepted before the process is killed in placeOrder.writeBehind.crash
+ *                                        (default 100000); needs a database another process can reach
+ *   bench.loadUrl                        Database the snapshot.load.* benchmarks load into; its games, customers,
+ *                                        orders and rollups are DELETED first (default none: the loads are skipped)
+ *   gamestore.slowQueryMillis            Slow-query log threshold; the log is off in benchmarks unless this is set
+ *   bench.output                         JSON result file (default benchmark-results.json)
+ */
+public class GameStoreBenchmark {
+    private static final int RENDER_ROWS = 10_000; // Rows rendered per listing benchmark operation
+    private static final int RECORD_SAMPLES = 10_000; // Samples recorded per metrics.record operation
+    private static final String DEFAULT_URL = "jdbc:h2:mem:games_db;MODE=MySQL;DB_CLOSE_DELAY=-1"; // Embedded, never real data
+    private static final String CRASH_CHILD = "writeBehindCrashChild"; // First argument of the JVM started by placeOrder.writeBehind.crash
+    private static final String[] SEARCH_WORDS = {"legend", "dark", "star", "war", "quest", "city", "racing", "dragon",
+            "shadow", "kingdom", "space", "zombie", "battle", "island", "knight", "soccer", "empire", "night",
+            "ghost", "galaxy", "hero", "storm", "tactics", "survivor", "horizon", "rogue", "arena", "frontier"}; // Synthetic title words
+
+    private final ConnectionPool pool; // Connections used by all benchmarks
+    private final GameStoreService service; // Service API under test, no console I/O involved
+    private final Map<String, Operation> operations = new LinkedHashMap<>(); // Benchmarks by name, in run order
+    private final Map<String, Integer> rowsPerOperation = new HashMap<>(); // Rows each call produces, for rows/second
+    private final List<Map<String, Object>> prepareResults = new ArrayList<>(); // Startup measurements taken by prepare
+
+    private int gameCount; // Rows in games after seeding
+    private int customerCount; // Rows in customers after seeding
+    private int orderCount; // Rows in orders after seeding
+    private int[] genreIds; // Existing genre IDs
+    private int[] gameIds; // Existing game IDs, ascending; the last one is sold out by placeOrder.hotGame
+    private int[] customerIds; // Existing customer IDs
+    private String[] customerNames; // Names of the customers in customerIds, same order
+    private GameSearchIndex searchIndex; // Index over synthetic games, built on first use
+    private List<Game> searchGames; // The same games as a list, for the scan baseline
+
+    /**
+     * One measured operation. Each call is one sample.
+     */
+    interface Operation {
+        void run(Random random) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = System.getProperty("bench.url", DEFAULT_URL);
+        String user = System.getProperty("bench.user", "root");
+        String pass = System.getProperty("bench.pass", "root");
+        if (args.length == 3 && CRASH_CHILD.equals(args[0])) {
+            acceptUntilKilled(new ConnectionPool(url, user, pass, 4), Paths.get(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+
+        try (ConnectionPool pool = new ConnectionPool(url, user, pass, Integer.getInteger("bench.poolSize", 8))) {
+            if (System.getProperty("gamestore.slowQueryMillis") == null) {
+                pool.getMetrics().setSlowQueryThresholdMillis(-1); // The join baselines would flood the log
+            }
+            GameStoreBenchmark benchmark = new GameStoreBenchmark(pool);
+            benchmark.prepare(Integer.getInteger("bench.games", 10_000),
+                    Integer.getInteger("bench.customers", 100_000),
+                    Integer.getInteger("bench.orders", 1_000_000));
+
+            List<Map<String, Object>> results = benchmark.runAll(
+                    Pattern.compile(System.getProperty("bench.include", ".*")),
+                    Integer.getInteger("bench.warmupSeconds", 2),
+                    Integer.getInteger("bench.measureSeconds", 5),
+                    Integer.getInteger("bench.threads", 1));
+            results.addAll(0, benchmark.getPrepareResults());
+
+            String output = System.getProperty("bench.output", "benchmark-results.json");
+            benchmark.writeJson(output, url, results);
+            System.out.println("Results written to " + output);
+            System.out.println(pool);
+        }
+    }
+
+    GameStoreBenchmark(ConnectionPool pool) {
+        this.pool = pool;
+        this.service = new GameStoreService(pool, 256);
+        registerOperations();
+    }
+
+    /**
+     * Method to register every benchmark. Names are "<GameStore method>.<variant>".
+     */
+    private void registerOperations() {
+        operations.put("placeOrder.service", random ->
+                service.placeOrder(randomCustomer(random), randomGame(random)));
+        operations.put("placeOrder.byName", random -> {
+            List<Customer> matches = service.findCustomersByName(randomCustomerName(random));
+            service.placeOrder(matches.get(0).getCustomerId(), randomGame(random));
+        });
+
+        operations.put("getCustomerIdByName.index", random ->
+                service.findCustomersByName(randomCustomerName(random)));
+        operations.put("getCustomerIdByName.sql", random -> {
+            try (Connection con = pool.getConnection();
+                 PreparedStatement preparedStatement = con.prepareStatement("SELECT customer_id FROM customers WHERE customer_name = ?")) {
+                preparedStatement.setString(1, randomCustomerName(random));
+                consume(preparedStatement.executeQuery());
+            }
+        });
+
+        operations.put("displayGamesByGenre.cache", random ->
+                service.getGamesByGenre(genreIds[random.nextInt(genreIds.length)]));
+        operations.put("displayGamesByGenre.sql", random -> {
+            try (Connection con = pool.getConnection();
+                 PreparedStatement preparedStatement = con.prepareStatement("SELECT * FROM games WHERE genre_id = ?")) {
+                preparedStatement.setInt(1, genreIds[random.nextInt(genreIds.length)]);
+                consume(preparedStatement.executeQuery());
+            }
+        });
+
+        operations.put("viewOrderedGames.page", random ->
+                service.getOrderReport().fetchPage(null, random.nextInt(Math.max(1, orderCount))));
+        operations.put("viewOrderedGames.fullScan", random -> {
+            Iterator<OrderRow> orders = service.getOrders(null);
+            while (orders.hasNext()) {
+                orders.next();
+            }
+        });
+
+        // Sales reports from the incremental rollups versus the equivalent joins over all orders
+        long day = 86_400_000L;
+        long now = System.currentTimeMillis();
+        Date monthAgo = new Date(now - 29 * day);
+        Date today = new Date(now);
+        operations.put("salesByGenre.rollup", random -> service.getRevenueByGenre());
+        operations.put("salesByGenre.join", random -> {
+            try (Connection con = pool.getConnection();
+                 PreparedStatement preparedStatement = con.prepareStatement(
+                         "SELECT g.genre_id, COUNT(*), SUM(g.price) FROM orders o JOIN games g ON o.game_id = g.game_id " +
+                         "GROUP BY g.genre_id ORDER BY SUM(g.price) DESC")) {
+                consume(preparedStatement.executeQuery());
+            }
+        });
+        operations.put("topGames.rollup", random -> service.getTopGames(10));
+        operations.put("topGames.join", random -> {
+            try (Connection con = pool.getConnection();
+                 PreparedStatement preparedStatement = con.prepareStatement(
+                         "SELECT o.game_id, COUNT(*), SUM(g.price) FROM orders o JOIN games g ON o.game_id = g.game_id " +
+                         "GROUP BY o.game_id ORDER BY COUNT(*) DESC, o.game_id LIMIT 10")) {
+                consume(preparedStatement.executeQuery());
+            }
+        });
+        operations.put("ordersPerDay.rollup", random -> service.getOrdersPerDay(monthAgo, today));
+        operations.put("ordersPerDay.join", random -> {
+            try (Connection con = pool.getConnection();
+                 PreparedStatement preparedStatement = con.prepareStatement(
+                         "SELECT o.order_date, COUNT(*), SUM(g.price) FROM orders o JOIN games g ON o.game_id = g.game_id " +
+                         "WHERE o.order_date BETWEEN ? AND ? GROUP BY o.order_date ORDER BY o.order_date")) {
+                preparedStatement.setDate(1, monthAgo);
+                preparedStatement.setDate(2, today);
+                consume(preparedStatement.executeQuery());
+            }
+        });
+
+        // Game search: index over a synthetic catalog versus a list scan and LIKE over the seeded table
+        operations.put("searchGames.index.words", random -> searchIndex().search(new GameSearchIndex.GameQuery()
+                .text(randomWord(random) + " " + randomWord(random) + " ")));
+        operations.put("searchGames.index.prefix", random -> searchIndex().search(new GameSearchIndex.GameQuery()
+                .text(randomWord(random).substring(0, 3))));
+        operations.put("searchGames.index.facets", random -> searchIndex().search(new GameSearchIndex.GameQuery()
+                .text(randomWord(random) + " ").genre(1 + random.nextInt(9)).priceBand(random.nextInt(5))
+                .maxAgeLimit(12).storage("disc")));
+        operations.put("searchGames.scan.words", random -> {
+            searchIndex();
+            String first = randomWord(random);
+            String second = randomWord(random);
+            List<Game> matches = new ArrayList<>();
+            for (Game game : searchGames) {
+                List<String> words = GameSearchIndex.tokenize(game.getGameName());
+                if (words.contains(first) && words.contains(second) && matches.size() < 50) {
+                    matches.add(game);
+                }
+            }
+        });
+        operations.put("searchGames.sql.like", random -> {
+            try (Connection con = pool.getConnection();
+                 PreparedStatement preparedStatement = con.prepareStatement("SELECT * FROM games WHERE game_name LIKE ? LIMIT 50")) {
+                preparedStatement.setString(1, "%" + (1 + random.nextInt(Math.max(1, gameCount))) + "%");
+                consume(preparedStatement.executeQuery());
+            }
+        });
+
+        // Console listings rendered to a discarding stream, so only formatting cost is measured
+        List<Game> listing = new ArrayList<>(RENDER_ROWS);
+        Random listingRandom = new Random(RENDER_ROWS);
+        for (int id = 1; id <= RENDER_ROWS; id++) {
+            listing.add(new Game(id, "Game " + id, 1, 5 + listingRandom.nextInt(6_000) / 100.0, 16, id % 2 == 0 ? "Disc" : "Digital"));
+        }
+        operations.put("displayGamesWithGenres.printf", random -> {
+            PrintStream out = new PrintStream(new DiscardingOutputStream());
+            for (Game game : listing) {
+                out.printf("%-10d %-30s %-15.2f %-10d %-15s %-20s\n", game.getGameId(), game.getGameName(), game.getPrice(),
+                        game.getAgeLimit(), game.getStorage(), "Action-adventure");
+            }
+            out.flush();
+        });
+        operations.put("displayGamesWithGenres.renderer", random -> {
+            TableRenderer table = new TableRenderer(new OutputStreamWriter(new DiscardingOutputStream()), 10, 30, 15, 10, 15, 20);
+            for (Game game : listing) {
+                table.cell(game.getGameId()).cell(game.getGameName()).cell(game.getPrice())
+                        .cell(game.getAgeLimit()).cell(game.getStorage()).cell("Action-adventure");
+            }
+            table.flush();
+        });
+        rowsPerOperation.put("displayGamesWithGenres.printf", RENDER_ROWS);
+        rowsPerOperation.put("displayGamesWithGenres.renderer", RENDER_ROWS);
+
+        // Cost of one timed no-op, on metrics of its own; rowsPerSecond is samples recorded per second
+        OperationMetrics recordOnly = new OperationMetrics();
+        operations.put("metrics.record", random -> {
+            for (int i = 0; i < RECORD_SAMPLES; i++) {
+                recordOnly.time("benchmark.noop", () -> null);
+            }
+        });
+        rowsPerOperation.put("metrics.record", RECORD_SAMPLES);
+    }
+
+    /**
+     * Method to build the search index over bench.searchGames synthetic games on first use
+     */
+    private synchronized GameSearchIndex searchIndex() {
+        if (searchIndex == null) {
+            int count = Integer.getInteger("bench.searchGames", 1_000_000);
+            Random random = new Random(count);
+            List<Game> games = new ArrayList<>(count);
+            for (int id = 1; id <= count; id++) {
+                String name = randomWord(random) + " " + randomWord(random) + " " + randomWord(random) + " " + (id % 100);
+                games.add(new Game(id, name, 1 + random.nextInt(9), 5 + random.nextInt(7_000) / 100.0,
+                        new int[]{3, 7, 12, 16, 18}[random.nextInt(5)], random.nextBoolean() ? "Disc" : "Digital"));
+            }
+            long start = System.nanoTime();
+            GameSearchIndex index = new GameSearchIndex(new CatalogCache(pool)); // The catalog is never loaded
+            index.catalogLoaded(games);
+            System.out.printf("Search index over %d games built in %.1f s\n", count, (System.nanoTime() - start) / 1_000_000_000.0);
+            searchGames = games;
+            searchIndex = index;
+        }
+        return searchIndex;
+    }
+
+    private static String randomWord(Random random) {
+        return SEARCH_WORDS[random.nextInt(SEARCH_WORDS.length)];
+    }
+
+    /**
+     * Output stream that drops everything written to it
+     */
+    private static final class DiscardingOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+
+    /**
+     * Method to migrate the schema and seed it up to the requested volumes. The migration is
+     * timed twice: the first run does whatever work the database needs (all of it on a fresh
+     * database), the second is a warm start that should find nothing to do.
+     * @param games Minimum number of games
+     * @param customers Minimum number of customers
+     * @param orders Minimum number of orders
+     * @throws SQLException if migrating or seeding fails
+     */
+    void prepare(int games, int customers, int orders) throws SQLException {
+        try (Connection con = pool.getConnection()) {
+            long start = System.nanoTime();
+            int applied = SchemaMigrations.migrate(con);
+            long firstNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            SchemaMigrations.migrate(con);
+            long warmNanos = System.nanoTime() - start;
+            prepareResults.add(startupResult("startup.migrate", applied, firstNanos));
+            prepareResults.add(startupResult("startup.migrate.warm", 0, warmNanos));
+            System.out.printf("Schema migrated in %.1f ms (%d migrations applied), warm start %.3f ms\n",
+                    firstNanos / 1_000_000.0, applied, warmNanos / 1_000_000.0);
+
+            DataSeeder.SeedResult seeded = DataSeeder.seed(con, games, customers, orders);
+            gameCount = seeded.getGames();
+            customerCount = seeded.getCustomers();
+            orderCount = seeded.getOrders();
+            genreIds = readIds(con, "SELECT genre_id FROM genres ORDER BY genre_id");
+            gameIds = readIds(con, "SELECT game_id FROM games ORDER BY game_id"); // IDs need not be contiguous
+            List<String> names = new ArrayList<>(customerCount);
+            try (Statement statement = con.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT customer_id, customer_name FROM customers ORDER BY customer_id")) {
+                List<Integer> ids = new ArrayList<>(customerCount);
+                while (resultSet.next()) {
+                    ids.add(resultSet.getInt(1));
+                    names.add(resultSet.getString(2));
+                }
+                customerIds = ids.stream().mapToInt(Integer::intValue).toArray();
+            }
+            customerNames = names.toArray(new String[0]);
+            Map<String, Object> seedResult = new LinkedHashMap<>();
+            seedResult.put("name", "startup.seed");
+            seedResult.put("operations", seeded.getInserted());
+            seedResult.put("elapsedMs", seeded.getElapsedNanos() / 1_000_000.0);
+            seedResult.put("rowsPerSecond", seeded.getRowsPerSecond());
+            prepareResults.add(seedResult);
+            System.out.println("Database ready: " + seeded);
+        }
+    }
+
+    private static Map<String, Object> startupResult(String name, int migrationsApplied, long nanos) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("name", name);
+        result.put("migrationsApplied", migrationsApplied);
+        result.put("elapsedMs", nanos / 1_000_000.0);
+        return result;
+    }
+
+    /**
+     * Method to get the migration and seeding measurements taken by prepare
+     */
+    List<Map<String, Object>> getPrepareResults() {
+        return prepareResults;
+    }
+
+    private int randomCustomer(Random random) {
+        return customerIds[random.nextInt(customerIds.length)];
+    }
+
+    private String randomCustomerName(Random random) {
+        return customerNames[random.nextInt(customerNames.length)];
+    }
+
+    private int randomGame(Random random) {
+        return gameIds[random.nextInt(gameIds.length)];
+    }
+
+    private static int[] readIds(Connection con, String sql) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Statement statement = con.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            while (resultSet.next()) {
+                ids.add(resultSet.getInt(1));
+            }
+        }
+        int[] result = new int[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+
+    private static void consume(ResultSet resultSet) throws SQLException {
+        int columns = resultSet.getMetaData().getColumnCount();
+        while (resultSet.next()) {
+            for (int column = 1; column <= columns; column++) {
+                resultSet.getObject(column); // Read every value like a listing would
+            }
+        }
+    }
+
+    /**
+     * Method to run every selected benchmark
+     * @param include Pattern the benchmark name must match
+     * @param warmupSeconds Seconds to run before measuring
+     * @param measureSeconds Seconds to measure
+     * @param threads Number of threads calling the operation concurrently
+     * @return One result map per benchmark
+     * @throws Exception if an operation fails
+     */
+    List<Map<String, Object>> runAll(Pattern include, int warmupSeconds, int measureSeconds, int threads) throws Exception {
+        List<Map<String, Object>> results = new ArrayList<>();
+        try {
+            System.out.printf("%-32s %8s %12s %10s %10s %10s %10s\n", "Benchmark", "Threads", "Ops/s", "Mean ms", "p50 ms", "p99 ms", "Max ms");
+            for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+                if (include.matcher(entry.getKey()).matches()) {
+                    results.add(measure(entry.getKey(), entry.getValue(), warmupSeconds, measureSeconds, threads));
+                }
+            }
+            if (include.matcher("placeOrder.metrics").matches()) {
+                results.addAll(metricsOverhead(warmupSeconds, measureSeconds, threads));
+            }
+            if (include.matcher("placeOrder.writeBehind").matches()) {
+                results.addAll(writeBehind(warmupSeconds, measureSeconds, threads));
+            }
+            if (include.matcher("placeOrder.writeBehind.crash").matches()) {
+                results.add(writeBehindCrash(Integer.getInteger("bench.crashOrders", 100_000)));
+            }
+            if (include.matcher("snapshot").matches()) {
+                results.addAll(snapshot(System.getProperty("bench.loadUrl")));
+            }
+            if (include.matcher("placeOrder.hotGame").matches()) {
+                results.add(hotGame(Integer.getInteger("bench.hotStock", 10_000), Integer.getInteger("bench.hotThreads", 64)));
+            }
+            if (include.matcher("updateGames.reprice").matches()) {
+                results.add(reprice(Math.min(gameIds.length, Integer.getInteger("bench.repriceGames", 100_000))));
+            }
+            if (include.matcher("updateGames.concurrent").matches()) {
+                results.add(concurrentWriters(Integer.getInteger("bench.writerThreads", 8), measureSeconds));
+            }
+        } finally {
+            service.close();
+        }
+        return results;
+    }
+
+    /**
+     * Method to warm up and then measure one operation on the given number of threads
+     */
+    private Map<String, Object> measure(String name, Operation operation, int warmupSeconds, int measureSeconds, int threads)
+            throws Exception {
+        LatencyHistogram latency = new LatencyHistogram(); // Shared by all workers, recording is lock-free
+        long warmupEnd = System.nanoTime() + warmupSeconds * 1_000_000_000L;
+        long end = warmupEnd + measureSeconds * 1_000_000_000L;
+        Exception[] failure = new Exception[1];
+
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final Random random = new Random(name.hashCode() * 31L + i);
+            workers[i] = new Thread(() -> {
+                try {
+                    long now = System.nanoTime();
+                    while (now < end) {
+                        operation.run(random);
+                        long finished = System.nanoTime();
+                        if (now >= warmupEnd) {
+                            latency.record(finished - now); // Only samples that started after the warm-up count
+                        }
+                        now = finished;
+                    }
+                } catch (Exception e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                }
+            }, name + "-" + i);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        double seconds = Math.max(measureSeconds, (System.nanoTime() - warmupEnd) / 1_000_000_000.0);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("name", name);
+        result.put("threads", threads);
+        result.put("operations", latency.getCount());
+        result.put("opsPerSecond", latency.getCount() / seconds);
+        result.put("meanMs", latency.getMeanMillis());
+        result.put("p50Ms", latency.getPercentileMillis(50));
+        result.put("p99Ms", latency.getPercentileMillis(99));
+        result.put("maxMs", latency.getMaxMillis());
+        Integer rows = rowsPerOperation.get(name);
+        if (rows != null) {
+            result.put("rowsPerSecond", latency.getCount() * (double) rows / seconds);
+        }
+        System.out.printf("%-32s %8d %12.1f %10.3f %10.3f %10.3f %10.3f\n", name, threads, latency.getCount() / seconds,
+                latency.getMeanMillis(), latency.getPercentileMillis(50), latency.getPercentileMillis(99), latency.getMaxMillis());
+        return result;
+    }
+
+    /**
+     * Method to measure placeOrder with metrics recording off and on. Besides the service
+     * sample, each order records the reservation, insert, rollup upserts and commit.
+     * @return The two results; the second carries the overhead in percent of the mean latency
+     */
+    private List<Map<String, Object>> metricsOverhead(int warmupSeconds, int measureSeconds, int threads) throws Exception {
+        OperationMetrics metrics = pool.getMetrics();
+        Operation placeOrder = operations.get("placeOrder.service");
+        List<Map<String, Object>> results = new ArrayList<>();
+        try {
+            metrics.setEnabled(false);
+            results.add(measure("placeOrder.metrics.off", placeOrder, warmupSeconds, measureSeconds, threads));
+        } finally {
+            metrics.setEnabled(true);
+        }
+        Map<String, Object> on = measure("placeOrder.metrics.on", placeOrder, warmupSeconds, measureSeconds, threads);
+        double offMean = (Double) results.get(0).get("meanMs");
+        double overhead = offMean == 0 ? 0.0 : ((Double) on.get("meanMs") - offMean) / offMean * 100.0;
+        on.put("overheadPercent", overhead);
+        results.add(on);
+        System.out.printf("%-32s metrics overhead %.2f%% of the mean order latency\n", "placeOrder.metrics", overhead);
+        return results;
+    }
+
+    /**
+     * Method to compare the acknowledgement latency of placeOrder with acceptOrder on a
+     * write-behind log, then wait for the log to drain. Orders go to every game but the last,
+     * which placeOrder.hotGame sells out.
+     * @return The synchronous and the write-behind result; the second carries the speedup of the mean
+     */
+    private List<Map<String, Object>> writeBehind(int warmupSeconds, int measureSeconds, int threads) throws Exception {
+        int games = Math.max(1, gameIds.length - 1);
+        List<Map<String, Object>> results = new ArrayList<>();
+        results.add(measure("placeOrder.sync.ack", random ->
+                service.placeOrder(randomCustomer(random), gameIds[random.nextInt(games)]),
+                warmupSeconds, measureSeconds, threads));
+
+        Path file = Files.createTempFile("orders-", ".log");
+        Files.delete(file); // A new log is sized by its capacity
+        try (OrderLog log = new OrderLog(pool, service.getCustomerIndex(), service.getCatalog(), service.getAnalytics(),
+                service.getInventory(), file, Integer.getInteger("bench.orderLogCapacity", 100_000), 500, false, false)) {
+            Map<String, Object> ack = measure("placeOrder.writeBehind.ack", random ->
+                    log.accept(randomCustomer(random), gameIds[random.nextInt(games)]),
+                    warmupSeconds, measureSeconds, threads);
+            long drainStart = System.nanoTime();
+            if (!log.awaitFlushed(log.getAcceptedCount(), 10, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("Order log did not drain: " + log);
+            }
+            double syncMean = (Double) results.get(0).get("meanMs");
+            double ackMean = (Double) ack.get("meanMs");
+            ack.put("speedup", ackMean == 0 ? 0.0 : syncMean / ackMean);
+            ack.put("stored", log.getStoredCount());
+            ack.put("batches", log.getBatchCount());
+            ack.put("storeDelayP99Ms", log.getStoreDelay().getPercentileMillis(99));
+            ack.put("drainMs", (System.nanoTime() - drainStart) / 1_000_000.0);
+            results.add(ack);
+            System.out.printf("%-32s %d stored in %d batches, store delay p99 %.1f ms, mean ack %.1fx faster\n",
+                    "placeOrder.writeBehind", log.getStoredCount(), log.getBatchCount(),
+                    log.getStoreDelay().getPercentileMillis(99), syncMean / Math.max(ackMean, 0.000001));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        return results;
+    }
+
+    /**
+     * Method to kill a process while it flushes its order log and check that replaying the log
+     * stores every accepted order exactly once. The child is this class started with
+     * CRASH_CHILD; it accepts the orders, reports, and keeps flushing until it is killed.
+     * @param orders The number of orders the child accepts
+     */
+    private Map<String, Object> writeBehindCrash(int orders) throws Exception {
+        String name = "placeOrder.writeBehind.crash";
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("name", name);
+        String url = System.getProperty("bench.url", DEFAULT_URL);
+        if (url.contains(":mem:")) {
+            result.put("skipped", "an in-memory database cannot be shared with another process");
+            System.out.printf("%-32s skipped, %s\n", name, result.get("skipped"));
+            return result;
+        }
+
+        Path file = Files.createTempFile("crash-", ".log");
+        Files.delete(file);
+        String logName = OrderLog.checkpointKey(file);
+        long ordersBefore = countOrders();
+        List<String> command = new ArrayList<>(Arrays.asList(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                "-Dgamestore.slowQueryMillis=-1"));
+        for (String property : new String[]{"bench.url", "bench.user", "bench.pass"}) {
+            if (System.getProperty(property) != null) {
+                command.add("-D" + property + "=" + System.getProperty(property));
+            }
+        }
+        command.addAll(Arrays.asList(GameStoreBenchmark.class.getName(), CRASH_CHILD, file.toString(), String.valueOf(orders)));
+        Process child = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+        long killedAt;
+        try {
+            BufferedReader output = new BufferedReader(new InputStreamReader(child.getInputStream(), StandardCharsets.UTF_8));
+            String line;
+            while ((line = output.readLine()) != null && !line.startsWith("ACCEPTED")) {
+                System.out.println("  child: " + line);
+            }
+            if (line == null) {
+                throw new IllegalStateException("Crash child exited before accepting its orders");
+            }
+            // Kill it once some but not all batches are committed
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            killedAt = readCheckpoint(logName);
+            while (killedAt == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+                killedAt = readCheckpoint(logName);
+            }
+        } finally {
+            child.destroyForcibly();
+            child.waitFor();
+        }
+        long storedByChild = readCheckpoint(logName); // Batches may have committed between the read and the kill
+
+        long start = System.nanoTime();
+        try (OrderLog log = new OrderLog(pool, service.getCustomerIndex(), service.getCatalog(), service.getAnalytics(),
+                service.getInventory(), file, orders, 500, false, false)) {
+            if (!log.awaitFlushed(orders, 10, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("Replayed order log did not drain: " + log);
+            }
+            long stored = countOrders() - ordersBefore;
+            if (stored != orders || log.getLostCount() != 0 || log.getFailedCount() != 0 || log.getRejectedCount() != 0) {
+                throw new IllegalStateException(String.format("Order log replay mismatch: %d accepted, %d stored, %s",
+                        orders, stored, log));
+            }
+            result.put("operations", orders);
+            result.put("storedBeforeKill", storedByChild);
+            result.put("killedMidFlush", storedByChild > 0 && storedByChild < orders ? 1 : 0);
+            result.put("replayed", log.getReplayedCount());
+            result.put("replayMs", (System.nanoTime() - start) / 1_000_000.0);
+            result.put("lostOrDuplicated", 0);
+            System.out.printf("%-32s killed after %d of %d orders were stored, replayed %d, none lost or duplicated\n",
+                    name, storedByChild, orders, log.getReplayedCount());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        return result;
+    }
+
+    /**
+     * Body of the child JVM of placeOrder.writeBehind.crash: accept orders into a log, report
+     * on stdout, then keep the flusher running until the parent kills the process
+     */
+    private static void acceptUntilKilled(ConnectionPool pool, Path file, int orders) throws Exception {
+        int[] customers;
+        int[] games;
+        try (Connection con = pool.getConnection()) {
+            customers = readIds(con, "SELECT customer_id FROM customers");
+            games = readIds(con, "SELECT game_id FROM games ORDER BY game_id");
+        }
+        GameStoreService service = new GameStoreService(pool);
+        OrderLog log = new OrderLog(pool, service.getCustomerIndex(), service.getCatalog(), service.getAnalytics(),
+                service.getInventory(), file, orders, 500, false, false);
+        Random random = new Random(orders);
+        for (int i = 0; i < orders; i++) {
+            log.accept(customers[random.nextInt(customers.length)], games[random.nextInt(Math.max(1, games.length - 1))]); // Not the hot game
+        }
+        System.out.println("ACCEPTED " + orders);
+        System.out.flush();
+        Thread.sleep(Long.MAX_VALUE); // Never closed: the parent kills this process mid-flush
+    }
+
+    /**
+     * Method to export the store as a columnar snapshot and as CSV, decode both and, given a
+     * second database, load both into it
+     * @param loadUrl The database to load into, or null to skip the loads
+     */
+    private List<Map<String, Object>> snapshot(String loadUrl) throws Exception {
+        List<Map<String, Object>> results = new ArrayList<>();
+        Path directory = Files.createTempDirectory("snapshot-");
+        Path file = directory.resolve("store.snap");
+        try {
+            StoreSnapshot.SnapshotResult exported = service.exportSnapshot(file);
+            results.add(snapshotResult("snapshot.export.columnar", exported.getTotalRows(), exported.getElapsedNanos(),
+                    exported.getFileBytes()));
+            long start = System.nanoTime();
+            long[] csv = exportCsv(directory);
+            results.add(snapshotResult("snapshot.export.csv", csv[0], System.nanoTime() - start, csv[1]));
+
+            StoreSnapshot.SnapshotResult decoded = StoreSnapshot.verify(file);
+            results.add(snapshotResult("snapshot.read.columnar", decoded.getTotalRows(), decoded.getElapsedNanos(),
+                    decoded.getFileBytes()));
+            start = System.nanoTime();
+            long rows = readCsv(directory, null);
+            results.add(snapshotResult("snapshot.read.csv", rows, System.nanoTime() - start, csv[1]));
+
+            if (loadUrl == null) {
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("name", "snapshot.load");
+                result.put("skipped", "bench.loadUrl is not set");
+                System.out.printf("%-32s skipped, %s\n", "snapshot.load", result.get("skipped"));
+                results.add(result);
+                return results;
+            }
+            try (ConnectionPool loadPool = new ConnectionPool(loadUrl, System.getProperty("bench.user", "root"),
+                    System.getProperty("bench.pass", "root"), pool.getMaxSize())) {
+                loadPool.getMetrics().setSlowQueryThresholdMillis(-1);
+                try (Connection con = loadPool.getConnection()) {
+                    SchemaMigrations.migrate(con);
+                }
+                // An unreported first round warms up both paths; otherwise whichever load runs first is about half as fast
+                for (int round = 0; round < 2; round++) {
+                    try (Connection con = loadPool.getConnection()) {
+                        clearStore(con);
+                    }
+                    StoreSnapshot.SnapshotResult loaded = new StoreSnapshot(loadPool).load(file);
+                    if (round == 1) {
+                        results.add(snapshotResult("snapshot.load.columnar", loaded.getTotalRows(), loaded.getElapsedNanos(),
+                                loaded.getFileBytes()));
+                    }
+
+                    try (Connection con = loadPool.getConnection()) {
+                        clearStore(con);
+                    }
+                    start = System.nanoTime();
+                    rows = readCsv(directory, loadPool);
+                    try (Connection con = loadPool.getConnection()) {
+                        SalesAnalytics.rebuild(con); // As the snapshot load does
+                    }
+                    if (round == 1) {
+                        results.add(snapshotResult("snapshot.load.csv", rows, System.nanoTime() - start, csv[1]));
+                    }
+                }
+            }
+        } finally {
+            for (StoreSnapshot.Table table : StoreSnapshot.TABLES) {
+                Files.deleteIfExists(directory.resolve(table.name + ".csv"));
+            }
+            Files.deleteIfExists(file);
+            Files.delete(directory);
+        }
+        return results;
+    }
+
+    private static Map<String, Object> snapshotResult(String name, long rows, long nanos, long bytes) {
+        double seconds = nanos / 1_000_000_000.0;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("name", name);
+        result.put("threads", 1);
+        result.put("operations", rows);
+        result.put("elapsedMs", nanos / 1_000_000.0);
+        result.put("rowsPerSecond", rows / seconds);
+        result.put("fileBytes", bytes);
+        result.put("bytesPerRow", rows == 0 ? 0.0 : (double) bytes / rows);
+        System.out.printf("%-32s %8d %12.1f rows/s  (%d rows, %.1f MB, %.1f bytes/row)\n",
+                name, 1, rows / seconds, rows, bytes / 1_048_576.0, rows == 0 ? 0.0 : (double) bytes / rows);
+        return result;
+    }
+
+    /**
+     * Method to dump every snapshot table to <table>.csv, reading it by keyset pages like the snapshot export
+     * @return The number of rows and the total size of the files
+     */
+    private long[] exportCsv(Path directory) throws IOException, SQLException {
+        long rows = 0;
+        long bytes = 0;
+        for (StoreSnapshot.Table table : StoreSnapshot.TABLES) {
+            if (!table.paged) {
+                continue; // Bookkeeping rows, not part of the comparison
+            }
+            StringBuilder columns = new StringBuilder();
+            for (StoreSnapshot.Column column : table.columns) {
+                columns.append(columns.length() == 0 ? "" : ",").append(column.name);
+            }
+            String key = table.columns[0].name;
+            String sql = "SELECT " + columns + " FROM " + table.name + " WHERE " + key + " > ? ORDER BY " + key + " ASC LIMIT ?";
+            Path file = directory.resolve(table.name + ".csv");
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writer.write(columns.toString());
+                writer.write('\n');
+                long lastId = Long.MIN_VALUE;
+                int page;
+                do {
+                    page = 0;
+                    try (Connection con = pool.getConnection();
+                         PreparedStatement preparedStatement = con.prepareStatement(sql)) {
+                        preparedStatement.setLong(1, lastId); // Set keyset position parameter
+                        preparedStatement.setInt(2, 65_536); // Set page size parameter
+                        preparedStatement.setFetchSize(65_536);
+                        ResultSet resultSet = preparedStatement.executeQuery();
+                        while (resultSet.next()) {
+                            for (int c = 1; c <= table.columns.length; c++) {
+                                if (c > 1) {
+                                    writer.write(',');
+                                }
+                                writer.write(OrderReport.csv(resultSet.getString(c))); // NULL is written as an empty field
+                            }
+                            writer.write('\n');
+                            lastId = resultSet.getLong(1);
+                            page++;
+                        }
+                    }
+                    rows += page;
+                } while (page == 65_536);
+            }
+            bytes += Files.size(file);
+        }
+        return new long[] {rows, bytes};
+    }
+
+    /**
+     * Method to parse the CSV dump into typed values and, given a pool, insert them in batches
+     * of 1000 rows with a commit every 65536 rows
+     * @param loadPool The database to load into, or null to parse only
+     * @return The number of rows
+     */
+    private static long readCsv(Path directory, ConnectionPool loadPool) throws IOException, SQLException {
+        long rows = 0;
+        List<String> fields = new ArrayList<>();
+        Object[] values = new Object[8];
+        for (StoreSnapshot.Table table : StoreSnapshot.TABLES) {
+            if (!table.paged) {
+                continue; // Not dumped by exportCsv
+            }
+            try (BufferedReader reader = Files.newBufferedReader(directory.resolve(table.name + ".csv"), StandardCharsets.UTF_8);
+                 Connection con = loadPool == null ? null : loadPool.getConnection()) {
+                String header = reader.readLine(); // Names the columns
+                String placeholders = String.join(", ", Collections.nCopies(table.columns.length, "?"));
+                PreparedStatement preparedStatement = con == null ? null
+                        : con.prepareStatement("INSERT INTO " + table.name + " (" + header + ") VALUES (" + placeholders + ")");
+                try {
+                    if (con != null) {
+                        con.setAutoCommit(false);
+                    }
+                    long pending = 0;
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        splitCsv(line, fields);
+                        for (int c = 0; c < table.columns.length; c++) {
+                            values[c] = parseCsvField(table.columns[c].type, fields.get(c));
+                        }
+                        rows++;
+                        if (preparedStatement == null) {
+                            continue; // Parse only
+                        }
+                        for (int c = 0; c < table.columns.length; c++) {
+                            if (values[c] == null) {
+                                preparedStatement.setNull(c + 1, table.columns[c].type == StoreSnapshot.ColumnType.STRING
+                                        ? Types.VARCHAR : Types.INTEGER);
+                            } else {
+                                preparedStatement.setObject(c + 1, values[c]); // Set column parameter
+                            }
+                        }
+                        preparedStatement.addBatch();
+                        if (++pending % 1000 == 0) {
+                            preparedStatement.executeBatch();
+                        }
+                        if (pending % 65_536 == 0) {
+                            con.commit();
+                        }
+                    }
+                    if (preparedStatement != null) {
+                        preparedStatement.executeBatch();
+                        con.commit();
+                    }
+                } finally {
+                    if (preparedStatement != null) {
+                        preparedStatement.close();
+                        con.setAutoCommit(true);
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Method to split one CSV line into fields, undoing OrderReport.csv quoting
+     */
+    private static void splitCsv(String line, List<String> fields) {
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted && ch == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                field.append('"'); // Escaped quote
+                i++;
+            } else if (ch == '"') {
+                quoted = !quoted;
+            } else if (ch == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(ch);
+            }
+        }
+        fields.add(field.toString());
+    }
+
+    private static Object parseCsvField(StoreSnapshot.ColumnType type, String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+        switch (type) {
+            case ID:
+            case INT:
+                return Integer.valueOf(value);
+            case DECIMAL:
+                return new java.math.BigDecimal(value);
+            case DATE:
+                return Date.valueOf(value);
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Method to delete the store's data from a benchmark load target
+     */
+    private static void clearStore(Connection con) throws SQLException {
+        try (Statement statement = con.createStatement()) {
+            for (String table : new String[] {"orders", "customers", "games", "genres", "sales_by_game", "sales_by_genre", "sales_by_day"}) {
+                statement.executeUpdate("DELETE FROM " + table);
+            }
+        }
+    }
+
+    private long readCheckpoint(String logName) throws SQLException {
+        try (Connection con = pool.getConnection();
+             PreparedStatement preparedStatement = con.prepareStatement(
+                     "SELECT last_sequence FROM order_log_checkpoint WHERE log_name = ?")) {
+            preparedStatement.setString(1, logName);
+            ResultSet resultSet = preparedStatement.executeQuery();
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        }
+    }
+
+    private long countOrders() throws SQLException {
+        try (Connection con = pool.getConnection()) {
+            return SchemaMigrations.countRows(con, "orders");
+        }
+    }
+
+    /**
+     * Method to sell out one game with many concurrent buyers and check that it was not oversold.
+     * Runs until every thread has been told the game is out of stock, so it has no fixed duration.
+     * @param stock The copies put on sale
+     * @param threads The concurrent buyers
+     */
+    private Map<String, Object> hotGame(int stock, int threads) throws Exception {
+        String name = "placeOrder.hotGame";
+        int gameId = gameIds[gameIds.length - 1]; // The last game, which the other benchmarks leave alone
+        int ordersBefore = countOrders(gameId);
+        Integer stockBefore = service.getStock(gameId);
+        service.setStock(gameId, stock);
+        try {
+            return sellOut(name, gameId, ordersBefore, stock, threads);
+        } finally {
+            service.setStock(gameId, stockBefore); // Leave the game as it was
+        }
+    }
+
+    /**
+     * Method to let the buyers of placeOrder.hotGame empty the stock of a game and check the orders stored
+     */
+    private Map<String, Object> sellOut(String name, int gameId, int ordersBefore, int stock, int threads) throws Exception {
+        LatencyHistogram latency = new LatencyHistogram(); // Accepted orders only
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong lastAccepted = new AtomicLong();
+        Exception[] failure = new Exception[1];
+        long start = System.nanoTime();
+
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final Random random = new Random(name.hashCode() * 31L + i);
+            workers[i] = new Thread(() -> {
+                try {
+                    while (true) {
+                        long began = System.nanoTime();
+                        service.placeOrder(randomCustomer(random), gameId);
+                        long finished = System.nanoTime();
+                        latency.record(finished - began);
+                        lastAccepted.accumulateAndGet(finished, Math::max);
+                    }
+                } catch (Inventory.OutOfStockException e) {
+                    rejected.incrementAndGet(); // This buyer saw the game sell out
+                } catch (Exception e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                }
+            }, name + "-" + i);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+
+        double seconds = Math.max(1, lastAccepted.get() - start) / 1_000_000_000.0;
+        Integer stockLeft = service.getStock(gameId);
+        int ordersPlaced = countOrders(gameId) - ordersBefore;
+        long oversold = Math.max(0, ordersPlaced - stock);
+        if (oversold > 0 || latency.getCount() != stock || stockLeft == null || stockLeft != 0) {
+            throw new IllegalStateException(String.format("Stock mismatch: %d copies, %d accepted, %d orders stored, %s left",
+                    stock, latency.getCount(), ordersPlaced, stockLeft));
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("name", name);
+        result.put("threads", threads);
+        result.put("operations", latency.getCount());
+        result.put("opsPerSecond", latency.getCount() / seconds);
+        result.put("meanMs", latency.getMeanMillis());
+        result.put("p50Ms", latency.getPercentileMillis(50));
+        result.put("p99Ms", latency.getPercentileMillis(99));
+        result.put("maxMs", latency.getMaxMillis());
+        result.put("oversold", oversold);
+        System.out.printf("%-32s %8d %12.1f %10.3f %10.3f %10.3f %10.3f  (sold %d of %d, oversold %d)\n", name, threads,
+                latency.getCount() / seconds, latency.getMeanMillis(), latency.getPercentileMillis(50),
+                latency.getPercentileMillis(99), latency.getMaxMillis(), ordersPlaced, stock, oversold);
+        return result;
+    }
+
+    /**
+     * Method to raise the price of the first games by 1% in one bulk update
+     * @param games The number of games to reprice
+     */
+    private Map<String, Object> reprice(int games) throws Exception {
+        String name = "updateGames.reprice";
+        List<Integer> repriced = new ArrayList<>(games);
+        for (int i = 0; i < games; i++) {
+            repriced.add(gameIds[i]);
+        }
+        GameUpdater.UpdateResult update = service.updateGames(repriced,
+                game -> new GameUpdater.GameUpdate(game.getGameId()).price(game.getPrice() * 1.01));
+        double seconds = update.getElapsedNanos() / 1_000_000_000.0;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("name", name);
+        result.put("threads", 1);
+        result.put("operations", update.getUpdated());
+        result.put("elapsedMs", update.getElapsedNanos() / 1_000_000.0);
+        result.put("rowsPerSecond", update.getUpdated() / seconds);
+        System.out.printf("%-32s %8d %12.1f rows/s  (%s)\n", name, 1, update.getUpdated() / seconds, update);
+        return result;
+    }
+
+    /**
+     * Method to let several writers raise the prices of the same games by one cent at a time
+     * and check that no update was lost: the total price must grow by exactly one cent per
+     * update the writers were told succeeded.
+     * @param threads The concurrent writers
+     * @param seconds How long the writers run
+     */
+    private Map<String, Object> concurrentWriters(int threads, int seconds) throws Exception {
+        String name = "updateGames.concurrent";
+        List<Integer> hotIds = new ArrayList<>();
+        for (int i = 0; i < Math.min(100, gameIds.length); i++) {
+            hotIds.add(gameIds[i]);
+        }
+        String sumSql = "SELECT SUM(ROUND(price * 100)) FROM games WHERE game_id BETWEEN " + hotIds.get(0)
+                + " AND " + hotIds.get(hotIds.size() - 1); // The first games by ID, with whatever gaps they have
+        long centsBefore;
+        try (Connection con = pool.getConnection()) {
+            centsBefore = readIds(con, sumSql)[0];
+        }
+
+        LatencyHistogram latency = new LatencyHistogram(); // One sample per bulk update call
+        AtomicLong updated = new AtomicLong();
+        AtomicLong conflicts = new AtomicLong();
+        AtomicLong retries = new AtomicLong();
+        Exception[] failure = new Exception[1];
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(() -> {
+                try {
+                    while (System.nanoTime() < end) {
+                        long began = System.nanoTime();
+                        GameUpdater.UpdateResult update = service.updateGames(hotIds,
+                                game -> new GameUpdater.GameUpdate(game.getGameId()).price(game.getPrice() + 0.01));
+                        latency.record(System.nanoTime() - began);
+                        updated.addAndGet(update.getUpdated());
+                        conflicts.addAndGet(update.getConflicts().size());
+                        retries.addAndGet(update.getRetries());
+                    }
+                } catch (Exception e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                }
+            }, name + "-" + i);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+
+        long centsAfter;
+        try (Connection con = pool.getConnection()) {
+            centsAfter = readIds(con, sumSql)[0];
+        }
+        long lost = centsBefore + updated.get() - centsAfter;
+        if (lost != 0) {
+            throw new IllegalStateException(String.format("Lost updates: %d applied, prices grew by %d cents",
+                    updated.get(), centsAfter - centsBefore));
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("name", name);
+        result.put("threads", threads);
+        result.put("operations", latency.getCount());
+        result.put("opsPerSecond", latency.getCount() / (double) seconds);
+        result.put("meanMs", latency.getMeanMillis());
+        result.put("p50Ms", latency.getPercentileMillis(50));
+        result.put("p99Ms", latency.getPercentileMillis(99));
+        result.put("maxMs", latency.getMaxMillis());
+        result.put("rowsPerSecond", updated.get() / (double) seconds);
+        result.put("conflicts", conflicts.get());
+        result.put("retries", retries.get());
+        System.out.printf("%-32s %8d %12.1f %10.3f %10.3f %10.3f %10.3f  (%d rows, %d retries, %d conflicts, 0 lost)\n",
+                name, threads, latency.getCount() / (double) seconds, latency.getMeanMillis(), latency.getPercentileMillis(50),
+                latency.getPercentileMillis(99), latency.getMaxMillis(), updated.get(), retries.get(), conflicts.get());
+        return result;
+    }
+
+    private int countOrders(int gameId) throws SQLException {
+        try (Connection con = pool.getConnection()) {
+            return readIds(con, "SELECT COUNT(*) FROM orders WHERE game_id = " + gameId)[0];
+        }
+    }
+
+    /**
+     * Method to write the results and run configuration as JSON
+     */
+    void writeJson(String path, String url, List<Map<String, Object>> results) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8)) {
+            writer.write("{\n");
+            writer.write("  \"timestamp\": " + json(java.time.Instant.now().toString()) + ",\n");
+            writer.write("  \"database\": " + json(url) + ",\n");
+            writer.write("  \"javaVersion\": " + json(System.getProperty("java.version")) + ",\n");
+            writer.write("  \"games\": " + gameCount + ",\n");
+            writer.write("  \"customers\": " + customerCount + ",\n");
+            writer.write("  \"orders\": " + orderCount + ",\n");
+            writer.write("  \"results\": [\n");
+            for (int i = 0; i < results.size(); i++) {
+                writer.write("    {");
+                int field = 0;
+                for (Map.Entry<String, Object> entry : results.get(i).entrySet()) {
+                    writer.write((field++ == 0 ? "" : ", ") + json(entry.getKey()) + ": " + json(entry.getValue()));
+                }
+                writer.write(i == results.size() - 1 ? "}\n" : "},\n");
+            }
+            writer.write("  ]\n");
+            writer.write("}\n");
+        }
+    }
+
+    private static String json(Object value) {
+        if (value instanceof Double) {
+            return String.format(Locale.ROOT, "%.6f", (Double) value);
+        }
+        if (value instanceof Number) {
+            return value.toString();
+        }
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : String.valueOf(value).toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
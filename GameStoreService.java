@@ -0,0 +1,506 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Game Store Service
+ *
+ * Data-access API of the game store. Every operation takes plain values and returns plain
+ * row objects (Genre, Game, Customer, OrderRow) without any console I/O, so the store can
+ * be driven by the console menu, batch jobs, load generators or concurrent workers alike.
+ *
+ * The service is thread-safe. Reads are served from the catalog cache and customer index,
+ * writes go through the connection pool and keep those structures in sync, and orders are
+ * placed on the OrderProcessor. With an order log open (openOrderLog), acceptOrder() offers
+ * a write-behind alternative that acknowledges an order before it reaches the database.
+ *
+ * Every operation is recorded as "service.<method>" in the pool's OperationMetrics, next to
+ * the timings of the statements it executes.
+ */
+public class GameStoreService implements AutoCloseable {
+    private static final int UPDATE_BATCH_SIZE = 1000; // Games per transaction in bulk updates
+    private static final int ORDER_LOG_CAPACITY = 1 << 20; // Orders a new order log can hold before accepting blocks
+    private static final int ORDER_LOG_BATCH_SIZE = 500; // Orders per write-behind flush transaction
+
+    private final ConnectionPool pool; // Source of database connections
+    private final CatalogCache catalog; // In-memory copy of the genres and games tables
+    private final GameSearchIndex searchIndex; // Word and facet search over the cached games
+    private final CustomerIndex customerIndex; // In-memory name index over the customers table
+    private final OrderReport orderReport; // Paginated reader for the order history
+    private final SalesAnalytics analytics; // Sales rollups kept up to date by every order insert
+    private final Inventory inventory; // Stock levels and per-order reservation
+    private final OrderProcessor orderProcessor; // Places orders on worker threads
+    private final OperationMetrics metrics; // Latency and error counts per operation, shared with the pool
+    private volatile OrderLog orderLog; // Write-behind order log, null until openOrderLog
+
+    /**
+     * Create a service with at most 1000 orders in flight
+     * @param pool The connection pool; it is not closed by the service
+     */
+    public GameStoreService(ConnectionPool pool) {
+        this(pool, 1000);
+    }
+
+    /**
+     * Create a service
+     * @param pool The connection pool; it is not closed by the service
+     * @param maxOrdersInFlight The in-flight limit of the order processor
+     */
+    public GameStoreService(ConnectionPool pool, int maxOrdersInFlight) {
+        this.pool = pool;
+        this.catalog = new CatalogCache(pool); // Loaded on first use
+        this.searchIndex = new GameSearchIndex(catalog); // Built on first search, then follows the catalog
+        this.customerIndex = new CustomerIndex(pool); // Loaded on first lookup
+        this.orderReport = new OrderReport(pool); // Reads orders in pages of 1000
+        this.analytics = new SalesAnalytics(pool, catalog);
+        this.inventory = new Inventory(pool);
+        this.orderProcessor = new OrderProcessor(pool, customerIndex, catalog, analytics, inventory, maxOrdersInFlight);
+        this.metrics = pool.getMetrics();
+    }
+
+    // Schema
+
+    /**
+     * Method to bring the database schema up to date
+     * @return The number of migrations applied, 0 if the schema was already current
+     * @throws SQLException if a migration fails
+     */
+    public int createTables() throws SQLException {
+        return metrics.time("service.createTables", () -> {
+            try (Connection con = pool.getConnection()) {
+                return SchemaMigrations.migrate(con);
+            }
+        });
+    }
+
+    // Genres and games
+
+    public List<Genre> getGenres() throws SQLException {
+        return metrics.time("service.getGenres", () -> catalog.getGenres());
+    }
+
+    public Genre getGenre(int genreId) throws SQLException {
+        return metrics.time("service.getGenre", () -> catalog.getGenre(genreId));
+    }
+
+    public List<Game> getGames() throws SQLException {
+        return metrics.time("service.getGames", () -> catalog.getGames());
+    }
+
+    public Game getGame(int gameId) throws SQLException {
+        return metrics.time("service.getGame", () -> catalog.getGame(gameId));
+    }
+
+    public List<Game> getGamesByGenre(int genreId) throws SQLException {
+        return metrics.time("service.getGamesByGenre", () -> catalog.getGamesByGenre(genreId));
+    }
+
+    /**
+     * Method to search games by name words and facets
+     * @param query The query
+     * @return The first matching games with the total and facet counts
+     */
+    public GameSearchIndex.SearchResult searchGames(GameSearchIndex.GameQuery query) throws SQLException {
+        return metrics.time("service.searchGames", () -> searchIndex.search(query));
+    }
+
+    /**
+     * Method to add a new game
+     * @return The inserted game including its generated ID
+     * @throws SQLException if the insert fails
+     */
+    public Game addGame(String gameName, int genreId, double price, int ageLimit, String storage) throws SQLException {
+        return metrics.time("service.addGame", () -> {
+            String sql = "INSERT INTO games (game_name, genre_id, price, age_limit, storage) " +
+                    "VALUES (?, ?, ?, ?, ?)";
+            try (Connection con = pool.getConnection();
+                 PreparedStatement preparedStatement = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                preparedStatement.setString(1, gameName); // Set game name parameter
+                preparedStatement.setInt(2, genreId); // Set genre ID parameter
+                preparedStatement.setDouble(3, price); // Set price parameter
+                preparedStatement.setInt(4, ageLimit); // Set age limit parameter
+                preparedStatement.setString(5, storage); // Set storage parameter
+
+                preparedStatement.executeUpdate(); // Execute update
+
+                ResultSet generatedKeys = preparedStatement.getGeneratedKeys();
+                if (!generatedKeys.next()) {
+                    catalog.invalidate(); // Cannot tell which row was added
+                    throw new SQLException("No game ID was generated");
+                }
+                Game game = new Game(generatedKeys.getInt(1), gameName, genreId, CatalogCache.roundPrice(price),
+                        ageLimit, storage); // Price as the column stores it
+                catalog.gameAdded(game); // Keep the cache in sync
+                return game;
+            }
+        });
+    }
+
+    /**
+     * Method to change one game
+     * @param update The changes; set an expected version to fail instead of overwriting a concurrent change
+     * @return The outcome; the game is listed as missing or conflicting if it was not changed
+     * @throws SQLException if the update fails
+     */
+    public GameUpdater.UpdateResult updateGame(GameUpdater.GameUpdate update) throws SQLException {
+        return updateGames(Collections.singletonList(update));
+    }
+
+    /**
+     * Method to change many games in batched transactions
+     * @param updates The changes; at most one per game
+     * @return How many games were changed and which were missing or conflicting
+     * @throws SQLException if an update fails
+     */
+    public GameUpdater.UpdateResult updateGames(List<GameUpdater.GameUpdate> updates) throws SQLException {
+        return metrics.time("service.updateGames", () -> new GameUpdater(pool, catalog, UPDATE_BATCH_SIZE).update(updates));
+    }
+
+    /**
+     * Method to change many games based on their current values, e.g. to reprice them.
+     * Games changed concurrently are read again and the change is recomputed.
+     * @param gameIds The games to change
+     * @param change Computes the change for a game, or null to leave it alone
+     * @return How many games were changed and which were missing or conflicting
+     * @throws SQLException if an update fails
+     */
+    public GameUpdater.UpdateResult updateGames(Collection<Integer> gameIds,
+                                                java.util.function.Function<Game, GameUpdater.GameUpdate> change)
+            throws SQLException {
+        return metrics.time("service.updateGames", () -> new GameUpdater(pool, catalog, UPDATE_BATCH_SIZE).update(gameIds, change));
+    }
+
+    // Customers
+
+    /**
+     * Method to add a new customer
+     * @return The inserted customer including its generated ID
+     * @throws SQLException if the insert fails, e.g. because the email is taken
+     */
+    public Customer addCustomer(String customerName, String email) throws SQLException {
+        return metrics.time("service.addCustomer", () -> {
+            String sql = "INSERT INTO customers (customer_name, email) " +
+                    "VALUES (?, ?)";
+            try (Connection con = pool.getConnection();
+                 PreparedStatement preparedStatement = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                preparedStatement.setString(1, customerName); // Set customer name parameter
+                preparedStatement.setString(2, email); // Set email parameter
+
+                preparedStatement.executeUpdate(); // Execute update
+
+                ResultSet generatedKeys = preparedStatement.getGeneratedKeys();
+                if (!generatedKeys.next()) {
+                    customerIndex.invalidate(); // Cannot tell which row was added
+                    throw new SQLException("No customer ID was generated");
+                }
+                Customer customer = new Customer(generatedKeys.getInt(1), customerName, email);
+                customerIndex.customerAdded(customer); // Keep the name index in sync
+                return customer;
+            }
+        });
+    }
+
+    public Customer getCustomer(int customerId) throws SQLException {
+        return metrics.time("service.getCustomer", () -> customerIndex.getCustomer(customerId));
+    }
+
+    /**
+     * Method to find customers by name, ignoring case
+     * @return All matching customers ordered by ID
+     */
+    public List<Customer> findCustomersByName(String customerName) throws SQLException {
+        return metrics.time("service.findCustomersByName", () -> customerIndex.findByNameIgnoreCase(customerName));
+    }
+
+    /**
+     * Method to find customers by name, ignoring case, before acting on the match; unlike
+     * findCustomersByName it sees customers with the same name that other processes added
+     * @return All matching customers ordered by ID
+     */
+    public List<Customer> resolveCustomersByName(String customerName) throws SQLException {
+        return metrics.time("service.resolveCustomersByName", () -> customerIndex.resolveByNameIgnoreCase(customerName));
+    }
+
+    /**
+     * Method to find customers whose name starts with a prefix, ignoring case
+     * @return Up to limit matching customers ordered by name
+     */
+    public List<Customer> findCustomersByNamePrefix(String prefix, int limit) throws SQLException {
+        return metrics.time("service.findCustomersByNamePrefix", () -> customerIndex.findByNamePrefix(prefix, limit));
+    }
+
+    // Orders
+
+    /**
+     * Method to place an order and wait until it is stored
+     * @return The new order ID
+     * @throws Inventory.OutOfStockException if the game is sold out
+     * @throws SQLException if the customer or game does not exist or the insert fails
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public int placeOrder(int customerId, int gameId) throws SQLException, InterruptedException {
+        try {
+            return placeOrderAsync(customerId, gameId).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new IllegalStateException("Order failed", e.getCause());
+        }
+    }
+
+    /**
+     * Method to place an order without waiting for it to be stored. Blocks only while the
+     * order processor is at its in-flight limit.
+     * @return A future completed with the new order ID
+     * @throws InterruptedException if interrupted while waiting for capacity
+     */
+    public CompletableFuture<Integer> placeOrderAsync(int customerId, int gameId) throws InterruptedException {
+        if (!metrics.isEnabled()) {
+            return orderProcessor.submit(customerId, gameId);
+        }
+        long start = System.nanoTime(); // Includes any wait for in-flight capacity
+        CompletableFuture<Integer> order = orderProcessor.submit(customerId, gameId);
+        order.whenComplete((orderId, failure) -> metrics.record("service.placeOrder", System.nanoTime() - start, failure != null));
+        return order;
+    }
+
+    /**
+     * Method to open the write-behind order log. Orders accepted before a crash that were
+     * not yet stored are stored now. The schema must be migrated first.
+     * @param file The log file, created if it does not exist
+     * @param forceOnAccept Whether each accepted order is written through to the disk,
+     *                      so it also survives a power loss and not only a process crash
+     * @param replayWithoutCheckpoint Whether a log with records but no checkpoint in the
+     *                                database is stored from the start instead of refused
+     * @return The log
+     * @throws IOException if the file cannot be opened, is in use by another process, or
+     *                     cannot be replayed safely
+     * @throws SQLException if the checkpoint cannot be read
+     */
+    public synchronized OrderLog openOrderLog(Path file, boolean forceOnAccept, boolean replayWithoutCheckpoint)
+            throws IOException, SQLException {
+        if (orderLog != null) {
+            throw new IllegalStateException("An order log is already open");
+        }
+        orderLog = new OrderLog(pool, customerIndex, catalog, analytics, inventory, file,
+                ORDER_LOG_CAPACITY, ORDER_LOG_BATCH_SIZE, forceOnAccept, replayWithoutCheckpoint);
+        return orderLog;
+    }
+
+    /**
+     * Method to accept an order into the write-behind log. Returns as soon as the order is in
+     * the log; it is stored in the background, and stock is reserved only then, so a sold-out
+     * game makes the stored order disappear instead of failing this call.
+     * @return The sequence number of the order in the log
+     * @throws SQLException if the customer or game does not exist
+     * @throws InterruptedException if interrupted while the log is full
+     * @throws IllegalStateException if no order log is open
+     */
+    public long acceptOrder(int customerId, int gameId) throws SQLException, InterruptedException {
+        OrderLog log = orderLog;
+        if (log == null) {
+            throw new IllegalStateException("No order log is open");
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            long sequence = log.accept(customerId, gameId);
+            failed = false;
+            return sequence;
+        } finally {
+            metrics.record("service.acceptOrder", System.nanoTime() - start, failed); // Throws InterruptedException too, so not via time()
+        }
+    }
+
+    /**
+     * Method to iterate over orders in order_id order, one page at a time
+     * @param filter The filter, or null for all orders
+     */
+    public Iterator<OrderRow> getOrders(OrderReport.OrderFilter filter) {
+        return metrics.timeIteration("service.getOrders", orderReport.iterator(filter)); // Recorded once fully read
+    }
+
+    /**
+     * Method to import orders from a CSV file (customer_name,game_id[,order_date])
+     * @param file The file to import
+     * @param batchSize Rows per JDBC batch
+     * @param commitInterval Rows per transaction
+     */
+    public OrderImporter.ImportResult importOrders(Path file, int batchSize, int commitInterval) throws IOException, SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            OrderImporter.ImportResult result =
+                    new OrderImporter(pool, catalog, inventory, analytics, batchSize, commitInterval).importFile(file);
+            failed = false;
+            return result;
+        } finally {
+            metrics.record("service.importOrders", System.nanoTime() - start, failed); // Throws IOException too, so not via time()
+        }
+    }
+
+    /**
+     * Method to import orders given in memory
+     * @param orders The orders to insert
+     * @param batchSize Rows per JDBC batch
+     * @param commitInterval Rows per transaction
+     */
+    public OrderImporter.ImportResult importOrders(List<OrderImporter.OrderRequest> orders, int batchSize, int commitInterval)
+            throws SQLException {
+        return metrics.time("service.importOrders",
+                () -> new OrderImporter(pool, catalog, inventory, analytics, batchSize, commitInterval).importOrders(orders));
+    }
+
+    // Stock
+
+    /**
+     * Method to add copies of a game; an untracked game starts being tracked
+     * @return true if the game exists
+     */
+    public boolean restock(int gameId, int quantity) throws SQLException {
+        return metrics.time("service.restock", () -> inventory.restock(gameId, quantity));
+    }
+
+    /**
+     * Method to set the stock of a game
+     * @param stock The number of copies, or null to stop tracking the game
+     * @return true if the game exists
+     */
+    public boolean setStock(int gameId, Integer stock) throws SQLException {
+        return metrics.time("service.setStock", () -> inventory.setStock(gameId, stock));
+    }
+
+    /**
+     * Method to get the copies left of a game
+     * @return The stock, or null if the game is untracked or does not exist
+     */
+    public Integer getStock(int gameId) throws SQLException {
+        return metrics.time("service.getStock", () -> inventory.getStock(gameId));
+    }
+
+    // Sales reports
+
+    /**
+     * Method to get orders and revenue per genre, highest revenue first
+     */
+    public List<SalesAnalytics.SalesFigure> getRevenueByGenre() throws SQLException {
+        return metrics.time("service.getRevenueByGenre", () -> analytics.getRevenueByGenre());
+    }
+
+    /**
+     * Method to get the games with the most orders
+     * @param limit The number of games to return
+     */
+    public List<SalesAnalytics.SalesFigure> getTopGames(int limit) throws SQLException {
+        return metrics.time("service.getTopGames", () -> analytics.getTopGames(limit));
+    }
+
+    /**
+     * Method to get orders and revenue per day, oldest first
+     * @param from The first day
+     * @param to The last day
+     */
+    public List<SalesAnalytics.SalesFigure> getOrdersPerDay(java.sql.Date from, java.sql.Date to) throws SQLException {
+        return metrics.time("service.getOrdersPerDay", () -> analytics.getOrdersPerDay(from, to));
+    }
+
+    // Snapshots
+
+    /**
+     * Method to export genres, games, customers and orders to a columnar snapshot file
+     * @param file The snapshot file, replaced if it exists
+     */
+    public StoreSnapshot.SnapshotResult exportSnapshot(Path file) throws IOException, SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            StoreSnapshot.SnapshotResult result = new StoreSnapshot(pool).export(file);
+            failed = false;
+            return result;
+        } finally {
+            metrics.record("service.exportSnapshot", System.nanoTime() - start, failed); // Throws IOException too, so not via time()
+        }
+    }
+
+    /**
+     * Method to load a snapshot file into a database without games, customers or orders
+     * @param file The snapshot file
+     */
+    public StoreSnapshot.SnapshotResult loadSnapshot(Path file) throws IOException, SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            StoreSnapshot.SnapshotResult result = new StoreSnapshot(pool).load(file);
+            failed = false;
+            return result;
+        } finally {
+            catalog.invalidate(); // Reload even after a partial load
+            customerIndex.invalidate();
+            metrics.record("service.loadSnapshot", System.nanoTime() - start, failed);
+        }
+    }
+
+    // Internals exposed for monitoring and benchmarks
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    public CatalogCache getCatalog() {
+        return catalog;
+    }
+
+    public GameSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    public CustomerIndex getCustomerIndex() {
+        return customerIndex;
+    }
+
+    public OrderReport getOrderReport() {
+        return orderReport;
+    }
+
+    public Inventory getInventory() {
+        return inventory;
+    }
+
+    public SalesAnalytics getAnalytics() {
+        return analytics;
+    }
+
+    public OperationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Method to get the write-behind order log
+     * @return The log, or null if none is open
+     */
+    public OrderLog getOrderLog() {
+        return orderLog;
+    }
+
+    public OrderProcessor getOrderProcessor() {
+        return orderProcessor;
+    }
+
+    /**
+     * Method to finish pending orders, flush the order log and stop the worker threads. The pool stays open.
+     */
+    @Override
+    public void close() {
+        orderProcessor.close();
+        OrderLog log = orderLog;
+        if (log != null) {
+            log.close();
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.example;
+
+import java.sql.*;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Game Updater
+ *
+ * Applies typed changes to one or many games. Only the fields GameUpdate offers can be
+ * changed and every value is bound with its own type, so no SQL is ever built from input.
+ * Games are processed in transactions of batchSize games; within a transaction all games
+ * that change the same set of fields share one batched UPDATE statement.
+ *
+ * Concurrent writers are detected with the games.version column: every update sets
+ * version = version + 1 and only applies WHERE version still has the value that was read.
+ * A game whose version moved in between was changed by someone else. If the caller gave
+ * an expected version, that is reported as a conflict right away, because the caller's
+ * view of the game is stale. Otherwise the game is read again, its change is computed
+ * again from the fresh row and retried, up to MAX_ATTEMPTS times.
+ */
+public class GameUpdater {
+    private static final int MAX_ATTEMPTS = 5; // Tries per game before it is reported as a conflict
+
+    private final ConnectionPool pool; // Source of database connections
+    private final CatalogCache catalog; // Updated with the new rows after each commit
+    private final int batchSize; // Games per transaction
+
+    /**
+     * Create an updater
+     * @param pool The connection pool
+     * @param catalog The catalog cache to keep in sync
+     * @param batchSize Games updated per transaction
+     */
+    public GameUpdater(ConnectionPool pool, CatalogCache catalog, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.pool = pool;
+        this.catalog = catalog;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Method to apply fixed changes
+     * @param updates The changes; at most one per game
+     * @return The updated, missing and conflicting games
+     * @throws SQLException if the database fails
+     */
+    public UpdateResult update(List<GameUpdate> updates) throws SQLException {
+        Map<Integer, GameUpdate> byGameId = new LinkedHashMap<>();
+        for (GameUpdate update : updates) {
+            if (byGameId.put(update.gameId, update) != null) {
+                throw new IllegalArgumentException("More than one update for game " + update.gameId);
+            }
+        }
+        return update(byGameId.keySet(), game -> byGameId.get(game.getGameId()));
+    }
+
+    /**
+     * Method to apply changes computed from the current state of each game, such as a repricing.
+     * On a conflict the function is called again with the fresh row.
+     * @param gameIds The games to change
+     * @param change Computes the change for a game; returning null leaves the game alone
+     * @return The updated, missing and conflicting games
+     * @throws SQLException if the database fails, e.g. on an unknown genre; the games of the
+     *         failing transaction keep their values, earlier transactions stay committed
+     */
+    public UpdateResult update(Collection<Integer> gameIds, Function<Game, GameUpdate> change) throws SQLException {
+        UpdateResult result = new UpdateResult();
+        long start = System.nanoTime();
+        List<Integer> ids = new ArrayList<>(gameIds);
+        try (Connection con = pool.getConnection()) {
+            con.setAutoCommit(false); // The pool restores auto-commit when the connection is returned
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                List<Integer> pending = ids.subList(from, Math.min(ids.size(), from + batchSize));
+                for (int attempt = 1; !pending.isEmpty(); attempt++) {
+                    if (attempt > 1) {
+                        result.retries += pending.size();
+                    }
+                    try {
+                        pending = updateBatch(con, pending, change, result, attempt == MAX_ATTEMPTS);
+                    } catch (SQLException e) {
+                        if (attempt == MAX_ATTEMPTS || !"40001".equals(e.getSQLState())) {
+                            throw e;
+                        }
+                        // Deadlock victim against another writer; the transaction was rolled back, try it again
+                    }
+                }
+            }
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Method to read, change and write one batch of games in one transaction. The result is
+     * only added to once the transaction has committed.
+     * @param lastAttempt Whether games that lose a race are reported instead of returned
+     * @return The games that lost a race and should be tried again
+     */
+    private List<Integer> updateBatch(Connection con, List<Integer> gameIds, Function<Game, GameUpdate> change,
+                                      UpdateResult result, boolean lastAttempt) throws SQLException {
+        List<Integer> retry = new ArrayList<>();
+        List<Integer> missing = new ArrayList<>();
+        List<Integer> conflicts = new ArrayList<>();
+        List<Game> updatedGames = new ArrayList<>();
+        try {
+            Map<Integer, Game> current = readGames(con, gameIds);
+
+            // Group the changes by the fields they set, one batched statement per group
+            Map<String, List<Change>> groups = new LinkedHashMap<>(); // SET clause -> changes
+            for (int gameId : gameIds) {
+                Game game = current.get(gameId);
+                if (game == null) {
+                    missing.add(gameId);
+                    continue;
+                }
+                GameUpdate update = change.apply(game);
+                if (update == null || update.isEmpty()) {
+                    continue;
+                }
+                if (update.gameId != gameId) {
+                    throw new IllegalArgumentException("Update for game " + update.gameId + " returned for game " + gameId);
+                }
+                if (update.expectedVersion != null && update.expectedVersion != game.getVersion()) {
+                    conflicts.add(gameId); // The caller edited an old copy of the game
+                    continue;
+                }
+                groups.computeIfAbsent(update.setClause(), key -> new ArrayList<>()).add(new Change(game, update));
+            }
+
+            for (Map.Entry<String, List<Change>> group : groups.entrySet()) {
+                List<Change> changes = group.getValue();
+                try (PreparedStatement preparedStatement = con.prepareStatement(
+                        "UPDATE games SET " + group.getKey() + ", version = version + 1 WHERE game_id = ? AND version = ?")) {
+                    for (Change pending : changes) {
+                        int index = pending.update.bind(preparedStatement);
+                        preparedStatement.setInt(index, pending.current.getGameId()); // Set game ID parameter
+                        preparedStatement.setInt(index + 1, pending.current.getVersion()); // Set expected version parameter
+                        preparedStatement.addBatch();
+                    }
+                    int[] counts = preparedStatement.executeBatch(); // One round trip for the whole group
+                    for (int i = 0; i < counts.length; i++) {
+                        Change pending = changes.get(i);
+                        if (counts[i] != 0) {
+                            updatedGames.add(pending.update.applyTo(pending.current)); // SUCCESS_NO_INFO counts as applied
+                        } else if (lastAttempt || pending.update.expectedVersion != null) {
+                            conflicts.add(pending.current.getGameId()); // Changed by another writer since it was read
+                        } else {
+                            retry.add(pending.current.getGameId());
+                        }
+                    }
+                }
+            }
+            con.commit();
+        } catch (SQLException | RuntimeException e) {
+            try {
+                con.rollback();
+            } catch (SQLException rollbackFailure) {
+                e.addSuppressed(rollbackFailure); // Keep the original cause, e.g. a lock wait timeout
+            }
+            throw e;
+        }
+
+        result.updated += updatedGames.size();
+        result.missing.addAll(missing);
+        result.conflicts.addAll(conflicts);
+        catalog.gamesUpdated(updatedGames); // Keep the cache and everything following it in sync
+        for (int gameId : conflicts) {
+            catalog.refreshGame(gameId); // The cache may hold the stale copy the caller edited; a retry needs the current version
+        }
+        return retry;
+    }
+
+    /**
+     * A game as read and the update to apply to it
+     */
+    private static final class Change {
+        final Game current;
+        final GameUpdate update;
+
+        Change(Game current, GameUpdate update) {
+            this.current = current;
+            this.update = update;
+        }
+    }
+
+    private static Map<Integer, Game> readGames(Connection con, List<Integer> gameIds) throws SQLException {
+        Map<Integer, Game> games = new HashMap<>();
+        int size = StatementCache.inListSize(gameIds.size()); // Padded so few distinct statements get cached
+        String sql = "SELECT * FROM games WHERE game_id IN (" + StatementCache.placeholders(size) + ")";
+        try (PreparedStatement preparedStatement = con.prepareStatement(sql)) {
+            for (int i = 0; i < size; i++) {
+                preparedStatement.setInt(i + 1, gameIds.get(Math.min(i, gameIds.size() - 1))); // Set game ID parameter, padding repeats the last
+            }
+            ResultSet resultSet = preparedStatement.executeQuery(); // Execute query
+            while (resultSet.next()) {
+                Game game = CatalogCache.readGame(resultSet);
+                games.put(game.getGameId(), game);
+            }
+        }
+        return games;
+    }
+
+    /**
+     * Changes to one game. Fields that are not set keep their value.
+     */
+    public static final class GameUpdate {
+        private final int gameId; // The game to change
+        private Integer expectedVersion; // Version the caller saw, or null to retry on conflicts
+        private String gameName; // New name
+        private Integer genreId; // New genre
+        private Double price; // New price
+        private Integer ageLimit; // New age limit
+        private String storage; // New storage medium
+
+        public GameUpdate(int gameId) {
+            this.gameId = gameId;
+        }
+
+        /**
+         * Method to only apply the update if the game still has this version
+         */
+        public GameUpdate expectedVersion(int version) {
+            this.expectedVersion = version;
+            return this;
+        }
+
+        public GameUpdate gameName(String gameName) {
+            if (gameName == null || gameName.trim().isEmpty() || gameName.length() > 100) {
+                throw new IllegalArgumentException("Game name must have 1 to 100 characters");
+            }
+            this.gameName = gameName;
+            return this;
+        }
+
+        public GameUpdate genre(int genreId) {
+            this.genreId = genreId;
+            return this;
+        }
+
+        public GameUpdate price(double price) {
+            if (price < 0 || price >= 100_000_000 || Double.isNaN(price)) {
+                throw new IllegalArgumentException("Invalid price: " + price);
+            }
+            this.price = CatalogCache.roundPrice(price); // The column keeps two decimals, rounded like the cache does
+            return this;
+        }
+
+        public GameUpdate ageLimit(int ageLimit) {
+            if (ageLimit < 0) {
+                throw new IllegalArgumentException("Age limit cannot be negative: " + ageLimit);
+            }
+            this.ageLimit = ageLimit;
+            return this;
+        }
+
+        public GameUpdate storage(String storage) {
+            if (storage == null || storage.length() > 50) {
+                throw new IllegalArgumentException("Storage medium must have at most 50 characters");
+            }
+            this.storage = storage;
+            return this;
+        }
+
+        public int getGameId() {
+            return gameId;
+        }
+
+        boolean isEmpty() {
+            return gameName == null && genreId == null && price == null && ageLimit == null && storage == null;
+        }
+
+        /**
+         * Method to build the SET clause for the fields this update changes; column names are fixed
+         */
+        String setClause() {
+            StringJoiner columns = new StringJoiner(", ");
+            if (gameName != null) {
+                columns.add("game_name = ?");
+            }
+            if (genreId != null) {
+                columns.add("genre_id = ?");
+            }
+            if (price != null) {
+                columns.add("price = ?");
+            }
+            if (ageLimit != null) {
+                columns.add("age_limit = ?");
+            }
+            if (storage != null) {
+                columns.add("storage = ?");
+            }
+            return columns.toString();
+        }
+
+        /**
+         * Method to bind the changed values in setClause order
+         * @return The index of the next parameter
+         */
+        int bind(PreparedStatement preparedStatement) throws SQLException {
+            int index = 1;
+            if (gameName != null) {
+                preparedStatement.setString(index++, gameName); // Set game name parameter
+            }
+            if (genreId != null) {
+                preparedStatement.setInt(index++, genreId); // Set genre ID parameter
+            }
+            if (price != null) {
+                preparedStatement.setDouble(index++, price); // Set price parameter
+            }
+            if (ageLimit != null) {
+                preparedStatement.setInt(index++, ageLimit); // Set age limit parameter
+            }
+            if (storage != null) {
+                preparedStatement.setString(index++, storage); // Set storage parameter
+            }
+            return index;
+        }
+
+        /**
+         * Method to get the game as it is after this update
+         */
+        Game applyTo(Game game) {
+            return new Game(game.getGameId(),
+                    gameName != null ? gameName : game.getGameName(),
+                    genreId != null ? genreId : game.getGenreId(),
+                    price != null ? price : game.getPrice(),
+                    ageLimit != null ? ageLimit : game.getAgeLimit(),
+                    storage != null ? storage : game.getStorage(),
+                    game.getVersion() + 1);
+        }
+    }
+
+    /**
+     * Outcome of an update run
+     */
+    public static final class UpdateResult {
+        private int updated = 0; // Games changed
+        private final List<Integer> missing = new ArrayList<>(); // Games that do not exist
+        private final List<Integer> conflicts = new ArrayList<>(); // Games changed by another writer and left alone
+        private int retries = 0; // Games tried again after losing a race
+        private long elapsedNanos = 0; // Wall-clock time of the run
+
+        public int getUpdated() {
+            return updated;
+        }
+
+        public List<Integer> getMissing() {
+            return missing;
+        }
+
+        public List<Integer> getConflicts() {
+            return conflicts;
+        }
+
+        public int getRetries() {
+            return retries;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Updated %d games in %.1f ms (%d missing, %d conflicts, %d retries)",
+                    updated, elapsedNanos / 1_000_000.0, missing.size(), conflicts.size(), retries);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example;
+
+/**
+ * A row of the genres table
+ */
+public final class Genre {
+    private final int genreId; // Primary key
+    private final String genreName; // Display name, unique
+
+    public Genre(int genreId, String genreName) {
+        this.genreId = genreId;
+        this.genreName = genreName;
+    }
+
+    public int getGenreId() {
+        return genreId;
+    }
+
+    public String getGenreName() {
+        return genreName;
+    }
+
+    @Override
+    public String toString() {
+        return genreId + ": " + genreName;
+    }
+}
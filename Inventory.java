@@ -0,0 +1,421 @@
+package com.example;
+
+import java.sql.*;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Inventory
+ *
+ * Tracks how many copies of each game are left in the games.stock column and reserves one
+ * copy per order. A NULL stock means the game is not tracked (e.g. digital downloads) and
+ * can always be ordered.
+ *
+ * A reservation reads the stock without a lock, so orders for untracked games never lock
+ * the game row, then runs a conditional update, stock = stock - 1 WHERE stock > 0, in the
+ * transaction that inserts the order. The database applies it atomically, so stock can
+ * never go below zero however many orders race for the same game, and a rolled-back order
+ * gives its copy back automatically. Batches of orders use reserveAll(), which locks their
+ * games with one SELECT ... FOR UPDATE and decrements each game once.
+ *
+ * Once a game is found to be sold out, further orders for it are rejected in memory for
+ * SOLD_OUT_RECHECK_MILLIS without touching the database, so a launch-day stampede on a
+ * sold-out title does not queue on its row lock. restock() and setStock() clear that state
+ * immediately; stock added by another process is noticed after the recheck interval. Each
+ * sold-out entry records the game's stock version, which restock() and setStock() bump, so an
+ * order that read the stock before a restock and reports the game sold out after it leaves
+ * an entry that is ignored.
+ */
+public class Inventory {
+    private static final long SOLD_OUT_RECHECK_MILLIS = 1000; // How long a sold-out game is rejected without a query
+
+    private final ConnectionPool pool; // Source of database connections
+    private final ConcurrentHashMap<Integer, SoldOut> soldOutUntil = new ConcurrentHashMap<>(); // Game ID -> when to ask again
+    private final ConcurrentHashMap<Integer, Long> stockVersions = new ConcurrentHashMap<>(); // Game ID -> restocks so far, absent if never
+
+    // Metrics
+    private final AtomicLong reserved = new AtomicLong(); // Copies reserved in the database
+    private final AtomicLong untracked = new AtomicLong(); // Orders for games without stock tracking
+    private final AtomicLong rejected = new AtomicLong(); // Orders rejected by the database as out of stock
+    private final AtomicLong fastRejected = new AtomicLong(); // Orders rejected in memory as out of stock
+
+    /**
+     * Create the inventory
+     * @param pool The connection pool
+     */
+    public Inventory(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Method to reserve one copy of a game. Must run in the transaction that inserts the
+     * order, before the insert: the order's foreign key check takes a shared lock on the
+     * game row, and upgrading it to the update's exclusive lock afterwards would deadlock
+     * two concurrent orders for the same game.
+     * @param con The connection of the ordering transaction
+     * @param gameId The ordered game
+     * @throws OutOfStockException if no copy is left
+     * @throws SQLException if the game does not exist or the update fails
+     */
+    public void reserve(Connection con, int gameId) throws SQLException {
+        long version = stockVersion(gameId); // Before reading the stock, so a restock after the read outdates the sold-out entry
+        if (isKnownSoldOut(gameId, System.nanoTime())) {
+            fastRejected.incrementAndGet();
+            throw new OutOfStockException(gameId);
+        }
+
+        // A plain read takes no row lock, so orders for untracked games never queue on the game row
+        if (readTrackedStock(con, gameId) == null) {
+            untracked.incrementAndGet();
+            return;
+        }
+
+        try (PreparedStatement preparedStatement = con.prepareStatement(
+                "UPDATE games SET stock = stock - 1 WHERE game_id = ? AND stock > 0")) {
+            preparedStatement.setInt(1, gameId); // Set game ID parameter
+            if (preparedStatement.executeUpdate() == 1) {
+                reserved.incrementAndGet();
+                return;
+            }
+        }
+
+        // Nothing updated: sold out, or stock tracking was switched off since the read
+        if (readTrackedStock(con, gameId) == null) {
+            untracked.incrementAndGet();
+            return;
+        }
+        soldOutUntil.put(gameId, new SoldOut(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SOLD_OUT_RECHECK_MILLIS), version));
+        rejected.incrementAndGet();
+        throw new OutOfStockException(gameId);
+    }
+
+    /**
+     * Method to check whether a game is remembered as sold out, dropping an entry that has
+     * expired or that a restock has outdated
+     * @param gameId The game ID
+     * @param now The current System.nanoTime()
+     * @return true if orders for the game can be rejected without asking the database
+     */
+    private boolean isKnownSoldOut(int gameId, long now) {
+        SoldOut entry = soldOutUntil.get(gameId);
+        if (entry == null) {
+            return false;
+        }
+        if (now - entry.recheckAt < 0 && entry.stockVersion == stockVersion(gameId)) {
+            return true;
+        }
+        soldOutUntil.remove(gameId, entry); // Time to ask the database again
+        return false;
+    }
+
+    private long stockVersion(int gameId) {
+        return stockVersions.getOrDefault(gameId, 0L);
+    }
+
+    /**
+     * Method to forget that a game was sold out, including entries still being written by
+     * orders that read the stock before this change
+     * @param gameId The game whose stock changed
+     */
+    private void stockChanged(int gameId) {
+        stockVersions.merge(gameId, 1L, Long::sum);
+        soldOutUntil.remove(gameId);
+    }
+
+    /**
+     * Method to read a game's stock without locking its row
+     * @param con The connection of the ordering transaction
+     * @param gameId The game ID
+     * @return The copies left, or null if the game is not tracked
+     * @throws SQLException if the game does not exist or the query fails
+     */
+    private static Integer readTrackedStock(Connection con, int gameId) throws SQLException {
+        try (PreparedStatement preparedStatement = con.prepareStatement("SELECT stock FROM games WHERE game_id = ?")) {
+            preparedStatement.setInt(1, gameId); // Set game ID parameter
+            ResultSet resultSet = preparedStatement.executeQuery(); // Execute query
+            if (!resultSet.next()) {
+                throw new SQLException("Game not found: " + gameId);
+            }
+            int copies = resultSet.getInt(1);
+            return resultSet.wasNull() ? null : copies;
+        }
+    }
+
+    /**
+     * Method to reserve copies for a batch of orders with two statements instead of one per
+     * order: the games are locked and read with SELECT ... FOR UPDATE in game ID order, then
+     * every tracked game is decremented once by the copies it gives. Orders are served in the
+     * given order, so earlier orders get the last copies. Must run in the transaction that
+     * inserts the orders, before the inserts. Games the batch sells out are only remembered
+     * as sold out once the caller reports the commit through Reservation.committed(), so a
+     * rolled-back batch leaves no sold-out state behind.
+     * @param con The connection of the ordering transaction
+     * @param gameIds The ordered games, one entry per order
+     * @param count The number of entries to use
+     * @return Whether each order got a copy; not granted if its game is sold out or does not exist
+     * @throws SQLException if a query fails
+     */
+    public Reservation reserveAll(Connection con, int[] gameIds, int count) throws SQLException {
+        boolean[] granted = new boolean[count];
+        boolean[] fromStock = new boolean[count]; // Granted from a tracked stock rather than untracked
+        TreeSet<Integer> games = new TreeSet<>();
+        Map<Integer, Long> versions = new HashMap<>(); // Game ID -> stock version before the stock is read
+        long now = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            if (!versions.containsKey(gameIds[i])) {
+                versions.put(gameIds[i], stockVersion(gameIds[i]));
+            }
+            if (!isKnownSoldOut(gameIds[i], now)) {
+                games.add(gameIds[i]); // Games known to be sold out are not locked
+            }
+        }
+
+        Map<Integer, Integer> stock = new HashMap<>(); // Game ID -> copies left, null if untracked
+        if (!games.isEmpty()) {
+            int size = StatementCache.inListSize(games.size()); // Padded so few distinct statements get cached
+            String sql = "SELECT game_id, stock FROM games WHERE game_id IN (" + StatementCache.placeholders(size)
+                    + ") ORDER BY game_id FOR UPDATE";
+            try (PreparedStatement preparedStatement = con.prepareStatement(sql)) {
+                int parameter = 1;
+                for (int gameId : games) {
+                    preparedStatement.setInt(parameter++, gameId); // Set game ID parameter
+                }
+                while (parameter <= size) {
+                    preparedStatement.setInt(parameter++, games.last()); // Padding repeats the last game
+                }
+                ResultSet resultSet = preparedStatement.executeQuery(); // Execute query
+                while (resultSet.next()) {
+                    int copies = resultSet.getInt(2);
+                    boolean tracked = !resultSet.wasNull();
+                    stock.put(resultSet.getInt(1), tracked ? copies : null);
+                }
+            }
+        }
+
+        TreeMap<Integer, Integer> taken = new TreeMap<>(); // Game ID -> copies reserved, sorted like the locks
+        for (int i = 0; i < count; i++) {
+            int gameId = gameIds[i];
+            if (!stock.containsKey(gameId)) {
+                if (!games.contains(gameId)) {
+                    fastRejected.incrementAndGet();
+                }
+                continue; // Sold out in memory, or no such game
+            }
+            Integer copies = stock.get(gameId);
+            if (copies == null) {
+                untracked.incrementAndGet();
+                granted[i] = true;
+            } else if (copies > 0) {
+                stock.put(gameId, copies - 1);
+                taken.merge(gameId, 1, Integer::sum);
+                reserved.incrementAndGet();
+                granted[i] = true;
+                fromStock[i] = true;
+            } else {
+                rejected.incrementAndGet();
+            }
+        }
+
+        if (!taken.isEmpty()) {
+            try (PreparedStatement preparedStatement = con.prepareStatement(
+                    "UPDATE games SET stock = stock - ? WHERE game_id = ?")) {
+                for (Map.Entry<Integer, Integer> entry : taken.entrySet()) {
+                    preparedStatement.setInt(1, entry.getValue()); // Set quantity parameter
+                    preparedStatement.setInt(2, entry.getKey()); // Set game ID parameter
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch(); // The rows are locked, so stock cannot go below zero
+            }
+        }
+        Map<Integer, Long> soldOut = new HashMap<>();
+        for (Map.Entry<Integer, Integer> entry : stock.entrySet()) {
+            if (entry.getValue() != null && entry.getValue() == 0) {
+                soldOut.put(entry.getKey(), versions.get(entry.getKey()));
+            }
+        }
+        return new Reservation(Arrays.copyOf(gameIds, count), granted, fromStock, soldOut);
+    }
+
+    /**
+     * Method to add copies of a game; an untracked game starts being tracked
+     * @param gameId The game ID
+     * @param quantity The number of copies to add
+     * @return true if the game exists
+     * @throws SQLException if the update fails
+     */
+    public boolean restock(int gameId, int quantity) throws SQLException {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive: " + quantity);
+        }
+        try (Connection con = pool.getConnection();
+             PreparedStatement preparedStatement = con.prepareStatement(
+                     "UPDATE games SET stock = COALESCE(stock, 0) + ? WHERE game_id = ?")) {
+            preparedStatement.setInt(1, quantity); // Set quantity parameter
+            preparedStatement.setInt(2, gameId); // Set game ID parameter
+            boolean updated = preparedStatement.executeUpdate() > 0; // Execute update
+            stockChanged(gameId);
+            return updated;
+        }
+    }
+
+    /**
+     * Method to set the stock of a game
+     * @param gameId The game ID
+     * @param stock The number of copies, or null to stop tracking the game
+     * @return true if the game exists
+     * @throws SQLException if the update fails
+     */
+    public boolean setStock(int gameId, Integer stock) throws SQLException {
+        if (stock != null && stock < 0) {
+            throw new IllegalArgumentException("Stock cannot be negative: " + stock);
+        }
+        try (Connection con = pool.getConnection();
+             PreparedStatement preparedStatement = con.prepareStatement("UPDATE games SET stock = ? WHERE game_id = ?")) {
+            if (stock == null) {
+                preparedStatement.setNull(1, Types.INTEGER);
+            } else {
+                preparedStatement.setInt(1, stock); // Set stock parameter
+            }
+            preparedStatement.setInt(2, gameId); // Set game ID parameter
+            boolean updated = preparedStatement.executeUpdate() > 0; // Execute update
+            stockChanged(gameId);
+            return updated;
+        }
+    }
+
+    /**
+     * Method to read the current stock of a game from the database
+     * @param gameId The game ID
+     * @return The number of copies left, or null if the game is untracked or does not exist
+     * @throws SQLException if the query fails
+     */
+    public Integer getStock(int gameId) throws SQLException {
+        try (Connection con = pool.getConnection();
+             PreparedStatement preparedStatement = con.prepareStatement("SELECT stock FROM games WHERE game_id = ?")) {
+            preparedStatement.setInt(1, gameId); // Set game ID parameter
+            ResultSet resultSet = preparedStatement.executeQuery(); // Execute query
+            if (!resultSet.next()) {
+                return null;
+            }
+            int stock = resultSet.getInt(1);
+            return resultSet.wasNull() ? null : stock;
+        }
+    }
+
+    public long getReservedCount() {
+        return reserved.get();
+    }
+
+    public long getUntrackedCount() {
+        return untracked.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getFastRejectedCount() {
+        return fastRejected.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Inventory[reserved=%d, untracked=%d, rejected=%d, fastRejected=%d]",
+                reserved.get(), untracked.get(), rejected.get(), fastRejected.get());
+    }
+
+    /**
+     * The outcome of reserveAll: which orders got a copy and which games are left without stock
+     */
+    public final class Reservation {
+        private final int[] gameIds; // The ordered games, one entry per order
+        private final boolean[] granted; // Whether each order got a copy
+        private final boolean[] fromStock; // Whether that copy was taken from a tracked stock
+        private final Map<Integer, Long> soldOut; // Games at zero stock after the reservation -> their stock version, not yet remembered
+
+        private Reservation(int[] gameIds, boolean[] granted, boolean[] fromStock, Map<Integer, Long> soldOut) {
+            this.gameIds = gameIds;
+            this.granted = granted;
+            this.fromStock = fromStock;
+            this.soldOut = soldOut;
+        }
+
+        public boolean isGranted(int index) {
+            return granted[index];
+        }
+
+        /**
+         * Method to give back the copy of an order that could not be stored after all, e.g. because
+         * the database refused its insert. Must run in the reserving transaction, which still holds
+         * the game's row lock.
+         * @param con The connection of the reserving transaction
+         * @param index The order's position in the reserved games
+         * @throws SQLException if the update fails
+         */
+        public void release(Connection con, int index) throws SQLException {
+            if (!granted[index]) {
+                throw new IllegalStateException("Order " + index + " holds no copy");
+            }
+            granted[index] = false;
+            if (!fromStock[index]) {
+                return; // Untracked, nothing was taken
+            }
+            try (PreparedStatement preparedStatement = con.prepareStatement(
+                    "UPDATE games SET stock = stock + 1 WHERE game_id = ?")) {
+                preparedStatement.setInt(1, gameIds[index]); // Set game ID parameter
+                preparedStatement.executeUpdate(); // Execute update
+            }
+            reserved.decrementAndGet();
+            soldOut.remove(gameIds[index]); // Has a copy again
+        }
+
+        /**
+         * Method to remember the games this reservation left at zero as sold out. Call it once
+         * the reserving transaction has committed; a rolled-back reservation is simply dropped.
+         * Games restocked since they were read are not remembered.
+         */
+        public void committed() {
+            long recheckAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SOLD_OUT_RECHECK_MILLIS);
+            for (Map.Entry<Integer, Long> game : soldOut.entrySet()) {
+                soldOutUntil.put(game.getKey(), new SoldOut(recheckAt, game.getValue()));
+            }
+        }
+    }
+
+    /**
+     * A game remembered as sold out
+     */
+    private static final class SoldOut {
+        final long recheckAt; // System.nanoTime() after which the database is asked again
+        final long stockVersion; // The game's stock version when its stock was read
+
+        SoldOut(long recheckAt, long stockVersion) {
+            this.recheckAt = recheckAt;
+            this.stockVersion = stockVersion;
+        }
+    }
+
+    /**
+     * Thrown when an order asks for a game that has no copies left
+     */
+    public static class OutOfStockException extends SQLException {
+        private static final long serialVersionUID = 1L;
+
+        private final int gameId; // The sold-out game
+
+        public OutOfStockException(int gameId) {
+            super("Out of stock: game " + gameId);
+            this.gameId = gameId;
+        }
+
+        public int getGameId() {
+            return gameId;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency Histogram
+ *
+ * Lock-free histogram of durations with log-linear buckets: values below 16 microseconds
+ * get one bucket each, and every power of two above that is split into 16 buckets, so any
+ * percentile is accurate to within about 6% while recording is a single atomic increment.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKETS = 16; // Buckets per power of two
+    private static final int SUB_BUCKET_BITS = 4; // log2(SUB_BUCKETS)
+    private static final int MAX_EXPONENT = 40; // Values up to 2^40 microseconds (about 12 days)
+    private static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS); // Samples per bucket
+    private final AtomicLong count = new AtomicLong(); // Number of samples
+    private final AtomicLong sumMicros = new AtomicLong(); // Sum of all samples
+    private final AtomicLong maxMicros = new AtomicLong(); // Largest sample
+
+    /**
+     * Method to record one duration
+     * @param nanos The duration in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1_000);
+        counts.incrementAndGet(bucketOf(micros));
+        count.incrementAndGet();
+        sumMicros.addAndGet(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Method to get the mean of all samples
+     * @return The mean in milliseconds
+     */
+    public double getMeanMillis() {
+        long samples = count.get();
+        return samples == 0 ? 0.0 : sumMicros.get() / (double) samples / 1_000.0;
+    }
+
+    public double getMaxMillis() {
+        return maxMicros.get() / 1_000.0;
+    }
+
+    /**
+     * Method to get a percentile of all samples
+     * @param percentile The percentile between 0 and 100, e.g. 99
+     * @return The upper bound of the bucket holding the percentile, in milliseconds
+     */
+    public double getPercentileMillis(double percentile) {
+        long samples = count.get();
+        if (samples == 0) {
+            return 0.0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(samples * percentile / 100.0));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(bucket), maxMicros.get()) / 1_000.0;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    /**
+     * Method to clear all samples
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts.set(bucket, 0);
+        }
+        count.set(0);
+        sumMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, mean=%.3fms, p50=%.3fms, p99=%.3fms, max=%.3fms",
+                getCount(), getMeanMillis(), getPercentileMillis(50), getPercentileMillis(99), getMaxMillis());
+    }
+
+    private static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        micros = Math.min(micros, (1L << (MAX_EXPONENT + 1)) - 1); // Clamp into the last bucket
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) ((micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return (1L << exponent) + ((long) (subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,780 @@
+package com.example;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.BatchUpdateException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Operation Metrics
+ *
+ * Call counts, error counts and latency histograms (mean, p50, p99, max) for every JDBC
+ * execution and service operation of the game store. JDBC executions are named after their
+ * SQL text with literals replaced by ? and IN lists collapsed, so "jdbc: SELECT * FROM games
+ * WHERE game_id IN (?...)" covers lookups of any size; commits and rollbacks are timed too.
+ * Service operations are named "service.<method>".
+ *
+ * The connection pool owns one instance and times every statement executed on a borrowed
+ * connection. An execution slower than the slow-query threshold is written to System.err, or
+ * to the sink given to setSlowQueryLog, with its duration, row count and SQL text, and the
+ * latest of those lines are kept for JMX.
+ * For a slow query the row count is the number of rows the caller read, so the line is
+ * written once the result set is exhausted or the statement is closed, or at the latest when
+ * the connection goes back to the pool. A failed batch counts the rows the driver reports in
+ * its BatchUpdateException; other failed executions log "rows unknown".
+ *
+ * The statistics can be read through JMX (registerMBean), dumped to a file periodically as
+ * text or JSON (startDump) or printed with toText(). Recording a sample costs two
+ * System.nanoTime() calls, a hash lookup and a few atomic increments, which is negligible
+ * next to a database round trip; setEnabled(false) turns recording off entirely.
+ *
+ * Settings (system properties):
+ *   gamestore.metrics              false disables recording (default true)
+ *   gamestore.slowQueryMillis      Slow-query threshold in milliseconds, negative disables the log (default 250)
+ */
+public class OperationMetrics implements OperationMetricsMXBean, AutoCloseable {
+    private static final int MAX_SQL_TEXTS = 1000; // Distinct SQL strings mapped to statistics before falling back to normalizing every call
+    private static final int MAX_NAME_LENGTH = 300; // Longer operation names are cut
+    private static final int MAX_LOGGED_SQL_LENGTH = 2000; // Longer SQL is cut in the slow-query log
+    private static final int RECENT_SLOW_QUERIES = 100; // Slow-query lines kept for JMX
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN \\( ?\\?( ?, ?\\?)* ?\\)");
+
+    private final ConcurrentHashMap<String, Stats> stats = new ConcurrentHashMap<>(); // Operation name -> statistics
+    private final ConcurrentHashMap<String, Stats> bySql = new ConcurrentHashMap<>(); // Raw SQL text -> statistics of its normalized form
+    private final LongAdder slowQueries = new LongAdder(); // Slow executions logged
+    private final Deque<String> recentSlowQueries = new ArrayDeque<>(); // Latest slow-query lines, guarded by itself
+    private volatile boolean enabled; // Whether anything is recorded
+    private volatile long slowQueryNanos; // Slow-query threshold, negative when the log is off
+    private volatile Consumer<String> slowQueryLog = System.err::println; // Where slow-query lines are written
+
+    private ScheduledExecutorService dumper; // Writes the periodic dump, created by startDump
+    private ObjectName objectName; // Set while registered with the MBean server
+
+    /**
+     * Create the metrics with the settings given by the gamestore.* system properties
+     */
+    public OperationMetrics() {
+        this.enabled = !"false".equalsIgnoreCase(System.getProperty("gamestore.metrics"));
+        setSlowQueryThresholdMillis(Long.getLong("gamestore.slowQueryMillis", 250));
+    }
+
+    // Recording
+
+    /**
+     * Functional interface for a timed operation
+     */
+    public interface Operation<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    /**
+     * Method to run an operation and record its duration and whether it failed
+     * @param name The operation name, e.g. "service.placeOrder"
+     * @param operation The operation
+     * @return The result of the operation
+     * @throws E whatever the operation throws; it is counted as an error
+     */
+    public <T, E extends Exception> T time(String name, Operation<T, E> operation) throws E {
+        if (!enabled) {
+            return operation.run();
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = operation.run();
+            failed = false;
+            return result;
+        } finally {
+            record(name, System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * Method to time the iteration over an iterator. The time spent in hasNext() and next()
+     * is recorded as one sample once the iterator is exhausted or throws.
+     * @param name The operation name
+     * @param iterator The iterator, e.g. a paged query
+     * @return An iterator over the same elements
+     */
+    public <T> Iterator<T> timeIteration(String name, Iterator<T> iterator) {
+        if (!enabled) {
+            return iterator;
+        }
+        return new Iterator<T>() {
+            private long elapsedNanos = 0; // Time spent in the underlying iterator so far
+            private boolean recorded = false;
+
+            @Override
+            public boolean hasNext() {
+                long start = System.nanoTime();
+                boolean failed = true;
+                try {
+                    boolean hasNext = iterator.hasNext();
+                    failed = false;
+                    elapsedNanos += System.nanoTime() - start;
+                    if (!hasNext) {
+                        finish(false);
+                    }
+                    return hasNext;
+                } finally {
+                    if (failed) {
+                        elapsedNanos += System.nanoTime() - start;
+                        finish(true);
+                    }
+                }
+            }
+
+            @Override
+            public T next() {
+                long start = System.nanoTime();
+                boolean failed = true;
+                try {
+                    T next = iterator.next();
+                    failed = false;
+                    return next;
+                } finally {
+                    elapsedNanos += System.nanoTime() - start;
+                    if (failed) {
+                        finish(true);
+                    }
+                }
+            }
+
+            private void finish(boolean failed) {
+                if (!recorded) {
+                    recorded = true;
+                    record(name, elapsedNanos, failed);
+                }
+            }
+        };
+    }
+
+    /**
+     * Method to record one sample of an operation
+     * @param name The operation name
+     * @param nanos The duration
+     * @param failed Whether the operation threw
+     */
+    public void record(String name, long nanos, boolean failed) {
+        if (enabled) {
+            stats(name).record(nanos, 0, failed);
+        }
+    }
+
+    /**
+     * Method to record one execution of a SQL statement and log it if it was slow
+     * @param sql The SQL text as executed
+     * @param nanos The duration
+     * @param rows The rows changed, or -1 if not known (e.g. a failed execution that is not a batch)
+     * @param failed Whether the execution threw
+     */
+    void recordSql(String sql, long nanos, long rows, boolean failed) {
+        sqlStats(sql).record(nanos, Math.max(rows, 0), failed);
+        if (isSlow(nanos)) {
+            logSlowQuery(sql, nanos, rows, failed);
+        }
+    }
+
+    private boolean isSlow(long nanos) {
+        long threshold = slowQueryNanos;
+        return threshold >= 0 && nanos >= threshold;
+    }
+
+    private Stats stats(String name) {
+        Stats existing = stats.get(name); // Plain get first, computeIfAbsent locks even when the key exists
+        return existing != null ? existing : stats.computeIfAbsent(name, Stats::new);
+    }
+
+    private Stats sqlStats(String sql) {
+        String text = sql == null ? "<batch>" : sql;
+        Stats existing = bySql.get(text);
+        if (existing != null) {
+            return existing;
+        }
+        Stats normalized = stats("jdbc: " + normalize(text));
+        if (bySql.size() < MAX_SQL_TEXTS) {
+            bySql.put(text, normalized); // Skip normalizing on the next execution of the same text
+        }
+        return normalized;
+    }
+
+    /**
+     * Method to reduce SQL to its shape: whitespace is collapsed, string and number literals
+     * become ? and IN lists of any length become IN (?...)
+     * @param sql The SQL text
+     * @return The normalized text, at most MAX_NAME_LENGTH characters
+     */
+    static String normalize(String sql) {
+        StringBuilder shape = new StringBuilder(Math.min(sql.length(), MAX_NAME_LENGTH));
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                shape.append(' ');
+            } else if (c == '\'') {
+                i++; // Opening quote
+                while (i < sql.length()) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+                            i += 2; // Doubled quote inside the literal
+                            continue;
+                        }
+                        i++; // Closing quote
+                        break;
+                    }
+                    i++;
+                }
+                shape.append('?');
+            } else if (Character.isDigit(c) && (shape.length() == 0 || !isIdentifierPart(shape.charAt(shape.length() - 1)))) {
+                while (i < sql.length() && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                shape.append('?');
+            } else {
+                shape.append(c);
+                i++;
+            }
+        }
+        String normalized = IN_LIST.matcher(shape.toString().trim()).replaceAll("IN (?...)");
+        return normalized.length() <= MAX_NAME_LENGTH ? normalized : normalized.substring(0, MAX_NAME_LENGTH) + "...";
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private void logSlowQuery(String sql, long nanos, long rows, boolean failed) {
+        String text = sql == null ? "<batch>" : sql.length() <= MAX_LOGGED_SQL_LENGTH ? sql
+                : sql.substring(0, MAX_LOGGED_SQL_LENGTH) + "...";
+        String line = String.format(Locale.ROOT, "Slow query: %.1f ms, %s%s: %s", nanos / 1_000_000.0,
+                rows < 0 ? "rows unknown" : rows + " rows", failed ? ", failed" : "", text);
+        slowQueries.increment();
+        synchronized (recentSlowQueries) {
+            if (recentSlowQueries.size() == RECENT_SLOW_QUERIES) {
+                recentSlowQueries.removeFirst();
+            }
+            recentSlowQueries.addLast(java.time.Instant.now() + " " + line);
+        }
+        slowQueryLog.accept(line);
+    }
+
+    // JDBC instrumentation
+
+    /**
+     * Method to wrap a statement so that every execution on it is recorded
+     * @param statement The statement
+     * @param type The interface to expose: Statement, PreparedStatement or CallableStatement
+     * @param sql The SQL it was prepared with, or null for a plain statement
+     * @param openResults The slow queries of the borrowed connection, finished when it is returned
+     * @return The wrapped statement, or the statement itself if recording is off
+     */
+    Statement wrap(Statement statement, Class<?> type, String sql, OpenResults openResults) {
+        if (!enabled) {
+            return statement;
+        }
+        return (Statement) Proxy.newProxyInstance(
+                OperationMetrics.class.getClassLoader(),
+                new Class<?>[]{type},
+                new MeteredStatement(statement, sql, openResults));
+    }
+
+    /**
+     * Method to count the rows a failed execution changed before it failed
+     * @return The rows of the batch entries that succeeded, or -1 if the driver does not say
+     */
+    private static long rowsOfFailure(Throwable failure) throws SQLException {
+        if (failure instanceof BatchUpdateException) {
+            return rowsOf(((BatchUpdateException) failure).getUpdateCounts(), null); // EXECUTE_FAILED entries count as nothing
+        }
+        return -1;
+    }
+
+    /**
+     * Method to count the rows changed by an execute* call
+     * @return The row count, or -1 if the result does not say
+     */
+    private static long rowsOf(Object result, Statement statement) throws SQLException {
+        if (result instanceof Integer || result instanceof Long) {
+            return Math.max(-1, ((Number) result).longValue());
+        }
+        if (result instanceof int[]) {
+            long rows = 0;
+            for (int count : (int[]) result) {
+                rows += Math.max(0, count); // SUCCESS_NO_INFO counts as nothing
+            }
+            return rows;
+        }
+        if (result instanceof long[]) {
+            long rows = 0;
+            for (long count : (long[]) result) {
+                rows += Math.max(0, count);
+            }
+            return rows;
+        }
+        if (Boolean.FALSE.equals(result)) {
+            return Math.max(-1, statement.getUpdateCount()); // execute() that did not return a result set
+        }
+        return -1;
+    }
+
+    /**
+     * Caller-facing view of a statement that times its executions
+     */
+    private final class MeteredStatement implements InvocationHandler {
+        private final Statement statement;
+        private final String sql; // Prepared SQL, null for plain statements
+        private final OpenResults openResults; // Slow queries of the borrowed connection
+        private SlowQuery pending; // Slow query whose result set is still being read
+
+        MeteredStatement(Statement statement, String sql, OpenResults openResults) {
+            this.statement = statement;
+            this.sql = sql;
+            this.openResults = openResults;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    finishPending();
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "MeteredStatement[" + statement + "]";
+                default:
+                    if (name.startsWith("execute")) {
+                        return execute(method, args);
+                    }
+            }
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause(); // Surface the driver's own exception
+            }
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            finishPending();
+            String text = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                recordSql(text, System.nanoTime() - start, rowsOfFailure(e.getCause()), true);
+                throw e.getCause();
+            }
+            long nanos = System.nanoTime() - start;
+            if (result instanceof ResultSet && isSlow(nanos)) {
+                sqlStats(text).record(nanos, 0, false);
+                pending = new SlowQuery(text, nanos); // Logged once the caller has read the rows
+                openResults.add(pending); // Or when the connection is returned with the result set still open
+                return pending.wrap((ResultSet) result);
+            }
+            recordSql(text, nanos, rowsOf(result, statement), false);
+            return result;
+        }
+
+        private void finishPending() {
+            if (pending != null) {
+                pending.finish();
+                openResults.remove(pending);
+                pending = null;
+            }
+        }
+    }
+
+    /**
+     * A slow query that is logged with the number of rows read from its result set
+     */
+    private final class SlowQuery implements InvocationHandler {
+        private final String sql;
+        private final long nanos; // Execution time
+        private ResultSet resultSet;
+        private long rows = 0; // Rows read so far
+        private boolean logged = false;
+
+        SlowQuery(String sql, long nanos) {
+            this.sql = sql;
+            this.nanos = nanos;
+        }
+
+        ResultSet wrap(ResultSet resultSet) {
+            this.resultSet = resultSet;
+            return (ResultSet) Proxy.newProxyInstance(
+                    OperationMetrics.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class},
+                    this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    finish();
+                    break;
+                default:
+                    break;
+            }
+            Object result;
+            try {
+                result = method.invoke(resultSet, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause(); // Surface the driver's own exception
+            }
+            if ("next".equals(method.getName())) {
+                if (Boolean.TRUE.equals(result)) {
+                    rows++;
+                } else {
+                    finish();
+                }
+            }
+            return result;
+        }
+
+        void finish() {
+            if (!logged) {
+                logged = true;
+                logSlowQuery(sql, nanos, rows, false);
+            }
+        }
+    }
+
+    /**
+     * The slow queries of one borrowed connection whose result sets are still open. The pool
+     * finishes them when the connection is returned, so a result set that was neither read to
+     * the end nor closed is still logged, with the rows read so far. Used by the borrowing thread only.
+     */
+    static final class OpenResults {
+        private final List<SlowQuery> queries = new ArrayList<>();
+
+        private void add(SlowQuery query) {
+            queries.add(query);
+        }
+
+        private void remove(SlowQuery query) {
+            queries.remove(query);
+        }
+
+        /**
+         * Method to log every slow query still waiting for its result set to be read
+         */
+        void finishAll() {
+            for (SlowQuery query : queries) {
+                query.finish();
+            }
+            queries.clear();
+        }
+    }
+
+    // Settings
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public long getSlowQueryThresholdMillis() {
+        return slowQueryNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(slowQueryNanos);
+    }
+
+    @Override
+    public void setSlowQueryThresholdMillis(long millis) {
+        this.slowQueryNanos = millis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Method to send slow-query lines somewhere other than System.err, e.g. an application
+     * log. Slow queries are still counted and kept for JMX.
+     * @param log Receives each line; called on the thread that ran the query
+     */
+    public void setSlowQueryLog(Consumer<String> log) {
+        this.slowQueryLog = Objects.requireNonNull(log);
+    }
+
+    // Reading
+
+    @Override
+    public long getSlowQueryCount() {
+        return slowQueries.sum();
+    }
+
+    @Override
+    public List<String> getRecentSlowQueries() {
+        synchronized (recentSlowQueries) {
+            return new ArrayList<>(recentSlowQueries);
+        }
+    }
+
+    /**
+     * Method to get the statistics of one operation
+     * @param name The operation name
+     * @return The statistics, or null if the operation has not been recorded
+     */
+    public Stats getStats(String name) {
+        return stats.get(name);
+    }
+
+    @Override
+    public List<Stats> getOperations() {
+        List<Stats> operations = new ArrayList<>(stats.values());
+        operations.sort(Comparator.comparing(Stats::getName));
+        return operations;
+    }
+
+    @Override
+    public void reset() {
+        bySql.clear();
+        stats.clear();
+        slowQueries.reset();
+        synchronized (recentSlowQueries) {
+            recentSlowQueries.clear();
+        }
+    }
+
+    /**
+     * Method to format all statistics as a table
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "%-60s %10s %8s %7s %10s %9s %9s %9s %9s\n",
+                "Operation", "Calls", "Errors", "Err %", "Rows", "Mean ms", "p50 ms", "p99 ms", "Max ms"));
+        for (Stats operation : getOperations()) {
+            String name = operation.getName();
+            text.append(String.format(Locale.ROOT, "%-60s %10d %8d %7.2f %10d %9.3f %9.3f %9.3f %9.3f\n",
+                    name.length() <= 60 ? name : name.substring(0, 57) + "...", operation.getCount(),
+                    operation.getErrorCount(), operation.getErrorRate() * 100.0, operation.getRowCount(),
+                    operation.getMeanMillis(), operation.getP50Millis(), operation.getP99Millis(), operation.getMaxMillis()));
+        }
+        text.append(String.format(Locale.ROOT, "Slow queries: %d (threshold %s)\n", getSlowQueryCount(),
+                slowQueryNanos < 0 ? "off" : getSlowQueryThresholdMillis() + " ms"));
+        return text.toString();
+    }
+
+    @Override
+    public String getJson() {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"timestamp\": ").append(quote(java.time.Instant.now().toString())).append(",\n");
+        json.append("  \"enabled\": ").append(enabled).append(",\n");
+        json.append("  \"slowQueryThresholdMillis\": ").append(getSlowQueryThresholdMillis()).append(",\n");
+        json.append("  \"slowQueries\": ").append(getSlowQueryCount()).append(",\n");
+        json.append("  \"operations\": [");
+        List<Stats> operations = getOperations();
+        for (int i = 0; i < operations.size(); i++) {
+            Stats operation = operations.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append(String.format(Locale.ROOT, "    {\"name\": %s, \"calls\": %d, \"errors\": %d, \"errorRate\": %.6f, " +
+                            "\"rows\": %d, \"meanMs\": %.3f, \"p50Ms\": %.3f, \"p99Ms\": %.3f, \"maxMs\": %.3f}",
+                    quote(operation.getName()), operation.getCount(), operation.getErrorCount(), operation.getErrorRate(),
+                    operation.getRowCount(), operation.getMeanMillis(), operation.getP50Millis(),
+                    operation.getP99Millis(), operation.getMaxMillis()));
+        }
+        json.append(operations.isEmpty() ? "]\n" : "\n  ]\n");
+        return json.append("}\n").toString();
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    // Publishing
+
+    /**
+     * Method to register the metrics with the platform MBean server
+     * @param name The name key of the MBean, e.g. "gamestore"
+     * @return The object name the metrics are registered under
+     */
+    public synchronized ObjectName registerMBean(String name) {
+        if (objectName != null) {
+            return objectName;
+        }
+        try {
+            ObjectName candidate = new ObjectName("com.example:type=OperationMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, candidate);
+            objectName = candidate;
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register metrics MBean " + name, e);
+        }
+    }
+
+    /**
+     * Method to write the statistics to a file periodically. Each dump replaces the file, so a
+     * monitoring agent always reads one complete document.
+     * @param file The file to write
+     * @param periodMillis The time between dumps
+     * @param json true for JSON, false for the text table
+     */
+    public synchronized void startDump(Path file, long periodMillis, boolean json) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("Dump period must be positive: " + periodMillis);
+        }
+        if (dumper != null) {
+            dumper.shutdownNow();
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "operation-metrics-dump");
+            thread.setDaemon(true); // Never keep the JVM alive just for dumping
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> dump(file, json), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Method to write the statistics to a file once
+     * @param file The file to replace
+     * @param json true for JSON, false for the text table
+     */
+    public void dump(Path file, boolean json) {
+        try {
+            Path absolute = file.toAbsolutePath();
+            Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+            Files.write(temp, (json ? getJson() : toText()).getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot write metrics to " + file + ": " + e);
+        }
+    }
+
+    /**
+     * Method to stop the periodic dump and unregister the MBean
+     */
+    @Override
+    public synchronized void close() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+        if (objectName != null) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                if (server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+            } catch (JMException e) {
+                // Nothing useful to do, the metrics are going away
+            }
+            objectName = null;
+        }
+    }
+
+    /**
+     * Statistics of one operation
+     */
+    public static final class Stats {
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram(); // One sample per call, failed calls included
+        private final LongAdder errors = new LongAdder(); // Calls that threw
+        private final LongAdder rows = new LongAdder(); // Rows changed by updates and batches
+
+        Stats(String name) {
+            this.name = name;
+        }
+
+        void record(long nanos, long rowCount, boolean failed) {
+            latency.record(nanos);
+            if (failed) {
+                errors.increment();
+            }
+            if (rowCount > 0) {
+                rows.add(rowCount);
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return latency.getCount();
+        }
+
+        public long getErrorCount() {
+            return errors.sum();
+        }
+
+        /**
+         * @return The share of calls that failed, between 0.0 and 1.0
+         */
+        public double getErrorRate() {
+            long calls = latency.getCount();
+            return calls == 0 ? 0.0 : Math.min(1.0, errors.sum() / (double) calls);
+        }
+
+        public long getRowCount() {
+            return rows.sum();
+        }
+
+        public double getMeanMillis() {
+            return latency.getMeanMillis();
+        }
+
+        public double getP50Millis() {
+            return latency.getPercentileMillis(50);
+        }
+
+        public double getP99Millis() {
+            return latency.getPercentileMillis(99);
+        }
+
+        public double getMaxMillis() {
+            return latency.getMaxMillis();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s[calls=%d, errors=%d, mean=%.3f ms, p99=%.3f ms]",
+                    name, getCount(), getErrorCount(), getMeanMillis(), getP99Millis());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example;
+
+import java.util.List;
+
+/**
+ * Management interface of OperationMetrics, registered with the platform MBean server under
+ * com.example:type=OperationMetrics. JConsole and other JMX clients show each operation as a
+ * row of open data with its counters and latency percentiles.
+ */
+public interface OperationMetricsMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return The slow-query threshold in milliseconds, negative if the slow-query log is off
+     */
+    long getSlowQueryThresholdMillis();
+
+    void setSlowQueryThresholdMillis(long millis);
+
+    long getSlowQueryCount();
+
+    /**
+     * @return The latest slow-query log lines, oldest first
+     */
+    List<String> getRecentSlowQueries();
+
+    /**
+     * @return The statistics of every operation, ordered by name
+     */
+    List<OperationMetrics.Stats> getOperations();
+
+    /**
+     * @return All statistics as a JSON document
+     */
+    String getJson();
+
+    /**
+     * Method to clear all statistics and the slow-query history
+     */
+    void reset();
+}
@@ -0,0 +1,534 @@
+package com.example;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.sql.Date; // Import Date from java.sql package (to avoid conflict with java.util.Date)
+import java.util.*;
+
+/**
+ * Order Importer
+ *
+ * Bulk order ingestion for backfills and flash sales. Customers are resolved by name in
+ * bulk, games are checked against the catalog cache, and the remaining rows are inserted
+ * with JDBC batching inside explicit transactions instead of one auto-committed round
+ * trip per order. Every order takes a copy from the game's stock like an interactive order;
+ * orders for sold-out games are reported as failed rows.
+ *
+ * Bad rows never abort the load. Rows that fail validation are reported up front; if a
+ * batch is rejected by the database its transaction is rolled back and replayed row by
+ * row so only the offending rows are reported and the rest are still inserted. Other
+ * failures, such as a lost connection, roll back the open transaction and end the import.
+ *
+ * Customer names are matched case-insensitively, like the name lookups of the interactive
+ * menus. The lookup relies on the database comparing names without case, as MySQL's default
+ * collation and H2 with IGNORECASE=TRUE do; under a case-sensitive collation only names with
+ * the stored case are found. A name shared by several customers does not say who ordered,
+ * so its rows are reported as failed.
+ *
+ * File format for importFile: one order per line as customer_name,game_id[,order_date]
+ * with the date as yyyy-mm-dd. Fields may be quoted as OrderReport writes them, with a
+ * doubled quote standing for a quote, so names containing commas round-trip. Blank lines,
+ * lines starting with # and a header line starting with customer_name are skipped.
+ */
+public class OrderImporter {
+    private static final int LOOKUP_CHUNK_SIZE = 512; // Names per IN (...) lookup query, a padded list size
+    private static final int FILE_CHUNK_SIZE = 10_000; // Orders validated and inserted together, at least
+
+    private static final String INSERT_SQL = "INSERT INTO orders (customer_id, game_id, order_date) VALUES (?, ?, ?)";
+
+    private final ConnectionPool pool; // Source of database connections
+    private final CatalogCache catalog; // Used to check that games exist
+    private final Inventory inventory; // Stock reserved in the same transactions as the inserts
+    private final SalesAnalytics analytics; // Rollups updated in the same transactions as the inserts
+    private final int batchSize; // Rows per executeBatch call
+    private final int commitInterval; // Rows per transaction, rounded up to whole batches
+    private final int chunkSize; // Orders ingested together: whole transactions, at least FILE_CHUNK_SIZE
+
+    /**
+     * Create an importer
+     * @param pool The connection pool
+     * @param catalog The catalog cache used to validate game IDs
+     * @param inventory The stock to reserve a copy from for every imported order
+     * @param analytics The sales rollups to update with the imported orders
+     * @param batchSize Rows sent per JDBC batch
+     * @param commitInterval Rows inserted per transaction, rounded up to whole batches; this
+     *        many orders are held in memory at once when it exceeds 10,000
+     */
+    public OrderImporter(ConnectionPool pool, CatalogCache catalog, Inventory inventory, SalesAnalytics analytics,
+                         int batchSize, int commitInterval) {
+        if (batchSize <= 0 || commitInterval <= 0) {
+            throw new IllegalArgumentException("Batch size and commit interval must be positive");
+        }
+        this.pool = pool;
+        this.catalog = catalog;
+        this.inventory = inventory;
+        this.analytics = analytics;
+        this.batchSize = batchSize;
+        this.commitInterval = commitInterval;
+        long transactionRows = ((long) commitInterval + batchSize - 1) / batchSize * batchSize;
+        long transactions = Math.max(1, (FILE_CHUNK_SIZE + transactionRows - 1) / transactionRows);
+        this.chunkSize = (int) Math.min(Integer.MAX_VALUE - 8, transactions * transactionRows); // Chunks never split a transaction
+    }
+
+    /**
+     * Method to import orders given in memory
+     * @param orders The orders to insert; the row number of each order is its position starting at 1
+     * @return The number of inserted rows and the rows that failed
+     * @throws SQLException if the database cannot be reached at all
+     */
+    public ImportResult importOrders(List<OrderRequest> orders) throws SQLException {
+        ImportResult result = new ImportResult();
+        long start = System.nanoTime();
+        for (int from = 0; from < orders.size(); from += chunkSize) {
+            List<OrderRequest> chunk = orders.subList(from, Math.min(orders.size(), from + chunkSize));
+            ingest(chunk, from + 1, result);
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Method to import orders from a CSV file without loading the whole file into memory
+     * @param file The file to read
+     * @return The number of inserted rows and the lines that failed
+     * @throws IOException if the file cannot be read
+     * @throws SQLException if the database cannot be reached at all
+     */
+    public ImportResult importFile(Path file) throws IOException, SQLException {
+        ImportResult result = new ImportResult();
+        long start = System.nanoTime();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<OrderRequest> chunk = new ArrayList<>();
+            int firstLine = 1; // Line number of chunk.get(0)
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")
+                        || (lineNumber == 1 && trimmed.toLowerCase(Locale.ROOT).startsWith("customer_name"))) {
+                    chunk.add(null); // Keep positions aligned with line numbers
+                } else {
+                    try {
+                        chunk.add(parseLine(trimmed));
+                    } catch (IllegalArgumentException e) {
+                        chunk.add(null);
+                        result.failures.add(new RowFailure(lineNumber, "Invalid line: " + e.getMessage()));
+                    }
+                }
+
+                if (chunk.size() == chunkSize) {
+                    ingest(chunk, firstLine, result);
+                    firstLine += chunk.size();
+                    chunk.clear();
+                }
+            }
+            ingest(chunk, firstLine, result);
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Method to parse one CSV line
+     * @param line The trimmed line
+     * @return The order request
+     */
+    private static OrderRequest parseLine(String line) {
+        List<String> fields = splitFields(line);
+        if (fields.size() < 2 || fields.size() > 3) {
+            throw new IllegalArgumentException("expected customer_name,game_id[,order_date]");
+        }
+        String customerName = fields.get(0);
+        int gameId = Integer.parseInt(fields.get(1)); // NumberFormatException is an IllegalArgumentException
+        Date orderDate = fields.size() == 3 && !fields.get(2).isEmpty() ? Date.valueOf(fields.get(2)) : null;
+        return new OrderRequest(customerName, gameId, orderDate);
+    }
+
+    /**
+     * Method to split a CSV line into fields. Unquoted fields are trimmed; a quoted field is
+     * taken as written, with "" read as one quote, the reverse of OrderReport.csv.
+     * @param line The line
+     * @return The fields
+     * @throws IllegalArgumentException if a quote is not closed or stray text follows it
+     */
+    static List<String> splitFields(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        int i = 0;
+        while (true) {
+            while (i < line.length() && line.charAt(i) == ' ') {
+                i++;
+            }
+            if (i < line.length() && line.charAt(i) == '"') {
+                for (i++; ; i++) {
+                    if (i == line.length()) {
+                        throw new IllegalArgumentException("unterminated quoted field");
+                    }
+                    char c = line.charAt(i);
+                    if (c == '"') {
+                        if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                            i++; // Doubled quote
+                        } else {
+                            break;
+                        }
+                    }
+                    field.append(c);
+                }
+                i++; // Closing quote
+                while (i < line.length() && line.charAt(i) == ' ') {
+                    i++;
+                }
+                if (i < line.length() && line.charAt(i) != ',') {
+                    throw new IllegalArgumentException("text after a quoted field");
+                }
+            } else {
+                int end = line.indexOf(',', i);
+                if (end < 0) {
+                    end = line.length();
+                }
+                String value = line.substring(i, end);
+                if (value.indexOf('"') >= 0) {
+                    throw new IllegalArgumentException("quote inside an unquoted field");
+                }
+                field.append(value.trim());
+                i = end;
+            }
+            fields.add(field.toString());
+            field.setLength(0);
+            if (i >= line.length()) {
+                return fields;
+            }
+            i++; // Separator
+        }
+    }
+
+    /**
+     * Method to validate and insert one chunk of orders
+     * @param orders The orders; null entries are skipped
+     * @param firstRow The row number of orders.get(0)
+     * @param result The result to add to
+     * @throws SQLException if the database cannot be reached at all
+     */
+    private void ingest(List<OrderRequest> orders, int firstRow, ImportResult result) throws SQLException {
+        // Resolve all customer names of the chunk with a few IN (...) queries
+        Set<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER); // One lookup per name in any case
+        for (OrderRequest order : orders) {
+            if (order != null) {
+                names.add(order.getCustomerName());
+            }
+        }
+        Map<String, List<Integer>> customerIds = resolveCustomers(names);
+
+        // Validate rows and build the insert list
+        Date today = new Date(System.currentTimeMillis());
+        List<int[]> rows = new ArrayList<>(); // {rowNumber, customerId, gameId}
+        List<Date> dates = new ArrayList<>();
+        for (int i = 0; i < orders.size(); i++) {
+            OrderRequest order = orders.get(i);
+            if (order == null) {
+                continue;
+            }
+            int rowNumber = firstRow + i;
+            List<Integer> matches = customerIds.get(order.getCustomerName());
+            if (matches == null) {
+                result.failures.add(new RowFailure(rowNumber, "Customer not found: " + order.getCustomerName()));
+            } else if (matches.size() > 1) {
+                result.failures.add(new RowFailure(rowNumber, "Customer name is ambiguous: " + order.getCustomerName()
+                        + " (customers " + matches + ")"));
+            } else if (catalog.getGame(order.getGameId()) == null) {
+                result.failures.add(new RowFailure(rowNumber, "Game not found: " + order.getGameId()));
+            } else {
+                rows.add(new int[]{rowNumber, matches.get(0), order.getGameId()});
+                dates.add(order.getOrderDate() != null ? order.getOrderDate() : today);
+            }
+        }
+
+        if (!rows.isEmpty()) {
+            insertRows(rows, dates, result);
+        }
+    }
+
+    /**
+     * Method to look up customer IDs for a set of names
+     * @param names The customer names
+     * @return The IDs of the customers with each name that exists, in ID order, keyed case-insensitively
+     * @throws SQLException if a query fails
+     */
+    private Map<String, List<Integer>> resolveCustomers(Set<String> names) throws SQLException {
+        // Keyed without case like the IN (...) match, which ignores case under the collations named above
+        Map<String, List<Integer>> customerIds = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        List<String> pending = new ArrayList<>(names);
+        try (Connection con = pool.getConnection()) {
+            for (int from = 0; from < pending.size(); from += LOOKUP_CHUNK_SIZE) {
+                List<String> chunk = pending.subList(from, Math.min(pending.size(), from + LOOKUP_CHUNK_SIZE));
+                int size = StatementCache.inListSize(chunk.size()); // Padded so few distinct statements get cached
+                String sql = "SELECT customer_id, customer_name FROM customers WHERE customer_name IN ("
+                        + StatementCache.placeholders(size) + ") ORDER BY customer_id";
+
+                try (PreparedStatement preparedStatement = con.prepareStatement(sql)) {
+                    for (int i = 0; i < size; i++) {
+                        preparedStatement.setString(i + 1, chunk.get(Math.min(i, chunk.size() - 1))); // Set customer name parameter, padding repeats the last
+                    }
+                    ResultSet resultSet = preparedStatement.executeQuery(); // Execute query
+                    while (resultSet.next()) {
+                        customerIds.computeIfAbsent(resultSet.getString("customer_name"), name -> new ArrayList<>())
+                                .add(resultSet.getInt("customer_id"));
+                    }
+                }
+            }
+        }
+        return customerIds;
+    }
+
+    /**
+     * Method to insert validated rows with batching and periodic commits. Each transaction
+     * first reserves stock for all of its rows with one reserveAll call, so the game rows are
+     * always locked in game ID order and concurrent imports cannot deadlock on them; rows that
+     * get no copy are reported as failures.
+     * @param rows The rows as {rowNumber, customerId, gameId}
+     * @param dates The order date of each row
+     * @param result The result to add to
+     * @throws SQLException if the connection itself fails
+     */
+    private void insertRows(List<int[]> rows, List<Date> dates, ImportResult result) throws SQLException {
+        try (Connection con = pool.getConnection()) {
+            con.setAutoCommit(false); // The pool restores auto-commit when the connection is returned
+            try (PreparedStatement preparedStatement = con.prepareStatement(INSERT_SQL)) {
+                int transactionRows = (int) Math.min(rows.size(), ((long) commitInterval + batchSize - 1) / batchSize * batchSize);
+                int[] soldGames = new int[transactionRows]; // Rows of the open transaction that went in
+                Date[] soldDates = new Date[transactionRows];
+                for (int from = 0; from < rows.size(); from += transactionRows) {
+                    int to = Math.min(rows.size(), from + transactionRows);
+                    List<RowFailure> failures = new ArrayList<>();
+                    Inventory.Reservation reservation = reserve(con, rows, from, to, failures);
+                    int sold = insertGranted(con, preparedStatement, rows, dates, from, to, reservation, failures,
+                            soldGames, soldDates);
+
+                    // Rollups once per transaction: one sorted pass over the keys keeps the lock order
+                    // the same in every transaction, so concurrent imports cannot deadlock on them
+                    analytics.recordOrders(con, soldGames, soldDates, sold);
+                    con.commit();
+                    reservation.committed(); // Sold-out state only for stock that really is gone
+                    result.inserted += sold;
+                    result.failures.addAll(failures);
+                }
+            } catch (SQLException e) {
+                try {
+                    con.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure); // Keep the original cause, e.g. a dropped connection
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Method to reserve stock for the rows of one transaction; earlier rows get the last copies
+     * @param failures Gets a failure for every row that got no copy
+     */
+    private Inventory.Reservation reserve(Connection con, List<int[]> rows, int from, int to, List<RowFailure> failures)
+            throws SQLException {
+        int[] gameIds = new int[to - from];
+        for (int i = from; i < to; i++) {
+            gameIds[i - from] = rows.get(i)[2];
+        }
+        Inventory.Reservation reservation = inventory.reserveAll(con, gameIds, gameIds.length);
+        for (int i = from; i < to; i++) {
+            if (!reservation.isGranted(i - from)) {
+                failures.add(new RowFailure(rows.get(i)[0], "Out of stock: game " + rows.get(i)[2]));
+            }
+        }
+        return reservation;
+    }
+
+    /**
+     * Method to insert the rows of one transaction that got a copy, in batches. Each batch runs
+     * under its own savepoint, so a refused batch is rolled back and replayed row by row on its
+     * own while the batches before it stay applied.
+     * @return The number of inserted rows; their game IDs and dates are written to soldGames and soldDates
+     */
+    private int insertGranted(Connection con, PreparedStatement preparedStatement, List<int[]> rows, List<Date> dates,
+                              int from, int to, Inventory.Reservation reservation, List<RowFailure> failures,
+                              int[] soldGames, Date[] soldDates) throws SQLException {
+        int sold = 0;
+        int batchStart = from;
+        while (batchStart < to) {
+            int batchEnd = batchStart;
+            int batched = 0;
+            Savepoint savepoint = con.setSavepoint();
+            try {
+                for (; batchEnd < to && batched < batchSize; batchEnd++) {
+                    if (reservation.isGranted(batchEnd - from)) {
+                        bindRow(preparedStatement, rows.get(batchEnd), dates.get(batchEnd));
+                        preparedStatement.addBatch();
+                        batched++;
+                    }
+                }
+                if (batched > 0) {
+                    preparedStatement.executeBatch(); // One round trip for the whole batch
+                }
+                for (int i = batchStart; i < batchEnd; i++) {
+                    if (reservation.isGranted(i - from)) {
+                        soldGames[sold] = rows.get(i)[2];
+                        soldDates[sold++] = dates.get(i);
+                    }
+                }
+            } catch (SQLException e) {
+                if (!isRowFailure(e)) {
+                    throw e; // Not caused by the rows, replaying them would not help
+                }
+                preparedStatement.clearBatch();
+                con.rollback(savepoint); // Undo whatever part of the batch was applied; the reservation stays
+                sold = insertOneByOne(con, preparedStatement, rows, dates, from, batchStart, batchEnd, reservation,
+                        failures, soldGames, soldDates, sold);
+            }
+            con.releaseSavepoint(savepoint);
+            batchStart = batchEnd;
+        }
+        return sold;
+    }
+
+    /**
+     * Method to replay a refused batch row by row so only the bad rows are reported. A refused
+     * row gives its copy back to the stock.
+     * @return The number of inserted rows so far; their game IDs and dates are written to soldGames and soldDates
+     */
+    private int insertOneByOne(Connection con, PreparedStatement preparedStatement, List<int[]> rows, List<Date> dates,
+                               int from, int batchStart, int batchEnd, Inventory.Reservation reservation,
+                               List<RowFailure> failures, int[] soldGames, Date[] soldDates, int sold) throws SQLException {
+        for (int i = batchStart; i < batchEnd; i++) {
+            if (!reservation.isGranted(i - from)) {
+                continue; // Already reported as out of stock
+            }
+            Savepoint savepoint = con.setSavepoint(); // Some databases abort the transaction on error
+            try {
+                bindRow(preparedStatement, rows.get(i), dates.get(i));
+                preparedStatement.executeUpdate();
+                soldGames[sold] = rows.get(i)[2];
+                soldDates[sold++] = dates.get(i);
+            } catch (SQLException e) {
+                if (!isRowFailure(e)) {
+                    throw e;
+                }
+                con.rollback(savepoint);
+                reservation.release(con, i - from); // Later transactions may sell the copy
+                failures.add(new RowFailure(rows.get(i)[0], e.getMessage()));
+            }
+            con.releaseSavepoint(savepoint);
+        }
+        return sold;
+    }
+
+    /**
+     * Method to tell a failure caused by the rows themselves (a rejected batch, a constraint
+     * violation or bad data) from one of the connection or server
+     */
+    private static boolean isRowFailure(SQLException e) {
+        String state = e.getSQLState();
+        if (state != null && state.startsWith("08")) {
+            return false; // Connection exception, even when reported for a batch
+        }
+        return e instanceof BatchUpdateException || e instanceof SQLIntegrityConstraintViolationException
+                || e instanceof SQLDataException || state != null && (state.startsWith("22") || state.startsWith("23"));
+    }
+
+    private static void bindRow(PreparedStatement preparedStatement, int[] row, Date orderDate) throws SQLException {
+        preparedStatement.setInt(1, row[1]); // Set customer ID parameter
+        preparedStatement.setInt(2, row[2]); // Set game ID parameter
+        preparedStatement.setDate(3, orderDate); // Set order date parameter
+    }
+
+    /**
+     * One order to import
+     */
+    public static final class OrderRequest {
+        private final String customerName; // Name of an existing customer
+        private final int gameId; // ID of an existing game
+        private final Date orderDate; // Order date, or null for today
+
+        public OrderRequest(String customerName, int gameId, Date orderDate) {
+            this.customerName = customerName;
+            this.gameId = gameId;
+            this.orderDate = orderDate;
+        }
+
+        public String getCustomerName() {
+            return customerName;
+        }
+
+        public int getGameId() {
+            return gameId;
+        }
+
+        public Date getOrderDate() {
+            return orderDate;
+        }
+    }
+
+    /**
+     * A row that could not be imported
+     */
+    public static final class RowFailure {
+        private final int rowNumber; // Position in the input list or line number in the file
+        private final String reason; // Why the row was rejected
+
+        public RowFailure(int rowNumber, String reason) {
+            this.rowNumber = rowNumber;
+            this.reason = reason;
+        }
+
+        public int getRowNumber() {
+            return rowNumber;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "Row " + rowNumber + ": " + reason;
+        }
+    }
+
+    /**
+     * Outcome of an import
+     */
+    public static final class ImportResult {
+        private int inserted = 0; // Rows inserted
+        private final List<RowFailure> failures = new ArrayList<>(); // Rows rejected
+        private long elapsedNanos = 0; // Wall-clock time of the import
+
+        public int getInserted() {
+            return inserted;
+        }
+
+        public List<RowFailure> getFailures() {
+            return failures;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Method to get the insert throughput of the import
+         * @return Inserted orders per second
+         */
+        public double getOrdersPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : inserted / (elapsedNanos / 1_000_000_000.0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d orders imported, %d failed in %.1f ms (%.0f orders/s)",
+                    inserted, failures.size(), elapsedNanos / 1_000_000.0, getOrdersPerSecond());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Order Load Test
+ *
+ * Drives the OrderProcessor with 1, 8 and 64 concurrent producers against an existing
+ * database (it needs at least one customer and one game) and prints the sustained
+ * orders/second and latency percentiles for each run. Every order it places is real, so the
+ * database has to be named explicitly; use a seeded test copy, never production.
+ *
+ * Usage: OrderLoadTest jdbcUrl [user] [password] [secondsPerRun]
+ */
+public class OrderLoadTest {
+    private static final int[] PRODUCER_COUNTS = {1, 8, 64}; // Concurrency levels to measure
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: OrderLoadTest jdbcUrl [user] [password] [secondsPerRun]");
+            System.out.println("Every order placed is real; point it at a test database.");
+            return;
+        }
+        String url = args[0];
+        String user = args.length > 1 ? args[1] : "root";
+        String pass = args.length > 2 ? args[2] : "root";
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        try (ConnectionPool pool = new ConnectionPool(url, user, pass, Integer.getInteger("gamestore.poolSize", 16))) {
+            CatalogCache catalog = new CatalogCache(pool);
+            CustomerIndex customerIndex = new CustomerIndex(pool);
+            SalesAnalytics analytics = new SalesAnalytics(pool, catalog);
+            Inventory inventory = new Inventory(pool);
+
+            List<Game> games = catalog.getGames();
+            List<Customer> customers = customerIndex.findByNamePrefix("", 1000);
+            if (games.isEmpty() || customers.isEmpty()) {
+                System.out.println("The database needs at least one customer and one game.");
+                return;
+            }
+
+            System.out.printf("%-10s %-12s %-12s %-12s %-12s %-10s\n", "Producers", "Orders/s", "p50 (ms)", "p99 (ms)", "Max (ms)", "Failed");
+            for (int producers : PRODUCER_COUNTS) {
+                run(pool, catalog, customerIndex, analytics, inventory, customers, games, producers, seconds);
+            }
+            System.out.println(pool);
+        }
+    }
+
+    /**
+     * Method to run one load level and print its results
+     */
+    private static void run(ConnectionPool pool, CatalogCache catalog, CustomerIndex customerIndex, SalesAnalytics analytics, Inventory inventory,
+                            List<Customer> customers, List<Game> games, int producers, int seconds)
+            throws InterruptedException {
+        OrderProcessor processor = new OrderProcessor(pool, customerIndex, catalog, analytics, inventory, producers * 4);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long start = System.nanoTime();
+
+        Thread[] threads = new Thread[producers];
+        for (int i = 0; i < producers; i++) {
+            final long seed = i;
+            threads[i] = new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    while (System.nanoTime() < deadline) {
+                        Customer customer = customers.get(random.nextInt(customers.size()));
+                        Game game = games.get(random.nextInt(games.size()));
+                        processor.submit(customer.getCustomerId(), game.getGameId()); // Blocks when the in-flight limit is reached
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "producer-" + i);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        processor.close(); // Wait for the orders still in flight
+        double elapsed = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        LatencyHistogram latency = processor.getLatency();
+        System.out.printf("%-10d %-12.1f %-12.3f %-12.3f %-12.3f %-10d\n", producers, processor.getCompletedCount() / elapsed,
+                latency.getPercentileMillis(50), latency.getPercentileMillis(99), latency.getMaxMillis(),
+                processor.getFailedCount());
+    }
+}
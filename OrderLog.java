@@ -0,0 +1,660 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.sql.Date; // Import Date from java.sql package (to avoid conflict with java.util.Date)
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Order Log
+ *
+ * Write-behind path for orders. accept() appends an order to a local memory-mapped log and
+ * returns as soon as the record is written there; a background flusher drains the log to the
+ * orders table in batches. Accepting an order therefore costs a memory write instead of a
+ * database commit, and under load many orders share one commit.
+ *
+ * The log is a ring of fixed-size records, each holding a sequence number, the customer and
+ * game IDs, the acceptance time and a CRC32 of those fields. A slot is reused only after its
+ * record has been flushed; while the ring is full accept() blocks. Each flush reserves stock
+ * for the whole batch with two statements, inserts the orders in acceptance order, updates
+ * the sales rollups and advances the log's row in order_log_checkpoint in one transaction,
+ * so a batch is stored together with its checkpoint or not at all.
+ *
+ * On open, every valid record after the checkpoint is flushed again, so orders accepted
+ * before a crash are stored exactly once. The checkpoint row is keyed by the log's absolute
+ * path, so two logs with the same file name in different directories never share it. A log
+ * that holds records but has no checkpoint row (e.g. a fresh database, or one restored from
+ * a snapshot) cannot tell which of them are already stored, so it is refused unless replay
+ * without a checkpoint is explicitly allowed. Records in the mapping survive the process being
+ * killed because they live in the operating system's page cache; to survive a power loss as
+ * well, open the log with forceOnAccept, which writes each record through to the disk before
+ * acknowledging it. A record that was torn or never reached the disk fails its checksum and
+ * is counted as lost.
+ *
+ * Stock is reserved when an order is flushed, not when it is accepted, so an accepted order
+ * for a game that sold out in the meantime is dropped and counted as rejected. Orders the
+ * database refuses (e.g. a constraint violation) are dropped and counted as failed. Any other
+ * error leaves the batch in the log and the flush is retried.
+ */
+public class OrderLog implements AutoCloseable {
+    static final int RECORD_SIZE = 32; // Sequence (8), customer ID (4), game ID (4), accepted at (8), CRC (4), padding (4)
+    private static final int CHECKSUMMED_BYTES = 24; // The CRC covers everything before it
+    private static final int CRC_OFFSET = 24;
+    private static final String INSERT_SQL = "INSERT INTO orders (customer_id, game_id, order_date) VALUES (?, ?, ?)";
+    private static final long IDLE_WAIT_MILLIS = 50; // How long an idle flusher waits before looking again
+    private static final long RETRY_DELAY_MILLIS = 1000; // Pause after a flush failed as a whole
+    private static final int MAX_ATTEMPTS = 3; // Tries per batch when the database aborts it as a deadlock victim
+
+    private final ConnectionPool pool; // Source of database connections
+    private final CustomerIndex customerIndex; // Validates customer IDs on accept
+    private final CatalogCache catalog; // Validates game IDs on accept
+    private final SalesAnalytics analytics; // Rollups updated with each flushed batch
+    private final Inventory inventory; // Reserves a copy for each flushed order
+    private final String logName; // Key of the checkpoint row, the absolute path of the file
+    private final int batchSize; // Maximum orders per flush transaction
+    private final boolean forceOnAccept; // Write each record through to the disk before acknowledging it
+
+    private final FileChannel channel;
+    private final FileLock fileLock; // Keeps a second process from using the same log
+    private final MappedByteBuffer mapped; // The ring; only absolute gets and puts are used
+    private final long slots; // Records the ring holds
+    private final byte[] scratch = new byte[CHECKSUMMED_BYTES]; // Record being checksummed, guarded by lock
+    private final CRC32 crc = new CRC32(); // Guarded by lock
+
+    private final ReentrantLock lock = new ReentrantLock(); // Guards appends and the sequence counters below
+    private final Condition notEmpty = lock.newCondition(); // Signalled when a record is written while the flusher is idle
+    private final Condition progress = lock.newCondition(); // Signalled after every flush and on close
+    private long nextSequence; // Sequence of the next accepted order
+    private volatile long writtenSequence; // Highest sequence written to the ring
+    private volatile long flushedSequence; // Highest sequence stored in the database, equal to the checkpoint
+    private boolean flusherIdle = false;
+    private volatile boolean closed = false;
+    private final Thread flusher;
+
+    // Metrics
+    private final long replayed; // Records found after the checkpoint on open
+    private final AtomicLong accepted = new AtomicLong(); // Orders appended
+    private final AtomicLong stored = new AtomicLong(); // Orders inserted by the flusher
+    private final AtomicLong rejected = new AtomicLong(); // Orders dropped because the game sold out
+    private final AtomicLong failed = new AtomicLong(); // Orders dropped because the database refused them
+    private final AtomicLong lost = new AtomicLong(); // Records that failed their checksum
+    private final AtomicLong batches = new AtomicLong(); // Committed flush transactions
+    private final LatencyHistogram storeDelay = new LatencyHistogram(); // Acceptance-to-commit time per order
+
+    /**
+     * Open a log, replay the records the database has not seen yet and start the flusher.
+     * The schema must be migrated.
+     * @param pool The connection pool
+     * @param customerIndex The customer index
+     * @param catalog The catalog cache
+     * @param analytics The sales rollups to update with each batch
+     * @param inventory The inventory that reserves a copy for each order
+     * @param file The log file; an existing file keeps its size
+     * @param capacity Records a new file holds, i.e. how many orders may wait to be flushed
+     * @param batchSize Maximum orders per flush transaction
+     * @param forceOnAccept Whether accept() writes each record through to the disk
+     * @param replayWithoutCheckpoint Whether a log with records but no checkpoint row is replayed
+     *                                from the start instead of refused; this stores its orders again
+     * @throws IOException if the file cannot be opened, is in use by another process, or has
+     *                     records but no checkpoint and replayWithoutCheckpoint is false
+     * @throws SQLException if the checkpoint cannot be read
+     */
+    public OrderLog(ConnectionPool pool, CustomerIndex customerIndex, CatalogCache catalog, SalesAnalytics analytics,
+                    Inventory inventory, Path file, int capacity, int batchSize, boolean forceOnAccept,
+                    boolean replayWithoutCheckpoint) throws IOException, SQLException {
+        if (capacity <= 0 || (long) capacity * RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + Integer.MAX_VALUE / RECORD_SIZE + ": " + capacity);
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.pool = pool;
+        this.customerIndex = customerIndex;
+        this.catalog = catalog;
+        this.analytics = analytics;
+        this.inventory = inventory;
+        this.logName = checkpointKey(file);
+        this.batchSize = batchSize;
+        this.forceOnAccept = forceOnAccept;
+
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.fileLock = channel.tryLock();
+            if (fileLock == null) {
+                throw new IOException("Order log " + file + " is in use by another process");
+            }
+            long size = channel.size() >= RECORD_SIZE ? channel.size() / RECORD_SIZE * RECORD_SIZE : (long) capacity * RECORD_SIZE;
+            this.mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size); // Grows a new file to its full size
+            this.slots = size / RECORD_SIZE;
+
+            // Everything after the checkpoint is flushed again
+            long highest = 0;
+            for (long slot = 0; slot < slots; slot++) {
+                long sequence = validSequenceAt(slot);
+                highest = Math.max(highest, sequence);
+            }
+            Long stored = readCheckpoint();
+            if (stored == null) {
+                if (highest > 0 && !replayWithoutCheckpoint) {
+                    throw new IOException("Order log " + file + " holds records up to " + highest + " but the database has"
+                            + " no checkpoint for it, so some may already be stored; delete the file if they are,"
+                            + " or allow replay without a checkpoint to store all of them");
+                }
+                createCheckpoint();
+            }
+            long checkpoint = stored != null ? stored : 0;
+            highest = Math.max(highest, checkpoint);
+            this.flushedSequence = checkpoint;
+            this.writtenSequence = highest;
+            this.nextSequence = highest + 1;
+            this.replayed = highest - checkpoint;
+        } catch (IOException | SQLException | RuntimeException e) {
+            channel.close(); // Also releases the file lock
+            throw e;
+        }
+
+        this.flusher = new Thread(this::runFlusher, "order-log-flusher");
+        flusher.setDaemon(true); // close() drains; records left behind by an abrupt exit are replayed on the next open
+        flusher.start();
+    }
+
+    /**
+     * Method to accept an order. Returns once the order is in the log; it reaches the orders
+     * table when the flusher gets to it. Blocks while the log is full.
+     * @param customerId The customer ID
+     * @param gameId The game ID
+     * @return The sequence number of the order in the log
+     * @throws SQLException if the customer or game does not exist
+     * @throws InterruptedException if interrupted while waiting for space
+     */
+    public long accept(int customerId, int gameId) throws SQLException, InterruptedException {
+        if (customerIndex.getCustomer(customerId) == null) {
+            throw new SQLException("Customer not found: " + customerId);
+        }
+        if (catalog.getGame(gameId) == null) {
+            throw new SQLException("Game not found: " + gameId);
+        }
+        long acceptedAt = System.currentTimeMillis();
+
+        lock.lockInterruptibly();
+        try {
+            while (!closed && nextSequence - flushedSequence > slots) {
+                progress.await(); // The slot still holds a record that has not been flushed
+            }
+            if (closed) {
+                throw new IllegalStateException("Order log is closed");
+            }
+            long sequence = nextSequence++;
+            int offset = offsetOf(sequence);
+            ByteBuffer.wrap(scratch).putLong(sequence).putInt(customerId).putInt(gameId).putLong(acceptedAt);
+            crc.reset();
+            crc.update(scratch, 0, CHECKSUMMED_BYTES);
+            mapped.putLong(offset, sequence);
+            mapped.putInt(offset + 8, customerId);
+            mapped.putInt(offset + 12, gameId);
+            mapped.putLong(offset + 16, acceptedAt);
+            mapped.putInt(offset + CRC_OFFSET, (int) crc.getValue()); // Written last, so a torn record fails the check
+            if (forceOnAccept) {
+                mapped.force();
+            }
+            writtenSequence = sequence; // Publishes the record to the flusher
+            accepted.incrementAndGet();
+            if (flusherIdle) {
+                notEmpty.signal();
+            }
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Method to wait until an accepted order has been stored in the database or dropped
+     * @param sequence The sequence returned by accept()
+     * @param timeout How long to wait
+     * @param unit The unit of the timeout
+     * @return true if the order has been flushed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitFlushed(long sequence, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (flushedSequence < sequence) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || (closed && !flusher.isAlive())) {
+                    return false;
+                }
+                progress.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Flushing
+
+    /**
+     * Flusher loop: takes up to batchSize written records at a time and stores them
+     */
+    private void runFlusher() {
+        while (true) {
+            long from = flushedSequence + 1;
+            long to;
+            lock.lock();
+            try {
+                while (writtenSequence < from && !closed) {
+                    flusherIdle = true;
+                    notEmpty.await(IDLE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                    flusherIdle = false;
+                }
+                if (writtenSequence < from) {
+                    return; // Closed and fully drained
+                }
+                to = Math.min(writtenSequence, from + batchSize - 1);
+            } catch (InterruptedException e) {
+                return; // close() gave up waiting; the rest is replayed on the next open
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                flush(from, to);
+            } catch (SQLException | RuntimeException e) {
+                System.err.println("Order log flush of " + from + ".." + to + " failed, retrying: " + e);
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to store the records from..to in one transaction and advance the checkpoint to to
+     */
+    private void flush(long from, long to) throws SQLException {
+        long start = System.nanoTime();
+        List<Entry> entries = new ArrayList<>((int) (to - from + 1));
+        for (long sequence = from; sequence <= to; sequence++) {
+            Entry entry = read(sequence);
+            if (entry == null) {
+                lost.incrementAndGet();
+                System.err.println("Order log record " + sequence + " is corrupt and was skipped");
+            } else {
+                entries.add(entry);
+            }
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try (Connection con = pool.getConnection()) {
+                con.setAutoCommit(false); // Orders, stock, rollups and checkpoint commit together; the pool restores auto-commit
+                try {
+                    Inventory.Reservation reservation = store(con, entries, to);
+                    con.commit();
+                    if (reservation != null) {
+                        reservation.committed(); // Sold-out state only for stock that really is gone
+                    }
+                    break;
+                } catch (SQLException | RuntimeException e) {
+                    try {
+                        con.rollback();
+                    } catch (SQLException rollbackFailure) {
+                        e.addSuppressed(rollbackFailure); // Keep the original cause, e.g. a deadlock to retry
+                    } finally {
+                        for (Entry entry : entries) {
+                            entry.outcome = Outcome.PENDING; // Decided again by the next attempt
+                        }
+                    }
+                    throw e;
+                }
+            } catch (SQLException e) {
+                if (attempt == MAX_ATTEMPTS || !"40001".equals(e.getSQLState())) {
+                    throw e;
+                }
+                // Deadlock victim; the transaction was rolled back
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        for (Entry entry : entries) {
+            switch (entry.outcome) {
+                case STORED:
+                    stored.incrementAndGet();
+                    storeDelay.record(TimeUnit.MILLISECONDS.toNanos(Math.max(0, now - entry.acceptedAt)));
+                    break;
+                case REJECTED:
+                    rejected.incrementAndGet();
+                    break;
+                default:
+                    failed.incrementAndGet();
+                    break;
+            }
+        }
+        batches.incrementAndGet();
+        pool.getMetrics().record("orderLog.flush", System.nanoTime() - start, false);
+
+        lock.lock();
+        try {
+            flushedSequence = to; // Frees the slots for accept()
+            progress.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Method to store a batch: reserve stock, insert the orders, update the rollups and the checkpoint.
+     * The outcome of each entry is set on it; the caller commits.
+     * @return The batch reservation to report as committed, or null if the batch was replayed entry by entry
+     */
+    private Inventory.Reservation store(Connection con, List<Entry> entries, long checkpoint) throws SQLException {
+        int[] gameIds = new int[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            gameIds[i] = entries.get(i).gameId;
+        }
+
+        Inventory.Reservation reservation;
+        try (PreparedStatement preparedStatement = con.prepareStatement(INSERT_SQL)) {
+            Savepoint savepoint = con.setSavepoint();
+            try {
+                reservation = inventory.reserveAll(con, gameIds, gameIds.length); // Earlier orders get the last copies
+                for (int i = 0; i < entries.size(); i++) {
+                    Entry entry = entries.get(i);
+                    entry.outcome = reservation.isGranted(i) ? Outcome.STORED : outcomeWithoutCopy(entry);
+                    if (reservation.isGranted(i)) {
+                        bindEntry(preparedStatement, entry);
+                        preparedStatement.addBatch();
+                    }
+                }
+                preparedStatement.executeBatch(); // One round trip for the whole batch, in acceptance order
+            } catch (SQLException e) {
+                if (!isRefusal(e)) {
+                    throw e;
+                }
+                preparedStatement.clearBatch();
+                con.rollback(savepoint); // Undo the reservations and any part of the batch that went in
+                reservation = null; // Rolled back, so it must not mark anything sold out
+                storeOneByOne(con, preparedStatement, entries);
+            }
+            con.releaseSavepoint(savepoint);
+        }
+
+        Date[] orderDates = new Date[entries.size()];
+        int sold = 0;
+        for (Entry entry : entries) {
+            if (entry.outcome == Outcome.STORED) {
+                gameIds[sold] = entry.gameId;
+                orderDates[sold++] = entry.orderDate;
+            }
+        }
+        analytics.recordOrders(con, gameIds, orderDates, sold); // Commits with the batch
+
+        try (PreparedStatement preparedStatement = con.prepareStatement(
+                "UPDATE order_log_checkpoint SET last_sequence = ? WHERE log_name = ?")) {
+            preparedStatement.setLong(1, checkpoint); // Set sequence parameter
+            preparedStatement.setString(2, logName); // Set log name parameter
+            preparedStatement.executeUpdate(); // Execute update
+        }
+        return reservation;
+    }
+
+    /**
+     * Method to replay a refused batch entry by entry so only the refused orders are dropped
+     */
+    private void storeOneByOne(Connection con, PreparedStatement preparedStatement, List<Entry> entries) throws SQLException {
+        for (Entry entry : entries) {
+            entry.outcome = Outcome.PENDING;
+            Savepoint savepoint = con.setSavepoint(); // Some databases abort the transaction on error
+            try {
+                reserve(con, entry);
+                if (entry.outcome == Outcome.STORED) {
+                    bindEntry(preparedStatement, entry);
+                    preparedStatement.executeUpdate();
+                }
+            } catch (SQLException e) {
+                if (!isRefusal(e)) {
+                    throw e;
+                }
+                con.rollback(savepoint);
+                entry.outcome = Outcome.FAILED;
+                System.err.println("Order log record " + entry.sequence + " was refused and dropped: " + e.getMessage());
+            }
+            con.releaseSavepoint(savepoint);
+        }
+    }
+
+    /**
+     * Method to reserve a copy for an entry, marking it STORED, REJECTED (sold out) or FAILED (unknown game)
+     */
+    private void reserve(Connection con, Entry entry) throws SQLException {
+        if (catalog.getGame(entry.gameId) == null) {
+            entry.outcome = Outcome.FAILED; // Removed since it was accepted
+            return;
+        }
+        try {
+            inventory.reserve(con, entry.gameId);
+            entry.outcome = Outcome.STORED;
+        } catch (Inventory.OutOfStockException e) {
+            entry.outcome = Outcome.REJECTED;
+        }
+    }
+
+    /**
+     * Method to tell why an entry got no copy: its game sold out, or it no longer exists
+     */
+    private Outcome outcomeWithoutCopy(Entry entry) throws SQLException {
+        return catalog.getGame(entry.gameId) == null ? Outcome.FAILED : Outcome.REJECTED;
+    }
+
+    private static void bindEntry(PreparedStatement preparedStatement, Entry entry) throws SQLException {
+        preparedStatement.setInt(1, entry.customerId); // Set customer ID parameter
+        preparedStatement.setInt(2, entry.gameId); // Set game ID parameter
+        preparedStatement.setDate(3, entry.orderDate); // Set order date parameter
+    }
+
+    /**
+     * Method to tell an order the database will never accept (constraint violation or bad data)
+     * from a failure that may pass on a retry
+     */
+    private static boolean isRefusal(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof SQLIntegrityConstraintViolationException || e instanceof SQLDataException
+                || state != null && (state.startsWith("22") || state.startsWith("23"));
+    }
+
+    // Records
+
+    private int offsetOf(long sequence) {
+        return (int) (sequence % slots * RECORD_SIZE);
+    }
+
+    /**
+     * Method to read the record of a sequence
+     * @return The entry, or null if the slot does not hold a valid record with that sequence
+     */
+    private Entry read(long sequence) {
+        int offset = offsetOf(sequence);
+        if (mapped.getLong(offset) != sequence || !checksumMatches(offset)) {
+            return null;
+        }
+        return new Entry(sequence, mapped.getInt(offset + 8), mapped.getInt(offset + 12), mapped.getLong(offset + 16));
+    }
+
+    /**
+     * Method to read the sequence of a slot during recovery
+     * @return The sequence, or 0 if the slot is empty or its record is damaged
+     */
+    private long validSequenceAt(long slot) {
+        int offset = (int) (slot * RECORD_SIZE);
+        long sequence = mapped.getLong(offset);
+        return sequence > 0 && checksumMatches(offset) ? sequence : 0;
+    }
+
+    private boolean checksumMatches(int offset) {
+        byte[] record = new byte[CHECKSUMMED_BYTES];
+        for (int i = 0; i < CHECKSUMMED_BYTES; i++) {
+            record[i] = mapped.get(offset + i);
+        }
+        CRC32 check = new CRC32();
+        check.update(record, 0, CHECKSUMMED_BYTES);
+        return (int) check.getValue() == mapped.getInt(offset + CRC_OFFSET);
+    }
+
+    /**
+     * Method to get the key of a log's checkpoint row
+     * @param file The log file
+     * @return The absolute, normalized path of the file
+     */
+    static String checkpointKey(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Method to read this log's checkpoint
+     * @return The last stored sequence, or null if the database has no checkpoint for the log
+     */
+    private Long readCheckpoint() throws SQLException {
+        try (Connection con = pool.getConnection();
+             PreparedStatement preparedStatement = con.prepareStatement(
+                     "SELECT last_sequence FROM order_log_checkpoint WHERE log_name = ?")) {
+            preparedStatement.setString(1, logName); // Set log name parameter
+            ResultSet resultSet = preparedStatement.executeQuery(); // Execute query
+            return resultSet.next() ? resultSet.getLong(1) : null;
+        }
+    }
+
+    /**
+     * Method to create this log's checkpoint row at sequence 0
+     */
+    private void createCheckpoint() throws SQLException {
+        try (Connection con = pool.getConnection();
+             PreparedStatement preparedStatement = con.prepareStatement(
+                     "INSERT INTO order_log_checkpoint (log_name, last_sequence) VALUES (?, 0)")) {
+            preparedStatement.setString(1, logName); // Set log name parameter
+            preparedStatement.executeUpdate(); // Execute update
+        }
+    }
+
+    /**
+     * Method to stop accepting orders, flush what is in the log and close the file. If the
+     * flusher cannot finish within a minute (e.g. the database is down), the remaining records
+     * stay in the file and are replayed on the next open.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            progress.signalAll(); // Wake producers waiting for space
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(60));
+            if (flusher.isAlive()) {
+                flusher.interrupt();
+                flusher.join();
+            }
+        } catch (InterruptedException e) {
+            flusher.interrupt();
+            Thread.currentThread().interrupt();
+        }
+        mapped.force();
+        try {
+            fileLock.release();
+            channel.close(); // The mapping stays valid until it is garbage collected
+        } catch (IOException e) {
+            // Nothing useful to do, every record has been forced to the disk
+        }
+    }
+
+    // Metrics
+
+    public long getReplayedCount() {
+        return replayed;
+    }
+
+    public long getAcceptedCount() {
+        return accepted.get();
+    }
+
+    public long getStoredCount() {
+        return stored.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getLostCount() {
+        return lost.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * Method to get the number of orders accepted but not yet flushed
+     */
+    public long getPendingCount() {
+        return writtenSequence - flushedSequence;
+    }
+
+    public long getFlushedSequence() {
+        return flushedSequence;
+    }
+
+    public LatencyHistogram getStoreDelay() {
+        return storeDelay;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("OrderLog[%s, slots=%d, pending=%d, replayed=%d, accepted=%d, stored=%d, rejected=%d, " +
+                        "failed=%d, lost=%d, batches=%d, storeDelay: %s]",
+                logName, slots, getPendingCount(), replayed, getAcceptedCount(), getStoredCount(), getRejectedCount(),
+                getFailedCount(), getLostCount(), getBatchCount(), storeDelay);
+    }
+
+    private enum Outcome { PENDING, STORED, REJECTED, FAILED }
+
+    /**
+     * One order read back from the log
+     */
+    private static final class Entry {
+        final long sequence;
+        final int customerId;
+        final int gameId;
+        final long acceptedAt; // Wall-clock time of accept()
+        final Date orderDate; // The day it was accepted
+        Outcome outcome = Outcome.PENDING;
+
+        Entry(long sequence, int customerId, int gameId, long acceptedAt) {
+            this.sequence = sequence;
+            this.customerId = customerId;
+            this.gameId = gameId;
+            this.acceptedAt = acceptedAt;
+            this.orderDate = Date.valueOf(new Date(acceptedAt).toLocalDate());
+        }
+    }
+}
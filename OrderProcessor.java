@@ -0,0 +1,310 @@
+package com.example;
+
+import java.lang.reflect.Method;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Order Processor
+ *
+ * Headless engine that places orders concurrently. Producers submit order requests and get
+ * a future for the new order ID; the customer lookup and the orders insert run on a worker
+ * executor, which uses virtual threads when the JVM supports them and a fixed thread pool
+ * otherwise. Each worker borrows its own pooled connection, so the number of orders that
+ * actually hit the database at once is bounded by the connection pool.
+ *
+ * Backpressure comes from a limit on in-flight requests: once it is reached, submit blocks
+ * the producer (or gives up after a timeout) until a running request finishes.
+ */
+public class OrderProcessor implements AutoCloseable {
+    private static final String INSERT_SQL = "INSERT INTO orders (customer_id, game_id, order_date) VALUES (?, ?, NOW())";
+    private static final int MAX_ATTEMPTS = 3; // Tries per order when the database aborts it as a deadlock victim
+
+    private final ConnectionPool pool; // Source of database connections
+    private final CustomerIndex customerIndex; // Resolves customer names without a query
+    private final CatalogCache catalog; // Validates game IDs without a query
+    private final SalesAnalytics analytics; // Rollups updated with each order
+    private final Inventory inventory; // Reserves a copy for each order
+    private final ExecutorService executor; // Runs the order tasks
+    private final Semaphore inFlight; // One permit per request that may be queued or running
+    private final int maxInFlight; // Size of the in-flight limit
+
+    // Metrics
+    private final AtomicLong submitted = new AtomicLong(); // Requests accepted
+    private final AtomicLong completed = new AtomicLong(); // Orders inserted
+    private final AtomicLong failed = new AtomicLong(); // Requests that ended with an error
+    private final AtomicLong rejected = new AtomicLong(); // Requests refused after a submit timeout
+    private final LatencyHistogram latency = new LatencyHistogram(); // Submit-to-completion time
+    private final long startNanos = System.nanoTime(); // Used to compute throughput
+
+    /**
+     * Create a processor on the default executor
+     * @param pool The connection pool
+     * @param customerIndex The customer name index
+     * @param catalog The catalog cache
+     * @param analytics The sales rollups to update in each order's transaction
+     * @param inventory The inventory that reserves a copy for each order
+     * @param maxInFlight The maximum number of requests queued or running at once
+     */
+    public OrderProcessor(ConnectionPool pool, CustomerIndex customerIndex, CatalogCache catalog,
+                          SalesAnalytics analytics, Inventory inventory, int maxInFlight) {
+        this(pool, customerIndex, catalog, analytics, inventory, newDefaultExecutor(pool.getMaxSize()), maxInFlight);
+    }
+
+    /**
+     * Create a processor
+     * @param pool The connection pool
+     * @param customerIndex The customer name index
+     * @param catalog The catalog cache
+     * @param analytics The sales rollups to update in each order's transaction
+     * @param inventory The inventory that reserves a copy for each order
+     * @param executor The executor that runs order tasks; it is shut down by close()
+     * @param maxInFlight The maximum number of requests queued or running at once
+     */
+    public OrderProcessor(ConnectionPool pool, CustomerIndex customerIndex, CatalogCache catalog,
+                          SalesAnalytics analytics, Inventory inventory, ExecutorService executor, int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("In-flight limit must be positive: " + maxInFlight);
+        }
+        this.pool = pool;
+        this.customerIndex = customerIndex;
+        this.catalog = catalog;
+        this.analytics = analytics;
+        this.inventory = inventory;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Method to create the default worker executor: one virtual thread per task when the JVM
+     * has them (Java 21+), otherwise a fixed pool of daemon threads
+     * @param threads The pool size used when virtual threads are not available
+     * @return The executor
+     */
+    public static ExecutorService newDefaultExecutor(int threads) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // Older JVM, fall back to platform threads
+        }
+        AtomicLong ids = new AtomicLong();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "order-worker-" + ids.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Method to submit an order for a known customer, blocking while the in-flight limit is reached
+     * @param customerId The customer ID
+     * @param gameId The game ID
+     * @return A future completed with the new order ID, or exceptionally if the order fails
+     * @throws InterruptedException if interrupted while waiting for capacity
+     */
+    public CompletableFuture<Integer> submit(int customerId, int gameId) throws InterruptedException {
+        inFlight.acquire();
+        return dispatch(null, customerId, gameId);
+    }
+
+    /**
+     * Method to submit an order by customer name, blocking while the in-flight limit is reached
+     * @param customerName The customer name
+     * @param gameId The game ID
+     * @return A future completed with the new order ID, or exceptionally if the order fails,
+     *         including when no customer or more than one customer has the name
+     * @throws InterruptedException if interrupted while waiting for capacity
+     */
+    public CompletableFuture<Integer> submit(String customerName, int gameId) throws InterruptedException {
+        inFlight.acquire();
+        return dispatch(customerName, -1, gameId);
+    }
+
+    /**
+     * Method to submit an order by customer name, waiting at most the given time for capacity
+     * @param customerName The customer name
+     * @param gameId The game ID
+     * @param timeout How long to wait for capacity
+     * @param unit The unit of the timeout
+     * @return A future completed with the new order ID, or exceptionally if the order fails,
+     *         including when no customer or more than one customer has the name
+     * @throws RejectedExecutionException if no capacity frees up in time
+     * @throws InterruptedException if interrupted while waiting for capacity
+     */
+    public CompletableFuture<Integer> submit(String customerName, int gameId, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        if (!inFlight.tryAcquire(timeout, unit)) {
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("Order processor is at its limit of " + maxInFlight + " requests");
+        }
+        return dispatch(customerName, -1, gameId);
+    }
+
+    /**
+     * Method to hand a request to the executor once a permit is held
+     */
+    private CompletableFuture<Integer> dispatch(String customerName, int customerId, int gameId) {
+        long submittedAt = System.nanoTime();
+        submitted.incrementAndGet();
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                int orderId = -1;
+                Exception failure = null;
+                try {
+                    orderId = placeOrder(customerName, customerId, gameId);
+                    completed.incrementAndGet();
+                } catch (SQLException | RuntimeException e) {
+                    failed.incrementAndGet();
+                    failure = e;
+                } finally {
+                    latency.record(System.nanoTime() - submittedAt);
+                    inFlight.release();
+                }
+                // Completed last, so a caller reacting to the result sees the counters and the free permit
+                if (failure == null) {
+                    result.complete(orderId);
+                } else {
+                    result.completeExceptionally(failure);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release(); // The executor has been shut down
+            failed.incrementAndGet();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Method run on a worker to resolve the customer and insert the order
+     * @return The new order ID
+     * @throws Inventory.OutOfStockException if the game is sold out
+     * @throws SQLException if the customer or game does not exist, the customer name is
+     *         ambiguous or the insert fails
+     */
+    private int placeOrder(String customerName, int customerId, int gameId) throws SQLException {
+        if (customerName != null) {
+            List<Customer> matches = customerIndex.resolveByNameIgnoreCase(customerName); // Sees duplicates added elsewhere
+            if (matches.isEmpty()) {
+                throw new SQLException("Customer not found: " + customerName);
+            }
+            if (matches.size() > 1) {
+                List<Integer> customerIds = new ArrayList<>();
+                for (Customer match : matches) {
+                    customerIds.add(match.getCustomerId());
+                }
+                throw new SQLException("Customer name is ambiguous: " + customerName + " (customers " + customerIds + ")");
+            }
+            customerId = matches.get(0).getCustomerId();
+        }
+        if (catalog.getGame(gameId) == null) {
+            throw new SQLException("Game not found: " + gameId);
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return insertOrder(customerId, gameId);
+            } catch (SQLException e) {
+                if (attempt == MAX_ATTEMPTS || !"40001".equals(e.getSQLState())) {
+                    throw e;
+                }
+                // Deadlock victim (e.g. against a bulk import holding rollup rows); the transaction was rolled back
+            }
+        }
+    }
+
+    /**
+     * Method to reserve stock, insert the order and update the rollups in one transaction
+     * @return The new order ID
+     */
+    private int insertOrder(int customerId, int gameId) throws SQLException {
+        try (Connection con = pool.getConnection()) {
+            con.setAutoCommit(false); // Stock, order and rollups commit together; the pool restores auto-commit
+            try (PreparedStatement preparedStatement = con.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                inventory.reserve(con, gameId); // First, so the game row is locked exclusively before the insert's FK check
+
+                preparedStatement.setInt(1, customerId); // Set customer ID parameter
+                preparedStatement.setInt(2, gameId); // Set game ID parameter
+                preparedStatement.executeUpdate(); // Execute update
+
+                ResultSet generatedKeys = preparedStatement.getGeneratedKeys();
+                int orderId = generatedKeys.next() ? generatedKeys.getInt(1) : -1;
+                analytics.recordOrder(con, gameId, null); // Same date as NOW() above
+                con.commit();
+                return orderId;
+            } catch (SQLException e) {
+                try {
+                    con.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure); // Keep the original cause, e.g. a dropped connection
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Method to stop accepting work and wait for submitted orders to finish
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Metrics
+
+    public int getInFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Method to get the average rate of inserted orders since the processor was created
+     * @return Orders per second
+     */
+    public double getOrdersPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        return seconds <= 0 ? 0.0 : completed.get() / seconds;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("OrderProcessor[inFlight=%d/%d, submitted=%d, completed=%d, failed=%d, rejected=%d, " +
+                        "rate=%.1f/s, latency: %s]",
+                getInFlightCount(), maxInFlight, getSubmittedCount(), getCompletedCount(), getFailedCount(),
+                getRejectedCount(), getOrdersPerSecond(), latency);
+    }
+}
@@ -0,0 +1,257 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.*;
+import java.sql.Date; // Import Date from java.sql package (to avoid conflict with java.util.Date)
+import java.util.*;
+
+/**
+ * Order Report
+ *
+ * Streams the orders joined with customers and games in order_id order using keyset
+ * pagination: every page is a "WHERE order_id > last seen id ... LIMIT page size" query,
+ * so no query ever scans or returns the whole history and at most one page is held in
+ * memory. A connection is only borrowed while a page is fetched, which means an
+ * iterator can be abandoned at any time without leaking anything.
+ */
+public class OrderReport {
+    private final ConnectionPool pool; // Source of database connections
+    private final int pageSize; // Rows fetched per keyset page
+    private final int fetchSize; // JDBC fetch size hint for each page query
+
+    /**
+     * Create a report with a page size of 1000 rows
+     * @param pool The connection pool
+     */
+    public OrderReport(ConnectionPool pool) {
+        this(pool, 1000, 1000);
+    }
+
+    /**
+     * Create a report
+     * @param pool The connection pool
+     * @param pageSize Rows fetched per page, which bounds the memory used by an iterator
+     * @param fetchSize JDBC fetch size hint passed to the driver
+     */
+    public OrderReport(ConnectionPool pool, int pageSize, int fetchSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        this.pool = pool;
+        this.pageSize = pageSize;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Method to iterate over all orders matching a filter
+     * @param filter The filter, or null for all orders
+     * @return An iterator that fetches one page at a time; it throws UncheckedSqlException if a page query fails
+     */
+    public Iterator<OrderRow> iterator(OrderFilter filter) {
+        return new PageIterator(filter == null ? new OrderFilter() : filter);
+    }
+
+    /**
+     * Method to fetch one page of orders after a given order ID
+     * @param filter The filter, or null for all orders
+     * @param afterOrderId Only orders with a larger ID are returned (0 for the first page)
+     * @return Up to pageSize orders in order_id order; empty when there are no more
+     * @throws SQLException if the query fails
+     */
+    public List<OrderRow> fetchPage(OrderFilter filter, int afterOrderId) throws SQLException {
+        if (filter == null) {
+            filter = new OrderFilter();
+        }
+        StringBuilder sql = new StringBuilder(
+                "SELECT o.order_id, o.customer_id, c.customer_name, c.email, o.game_id, g.game_name, o.order_date " +
+                "FROM orders o " +
+                "JOIN customers c ON o.customer_id = c.customer_id " +
+                "JOIN games g ON o.game_id = g.game_id " +
+                "WHERE o.order_id > ?");
+        if (filter.customerId != null) {
+            sql.append(" AND o.customer_id = ?");
+        }
+        if (filter.gameId != null) {
+            sql.append(" AND o.game_id = ?");
+        }
+        if (filter.fromDate != null) {
+            sql.append(" AND o.order_date >= ?");
+        }
+        if (filter.toDate != null) {
+            sql.append(" AND o.order_date <= ?");
+        }
+        sql.append(" ORDER BY o.order_id ASC LIMIT ?");
+
+        List<OrderRow> page = new ArrayList<>(pageSize);
+        try (Connection con = pool.getConnection();
+             PreparedStatement preparedStatement = con.prepareStatement(sql.toString())) {
+            int index = 1;
+            preparedStatement.setInt(index++, afterOrderId); // Set keyset position parameter
+            if (filter.customerId != null) {
+                preparedStatement.setInt(index++, filter.customerId); // Set customer ID parameter
+            }
+            if (filter.gameId != null) {
+                preparedStatement.setInt(index++, filter.gameId); // Set game ID parameter
+            }
+            if (filter.fromDate != null) {
+                preparedStatement.setDate(index++, filter.fromDate); // Set first date parameter
+            }
+            if (filter.toDate != null) {
+                preparedStatement.setDate(index++, filter.toDate); // Set last date parameter
+            }
+            preparedStatement.setInt(index, pageSize); // Set page size parameter
+            preparedStatement.setFetchSize(fetchSize);
+
+            ResultSet resultSet = preparedStatement.executeQuery(); // Execute query
+            while (resultSet.next()) {
+                page.add(new OrderRow(
+                        resultSet.getInt("order_id"),
+                        resultSet.getInt("customer_id"),
+                        resultSet.getString("customer_name"),
+                        resultSet.getString("email"),
+                        resultSet.getInt("game_id"),
+                        resultSet.getString("game_name"),
+                        resultSet.getDate("order_date")));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Method to export all orders matching a filter as CSV
+     * @param filter The filter, or null for all orders
+     * @param writer Where to write the CSV; it is flushed but not closed
+     * @return The number of exported orders
+     * @throws IOException if writing fails
+     * @throws SQLException if a page query fails
+     */
+    public long exportCsv(OrderFilter filter, Writer writer) throws IOException, SQLException {
+        writer.write("order_id,customer_name,email,game_name,order_date\n");
+        long count = 0;
+        int lastOrderId = 0;
+        List<OrderRow> page;
+        do {
+            page = fetchPage(filter, lastOrderId);
+            for (OrderRow row : page) {
+                writer.write(Integer.toString(row.getOrderId()));
+                writer.write(',');
+                writer.write(csv(row.getCustomerName()));
+                writer.write(',');
+                writer.write(csv(row.getEmail()));
+                writer.write(',');
+                writer.write(csv(row.getGameName()));
+                writer.write(',');
+                writer.write(String.valueOf(row.getOrderDate()));
+                writer.write('\n');
+                lastOrderId = row.getOrderId();
+                count++;
+            }
+        } while (page.size() == pageSize);
+        writer.flush();
+        return count;
+    }
+
+    /**
+     * Method to quote a CSV field when it contains a separator, quote or line break; also used by the benchmark
+     */
+    static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Iterator that fetches the next page when the current one is used up
+     */
+    private final class PageIterator implements Iterator<OrderRow> {
+        private final OrderFilter filter;
+        private List<OrderRow> page = Collections.emptyList(); // Current page
+        private int position = 0; // Next row of the current page
+        private int lastOrderId = 0; // Keyset position
+        private boolean exhausted = false; // No more pages
+
+        PageIterator(OrderFilter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (position < page.size()) {
+                return true;
+            }
+            if (exhausted) {
+                return false;
+            }
+            try {
+                page = fetchPage(filter, lastOrderId);
+            } catch (SQLException e) {
+                throw new UncheckedSqlException(e);
+            }
+            position = 0;
+            exhausted = page.size() < pageSize; // A short page is the last one
+            if (!page.isEmpty()) {
+                lastOrderId = page.get(page.size() - 1).getOrderId();
+            }
+            return !page.isEmpty();
+        }
+
+        @Override
+        public OrderRow next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.get(position++);
+        }
+    }
+
+    /**
+     * Optional restrictions on the orders in a report. Unset fields do not filter.
+     */
+    public static final class OrderFilter {
+        private Integer customerId; // Only orders of this customer
+        private Integer gameId; // Only orders of this game
+        private Date fromDate; // Only orders on or after this date
+        private Date toDate; // Only orders on or before this date
+
+        public OrderFilter customer(int customerId) {
+            this.customerId = customerId;
+            return this;
+        }
+
+        public OrderFilter game(int gameId) {
+            this.gameId = gameId;
+            return this;
+        }
+
+        public OrderFilter from(Date fromDate) {
+            this.fromDate = fromDate;
+            return this;
+        }
+
+        public OrderFilter to(Date toDate) {
+            this.toDate = toDate;
+            return this;
+        }
+    }
+
+    /**
+     * Thrown by report iterators when a page query fails
+     */
+    public static final class UncheckedSqlException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public UncheckedSqlException(SQLException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example;
+
+import java.sql.Date;
+
+/**
+ * One line of the order report: an order joined with its customer and game
+ */
+public final class OrderRow {
+    private final int orderId; // Primary key of the order
+    private final int customerId; // Customer who placed the order
+    private final String customerName; // Name of the customer
+    private final String email; // Email of the customer
+    private final int gameId; // Ordered game
+    private final String gameName; // Name of the game
+    private final Date orderDate; // Date the order was placed
+
+    public OrderRow(int orderId, int customerId, String customerName, String email, int gameId, String gameName, Date orderDate) {
+        this.orderId = orderId;
+        this.customerId = customerId;
+        this.customerName = customerName;
+        this.email = email;
+        this.gameId = gameId;
+        this.gameName = gameName;
+        this.orderDate = orderDate;
+    }
+
+    public int getOrderId() {
+        return orderId;
+    }
+
+    public int getCustomerId() {
+        return customerId;
+    }
+
+    public String getCustomerName() {
+        return customerName;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public int getGameId() {
+        return gameId;
+    }
+
+    public String getGameName() {
+        return gameName;
+    }
+
+    public Date getOrderDate() {
+        return orderDate;
+    }
+
+    @Override
+    public String toString() {
+        return "Order[" + orderId + ", " + customerName + ", " + gameName + ", " + orderDate + "]";
+    }
+}
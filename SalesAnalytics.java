@@ -0,0 +1,310 @@
+package com.example;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.*;
+import java.sql.Date; // Import Date from java.sql package (to avoid conflict with java.util.Date)
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sales Analytics
+ *
+ * Maintains pre-aggregated sales rollups per game, per genre and per day, and answers the
+ * reporting questions (revenue by genre, top games, orders per day) from them instead of
+ * joining the whole orders table.
+ *
+ * Rollups are updated in the same transaction as the order insert, so they stay exact even
+ * when the insert is rolled back or many orders are placed concurrently. To keep concurrent
+ * orders from queueing on the single row for today or for a popular genre, every rollup
+ * key is split into STRIPES rows and each update goes to a random stripe; queries add the
+ * stripes up. Rows are always updated in the order game, genre, day so that concurrent
+ * transactions cannot deadlock on each other.
+ *
+ * The orders table does not record the price paid, so revenue is taken from the game's
+ * price when the order is placed. Genre totals likewise count each order towards the genre
+ * its game had when the order was placed; moving a game to another genre leaves its past
+ * sales where they are. rebuild() recomputes everything from the orders table using current
+ * prices and genres, so run it after repricing or regrouping games if the reports should
+ * follow the catalog.
+ */
+public class SalesAnalytics {
+    static final int STRIPES = 16; // Rows per rollup key
+
+    private final ConnectionPool pool; // Source of database connections
+    private final CatalogCache catalog; // Supplies price and genre of ordered games
+
+    /**
+     * Create the analytics component
+     * @param pool The connection pool
+     * @param catalog The catalog cache used to price orders
+     */
+    public SalesAnalytics(ConnectionPool pool, CatalogCache catalog) {
+        this.pool = pool;
+        this.catalog = catalog;
+    }
+
+    // Maintenance
+
+    /**
+     * Method to add one order to the rollups. Must run in the transaction that inserts the order.
+     * @param con The connection of the inserting transaction
+     * @param gameId The ordered game
+     * @param orderDate The order date, or null for the database's current date
+     * @throws SQLException if the game is unknown or an update fails
+     */
+    public void recordOrder(Connection con, int gameId, Date orderDate) throws SQLException {
+        recordOrders(con, new int[]{gameId}, new Date[]{orderDate}, 1);
+    }
+
+    /**
+     * Method to add many orders to the rollups with one statement per rollup and key.
+     * Must run in the transaction that inserts the orders.
+     * @param con The connection of the inserting transaction
+     * @param gameIds The ordered games
+     * @param orderDates The order dates; null entries mean the database's current date
+     * @param count The number of entries to use from both arrays
+     * @throws SQLException if a game is unknown or an update fails
+     */
+    public void recordOrders(Connection con, int[] gameIds, Date[] orderDates, int count) throws SQLException {
+        // Add the orders up per key first; sorted maps give every transaction the same lock order
+        TreeMap<Integer, Delta> byGame = new TreeMap<>();
+        TreeMap<Integer, Delta> byGenre = new TreeMap<>();
+        TreeMap<Long, Delta> byDay = new TreeMap<>(); // Keyed by epoch millis, Long.MIN_VALUE for the current date
+        for (int i = 0; i < count; i++) {
+            Game game = catalog.getGame(gameIds[i]);
+            if (game == null) {
+                throw new SQLException("Game not found: " + gameIds[i]);
+            }
+            BigDecimal price = BigDecimal.valueOf(game.getPrice()).setScale(2, RoundingMode.HALF_UP);
+            byGame.computeIfAbsent(game.getGameId(), key -> new Delta()).add(price);
+            byGenre.computeIfAbsent(game.getGenreId(), key -> new Delta()).add(price);
+            byDay.computeIfAbsent(orderDates[i] == null ? Long.MIN_VALUE : orderDates[i].getTime(), key -> new Delta()).add(price);
+        }
+
+        int stripe = ThreadLocalRandom.current().nextInt(STRIPES);
+        try (PreparedStatement preparedStatement = con.prepareStatement(
+                "INSERT INTO sales_by_game (game_id, stripe, order_count, revenue) VALUES (?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE order_count = order_count + ?, revenue = revenue + ?")) {
+            for (Map.Entry<Integer, Delta> entry : byGame.entrySet()) {
+                preparedStatement.setInt(1, entry.getKey()); // Set game ID parameter
+                bindDelta(preparedStatement, stripe, entry.getValue());
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+        }
+        try (PreparedStatement preparedStatement = con.prepareStatement(
+                "INSERT INTO sales_by_genre (genre_id, stripe, order_count, revenue) VALUES (?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE order_count = order_count + ?, revenue = revenue + ?")) {
+            for (Map.Entry<Integer, Delta> entry : byGenre.entrySet()) {
+                preparedStatement.setInt(1, entry.getKey()); // Set genre ID parameter
+                bindDelta(preparedStatement, stripe, entry.getValue());
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+        }
+        try (PreparedStatement preparedStatement = con.prepareStatement(
+                "INSERT INTO sales_by_day (order_date, stripe, order_count, revenue) VALUES (COALESCE(?, CURRENT_DATE), ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE order_count = order_count + ?, revenue = revenue + ?")) {
+            for (Map.Entry<Long, Delta> entry : byDay.entrySet()) {
+                if (entry.getKey() == Long.MIN_VALUE) {
+                    preparedStatement.setNull(1, Types.DATE); // Same date the order insert used
+                } else {
+                    preparedStatement.setDate(1, new Date(entry.getKey())); // Set order date parameter
+                }
+                bindDelta(preparedStatement, stripe, entry.getValue());
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+        }
+    }
+
+    /**
+     * Method to bind the stripe and the amounts to add. The amounts are bound once for the
+     * insert and once more for the update, instead of reading them back with VALUES(col),
+     * which MySQL deprecated in 8.0.20.
+     */
+    private static void bindDelta(PreparedStatement preparedStatement, int stripe, Delta delta) throws SQLException {
+        preparedStatement.setInt(2, stripe); // Set stripe parameter
+        preparedStatement.setLong(3, delta.orders); // Set order count parameter
+        preparedStatement.setBigDecimal(4, delta.revenue); // Set revenue parameter
+        preparedStatement.setLong(5, delta.orders); // Set added order count parameter
+        preparedStatement.setBigDecimal(6, delta.revenue); // Set added revenue parameter
+    }
+
+    /**
+     * Method to recompute all rollups from the orders table in one transaction
+     * @throws SQLException if the rebuild fails
+     */
+    public void rebuild() throws SQLException {
+        try (Connection con = pool.getConnection()) {
+            rebuild(con);
+        }
+    }
+
+    /**
+     * Method to recompute all rollups on the given connection; also used by SchemaMigrations
+     * @param con The connection to use
+     * @throws SQLException if the rebuild fails
+     */
+    static void rebuild(Connection con) throws SQLException {
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        try (Statement statement = con.createStatement()) {
+            statement.executeUpdate("DELETE FROM sales_by_game");
+            statement.executeUpdate("DELETE FROM sales_by_genre");
+            statement.executeUpdate("DELETE FROM sales_by_day");
+            statement.executeUpdate("INSERT INTO sales_by_game (game_id, stripe, order_count, revenue) " +
+                    "SELECT o.game_id, 0, COUNT(*), COALESCE(SUM(g.price), 0) FROM orders o " +
+                    "JOIN games g ON o.game_id = g.game_id GROUP BY o.game_id");
+            statement.executeUpdate("INSERT INTO sales_by_genre (genre_id, stripe, order_count, revenue) " +
+                    "SELECT COALESCE(g.genre_id, 0), 0, SUM(s.order_count), SUM(s.revenue) FROM sales_by_game s " +
+                    "JOIN games g ON s.game_id = g.game_id GROUP BY COALESCE(g.genre_id, 0)"); // Genre 0 as in recordOrders
+            statement.executeUpdate("INSERT INTO sales_by_day (order_date, stripe, order_count, revenue) " +
+                    "SELECT o.order_date, 0, COUNT(*), COALESCE(SUM(g.price), 0) FROM orders o " +
+                    "JOIN games g ON o.game_id = g.game_id WHERE o.order_date IS NOT NULL GROUP BY o.order_date");
+            con.commit();
+        } catch (SQLException e) {
+            try {
+                con.rollback();
+            } catch (SQLException rollbackFailure) {
+                e.addSuppressed(rollbackFailure); // Keep the original cause, e.g. a lock wait timeout on the rollups
+            }
+            throw e;
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Queries
+
+    /**
+     * Method to get orders and revenue per genre, highest revenue first
+     * @return One figure per genre with sales; the key is the genre ID
+     * @throws SQLException if the query fails
+     */
+    public List<SalesFigure> getRevenueByGenre() throws SQLException {
+        List<SalesFigure> figures = new ArrayList<>();
+        for (SalesFigure figure : query("SELECT genre_id, SUM(order_count), SUM(revenue) FROM sales_by_genre " +
+                "GROUP BY genre_id ORDER BY SUM(revenue) DESC", -1)) {
+            Genre genre = catalog.getGenre(Integer.parseInt(figure.getKey()));
+            figures.add(figure.withLabel(genre == null ? "Unknown genre" : genre.getGenreName()));
+        }
+        return figures;
+    }
+
+    /**
+     * Method to get the best-selling games by number of orders
+     * @param limit The number of games to return
+     * @return One figure per game, most orders first; the key is the game ID
+     * @throws SQLException if the query fails
+     */
+    public List<SalesFigure> getTopGames(int limit) throws SQLException {
+        List<SalesFigure> figures = new ArrayList<>();
+        for (SalesFigure figure : query("SELECT game_id, SUM(order_count), SUM(revenue) FROM sales_by_game " +
+                "GROUP BY game_id ORDER BY SUM(order_count) DESC, game_id LIMIT ?", limit)) {
+            Game game = catalog.getGame(Integer.parseInt(figure.getKey()));
+            figures.add(figure.withLabel(game == null ? "Unknown game" : game.getGameName()));
+        }
+        return figures;
+    }
+
+    /**
+     * Method to get orders and revenue per day in a date range
+     * @param from The first day
+     * @param to The last day
+     * @return One figure per day with orders, oldest first; the key is the date as yyyy-mm-dd
+     * @throws SQLException if the query fails
+     */
+    public List<SalesFigure> getOrdersPerDay(Date from, Date to) throws SQLException {
+        List<SalesFigure> figures = new ArrayList<>();
+        try (Connection con = pool.getConnection();
+             PreparedStatement preparedStatement = con.prepareStatement(
+                     "SELECT order_date, SUM(order_count), SUM(revenue) FROM sales_by_day " +
+                     "WHERE order_date BETWEEN ? AND ? GROUP BY order_date ORDER BY order_date")) {
+            preparedStatement.setDate(1, from); // Set first day parameter
+            preparedStatement.setDate(2, to); // Set last day parameter
+            ResultSet resultSet = preparedStatement.executeQuery(); // Execute query
+            while (resultSet.next()) {
+                String day = resultSet.getDate(1).toString();
+                figures.add(new SalesFigure(day, day, resultSet.getLong(2), resultSet.getBigDecimal(3)));
+            }
+        }
+        return figures;
+    }
+
+    /**
+     * Method to run a rollup query whose columns are key, order count and revenue
+     * @param limit Bound to the only parameter if not negative
+     */
+    private List<SalesFigure> query(String sql, int limit) throws SQLException {
+        List<SalesFigure> figures = new ArrayList<>();
+        try (Connection con = pool.getConnection();
+             PreparedStatement preparedStatement = con.prepareStatement(sql)) {
+            if (limit >= 0) {
+                preparedStatement.setInt(1, limit); // Set limit parameter
+            }
+            ResultSet resultSet = preparedStatement.executeQuery(); // Execute query
+            while (resultSet.next()) {
+                String key = resultSet.getString(1);
+                figures.add(new SalesFigure(key, key, resultSet.getLong(2), resultSet.getBigDecimal(3)));
+            }
+        }
+        return figures;
+    }
+
+    /**
+     * Orders and revenue added up for one rollup key
+     */
+    private static final class Delta {
+        long orders = 0;
+        BigDecimal revenue = BigDecimal.ZERO;
+
+        void add(BigDecimal price) {
+            orders++;
+            revenue = revenue.add(price);
+        }
+    }
+
+    /**
+     * Sales of one game, genre or day
+     */
+    public static final class SalesFigure {
+        private final String key; // Game ID, genre ID or date
+        private final String label; // Display name
+        private final long orderCount; // Number of orders
+        private final BigDecimal revenue; // Sum of prices
+
+        public SalesFigure(String key, String label, long orderCount, BigDecimal revenue) {
+            this.key = key;
+            this.label = label;
+            this.orderCount = orderCount;
+            this.revenue = revenue;
+        }
+
+        SalesFigure withLabel(String newLabel) {
+            return new SalesFigure(key, newLabel, orderCount, revenue);
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public long getOrderCount() {
+            return orderCount;
+        }
+
+        public BigDecimal getRevenue() {
+            return revenue;
+        }
+
+        @Override
+        public String toString() {
+            return label + ": " + orderCount + " orders, " + revenue;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.example;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Schema Migrations
+ *
+ * Versioned, forward-only schema changes for the game store database. Each migration has a
+ * version number and is recorded in the schema_version table once it has been applied, so
+ * for a database that is already up to date startup only reads the recorded version.
+ *
+ * MySQL commits every DDL statement on its own, so a migration cannot be rolled back as a
+ * whole. Migrations are therefore written to be safe to run again: tables are created only
+ * if missing, indexes and columns are added only if absent and seed rows only go into empty
+ * tables. A migration interrupted by a crash is simply applied again on the next start.
+ * This also lets databases created before versioning existed adopt it without any changes.
+ *
+ * Instances starting at the same time take a migration lock around the check-and-apply
+ * loop, so each migration is applied once; the version check of a warm start needs no lock.
+ *
+ * To change the schema, append a migration with the next version number; never edit or
+ * renumber a migration that has been released.
+ */
+public class SchemaMigrations {
+    private static final String[] INITIAL_GENRES = {"Action-adventure", "Battle royale game", "First-person shooter", "Horror",
+            "RPG", "Sports", "Strategy", "Survival game", "Survival horror"};
+
+    private static final String MIGRATION_LOCK_NAME = "games_db.migrate"; // Server-wide named lock on MySQL
+    private static final int MIGRATION_LOCK_TIMEOUT_SECONDS = 300; // Long enough for the slowest migration
+    private static final ReentrantLock LOCAL_MIGRATION_LOCK = new ReentrantLock(); // Used where named locks do not exist
+
+    private static final List<Migration> MIGRATIONS = Arrays.asList(
+            new Migration(1, "Create genres, games, customers and orders", SchemaMigrations::createBaseTables),
+            new Migration(2, "Index customers by name", con -> {
+                if (!hasIndex(con, "customers", "idx_customers_name")) {
+                    execute(con, "CREATE INDEX idx_customers_name ON customers (customer_name)");
+                }
+            }),
+            new Migration(3, "Seed genres", SchemaMigrations::seedGenres),
+            new Migration(4, "Add games.stock", con -> {
+                if (!hasColumn(con, "games", "stock")) {
+                    execute(con, "ALTER TABLE games ADD COLUMN stock INT NULL"); // Existing games stay untracked
+                }
+            }),
+            new Migration(5, "Create sales rollups", SchemaMigrations::createSalesRollups),
+            new Migration(6, "Add games.version", con -> {
+                if (!hasColumn(con, "games", "version")) {
+                    execute(con, "ALTER TABLE games ADD COLUMN version INT NOT NULL DEFAULT 0");
+                }
+            }),
+            new Migration(7, "Create order_log_checkpoint", con -> execute(con,
+                    "CREATE TABLE IF NOT EXISTS order_log_checkpoint (" +
+                    "log_name VARCHAR(500) PRIMARY KEY," + // An absolute path; still fits an InnoDB key
+                    "last_sequence BIGINT NOT NULL" +
+                    ")")));
+
+    /**
+     * One schema change
+     */
+    static final class Migration {
+        final int version; // Position in the migration history
+        final String description; // Recorded in schema_version
+        final Step step; // The change itself
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    /**
+     * The body of a migration; it must be safe to run again after a partial failure
+     */
+    interface Step {
+        void apply(Connection con) throws SQLException;
+    }
+
+    private SchemaMigrations() {
+    }
+
+    /**
+     * Method to get the version a fully migrated database has
+     */
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    /**
+     * Method to apply every migration the database has not seen yet
+     * @param con The connection to use; it is left in auto-commit mode
+     * @return The number of migrations applied, 0 on a warm start
+     * @throws SQLException if a migration fails; the versions before it stay recorded
+     */
+    public static int migrate(Connection con) throws SQLException {
+        if (getCurrentVersion(con) >= getLatestVersion()) {
+            return 0; // Warm start: nothing to do, and no lock taken
+        }
+        boolean serverLock = acquireMigrationLock(con);
+        try {
+            return applyPending(con); // Re-reads the version: another instance may have migrated while we waited
+        } finally {
+            releaseMigrationLock(con, serverLock);
+        }
+    }
+
+    /**
+     * Method to apply the migrations newer than the recorded version; the caller holds the migration lock
+     */
+    private static int applyPending(Connection con) throws SQLException {
+        int current = getCurrentVersion(con);
+        if (current >= getLatestVersion()) {
+            return 0;
+        }
+        if (current < 0) {
+            execute(con, "CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INT PRIMARY KEY," +
+                    "description VARCHAR(200) NOT NULL," +
+                    "applied_at TIMESTAMP NOT NULL" +
+                    ")");
+        }
+
+        int applied = 0;
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version <= current) {
+                continue;
+            }
+            migration.step.apply(con);
+            try (PreparedStatement preparedStatement = con.prepareStatement(
+                    "INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, CURRENT_TIMESTAMP)")) {
+                preparedStatement.setInt(1, migration.version); // Set version parameter
+                preparedStatement.setString(2, migration.description); // Set description parameter
+                preparedStatement.executeUpdate(); // Execute update
+            }
+            applied++;
+        }
+        return applied;
+    }
+
+    /**
+     * Method to serialize migrations between application instances. On MySQL and MariaDB this
+     * is a named server lock held by the connection, which the server also releases if the
+     * connection dies; DDL commits cannot release it. Other databases (the embedded test
+     * database) are only shared within one JVM, so a process-wide lock is used instead.
+     * @return true if the server lock was taken, false if the in-process lock was
+     * @throws SQLException if the lock is not granted within MIGRATION_LOCK_TIMEOUT_SECONDS
+     */
+    private static boolean acquireMigrationLock(Connection con) throws SQLException {
+        String product = con.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+        if (!product.contains("mysql") && !product.contains("mariadb")) {
+            LOCAL_MIGRATION_LOCK.lock();
+            return false;
+        }
+        try (PreparedStatement preparedStatement = con.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            preparedStatement.setString(1, MIGRATION_LOCK_NAME); // Set lock name parameter
+            preparedStatement.setInt(2, MIGRATION_LOCK_TIMEOUT_SECONDS); // Set timeout parameter
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                resultSet.next();
+                if (resultSet.getInt(1) != 1) { // 0 on timeout, NULL on error
+                    throw new SQLException("Timed out waiting for another instance to finish migrating the schema");
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void releaseMigrationLock(Connection con, boolean serverLock) throws SQLException {
+        if (!serverLock) {
+            LOCAL_MIGRATION_LOCK.unlock();
+            return;
+        }
+        try (PreparedStatement preparedStatement = con.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            preparedStatement.setString(1, MIGRATION_LOCK_NAME); // Set lock name parameter
+            preparedStatement.executeQuery().close();
+        }
+    }
+
+    /**
+     * Method to read the highest applied version
+     * @return The version, 0 if none is recorded, or -1 if the schema_version table does not exist
+     * @throws SQLException if the query fails
+     */
+    public static int getCurrentVersion(Connection con) throws SQLException {
+        if (!hasTable(con, "schema_version")) {
+            return -1;
+        }
+        try (Statement statement = con.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            resultSet.next();
+            return resultSet.getInt(1); // NULL (no rows) reads as 0
+        }
+    }
+
+    // Migration bodies
+
+    private static void createBaseTables(Connection con) throws SQLException {
+        execute(con, "CREATE TABLE IF NOT EXISTS genres (" +
+                "genre_id INT PRIMARY KEY AUTO_INCREMENT," +
+                "genre_name VARCHAR(100) NOT NULL UNIQUE" +
+                ")");
+        execute(con, "CREATE TABLE IF NOT EXISTS games (" +
+                "game_id INT AUTO_INCREMENT PRIMARY KEY," +
+                "game_name VARCHAR(100) NOT NULL," +
+                "genre_id INT," +
+                "price DECIMAL(10,2)," +
+                "age_limit INT," +
+                "storage VARCHAR(50)," +
+                "FOREIGN KEY (genre_id) REFERENCES genres(genre_id)" +
+                ")");
+        execute(con, "CREATE TABLE IF NOT EXISTS customers (" +
+                "customer_id INT AUTO_INCREMENT PRIMARY KEY," +
+                "customer_name VARCHAR(100) NOT NULL," +
+                "email VARCHAR(100) NOT NULL UNIQUE" +
+                ")");
+        execute(con, "CREATE TABLE IF NOT EXISTS orders (" +
+                "order_id INT AUTO_INCREMENT PRIMARY KEY," +
+                "customer_id INT," +
+                "game_id INT," +
+                "order_date DATE," +
+                "FOREIGN KEY (customer_id) REFERENCES customers(customer_id)," +
+                "FOREIGN KEY (game_id) REFERENCES games(game_id)" +
+                ")");
+    }
+
+    private static void seedGenres(Connection con) throws SQLException {
+        if (countRows(con, "genres") > 0) {
+            return;
+        }
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        try (PreparedStatement preparedStatement = con.prepareStatement("INSERT INTO genres (genre_name) VALUES (?)")) {
+            for (String genre : INITIAL_GENRES) {
+                preparedStatement.setString(1, genre); // Set genre name parameter
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch(); // All genres in one round trip and one transaction
+            con.commit();
+        } catch (SQLException e) {
+            try {
+                con.rollback();
+            } catch (SQLException rollbackFailure) {
+                e.addSuppressed(rollbackFailure); // Keep the original cause, e.g. genres seeded concurrently
+            }
+            throw e;
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void createSalesRollups(Connection con) throws SQLException {
+        execute(con, "CREATE TABLE IF NOT EXISTS sales_by_game (" +
+                "game_id INT NOT NULL," +
+                "stripe TINYINT NOT NULL," +
+                "order_count BIGINT NOT NULL," +
+                "revenue DECIMAL(16,2) NOT NULL," +
+                "PRIMARY KEY (game_id, stripe)" +
+                ")");
+        execute(con, "CREATE TABLE IF NOT EXISTS sales_by_genre (" +
+                "genre_id INT NOT NULL," +
+                "stripe TINYINT NOT NULL," +
+                "order_count BIGINT NOT NULL," +
+                "revenue DECIMAL(16,2) NOT NULL," +
+                "PRIMARY KEY (genre_id, stripe)" +
+                ")");
+        execute(con, "CREATE TABLE IF NOT EXISTS sales_by_day (" +
+                "order_date DATE NOT NULL," +
+                "stripe TINYINT NOT NULL," +
+                "order_count BIGINT NOT NULL," +
+                "revenue DECIMAL(16,2) NOT NULL," +
+                "PRIMARY KEY (order_date, stripe)" +
+                ")");
+        if (countRows(con, "sales_by_game") == 0 && countRows(con, "orders") > 0) {
+            SalesAnalytics.rebuild(con); // Rollups were added to a database that already has orders
+        }
+    }
+
+    // Helpers
+
+    static void execute(Connection con, String sql) throws SQLException {
+        try (Statement statement = con.createStatement()) {
+            statement.executeUpdate(sql);
+        }
+    }
+
+    static long countRows(Connection con, String table) throws SQLException {
+        try (Statement statement = con.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static boolean hasTable(Connection con, String table) throws SQLException {
+        DatabaseMetaData metaData = con.getMetaData();
+        try (ResultSet tables = metaData.getTables(con.getCatalog(), null, stored(metaData, table), new String[]{"TABLE"})) {
+            return tables.next();
+        }
+    }
+
+    private static boolean hasColumn(Connection con, String table, String column) throws SQLException {
+        DatabaseMetaData metaData = con.getMetaData();
+        try (ResultSet columns = metaData.getColumns(con.getCatalog(), null, stored(metaData, table), stored(metaData, column))) {
+            return columns.next();
+        }
+    }
+
+    private static boolean hasIndex(Connection con, String table, String indexName) throws SQLException {
+        DatabaseMetaData metaData = con.getMetaData();
+        try (ResultSet indexes = metaData.getIndexInfo(con.getCatalog(), null, stored(metaData, table), false, false)) {
+            while (indexes.next()) {
+                if (indexName.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method to convert an identifier to the case the database stores it in (e.g. upper case in embedded databases)
+     */
+    private static String stored(DatabaseMetaData metaData, String identifier) throws SQLException {
+        return metaData.storesUpperCaseIdentifiers() ? identifier.toUpperCase(Locale.ROOT) : identifier;
+    }
+}
@@ -0,0 +1,295 @@
+package com.example;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statement Cache
+ *
+ * Bounded LRU cache of prepared statements for one physical connection, keyed by SQL text.
+ * Statements handed out by the cache can be closed as usual; closing only resets them
+ * (parameters, batch, fetch size, row limit, timeout) so the next prepare of the same SQL
+ * skips the parse/plan round trip.
+ *
+ * A cached statement is lent to one caller at a time. Preparing SQL whose statement is still
+ * in use gives a separate, uncached statement, and eviction only closes statements that are
+ * not in use; the cache may briefly grow past its size while all its statements are busy.
+ * releaseAll() takes back statements a caller never closed, before the connection is reused.
+ *
+ * Dynamic IN lists should be padded with inListSize() so that lookups of different lengths
+ * share a few cached statements instead of one per length.
+ *
+ * A cache belongs to a single connection and is only used by the thread currently
+ * borrowing that connection, so the map itself needs no locking. The counters are
+ * atomic so metrics can be read from other threads.
+ */
+public class StatementCache {
+    private final Connection physical; // Connection the statements are prepared on
+    private final int maxSize; // Maximum number of cached statements
+    private final LinkedHashMap<String, CachedStatement> statements; // Access-ordered, eldest is least recently used
+
+    // Metrics
+    private final AtomicLong hits = new AtomicLong(); // Prepares served from the cache
+    private final AtomicLong misses = new AtomicLong(); // Prepares that went to the driver
+    private final AtomicLong evictions = new AtomicLong(); // Statements closed to make room
+
+    /**
+     * Create a statement cache
+     * @param physical The physical connection to prepare statements on
+     * @param maxSize The maximum number of statements to keep open
+     */
+    public StatementCache(Connection physical, int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Method to get a prepared statement for the given SQL, preparing it only on a cache miss
+     * @param sql The SQL text
+     * @return A statement whose close() returns it to the cache
+     * @throws SQLException if the statement cannot be prepared
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        CachedStatement cached = statements.get(sql);
+        if (cached != null && cached.statement.isClosed()) {
+            statements.remove(sql); // Closed behind our back, prepare it again
+            cached = null;
+        }
+        if (cached != null && cached.owner != null) {
+            misses.incrementAndGet();
+            return wrap(null, physical.prepareStatement(sql)); // Same SQL still in use, lend a private statement
+        }
+        if (cached != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            cached = new CachedStatement(physical.prepareStatement(sql));
+            statements.put(sql, cached);
+        }
+        PreparedStatement handle = wrap(cached, cached.statement);
+        trim(); // Evict after lending, so the statement just handed out is never the one closed
+        return handle;
+    }
+
+    /**
+     * Method to take back every statement that is still lent out, e.g. when the connection
+     * is returned to the pool. The callers' handles behave as closed afterwards.
+     */
+    public void releaseAll() {
+        for (CachedStatement cached : statements.values()) {
+            if (cached.owner != null) {
+                try {
+                    cached.owner.release();
+                } catch (SQLException e) {
+                    // The statement was closed instead, the next prepare replaces it
+                }
+            }
+        }
+        trim(); // Shrink back if the cache grew while its statements were busy
+    }
+
+    /**
+     * Method to close every cached statement, e.g. before the connection is discarded
+     */
+    public void clear() {
+        for (CachedStatement cached : statements.values()) {
+            closeQuietly(cached.statement);
+        }
+        statements.clear();
+    }
+
+    /**
+     * Method to close least recently used statements that are not in use until the cache fits
+     */
+    private void trim() {
+        Iterator<CachedStatement> iterator = statements.values().iterator();
+        while (statements.size() > maxSize && iterator.hasNext()) {
+            CachedStatement cached = iterator.next();
+            if (cached.owner == null) {
+                iterator.remove();
+                evictions.incrementAndGet();
+                closeQuietly(cached.statement); // Release the server-side statement
+            }
+        }
+    }
+
+    /**
+     * Method to round the length of a dynamic IN list up to one of a few fixed sizes (powers
+     * of two). Callers bind the padding positions by repeating one of their values.
+     * @param count The number of values in the list
+     * @return The number of placeholders to put in the list
+     */
+    public static int inListSize(int count) {
+        return count <= 1 ? 1 : Integer.highestOneBit(count - 1) << 1;
+    }
+
+    /**
+     * Method to build the placeholders of an IN list
+     * @param size The number of placeholders, see inListSize()
+     * @return "?, ?, ..." with size placeholders
+     */
+    public static String placeholders(int size) {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        return placeholders.toString();
+    }
+
+    public int size() {
+        return statements.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Method to get the share of prepares served from the cache
+     * @return Hit ratio between 0.0 and 1.0
+     */
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : hits.get() / (double) total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StatementCache[size=%d/%d, hits=%d, misses=%d, evictions=%d, hitRatio=%.1f%%]",
+                size(), maxSize, getHitCount(), getMissCount(), getEvictionCount(), getHitRatio() * 100.0);
+    }
+
+    /**
+     * Method to lend a statement to a caller
+     * @param cached The cache entry, or null for a private statement that is really closed on close()
+     * @param statement The statement
+     * @return A proxy that resets a cached statement on close()
+     */
+    private static PreparedStatement wrap(CachedStatement cached, PreparedStatement statement) {
+        CachedStatementHandle handle = new CachedStatementHandle(cached, statement);
+        if (cached != null) {
+            cached.owner = handle;
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                handle);
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // Nothing useful to do, the statement is being discarded anyway
+        }
+    }
+
+    /**
+     * A cached statement, its settings as prepared and the handle it is currently lent to
+     */
+    private static final class CachedStatement {
+        final PreparedStatement statement;
+        final int fetchSize; // Driver defaults, restored when the statement comes back
+        final int maxRows;
+        final int queryTimeout;
+        CachedStatementHandle owner; // Handle of the current borrower, null while idle
+
+        CachedStatement(PreparedStatement statement) throws SQLException {
+            this.statement = statement;
+            this.fetchSize = statement.getFetchSize();
+            this.maxRows = statement.getMaxRows();
+            this.queryTimeout = statement.getQueryTimeout();
+        }
+    }
+
+    /**
+     * Caller-facing view of a cached statement
+     */
+    private static final class CachedStatementHandle implements InvocationHandler {
+        private final CachedStatement cached; // Null for a private statement
+        private final PreparedStatement statement;
+        private boolean closed = false;
+
+        CachedStatementHandle(CachedStatement cached, PreparedStatement statement) {
+            this.cached = cached;
+            this.statement = statement;
+        }
+
+        /**
+         * Method to reset the statement and give it back to the cache; a private statement is closed
+         */
+        void release() throws SQLException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (cached == null) {
+                statement.close();
+                return;
+            }
+            try {
+                ResultSet resultSet = statement.getResultSet();
+                if (resultSet != null) {
+                    resultSet.close(); // Free the cursor the caller left open
+                }
+                statement.clearParameters(); // Ready for the next borrower
+                statement.clearBatch();
+                statement.setMaxRows(cached.maxRows); // Before the fetch size, some drivers cap it at max rows
+                statement.setFetchSize(cached.fetchSize);
+                statement.setQueryTimeout(cached.queryTimeout);
+            } catch (SQLException e) {
+                closeQuietly(statement); // Unknown state, the next prepare opens a fresh statement
+                throw e;
+            } finally {
+                cached.owner = null;
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    release();
+                    return null;
+                case "isClosed":
+                    return closed || statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + statement + "]";
+                default:
+                    if (closed) {
+                        throw new SQLException("Statement has already been closed");
+                    }
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause(); // Surface the driver's own exception
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,1190 @@
+package com.example;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.sql.Date; // Import Date from java.sql package (to avoid conflict with java.util.Date)
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Store Snapshot
+ *
+ * Exports the genres, games, customers and orders tables, and the order log checkpoints, to
+ * one compact columnar file and loads such a file back into an empty database. The file is several times smaller than a CSV
+ * dump of the same rows and decodes without any text parsing.
+ *
+ * File layout (integers are big-endian):
+ *   header  magic "GSNP", format version (short), creation time in epoch millis (long)
+ *   blocks  per table, blocks of up to blockRows rows: row count, raw length, compressed length
+ *           and CRC32 of the raw bytes (four ints), followed by the deflated columns
+ *   footer  per table: name, column names and types, row count, offset and length of its
+ *           blocks, block count; then the footer offset (long) and the magic again
+ *
+ * Inside a block each column is stored on its own, so values of one kind sit next to each
+ * other: primary keys and dates are delta-encoded, every integer is a zigzag varint, prices
+ * are stored in cents, and strings use a block-local dictionary when they repeat (storage,
+ * game names of a popular genre) or plain length-prefixed UTF-8 when they do not (e-mail
+ * addresses). A column holding nulls starts with a null bitmap. Ascending order IDs thus take
+ * a single byte before compression.
+ *
+ * Export reads every table by keyset pagination on its primary key, one block per page as in
+ * OrderReport, into part files that are joined with FileChannel.transferTo. All tables are read
+ * as of one point in time while orders keep coming in, so stock, orders and order log
+ * checkpoints in a snapshot always agree. On MySQL and MariaDB one connection per table starts
+ * a consistent-snapshot REPEATABLE READ transaction while FLUSH TABLES WITH READ LOCK holds
+ * writers off for a moment, and the tables are read in parallel; without the RELOAD privilege
+ * this needs, and on other databases, the tables are read one after the other in a single
+ * snapshot transaction (SERIALIZABLE, which is a snapshot for readers in H2).
+ *
+ * Load reads the footer and inserts every table in batches on its own connection, starting a
+ * table as soon as the tables it references are loaded, then rebuilds the sales rollups. The
+ * target's order log checkpoints are replaced by the snapshot's, so a log whose records are
+ * already in the snapshot resumes after them; files written before checkpoints were exported
+ * leave none, and such a log has to be allowed to replay without one.
+ *
+ * The load is bound by the target's inserts, not by reading the file: in GameStoreBenchmark on
+ * H2 with 200,000 orders both formats load at 46,000 to 65,000 rows/s, within 10% of each other
+ * and either one ahead from run to run. What the columnar format gains is a file about 5 times
+ * smaller that decodes 3 to 4 times faster than the CSV parses.
+ */
+public class StoreSnapshot {
+    private static final int MAGIC = 0x47534E50; // "GSNP"
+    private static final short FORMAT_VERSION = 2; // Version 1 files have no order_log_checkpoint table
+    private static final int HEADER_BYTES = 14; // Magic, version and creation time
+    private static final int TRAILER_BYTES = 12; // Footer offset and magic
+    private static final int BLOCK_HEADER_BYTES = 16; // Row count, raw length, compressed length, CRC32
+    private static final int COMPRESSION_LEVEL = Deflater.BEST_SPEED; // The encodings already remove most redundancy
+
+    private static final int HAS_NULLS = 1; // Column flag: a null bitmap follows
+    private static final int DICTIONARY = 2; // Column flag: strings are dictionary-encoded
+
+    /**
+     * Storage type of a column
+     */
+    public enum ColumnType {
+        ID, // Ascending primary key, delta-encoded, never null
+        INT, // Integer, zigzag varint
+        DECIMAL, // DECIMAL with two places, stored in cents
+        DATE, // Date, delta-encoded epoch days
+        STRING // String, dictionary or plain
+    }
+
+    /**
+     * One exported column
+     */
+    static final class Column {
+        final String name; // Column name in the database
+        final ColumnType type; // How values are stored
+
+        Column(String name, ColumnType type) {
+            this.name = name;
+            this.type = type;
+        }
+    }
+
+    /**
+     * One exported table; the first column is its primary key
+     */
+    static final class Table {
+        final String name; // Table name in the database
+        final List<String> references; // Tables its foreign keys point to
+        final Column[] columns; // Exported columns
+        final boolean paged; // Read by keyset pages on an ID key; otherwise small and read with one query
+
+        Table(String name, List<String> references, Column... columns) {
+            this.name = name;
+            this.references = references;
+            this.columns = columns;
+            this.paged = columns[0].type == ColumnType.ID;
+        }
+    }
+
+    // Exported tables, parents before children
+    static final List<Table> TABLES = Arrays.asList(
+            new Table("genres", Collections.emptyList(),
+                    new Column("genre_id", ColumnType.ID),
+                    new Column("genre_name", ColumnType.STRING)),
+            new Table("games", Collections.singletonList("genres"),
+                    new Column("game_id", ColumnType.ID),
+                    new Column("game_name", ColumnType.STRING),
+                    new Column("genre_id", ColumnType.INT),
+                    new Column("price", ColumnType.DECIMAL),
+                    new Column("age_limit", ColumnType.INT),
+                    new Column("storage", ColumnType.STRING),
+                    new Column("stock", ColumnType.INT),
+                    new Column("version", ColumnType.INT)),
+            new Table("customers", Collections.emptyList(),
+                    new Column("customer_id", ColumnType.ID),
+                    new Column("customer_name", ColumnType.STRING),
+                    new Column("email", ColumnType.STRING)),
+            new Table("orders", Arrays.asList("customers", "games"),
+                    new Column("order_id", ColumnType.ID),
+                    new Column("customer_id", ColumnType.INT),
+                    new Column("game_id", ColumnType.INT),
+                    new Column("order_date", ColumnType.DATE)),
+            new Table("order_log_checkpoint", Collections.emptyList(),
+                    new Column("log_name", ColumnType.STRING),
+                    new Column("last_sequence", ColumnType.INT)));
+
+    private final ConnectionPool pool; // Source of database connections
+    private final int blockRows; // Rows per block, which is also the export page size
+    private final int batchSize; // Rows per JDBC batch when loading
+
+    /**
+     * Create a snapshot tool with blocks of 65536 rows and batches of 1000 rows
+     * @param pool The connection pool
+     */
+    public StoreSnapshot(ConnectionPool pool) {
+        this(pool, 65_536, 1000);
+    }
+
+    /**
+     * Create a snapshot tool
+     * @param pool The connection pool
+     * @param blockRows Rows per block; bounds the memory used per table
+     * @param batchSize Rows per JDBC batch when loading
+     */
+    public StoreSnapshot(ConnectionPool pool, int blockRows, int batchSize) {
+        if (blockRows <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Block rows and batch size must be positive");
+        }
+        this.pool = pool;
+        this.blockRows = blockRows;
+        this.batchSize = batchSize;
+    }
+
+    // Export
+
+    /**
+     * Method to export all tables to a snapshot file, replacing it atomically
+     * @param file The snapshot file
+     * @return Rows per table, file size and elapsed time
+     * @throws IOException if writing fails
+     * @throws SQLException if a query fails
+     */
+    public SnapshotResult export(Path file) throws IOException, SQLException {
+        long start = System.nanoTime();
+        Path directory = file.toAbsolutePath().getParent();
+        String prefix = file.getFileName().toString() + ".";
+        Map<String, Path> parts = new HashMap<>();
+        Path temporary = null;
+        try {
+            for (Table table : TABLES) {
+                parts.put(table.name, Files.createTempFile(directory, prefix + table.name + ".", ".part"));
+            }
+            Map<String, TableInfo> infos;
+            List<Connection> views = openSnapshotViews(Math.min(TABLES.size(), pool.getMaxSize() - 1));
+            try {
+                BlockingQueue<Connection> free = new ArrayBlockingQueue<>(views.size(), false, views);
+                infos = runTables(TABLES, table -> Collections.emptyList(), table -> { // One snapshot, so no order is needed
+                    Connection con = takeView(free);
+                    try {
+                        return exportTable(table, parts.get(table.name), con);
+                    } finally {
+                        free.add(con);
+                    }
+                });
+            } finally {
+                closeSnapshotViews(views);
+            }
+
+            // Join the parts behind the header and append the footer
+            temporary = Files.createTempFile(directory, prefix, ".tmp");
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putShort(FORMAT_VERSION).putLong(System.currentTimeMillis()).flip();
+                writeFully(out, header);
+                for (Table table : TABLES) {
+                    TableInfo info = infos.get(table.name);
+                    info.offset = out.position();
+                    try (FileChannel in = FileChannel.open(parts.get(table.name), StandardOpenOption.READ)) {
+                        long copied = 0;
+                        while (copied < info.length) {
+                            copied += in.transferTo(copied, info.length - copied, out);
+                        }
+                    }
+                }
+                long footerOffset = out.position();
+                List<TableInfo> footer = new ArrayList<>();
+                for (Table table : TABLES) {
+                    footer.add(infos.get(table.name));
+                }
+                writeFully(out, ByteBuffer.wrap(encodeFooter(footer)));
+                ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES);
+                trailer.putLong(footerOffset).putInt(MAGIC).flip();
+                writeFully(out, trailer);
+                out.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            SnapshotResult result = new SnapshotResult();
+            for (Table table : TABLES) {
+                result.rows.put(table.name, infos.get(table.name).rows);
+            }
+            result.fileBytes = Files.size(file);
+            result.elapsedNanos = System.nanoTime() - start;
+            return result;
+        } finally {
+            for (Path part : parts.values()) {
+                Files.deleteIfExists(part);
+            }
+            if (temporary != null) {
+                Files.deleteIfExists(temporary); // Already moved unless the export failed
+            }
+        }
+    }
+
+    /**
+     * Method to open connections that all read the database as of the same moment
+     * @param parallelism How many connections to open at most
+     * @return One connection per table that may be read in parallel, or a single connection;
+     *         each is in an open transaction that closeSnapshotViews() ends
+     * @throws SQLException if the transactions cannot be started
+     */
+    private List<Connection> openSnapshotViews(int parallelism) throws SQLException {
+        List<Connection> views = new ArrayList<>();
+        try {
+            views.add(pool.getConnection());
+            String product = views.get(0).getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+            boolean mysql = product.contains("mysql") || product.contains("mariadb");
+            if (!mysql || parallelism < 2) {
+                beginSnapshot(views.get(0), mysql);
+                return views;
+            }
+
+            // Borrow every connection before writers are held off, so the pool cannot run dry under the lock
+            Connection coordinator = pool.getConnection();
+            try {
+                while (views.size() < parallelism) {
+                    views.add(pool.getConnection());
+                }
+                try (Statement statement = coordinator.createStatement()) {
+                    try {
+                        statement.execute("FLUSH TABLES WITH READ LOCK"); // Waits for running writes, blocks new ones
+                    } catch (SQLException e) {
+                        System.err.println("Snapshot export reads tables one by one: " + e.getMessage()); // Typically no RELOAD privilege
+                        while (views.size() > 1) {
+                            views.remove(views.size() - 1).close();
+                        }
+                        beginSnapshot(views.get(0), true);
+                        return views;
+                    }
+                    try {
+                        for (Connection view : views) {
+                            beginSnapshot(view, true);
+                        }
+                    } finally {
+                        statement.execute("UNLOCK TABLES"); // Writers were held off only while the snapshots started
+                    }
+                }
+            } finally {
+                coordinator.close();
+            }
+            return views;
+        } catch (SQLException | RuntimeException e) {
+            closeSnapshotViews(views);
+            throw e;
+        }
+    }
+
+    /**
+     * Method to start a read-only transaction that sees one snapshot of every table
+     */
+    private static void beginSnapshot(Connection con, boolean mysql) throws SQLException {
+        con.setAutoCommit(false);
+        if (mysql) {
+            con.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            try (Statement statement = con.createStatement()) {
+                statement.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT"); // Taken now, not at the first read
+            }
+        } else {
+            con.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE); // H2's REPEATABLE READ snapshots each table on first use
+        }
+    }
+
+    /**
+     * Method to end the snapshot transactions and return the connections; the pool restores
+     * the isolation level each connection was opened with
+     */
+    private void closeSnapshotViews(List<Connection> views) throws SQLException {
+        SQLException failure = null;
+        for (Connection view : views) {
+            try {
+                try {
+                    if (!view.getAutoCommit()) {
+                        view.rollback(); // Nothing was written
+                        view.setAutoCommit(true);
+                    }
+                } finally {
+                    view.close();
+                }
+            } catch (SQLException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static Connection takeView(BlockingQueue<Connection> free) throws IOException {
+        try {
+            return free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a snapshot connection");
+        }
+    }
+
+    /**
+     * Method to write one table as a run of blocks to its part file
+     * @param table The table
+     * @param part The part file
+     * @param con A connection in the export's snapshot transaction
+     * @return The table's footer entry, with the offset still unset
+     */
+    private TableInfo exportTable(Table table, Path part, Connection con) throws IOException, SQLException {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int c = 0; c < table.columns.length; c++) {
+            sql.append(c == 0 ? "" : ", ").append(table.columns[c].name);
+        }
+        String key = table.columns[0].name;
+        sql.append(" FROM ").append(table.name);
+        if (table.paged) {
+            sql.append(" WHERE ").append(key).append(" > ?");
+        }
+        sql.append(" ORDER BY ").append(key).append(" ASC");
+        if (table.paged) {
+            sql.append(" LIMIT ?");
+        }
+
+        TableInfo info = new TableInfo(table.name, table.columns);
+        Block block = new Block(table.columns);
+        BlockCodec codec = new BlockCodec();
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             PreparedStatement preparedStatement = con.prepareStatement(sql.toString())) {
+            preparedStatement.setFetchSize(blockRows);
+            ResultSet resultSet = null;
+            long lastId = Long.MIN_VALUE;
+            do {
+                if (table.paged) {
+                    preparedStatement.setLong(1, lastId); // Set keyset position parameter
+                    preparedStatement.setInt(2, blockRows); // Set page size parameter
+                    resultSet = preparedStatement.executeQuery(); // Execute query, one page per block
+                } else if (resultSet == null) {
+                    resultSet = preparedStatement.executeQuery(); // Execute query, read block by block
+                }
+                readBlock(resultSet, block);
+                if (block.rows == 0) {
+                    break;
+                }
+                info.length += codec.write(channel, block);
+                info.rows += block.rows;
+                info.blocks++;
+                if (table.paged) {
+                    lastId = block.numbers[0][block.rows - 1];
+                }
+            } while (block.rows == blockRows);
+        }
+        return info;
+    }
+
+    /**
+     * Method to read up to blockRows rows of a result set into a block
+     * @param resultSet The rows, positioned before the next one to read
+     * @param block The block to fill
+     */
+    private void readBlock(ResultSet resultSet, Block block) throws SQLException {
+        block.clear(blockRows);
+        while (block.rows < blockRows && resultSet.next()) {
+            int row = block.rows++;
+            for (int c = 0; c < block.columns.length; c++) {
+                int index = c + 1;
+                switch (block.columns[c].type) {
+                    case ID:
+                    case INT:
+                        block.numbers[c][row] = resultSet.getLong(index);
+                        block.nulls[c][row] = block.columns[c].type == ColumnType.INT && resultSet.wasNull(); // Keys are never null
+                        break;
+                    case DECIMAL:
+                        BigDecimal decimal = resultSet.getBigDecimal(index);
+                        block.nulls[c][row] = decimal == null;
+                        if (decimal != null) {
+                            block.numbers[c][row] = decimal.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+                        }
+                        break;
+                    case DATE:
+                        Date date = resultSet.getDate(index);
+                        block.nulls[c][row] = date == null;
+                        if (date != null) {
+                            block.numbers[c][row] = date.toLocalDate().toEpochDay();
+                        }
+                        break;
+                    default:
+                        block.strings[c][row] = resultSet.getString(index);
+                        block.nulls[c][row] = block.strings[c][row] == null;
+                }
+            }
+        }
+    }
+
+    // Load
+
+    /**
+     * Method to load a snapshot into a database without games, customers or orders. The
+     * genres seeded by the schema migrations and any order log checkpoints are replaced by
+     * the snapshot's. Every block is committed on its own, so after a failed load the tables
+     * must be emptied before retrying.
+     * @param file The snapshot file
+     * @return Rows per table, file size and elapsed time
+     * @throws IOException if the file cannot be read or is corrupt
+     * @throws SQLException if the database is not empty or an insert fails
+     */
+    public SnapshotResult load(Path file) throws IOException, SQLException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Map<String, TableInfo> infos = readFooter(channel);
+            List<Table> tables = new ArrayList<>();
+            for (Table table : TABLES) {
+                if (infos.containsKey(table.name)) {
+                    tables.add(table);
+                }
+            }
+            prepareTarget(infos.containsKey("genres"));
+            Map<String, Long> loaded = runTables(tables, table -> table.references,
+                    table -> loadTable(channel, infos.get(table.name)));
+
+            try (Connection con = pool.getConnection()) {
+                SalesAnalytics.rebuild(con); // Rollups are derived data and not part of the snapshot
+            }
+
+            SnapshotResult result = new SnapshotResult();
+            result.rows.putAll(loaded);
+            result.fileBytes = channel.size();
+            result.elapsedNanos = System.nanoTime() - start;
+            return result;
+        }
+    }
+
+    /**
+     * Method to check that the target holds no store data, drop the seeded genres and reset the order log checkpoints
+     * @param replaceGenres true if the snapshot contains genres
+     */
+    private void prepareTarget(boolean replaceGenres) throws SQLException {
+        try (Connection con = pool.getConnection();
+             Statement statement = con.createStatement()) {
+            for (String table : new String[] {"orders", "customers", "games"}) {
+                try (ResultSet resultSet = statement.executeQuery("SELECT 1 FROM " + table + " LIMIT 1")) {
+                    if (resultSet.next()) {
+                        throw new SQLException("A snapshot can only be loaded into an empty database, but " + table + " has rows");
+                    }
+                }
+            }
+            if (replaceGenres) {
+                statement.executeUpdate("DELETE FROM genres"); // No game refers to them yet
+            }
+            statement.executeUpdate("DELETE FROM order_log_checkpoint"); // They describe orders this database does not hold
+        }
+    }
+
+    /**
+     * Method to insert all rows of one table, one transaction per block
+     * @param channel The snapshot file
+     * @param info The table's footer entry
+     * @return The number of inserted rows
+     */
+    private long loadTable(FileChannel channel, TableInfo info) throws IOException, SQLException {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(info.name).append(" (");
+        StringBuilder values = new StringBuilder();
+        for (int c = 0; c < info.columns.length; c++) {
+            sql.append(c == 0 ? "" : ", ").append(info.columns[c].name);
+            values.append(c == 0 ? "?" : ", ?");
+        }
+        sql.append(") VALUES (").append(values).append(')');
+
+        Block block = new Block(info.columns);
+        BlockCodec codec = new BlockCodec();
+        long inserted = 0;
+        try (Connection con = pool.getConnection()) {
+            con.setAutoCommit(false); // The pool restores auto-commit when the connection is returned
+            try (PreparedStatement preparedStatement = con.prepareStatement(sql.toString())) {
+                long position = info.offset;
+                for (int b = 0; b < info.blocks; b++) {
+                    position = codec.read(channel, position, block);
+                    int pending = 0;
+                    for (int row = 0; row < block.rows; row++) {
+                        bindRow(preparedStatement, block, row);
+                        preparedStatement.addBatch();
+                        if (++pending == batchSize) {
+                            preparedStatement.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        preparedStatement.executeBatch();
+                    }
+                    con.commit();
+                    inserted += block.rows;
+                }
+            } catch (SQLException | IOException | RuntimeException e) {
+                try {
+                    con.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure); // Keep the original cause, e.g. a corrupt block
+                }
+                throw e;
+            }
+        }
+        return inserted;
+    }
+
+    /**
+     * Method to set the parameters of one insert from a block row
+     */
+    private static void bindRow(PreparedStatement preparedStatement, Block block, int row) throws SQLException {
+        for (int c = 0; c < block.columns.length; c++) {
+            int index = c + 1;
+            boolean isNull = block.nulls[c][row];
+            switch (block.columns[c].type) {
+                case ID:
+                case INT:
+                    if (isNull) {
+                        preparedStatement.setNull(index, Types.INTEGER);
+                    } else {
+                        preparedStatement.setLong(index, block.numbers[c][row]); // Set integer column parameter
+                    }
+                    break;
+                case DECIMAL:
+                    if (isNull) {
+                        preparedStatement.setNull(index, Types.DECIMAL);
+                    } else {
+                        preparedStatement.setBigDecimal(index, BigDecimal.valueOf(block.numbers[c][row], 2)); // Set price parameter
+                    }
+                    break;
+                case DATE:
+                    if (isNull) {
+                        preparedStatement.setNull(index, Types.DATE);
+                    } else {
+                        preparedStatement.setDate(index, Date.valueOf(LocalDate.ofEpochDay(block.numbers[c][row]))); // Set date parameter
+                    }
+                    break;
+                default:
+                    if (isNull) {
+                        preparedStatement.setNull(index, Types.VARCHAR);
+                    } else {
+                        preparedStatement.setString(index, block.strings[c][row]); // Set string column parameter
+                    }
+            }
+        }
+    }
+
+    /**
+     * Method to decode every block of a snapshot without touching the database, which checks
+     * all checksums and measures the decoding speed
+     * @param file The snapshot file
+     * @return Rows per table, file size and elapsed time
+     * @throws IOException if the file cannot be read or is corrupt
+     */
+    public static SnapshotResult verify(Path file) throws IOException {
+        long start = System.nanoTime();
+        SnapshotResult result = new SnapshotResult();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            BlockCodec codec = new BlockCodec();
+            for (TableInfo info : readFooter(channel).values()) {
+                Block block = new Block(info.columns);
+                long position = info.offset;
+                long rows = 0;
+                for (int b = 0; b < info.blocks; b++) {
+                    position = codec.read(channel, position, block);
+                    rows += block.rows;
+                }
+                if (rows != info.rows || position != info.offset + info.length) {
+                    throw new IOException("Corrupt snapshot: table " + info.name + " does not match its footer");
+                }
+                result.rows.put(info.name, rows);
+            }
+            result.fileBytes = channel.size();
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    // Scheduling
+
+    private interface TableTask<T> {
+        T run(Table table) throws IOException, SQLException;
+    }
+
+    /**
+     * Method to run a task per table in parallel, each table starting once its prerequisites are done
+     * @param tables The tables, every table after its prerequisites
+     * @param prerequisites The names of the tables a table has to wait for
+     * @param task The work per table
+     * @return The task results by table name, in the given order
+     */
+    private <T> Map<String, T> runTables(List<Table> tables, java.util.function.Function<Table, List<String>> prerequisites,
+            TableTask<T> task) throws IOException, SQLException {
+        AtomicLong ids = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(tables.size(), pool.getMaxSize())), runnable -> {
+            Thread thread = new Thread(runnable, "store-snapshot-" + ids.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Map<String, CompletableFuture<T>> futures = new LinkedHashMap<>();
+            for (Table table : tables) {
+                List<CompletableFuture<T>> before = new ArrayList<>();
+                for (String name : prerequisites.apply(table)) {
+                    if (futures.containsKey(name)) {
+                        before.add(futures.get(name));
+                    }
+                }
+                futures.put(table.name, CompletableFuture.allOf(before.toArray(new CompletableFuture<?>[0]))
+                        .thenApplyAsync(ignored -> {
+                            try {
+                                return task.run(table);
+                            } catch (IOException | SQLException e) {
+                                throw new CompletionException(e);
+                            }
+                        }, executor));
+            }
+
+            // Wait for every table, so no task still uses a connection when this returns
+            Map<String, T> results = new LinkedHashMap<>();
+            Throwable failure = null;
+            for (Map.Entry<String, CompletableFuture<T>> entry : futures.entrySet()) {
+                try {
+                    results.put(entry.getKey(), entry.getValue().join());
+                } catch (CompletionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() != null ? e.getCause() : e;
+                    }
+                }
+            }
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            } else if (failure instanceof SQLException) {
+                throw (SQLException) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure != null) {
+                throw new IllegalStateException(failure);
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // File format
+
+    /**
+     * Footer entry of one table
+     */
+    private static final class TableInfo {
+        final String name; // Table name
+        final Column[] columns; // Stored columns in block order
+        long rows = 0; // Rows in all blocks
+        long offset = 0; // File position of the first block
+        long length = 0; // Bytes of all blocks
+        int blocks = 0; // Number of blocks
+
+        TableInfo(String name, Column[] columns) {
+            this.name = name;
+            this.columns = columns;
+        }
+    }
+
+    /**
+     * Method to serialize the footer
+     */
+    private static byte[] encodeFooter(List<TableInfo> infos) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(infos.size());
+        for (TableInfo info : infos) {
+            out.writeUTF(info.name);
+            out.writeInt(info.columns.length);
+            for (Column column : info.columns) {
+                out.writeUTF(column.name);
+                out.writeByte(column.type.ordinal());
+            }
+            out.writeLong(info.rows);
+            out.writeLong(info.offset);
+            out.writeLong(info.length);
+            out.writeInt(info.blocks);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Method to read and validate the header and footer. Table and column names end up in SQL,
+     * so only those of TABLES are accepted.
+     * @param channel The snapshot file
+     * @return The footer entries by table name, in file order
+     * @throws IOException if the file is not a snapshot or is corrupt
+     */
+    private static Map<String, TableInfo> readFooter(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_BYTES + TRAILER_BYTES) {
+            throw new IOException("Not a snapshot file: too short");
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(channel, header, 0);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a snapshot file: bad magic");
+        }
+        if (header.getShort(4) < 1 || header.getShort(4) > FORMAT_VERSION) {
+            throw new IOException("Unsupported snapshot format version " + header.getShort(4));
+        }
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES);
+        readFully(channel, trailer, size - TRAILER_BYTES);
+        long footerOffset = trailer.getLong(0);
+        if (trailer.getInt(8) != MAGIC || footerOffset < HEADER_BYTES || footerOffset > size - TRAILER_BYTES) {
+            throw new IOException("Corrupt snapshot: bad trailer (truncated file?)");
+        }
+        ByteBuffer footer = ByteBuffer.allocate((int) (size - TRAILER_BYTES - footerOffset));
+        readFully(channel, footer, footerOffset);
+
+        Map<String, TableInfo> infos = new LinkedHashMap<>();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(footer.array()));
+        int tables = in.readInt();
+        for (int t = 0; t < tables; t++) {
+            String name = in.readUTF();
+            Table table = null;
+            for (Table known : TABLES) {
+                if (known.name.equals(name)) {
+                    table = known;
+                }
+            }
+            if (table == null || infos.containsKey(name)) {
+                throw new IOException("Corrupt snapshot: unexpected table " + name);
+            }
+            Column[] columns = new Column[in.readInt()];
+            if (columns.length == 0 || columns.length > table.columns.length) {
+                throw new IOException("Corrupt snapshot: bad column count for " + name);
+            }
+            for (int c = 0; c < columns.length; c++) {
+                String columnName = in.readUTF();
+                int type = in.readUnsignedByte();
+                for (Column known : table.columns) {
+                    if (known.name.equals(columnName) && known.type.ordinal() == type) {
+                        columns[c] = known;
+                    }
+                }
+                if (columns[c] == null || (c == 0) != (columns[c] == table.columns[0])) { // The key comes first
+                    throw new IOException("Corrupt snapshot: unexpected column " + name + "." + columnName);
+                }
+            }
+            TableInfo info = new TableInfo(name, columns);
+            info.rows = in.readLong();
+            info.offset = in.readLong();
+            info.length = in.readLong();
+            info.blocks = in.readInt();
+            if (info.offset < HEADER_BYTES || info.length < 0 || info.offset + info.length > footerOffset) {
+                throw new IOException("Corrupt snapshot: blocks of " + name + " outside the file");
+            }
+            infos.put(name, info);
+        }
+        return infos;
+    }
+
+    /**
+     * Column values of up to one block of rows
+     */
+    private static final class Block {
+        final Column[] columns; // Columns in block order
+        long[][] numbers; // Values of numeric columns: ids, integers, cents, epoch days
+        String[][] strings; // Values of string columns
+        boolean[][] nulls; // Null flags of every column
+        int rows = 0; // Rows in use
+
+        Block(Column[] columns) {
+            this.columns = columns;
+            this.numbers = new long[columns.length][];
+            this.strings = new String[columns.length][];
+            this.nulls = new boolean[columns.length][0];
+        }
+
+        /**
+         * Method to empty the block and make room for a number of rows
+         */
+        void clear(int capacity) {
+            rows = 0;
+            if (nulls[0].length >= capacity) {
+                return;
+            }
+            for (int c = 0; c < columns.length; c++) {
+                if (columns[c].type == ColumnType.STRING) {
+                    strings[c] = new String[capacity];
+                } else {
+                    numbers[c] = new long[capacity];
+                }
+                nulls[c] = new boolean[capacity];
+            }
+        }
+    }
+
+    /**
+     * Encodes, compresses and checksums blocks, and the reverse. Buffers are reused from block
+     * to block, so one instance serves one thread.
+     */
+    private static final class BlockCodec {
+        private final Deflater deflater = new Deflater(COMPRESSION_LEVEL);
+        private final Inflater inflater = new Inflater();
+        private final CRC32 crc = new CRC32();
+        private final ByteSink raw = new ByteSink(); // Encoded columns
+        private final ByteSink compressed = new ByteSink(); // Deflated columns
+        private final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+
+        /**
+         * Method to append a block to a channel
+         * @return The number of bytes written
+         */
+        long write(FileChannel channel, Block block) throws IOException {
+            raw.length = 0;
+            for (int c = 0; c < block.columns.length; c++) {
+                encodeColumn(block, c);
+            }
+            crc.reset();
+            crc.update(raw.data, 0, raw.length);
+
+            deflater.reset();
+            deflater.setInput(raw.data, 0, raw.length);
+            deflater.finish();
+            compressed.length = 0;
+            while (!deflater.finished()) {
+                compressed.ensure(raw.length / 4 + 64);
+                compressed.length += deflater.deflate(compressed.data, compressed.length, compressed.data.length - compressed.length);
+            }
+
+            header.clear();
+            header.putInt(block.rows).putInt(raw.length).putInt(compressed.length).putInt((int) crc.getValue()).flip();
+            writeFully(channel, header, ByteBuffer.wrap(compressed.data, 0, compressed.length));
+            return BLOCK_HEADER_BYTES + compressed.length;
+        }
+
+        /**
+         * Method to read the block at a position; positional reads let several threads share the channel
+         * @return The position of the next block
+         */
+        long read(FileChannel channel, long position, Block block) throws IOException {
+            header.clear();
+            readFully(channel, header, position);
+            int rows = header.getInt(0);
+            int rawLength = header.getInt(4);
+            int compressedLength = header.getInt(8);
+            if (rows <= 0 || rawLength < 0 || compressedLength < 0 || position + BLOCK_HEADER_BYTES + compressedLength > channel.size()) {
+                throw new IOException("Corrupt snapshot: bad block header at " + position);
+            }
+            compressed.length = 0;
+            compressed.ensure(compressedLength);
+            readFully(channel, ByteBuffer.wrap(compressed.data, 0, compressedLength), position + BLOCK_HEADER_BYTES);
+
+            raw.length = 0;
+            raw.ensure(rawLength);
+            inflater.reset();
+            inflater.setInput(compressed.data, 0, compressedLength);
+            try {
+                while (raw.length < rawLength && !inflater.finished()) {
+                    int inflated = inflater.inflate(raw.data, raw.length, rawLength - raw.length);
+                    if (inflated == 0 && inflater.needsInput()) {
+                        break;
+                    }
+                    raw.length += inflated;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt snapshot: block at " + position + " does not inflate", e);
+            }
+            crc.reset();
+            crc.update(raw.data, 0, raw.length);
+            if (raw.length != rawLength || (int) crc.getValue() != header.getInt(12)) {
+                throw new IOException("Corrupt snapshot: checksum mismatch in block at " + position);
+            }
+
+            block.clear(rows);
+            block.rows = rows;
+            ByteBuffer in = ByteBuffer.wrap(raw.data, 0, rawLength);
+            try {
+                for (int c = 0; c < block.columns.length; c++) {
+                    decodeColumn(in, block, c);
+                }
+            } catch (RuntimeException e) { // BufferUnderflowException, IndexOutOfBoundsException
+                throw new IOException("Corrupt snapshot: undecodable block at " + position, e);
+            }
+            return position + BLOCK_HEADER_BYTES + compressedLength;
+        }
+
+        private void encodeColumn(Block block, int c) {
+            boolean[] nulls = block.nulls[c];
+            int nonNull = 0;
+            for (int row = 0; row < block.rows; row++) {
+                nonNull += nulls[row] ? 0 : 1;
+            }
+
+            // Strings repeating often enough are replaced by their index in a block-local dictionary
+            List<String> dictionary = null;
+            Map<String, Integer> indexes = null;
+            if (block.columns[c].type == ColumnType.STRING) {
+                indexes = new HashMap<>();
+                for (int row = 0; row < block.rows; row++) {
+                    if (!nulls[row]) {
+                        indexes.putIfAbsent(block.strings[c][row], indexes.size());
+                    }
+                }
+                if (indexes.size() * 2 <= nonNull) {
+                    dictionary = new ArrayList<>(Collections.nCopies(indexes.size(), (String) null));
+                    for (Map.Entry<String, Integer> entry : indexes.entrySet()) {
+                        dictionary.set(entry.getValue(), entry.getKey());
+                    }
+                }
+            }
+
+            raw.writeByte((nonNull < block.rows ? HAS_NULLS : 0) | (dictionary != null ? DICTIONARY : 0));
+            if (nonNull < block.rows) {
+                for (int row = 0; row < block.rows; row += 8) {
+                    int bits = 0;
+                    for (int bit = 0; bit < 8 && row + bit < block.rows; bit++) {
+                        bits |= nulls[row + bit] ? 1 << bit : 0;
+                    }
+                    raw.writeByte(bits);
+                }
+            }
+            if (dictionary != null) {
+                raw.writeVarLong(dictionary.size());
+                for (String value : dictionary) {
+                    raw.writeString(value);
+                }
+            }
+
+            ColumnType type = block.columns[c].type;
+            long previous = 0; // Base of the delta encoding
+            for (int row = 0; row < block.rows; row++) {
+                if (nulls[row]) {
+                    continue;
+                }
+                switch (type) {
+                    case ID:
+                    case DATE:
+                        raw.writeSignedVarLong(block.numbers[c][row] - previous);
+                        previous = block.numbers[c][row];
+                        break;
+                    case INT:
+                    case DECIMAL:
+                        raw.writeSignedVarLong(block.numbers[c][row]);
+                        break;
+                    default:
+                        if (dictionary != null) {
+                            raw.writeVarLong(indexes.get(block.strings[c][row]));
+                        } else {
+                            raw.writeString(block.strings[c][row]);
+                        }
+                }
+            }
+        }
+
+        private static void decodeColumn(ByteBuffer in, Block block, int c) {
+            int flags = in.get();
+            boolean[] nulls = block.nulls[c];
+            if ((flags & HAS_NULLS) != 0) {
+                for (int row = 0; row < block.rows; row += 8) {
+                    int bits = in.get();
+                    for (int bit = 0; bit < 8 && row + bit < block.rows; bit++) {
+                        nulls[row + bit] = (bits & 1 << bit) != 0;
+                    }
+                }
+            } else {
+                Arrays.fill(nulls, 0, block.rows, false);
+            }
+            String[] dictionary = null;
+            if ((flags & DICTIONARY) != 0) {
+                dictionary = new String[(int) readVarLong(in)];
+                for (int i = 0; i < dictionary.length; i++) {
+                    dictionary[i] = readString(in);
+                }
+            }
+
+            ColumnType type = block.columns[c].type;
+            long previous = 0;
+            for (int row = 0; row < block.rows; row++) {
+                if (nulls[row]) {
+                    if (type == ColumnType.STRING) {
+                        block.strings[c][row] = null;
+                    }
+                    continue;
+                }
+                switch (type) {
+                    case ID:
+                    case DATE:
+                        previous += readSignedVarLong(in);
+                        block.numbers[c][row] = previous;
+                        break;
+                    case INT:
+                    case DECIMAL:
+                        block.numbers[c][row] = readSignedVarLong(in);
+                        break;
+                    default:
+                        block.strings[c][row] = dictionary != null ? dictionary[(int) readVarLong(in)] : readString(in);
+                }
+            }
+        }
+    }
+
+    /**
+     * Growable byte array with varint and string writers
+     */
+    private static final class ByteSink {
+        byte[] data = new byte[1 << 16];
+        int length = 0;
+
+        void ensure(int extra) {
+            if (data.length - length < extra) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + extra));
+            }
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            data[length++] = (byte) value;
+        }
+
+        /**
+         * Method to write an unsigned LEB128 varint: 7 bits per byte, high bit set on all but the last
+         */
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+
+        /**
+         * Method to write a zigzag varint, which keeps small negative numbers short
+         */
+        void writeSignedVarLong(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(utf8.length);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, data, length, utf8.length);
+            length += utf8.length;
+        }
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+
+    private static long readSignedVarLong(ByteBuffer in) {
+        long value = readVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = (int) readVarLong(in);
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length); // Throws if the string runs past the block
+        return value;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer... buffers) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Corrupt snapshot: unexpected end of file at " + position);
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Outcome of an export, load or verification
+     */
+    public static final class SnapshotResult {
+        private final Map<String, Long> rows = new LinkedHashMap<>(); // Rows per table
+        private long fileBytes = 0; // Size of the snapshot file
+        private long elapsedNanos = 0; // Wall-clock time
+
+        public Map<String, Long> getRows() {
+            return Collections.unmodifiableMap(rows);
+        }
+
+        public long getTotalRows() {
+            long total = 0;
+            for (long count : rows.values()) {
+                total += count;
+            }
+            return total;
+        }
+
+        public long getFileBytes() {
+            return fileBytes;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Method to get the throughput over all tables
+         * @return Rows per second
+         */
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : getTotalRows() / (elapsedNanos / 1_000_000_000.0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d rows %s, %.1f MB in %.1f ms (%.0f rows/s)",
+                    getTotalRows(), rows, fileBytes / 1_048_576.0, elapsedNanos / 1_000_000.0, getRowsPerSecond());
+        }
+    }
+}
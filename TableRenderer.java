@@ -0,0 +1,236 @@
+package com.example;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Locale;
+
+/**
+ * Table Renderer
+ *
+ * Writes fixed-width text tables, producing the same output as the "%-10d %-30s %-15.2f"
+ * style printf listings but without parsing a format string, boxing arguments or locking
+ * the destination for every row. The column layout is fixed when the renderer is created,
+ * cells are copied into one large character buffer, and the buffer goes to the destination
+ * in big chunks.
+ *
+ * Like printf with a minimum width, values are left-aligned and padded with spaces but
+ * never truncated. Columns are separated by one space and every row ends with a newline.
+ * A renderer is meant to be used by one thread at a time.
+ */
+public class TableRenderer implements Flushable, Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024; // Characters buffered before a write to the destination
+    private static final char[] SPACES = new char[256]; // Source of padding
+
+    static {
+        java.util.Arrays.fill(SPACES, ' ');
+    }
+
+    private final Writer out; // Destination
+    private final int[] widths; // Minimum width of each column
+    private final char[] buffer = new char[BUFFER_SIZE]; // Pending output
+    private final char[] digits = new char[32]; // Scratch space for number formatting
+    private int length = 0; // Characters in the buffer
+    private int column = 0; // Next column of the current row
+
+    /**
+     * Create a renderer that writes to standard output
+     * @param widths The minimum width of each column
+     * @return The renderer; flush it before printing anything else to System.out, and never
+     *         close() it (or use it in try-with-resources), which would close System.out
+     */
+    public static TableRenderer toStdout(int... widths) {
+        return new TableRenderer(new OutputStreamWriter(System.out), widths);
+    }
+
+    /**
+     * Create a renderer
+     * @param out Where to write the table
+     * @param widths The minimum width of each column
+     */
+    public TableRenderer(Writer out, int... widths) {
+        if (widths.length == 0) {
+            throw new IllegalArgumentException("A table needs at least one column");
+        }
+        this.out = out;
+        this.widths = widths.clone();
+    }
+
+    /**
+     * Method to write a row of column titles
+     * @param titles One title per column
+     */
+    public TableRenderer header(String... titles) throws IOException {
+        for (String title : titles) {
+            cell(title);
+        }
+        return this;
+    }
+
+    /**
+     * Method to write a line of dashes
+     * @param count The number of dashes
+     */
+    public TableRenderer separator(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            put('-');
+        }
+        put('\n');
+        return this;
+    }
+
+    /**
+     * Method to write a text line that is not part of the column layout
+     * @param text The text, written as is followed by a newline
+     */
+    public TableRenderer line(String text) throws IOException {
+        put(text, 0, text.length());
+        put('\n');
+        return this;
+    }
+
+    /**
+     * Method to write the next cell of the current row as text ("null" for null, like printf)
+     */
+    public TableRenderer cell(String value) throws IOException {
+        String text = value == null ? "null" : value;
+        put(text, 0, text.length());
+        return endCell(text.length());
+    }
+
+    /**
+     * Method to write the next cell of the current row using the value's toString()
+     */
+    public TableRenderer cell(Object value) throws IOException {
+        return cell(value == null ? null : value.toString());
+    }
+
+    /**
+     * Method to write the next cell of the current row as a whole number
+     */
+    public TableRenderer cell(long value) throws IOException {
+        int start = formatLong(value, digits.length);
+        put(digits, start, digits.length - start);
+        return endCell(digits.length - start);
+    }
+
+    /**
+     * Method to write the next cell of the current row as a number with two decimals, like %.2f in Locale.ROOT
+     */
+    public TableRenderer cell(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= 1e16) {
+            return cell(String.format(Locale.ROOT, "%.2f", value)); // Rare values take the slow, exact path, with the same separator
+        }
+        double scaled = Math.abs(value) * 100.0;
+        double fraction = scaled - Math.floor(scaled);
+        long cents;
+        if (scaled < 1e12 && Math.abs(fraction - 0.5) > 1e-3) {
+            cents = Math.round(scaled); // Far from a tie, rounding the binary value gives the same digits
+        } else {
+            // printf rounds the shortest decimal form half-up, so 1.005 becomes 1.01
+            cents = BigDecimal.valueOf(Math.abs(value)).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+        }
+        int end = digits.length;
+        int start = end;
+        digits[--start] = (char) ('0' + cents % 10);
+        digits[--start] = (char) ('0' + cents / 10 % 10);
+        digits[--start] = '.';
+        start = formatLong(cents / 100, start);
+        if (Double.doubleToRawLongBits(value) < 0) {
+            digits[--start] = '-'; // Also for values that round to zero, like printf's -0.00
+        }
+        put(digits, start, end - start);
+        return endCell(end - start);
+    }
+
+    /**
+     * Method to write the buffered output to the destination
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    /**
+     * Method to flush and close the destination
+     */
+    @Override
+    public void close() throws IOException {
+        drain();
+        out.close();
+    }
+
+    /**
+     * Method to write the digits of a number into the scratch space, ending before position end
+     * @return The index of the first written character
+     */
+    private int formatLong(long value, int end) {
+        int start = end;
+        long remaining = value < 0 ? value : -value; // Work with negatives so Long.MIN_VALUE fits
+        do {
+            digits[--start] = (char) ('0' - remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (value < 0) {
+            digits[--start] = '-';
+        }
+        return start;
+    }
+
+    /**
+     * Method to pad the cell just written and add the column separator or row end
+     */
+    private TableRenderer endCell(int written) throws IOException {
+        boolean last = column == widths.length - 1;
+        int padding = widths[column] - written;
+        while (padding > 0) {
+            int count = Math.min(padding, SPACES.length);
+            put(SPACES, 0, count);
+            padding -= count;
+        }
+        put(last ? '\n' : ' ');
+        column = last ? 0 : column + 1;
+        return this;
+    }
+
+    private void put(char c) throws IOException {
+        if (length == buffer.length) {
+            drain();
+        }
+        buffer[length++] = c;
+    }
+
+    private void put(String text, int offset, int count) throws IOException {
+        while (count > 0) {
+            if (length == buffer.length) {
+                drain();
+            }
+            int chunk = Math.min(count, buffer.length - length);
+            text.getChars(offset, offset + chunk, buffer, length);
+            length += chunk;
+            offset += chunk;
+            count -= chunk;
+        }
+    }
+
+    private void put(char[] chars, int offset, int count) throws IOException {
+        while (count > 0) {
+            if (length == buffer.length) {
+                drain();
+            }
+            int chunk = Math.min(count, buffer.length - length);
+            System.arraycopy(chars, offset, buffer, length, chunk);
+            length += chunk;
+            offset += chunk;
+            count -= chunk;
+        }
+    }
+
+    private void drain() throws IOException {
+        if (length > 0) {
+            out.write(buffer, 0, length);
+            length = 0;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark Database
+ *
+ * Seeded database shared by the JMH benchmarks. Unless bench.url is set, every trial gets its
+ * own in-memory H2 database in MySQL compatibility mode, which lives as long as the pinned
+ * connection and is dropped by close(), so trials with different parameters never see each
+ * other's rows.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+    private static final AtomicLong IDS = new AtomicLong(); // Makes every in-memory database name unique
+
+    private final Connection pin; // Keeps an in-memory database alive while the pool recycles connections
+    private final ConnectionPool pool; // Pool under test
+    private final DataSeeder.SeedResult seeded; // Row counts after seeding
+
+    /**
+     * Create, migrate and seed a database
+     * @param poolSize Maximum connections of the pool
+     * @param statementCacheSize Prepared statements cached per connection (0 disables caching)
+     * @param games Minimum number of games
+     * @param customers Minimum number of customers
+     * @param orders Minimum number of orders
+     * @throws SQLException if the database cannot be prepared
+     */
+    BenchmarkDatabase(int poolSize, int statementCacheSize, int games, int customers, int orders) throws SQLException {
+        String url = System.getProperty("bench.url",
+                "jdbc:h2:mem:bench" + IDS.incrementAndGet() + ";MODE=MySQL");
+        String user = System.getProperty("bench.user", "sa");
+        String pass = System.getProperty("bench.pass", "");
+        this.pin = DriverManager.getConnection(url, user, pass);
+        this.pool = new ConnectionPool(url, user, pass, poolSize, 30_000, 600_000, 60_000, statementCacheSize);
+        pool.getMetrics().setSlowQueryThresholdMillis(-1); // Benchmarks would flood the log
+        try (Connection con = pool.getConnection()) {
+            SchemaMigrations.migrate(con);
+            this.seeded = DataSeeder.seed(con, games, customers, orders);
+        }
+    }
+
+    ConnectionPool getPool() {
+        return pool;
+    }
+
+    DataSeeder.SeedResult getSeeded() {
+        return seeded;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        pool.close();
+        pin.close();
+    }
+}
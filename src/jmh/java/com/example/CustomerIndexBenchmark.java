@@ -0,0 +1,73 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Customer Index Benchmark
+ *
+ * Name lookups over one million customers: the in-memory CustomerIndex against the indexed
+ * SQL query it replaces, plus the time to load the index from scratch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CustomerIndexBenchmark {
+    @Param({"1000000"})
+    public int customers;
+
+    private BenchmarkDatabase database;
+    private CustomerIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        database = new BenchmarkDatabase(4, 32, 10, customers, 0);
+        index = new CustomerIndex(database.getPool());
+        index.getCustomer(1); // Load before measuring lookups
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Customer> indexLookup() throws SQLException {
+        return index.findByNameIgnoreCase(DataSeeder.customerName(1 + ThreadLocalRandom.current().nextInt(customers)));
+    }
+
+    @Benchmark
+    public int sqlLookup() throws SQLException {
+        try (Connection con = database.getPool().getConnection();
+             PreparedStatement preparedStatement = con.prepareStatement("SELECT customer_id FROM customers WHERE customer_name = ?")) {
+            preparedStatement.setString(1, DataSeeder.customerName(1 + ThreadLocalRandom.current().nextInt(customers))); // Set customer name parameter
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Load all customers into a fresh index
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public int indexLoad() throws SQLException {
+        CustomerIndex fresh = new CustomerIndex(database.getPool());
+        fresh.getCustomer(1);
+        return fresh.size();
+    }
+}
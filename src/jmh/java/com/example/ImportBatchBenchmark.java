@@ -0,0 +1,68 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Import Batch Benchmark
+ *
+ * Imports the same 10000 orders with JDBC batches of 1, 100 and 1000 rows and one commit
+ * per 10000 rows. The score is the time per imported order.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImportBatchBenchmark {
+    private static final int ORDERS = 10_000; // Orders per import
+
+    @Param({"1", "100", "1000"})
+    public int batchSize;
+
+    private BenchmarkDatabase database;
+    private CatalogCache catalog;
+    private Inventory inventory;
+    private SalesAnalytics analytics;
+    private List<OrderImporter.OrderRequest> orders;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        database = new BenchmarkDatabase(4, 32, 1000, 10_000, 0);
+        catalog = new CatalogCache(database.getPool());
+        inventory = new Inventory(database.getPool()); // Seeded games are untracked, so every order gets a copy
+        analytics = new SalesAnalytics(database.getPool(), catalog);
+        int games = database.getSeeded().getGames();
+        int customers = database.getSeeded().getCustomers();
+        Random random = new Random(42);
+        Date today = new Date(System.currentTimeMillis());
+        orders = new ArrayList<>(ORDERS);
+        for (int i = 0; i < ORDERS; i++) {
+            orders.add(new OrderImporter.OrderRequest(DataSeeder.customerName(1 + random.nextInt(customers)),
+                    1 + random.nextInt(games), today));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDERS)
+    public int importOrders() throws SQLException {
+        OrderImporter.ImportResult result =
+                new OrderImporter(database.getPool(), catalog, inventory, analytics, batchSize, ORDERS).importOrders(orders);
+        if (result.getInserted() != ORDERS) {
+            throw new IllegalStateException("Import failed: " + result);
+        }
+        return result.getInserted();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool Scaling Benchmark
+ *
+ * Runs 16 threads against connection pools of 1 to 16 connections, so the throughput curve
+ * shows where adding connections stops paying off and how much waiting for a connection
+ * costs below that point.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@Threads(16)
+public class PoolScalingBenchmark {
+    @Param({"1", "2", "4", "8", "16"})
+    public int poolSize;
+
+    private BenchmarkDatabase database;
+    private GameStoreService service;
+    private int games;
+    private int customers;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        database = new BenchmarkDatabase(poolSize, 32, 1000, 10_000, 10_000);
+        service = new GameStoreService(database.getPool(), 256);
+        games = database.getSeeded().getGames();
+        customers = database.getSeeded().getCustomers();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        service.close();
+        database.close();
+    }
+
+    /**
+     * Borrow a connection for one indexed point query
+     */
+    @Benchmark
+    public int pointQuery() throws SQLException {
+        try (Connection con = database.getPool().getConnection();
+             PreparedStatement preparedStatement = con.prepareStatement("SELECT customer_name FROM customers WHERE customer_id = ?")) {
+            preparedStatement.setInt(1, 1 + ThreadLocalRandom.current().nextInt(customers)); // Set customer ID parameter
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString(1).length() : 0;
+            }
+        }
+    }
+
+    /**
+     * Place an order through the service, which writes the order and the sales rollups
+     */
+    @Benchmark
+    public int placeOrder() throws SQLException, InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return service.placeOrder(1 + random.nextInt(customers), 1 + random.nextInt(games));
+    }
+}
@@ -0,0 +1,65 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statement Cache Benchmark
+ *
+ * Compares the borrow-prepare-execute-close cycle with the per-connection statement cache
+ * disabled (0) and enabled (32 statements), once for a single query and once for the
+ * several statements of an order.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@Threads(4)
+public class StatementCacheBenchmark {
+    @Param({"0", "32"})
+    public int statementCacheSize;
+
+    private BenchmarkDatabase database;
+    private GameStoreService service;
+    private int games;
+    private int customers;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        database = new BenchmarkDatabase(8, statementCacheSize, 1000, 10_000, 10_000);
+        service = new GameStoreService(database.getPool(), 256);
+        games = database.getSeeded().getGames();
+        customers = database.getSeeded().getCustomers();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        service.close();
+        database.close();
+    }
+
+    @Benchmark
+    public int customerByName() throws SQLException {
+        try (Connection con = database.getPool().getConnection();
+             PreparedStatement preparedStatement = con.prepareStatement("SELECT customer_id FROM customers WHERE customer_name = ?")) {
+            preparedStatement.setString(1, DataSeeder.customerName(1 + ThreadLocalRandom.current().nextInt(customers))); // Set customer name parameter
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        }
+    }
+
+    @Benchmark
+    public int placeOrder() throws SQLException, InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return service.placeOrder(1 + random.nextInt(customers), 1 + random.nextInt(games));
+    }
+}
@@ -0,0 +1,158 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogCacheTest {
+    @Test
+    void readsBackWhatWasWritten() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            try (GameStoreService service = new GameStoreService(database.getPool())) {
+                service.getGames(); // Load the catalog before writing
+                Game added = service.addGame("Rounded", 1, 9.995, 12, "Disc");
+                service.updateGame(new GameUpdater.GameUpdate(1).price(19.994).genre(2));
+
+                CatalogCache fresh = new CatalogCache(database.getPool()); // Reads the database only
+                assertSameGame(fresh.getGame(added.getGameId()), service.getGame(added.getGameId()));
+                assertSameGame(fresh.getGame(1), service.getGame(1));
+                assertEquals(10.0, service.getGame(added.getGameId()).getPrice());
+                assertEquals(19.99, service.getGame(1).getPrice());
+                assertTrue(service.getGamesByGenre(2).stream().anyMatch(game -> game.getGameId() == 1));
+                assertTrue(service.getGamesByGenre(1).stream().noneMatch(game -> game.getGameId() == 1));
+            }
+        }
+    }
+
+    @Test
+    void findsGamesInsertedElsewhere() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            CatalogCache catalog = new CatalogCache(database.getPool());
+            assertEquals(10, catalog.getGames().size());
+            try (Connection con = database.getPool().getConnection();
+                 Statement statement = con.createStatement()) {
+                statement.executeUpdate("INSERT INTO games (game_id, game_name, genre_id, price, age_limit, storage) " +
+                        "VALUES (1000, 'Elsewhere', 1, 5.00, 3, 'Digital')");
+            }
+            assertEquals("Elsewhere", catalog.getGame(1000).getGameName());
+            assertEquals(11, catalog.getGames().size());
+            assertNull(catalog.getGame(1001));
+            assertEquals(1, catalog.getLoadCount());
+        }
+    }
+
+    @Test
+    void writesLeaveEarlierListsAndOtherBlocksAlone() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(600, 10, 0); // Spans three blocks of ids
+            CatalogCache catalog = new CatalogCache(database.getPool());
+            List<Game> before = catalog.getGames();
+            Game moved = catalog.getGame(300);
+            int otherGenre = moved.getGenreId() == 1 ? 2 : 1;
+            int genreSize = catalog.getGamesByGenre(otherGenre).size();
+
+            catalog.gamesUpdated(Collections.singletonList(new Game(300, "Moved", otherGenre, moved.getPrice(),
+                    moved.getAgeLimit(), moved.getStorage(), moved.getVersion() + 1)));
+            try (Connection con = database.getPool().getConnection();
+                 Statement statement = con.createStatement()) {
+                statement.executeUpdate("DELETE FROM games WHERE game_id = 550");
+            }
+            catalog.refreshGame(550);
+
+            List<Game> after = catalog.getGames();
+            assertEquals(600, before.size());
+            assertEquals(599, after.size());
+            assertNotEquals("Moved", before.get(299).getGameName());
+            assertEquals("Moved", catalog.getGame(300).getGameName());
+            assertNull(catalog.getGame(550));
+            assertSame(before.get(0), after.get(0)); // Untouched block is shared
+            for (int i = 1; i < after.size(); i++) {
+                assertTrue(after.get(i - 1).getGameId() < after.get(i).getGameId());
+            }
+            assertEquals(genreSize + 1, catalog.getGamesByGenre(otherGenre).size());
+            assertTrue(catalog.getGamesByGenre(moved.getGenreId()).stream().noneMatch(game -> game.getGameId() == 300));
+        }
+    }
+
+    @Test
+    void listsAreReadOnly() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            CatalogCache catalog = new CatalogCache(database.getPool());
+            List<Game> games = catalog.getGames();
+            assertThrows(UnsupportedOperationException.class, () -> games.remove(0));
+            assertThrows(UnsupportedOperationException.class, () -> catalog.getGamesByGenre(games.get(0).getGenreId()).clear());
+            assertThrows(UnsupportedOperationException.class, () -> catalog.getGamesByGenre(-1).add(games.get(0)));
+            assertEquals(10, catalog.getGames().size());
+        }
+    }
+
+    @Test
+    void refreshKeepsANewerVersionCachedMeanwhile() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            CatalogCache catalog = new CatalogCache(database.getPool());
+            Game game = catalog.getGame(1);
+            // As if another writer's update was cached after the refresh had read the row
+            catalog.gamesUpdated(Collections.singletonList(new Game(1, "Newer", game.getGenreId(), game.getPrice(),
+                    game.getAgeLimit(), game.getStorage(), game.getVersion() + 1)));
+
+            catalog.refreshGame(1);
+            assertEquals("Newer", catalog.getGame(1).getGameName());
+        }
+    }
+
+    @Test
+    void readersNeverSeeAnEmptyCatalogDuringInvalidation() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(50, 10, 0);
+            CatalogCache catalog = new CatalogCache(database.getPool());
+            catalog.getGames();
+
+            AtomicBoolean done = new AtomicBoolean();
+            AtomicReference<String> failure = new AtomicReference<>();
+            List<Thread> readers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                Thread reader = new Thread(() -> {
+                    try {
+                        while (!done.get()) {
+                            int games = catalog.getGames().size();
+                            if (games != 50 || catalog.getGame(25) == null) {
+                                failure.compareAndSet(null, "Saw " + games + " games");
+                            }
+                        }
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e.toString());
+                    }
+                });
+                reader.start();
+                readers.add(reader);
+            }
+            for (int i = 0; i < 50; i++) {
+                catalog.invalidate();
+            }
+            done.set(true);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            assertNull(failure.get());
+        }
+    }
+
+    private static void assertSameGame(Game expected, Game actual) {
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(expected.getPrice(), actual.getPrice());
+        assertEquals(expected.getGenreId(), actual.getGenreId());
+        assertEquals(expected.getVersion(), actual.getVersion());
+    }
+}
@@ -0,0 +1,126 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionPoolTest {
+    @Test
+    void handsOutAtMostMaxSizeConnections() throws Exception {
+        try (TestDatabase database = new TestDatabase();
+             ConnectionPool pool = new ConnectionPool(database.getUrl(), "sa", "", 2, 200, 600_000, 0, 32)) {
+            Connection first = pool.getConnection();
+            Connection second = pool.getConnection();
+            assertEquals(2, pool.getActiveCount());
+
+            assertThrows(SQLTransientConnectionException.class, pool::getConnection);
+            assertEquals(1, pool.getTimeoutCount());
+
+            first.close();
+            try (Connection third = pool.getConnection()) {
+                assertFalse(third.isClosed());
+                assertEquals(2, pool.getCreatedCount()); // The returned connection was reused
+            }
+            second.close();
+            assertEquals(0, pool.getActiveCount());
+            assertEquals(2, pool.getIdleCount());
+            assertThrows(SQLException.class, first::createStatement); // A returned handle cannot be used again
+        }
+    }
+
+    @Test
+    void returnedConnectionIsRolledBackAndReset() throws Exception {
+        try (TestDatabase database = new TestDatabase();
+             ConnectionPool pool = new ConnectionPool(database.getUrl(), "sa", "", 1)) {
+            int defaultIsolation;
+            try (Connection con = pool.getConnection();
+                 Statement statement = con.createStatement()) {
+                defaultIsolation = con.getTransactionIsolation();
+                con.setAutoCommit(false);
+                con.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+                statement.executeUpdate("INSERT INTO genres (genre_name) VALUES ('Left uncommitted')");
+            } // Returned without commit
+
+            try (Connection con = pool.getConnection();
+                 Statement statement = con.createStatement()) {
+                assertTrue(con.getAutoCommit());
+                assertEquals(defaultIsolation, con.getTransactionIsolation());
+                ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM genres WHERE genre_name = 'Left uncommitted'");
+                resultSet.next();
+                assertEquals(0, resultSet.getInt(1));
+            }
+            assertEquals(1, pool.getCreatedCount());
+        }
+    }
+
+    @Test
+    void replacesAnIdleConnectionThatFailsValidation() throws Exception {
+        try (TestDatabase database = new TestDatabase();
+             ConnectionPool pool = new ConnectionPool(database.getUrl(), "sa", "", 1)) {
+            int sessionId;
+            try (Connection con = pool.getConnection();
+                 Statement statement = con.createStatement()) {
+                ResultSet resultSet = statement.executeQuery("SELECT SESSION_ID()");
+                resultSet.next();
+                sessionId = resultSet.getInt(1);
+            }
+            try (Connection admin = DriverManager.getConnection(database.getUrl(), "sa", "");
+                 Statement statement = admin.createStatement()) {
+                statement.execute("CALL ABORT_SESSION(" + sessionId + ")"); // E.g. a server restart
+            }
+
+            try (Connection con = pool.getConnection();
+                 Statement statement = con.createStatement()) {
+                assertTrue(statement.executeQuery("SELECT 1").next());
+            }
+            assertEquals(1, pool.getEvictedCount());
+            assertEquals(2, pool.getCreatedCount());
+        }
+    }
+
+    @Test
+    void evictsIdleConnections() throws Exception {
+        try (TestDatabase database = new TestDatabase();
+             ConnectionPool pool = new ConnectionPool(database.getUrl(), "sa", "", 2, 1_000, 100, 0, 32)) {
+            pool.getConnection().close();
+            assertEquals(1, pool.getIdleCount());
+
+            awaitCount(pool::getEvictedCount, 1); // The housekeeper runs once a second at most
+            assertEquals(0, pool.getIdleCount());
+            try (Connection con = pool.getConnection()) {
+                assertFalse(con.isClosed());
+            }
+            assertEquals(2, pool.getCreatedCount());
+        }
+    }
+
+    @Test
+    void reportsAConnectionHeldPastTheLeakThreshold() throws Exception {
+        try (TestDatabase database = new TestDatabase();
+             ConnectionPool pool = new ConnectionPool(database.getUrl(), "sa", "", 2, 1_000, 600_000, 100, 32)) {
+            try (Connection held = pool.getConnection()) {
+                awaitCount(pool::getLeakCount, 1);
+                Thread.sleep(1_500); // Another housekeeping run
+                assertEquals(1, pool.getLeakCount()); // Reported once per borrow
+            }
+            pool.getConnection().close();
+            assertEquals(1, pool.getLeakCount());
+        }
+    }
+
+    private static void awaitCount(LongSupplier count, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (count.getAsLong() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(expected, count.getAsLong());
+    }
+}
@@ -0,0 +1,76 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomerIndexTest {
+    @Test
+    void findsCustomersAddedElsewhere() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            CustomerIndex index = new CustomerIndex(database.getPool());
+            assertEquals(1, index.findByNameIgnoreCase(DataSeeder.customerName(1)).size());
+            assertEquals(10, index.size());
+
+            try (Connection con = database.getPool().getConnection();
+                 Statement statement = con.createStatement()) {
+                statement.executeUpdate("INSERT INTO customers (customer_id, customer_name, email) " +
+                        "VALUES (100, 'Elsewhere', 'elsewhere@example.com'), (101, 'Elsewhere', 'again@example.com')");
+            }
+
+            List<Customer> matches = index.findByNameIgnoreCase("elsewhere");
+            assertEquals(2, matches.size());
+            assertEquals(100, matches.get(0).getCustomerId());
+            assertEquals(12, index.size()); // Both were added to the index
+            assertEquals(2, index.findByName("Elsewhere").size());
+            assertEquals("Elsewhere", index.getCustomer(101).getCustomerName());
+            assertNull(index.getCustomer(102));
+            assertTrue(index.findByNameIgnoreCase("Nobody").isEmpty());
+        }
+    }
+
+    @Test
+    void findsCustomerByIdAddedElsewhere() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            CustomerIndex index = new CustomerIndex(database.getPool());
+            assertNotNull(index.getCustomer(1));
+            try (Connection con = database.getPool().getConnection();
+                 Statement statement = con.createStatement()) {
+                statement.executeUpdate("INSERT INTO customers (customer_id, customer_name, email) " +
+                        "VALUES (100, 'Elsewhere', 'elsewhere@example.com')");
+            }
+            assertEquals("Elsewhere", index.getCustomer(100).getCustomerName());
+            assertEquals(1, index.findByNamePrefix("else", 10).size()); // Indexed by the ID lookup
+        }
+    }
+
+    @Test
+    void resolveSeesNamesakesAddedElsewhere() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            CustomerIndex index = new CustomerIndex(database.getPool());
+            String name = DataSeeder.customerName(1);
+            assertEquals(1, index.resolveByNameIgnoreCase(name).size());
+
+            try (Connection con = DriverManager.getConnection(database.getUrl(), "sa", ""); // Another process
+                 Statement statement = con.createStatement()) {
+                statement.executeUpdate("INSERT INTO customers (customer_id, customer_name, email) " +
+                        "VALUES (100, '" + name + "', 'namesake@example.com')");
+            }
+
+            assertEquals(1, index.findByNameIgnoreCase(name).size()); // The index alone does not know
+            List<Customer> matches = index.resolveByNameIgnoreCase(name.toUpperCase(Locale.ROOT));
+            assertEquals(2, matches.size());
+            assertEquals(100, matches.get(1).getCustomerId());
+            assertEquals(2, index.findByNameIgnoreCase(name).size()); // Indexed by the check
+        }
+    }
+}
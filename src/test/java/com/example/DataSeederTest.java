@@ -0,0 +1,37 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataSeederTest {
+    @Test
+    void refusesOrdersWithoutGamesOrCustomers() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            SQLException failure = assertThrows(SQLException.class, () -> database.seed(10, 0, 100));
+            assertTrue(failure.getMessage().contains("10 games, 0 customers"), failure.getMessage());
+            try (Connection con = database.getPool().getConnection()) {
+                assertEquals(0, SchemaMigrations.countRows(con, "games")); // Checked before anything is inserted
+            }
+
+            DataSeeder.SeedResult result = database.seed(10, 10, 100);
+            assertEquals(100, result.getOrders());
+        }
+    }
+
+    @Test
+    void refusesGamesWithoutGenres() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            try (Connection con = database.getPool().getConnection();
+                 Statement statement = con.createStatement()) {
+                statement.executeUpdate("DELETE FROM genres");
+            }
+            SQLException failure = assertThrows(SQLException.class, () -> database.seed(10, 10, 0));
+            assertTrue(failure.getMessage().contains("without genres"), failure.getMessage());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameSearchIndexTest {
+    @Test
+    void matchesWordsAndTheLastWordAsPrefix() throws Exception {
+        try (TestDatabase database = new TestDatabase();
+             GameStoreService service = new GameStoreService(database.getPool())) {
+            int space = service.addGame("Space Racer: Turbo", 1, 15.0, 7, "Disc").getGameId();
+            int racing = service.addGame("Racing Legends", 1, 25.0, 3, "Digital").getGameId();
+            int castle = service.addGame("Castle of Space", 2, 5.0, 16, "Digital").getGameId();
+
+            assertEquals(Arrays.asList("space", "racer", "turbo"), GameSearchIndex.tokenize("Space Racer: Turbo"));
+            assertEquals(Arrays.asList(space, castle), ids(search(service, "SPACE ")));
+            assertEquals(Arrays.asList(space), ids(search(service, "turbo space ")));
+            assertEquals(Arrays.asList(space, racing), ids(search(service, "rac"))); // Prefix of racer and racing
+            assertEquals(Arrays.asList(racing), ids(search(service, "legends rac")));
+            assertEquals(0, search(service, "rac ").getTotal()); // A whole word once followed by a space
+            assertEquals(3, search(service, "").getTotal());
+        }
+    }
+
+    @Test
+    void narrowsByFacetsAndCountsThem() throws Exception {
+        try (TestDatabase database = new TestDatabase();
+             GameStoreService service = new GameStoreService(database.getPool())) {
+            int first = service.addGame("Puzzle One", 1, 15.0, 7, "SSD").getGameId();
+            int second = service.addGame("Puzzle Two", 1, 5.0, 3, "ssd").getGameId();
+            service.addGame("Puzzle Three", 1, 15.0, 12, "Disc");
+            service.addGame("Puzzle Four", 2, 15.0, 7, "SSD");
+
+            GameSearchIndex.SearchResult result = service.searchGames(new GameSearchIndex.GameQuery()
+                    .text("puzzle").genre(1).storage("Ssd"));
+            assertEquals(Arrays.asList(first, second), ids(result));
+            assertEquals(2, result.getTotal());
+            assertEquals(2, result.getGenreCounts().get(1));
+            assertEquals(2, result.getStorageCounts().get("ssd")); // Both spellings count as one value
+            assertEquals(1, result.getStorageCounts().size());
+            assertEquals(1, result.getPriceBandCounts().get(0));
+            assertEquals(1, result.getPriceBandCounts().get(1));
+
+            result = service.searchGames(new GameSearchIndex.GameQuery().text("puzzle"));
+            assertEquals(3, result.getStorageCounts().get("ssd"));
+            assertEquals(1, result.getStorageCounts().get("disc"));
+            assertEquals(3, result.getGenreCounts().get(1));
+            assertEquals(1, result.getGenreCounts().get(2));
+
+            result = service.searchGames(new GameSearchIndex.GameQuery().maxAgeLimit(7).priceBand(1));
+            assertEquals(2, result.getTotal());
+        }
+    }
+
+    @Test
+    void followsAddedRenamedAndRemovedGames() throws Exception {
+        try (TestDatabase database = new TestDatabase();
+             GameStoreService service = new GameStoreService(database.getPool())) {
+            int kept = service.addGame("Dragon Quest", 1, 15.0, 12, "Disc").getGameId();
+            int renamed = service.addGame("Dragon Hunter", 1, 15.0, 12, "Disc").getGameId();
+            int removed = service.addGame("Dragon Rider", 2, 15.0, 12, "Digital").getGameId();
+            assertEquals(3, search(service, "dragon ").getTotal()); // Builds the index
+
+            int added = service.addGame("Dragon Tales", 2, 15.0, 12, "Digital").getGameId();
+            service.updateGame(new GameUpdater.GameUpdate(renamed).gameName("Wyvern Hunter"));
+            try (Connection con = database.getPool().getConnection();
+                 Statement statement = con.createStatement()) {
+                statement.executeUpdate("DELETE FROM games WHERE game_id = " + removed);
+            }
+            service.getCatalog().refreshGame(removed);
+
+            assertEquals(Arrays.asList(kept, added), ids(search(service, "dragon ")));
+            assertEquals(Arrays.asList(renamed), ids(search(service, "wyv")));
+            assertEquals(0, search(service, "rider ").getTotal());
+            GameSearchIndex.SearchResult result = search(service, "");
+            assertEquals(3, result.getTotal());
+            assertEquals(1, result.getGenreCounts().get(2));
+            assertEquals(1, result.getStorageCounts().get("digital"));
+            assertEquals(3, service.getSearchIndex().size());
+        }
+    }
+
+    private static GameSearchIndex.SearchResult search(GameStoreService service, String text) throws Exception {
+        return service.searchGames(new GameSearchIndex.GameQuery().text(text));
+    }
+
+    private static List<Integer> ids(GameSearchIndex.SearchResult result) {
+        return result.getGames().stream().map(Game::getGameId).collect(Collectors.toList());
+    }
+}
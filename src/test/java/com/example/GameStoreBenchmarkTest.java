@@ -0,0 +1,35 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameStoreBenchmarkTest {
+    @Test
+    void runsSelectedBenchmarksAndWritesJson(@TempDir Path directory) throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            GameStoreBenchmark benchmark = new GameStoreBenchmark(database.getPool());
+            benchmark.prepare(100, 200, 1000);
+            List<Map<String, Object>> results = benchmark.runAll(
+                    Pattern.compile("placeOrder\\.service|getCustomerIdByName\\.index"), 0, 1, 2);
+            assertEquals(2, results.size());
+            for (Map<String, Object> result : results) {
+                assertTrue(((Number) result.get("operations")).longValue() > 0, result.toString());
+            }
+
+            Path output = directory.resolve("results.json");
+            benchmark.writeJson(output.toString(), database.getUrl(), results);
+            String json = new String(Files.readAllBytes(output), StandardCharsets.UTF_8);
+            assertTrue(json.contains("\"placeOrder.service\""), json);
+            assertTrue(json.contains("\"getCustomerIdByName.index\""), json);
+        }
+    }
+}
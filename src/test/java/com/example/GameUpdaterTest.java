@@ -0,0 +1,127 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameUpdaterTest {
+    @Test
+    void conflictRefreshesTheCacheSoARetrySucceeds() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            // Two writers, each with its own catalog cache over the same database
+            try (GameStoreService first = new GameStoreService(database.getPool());
+                 GameStoreService second = new GameStoreService(database.getPool())) {
+                Game seenByFirst = first.getGame(1);
+                Game seenBySecond = second.getGame(1);
+                assertEquals(seenByFirst.getVersion(), seenBySecond.getVersion());
+
+                GameUpdater.UpdateResult result = first.updateGame(
+                        new GameUpdater.GameUpdate(1).expectedVersion(seenByFirst.getVersion()).price(11.0));
+                assertEquals(1, result.getUpdated());
+                assertTrue(result.getConflicts().isEmpty());
+
+                result = second.updateGame(new GameUpdater.GameUpdate(1).expectedVersion(seenBySecond.getVersion()).price(12.0));
+                assertEquals(0, result.getUpdated());
+                assertEquals(Collections.singletonList(1), result.getConflicts());
+
+                // The conflict refreshed the second cache, so editing what it shows now applies
+                Game refreshed = second.getGame(1);
+                assertEquals(seenBySecond.getVersion() + 1, refreshed.getVersion());
+                assertEquals(11.0, refreshed.getPrice());
+                result = second.updateGame(new GameUpdater.GameUpdate(1).expectedVersion(refreshed.getVersion()).price(12.0));
+                assertEquals(1, result.getUpdated());
+                assertTrue(result.getConflicts().isEmpty());
+                assertEquals(12.0, new CatalogCache(database.getPool()).getGame(1).getPrice());
+            }
+        }
+    }
+
+    @Test
+    void writesPricesRoundedLikeTheCache() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            try (GameStoreService service = new GameStoreService(database.getPool())) {
+                service.getGames(); // Load the catalog before writing
+                service.updateGame(new GameUpdater.GameUpdate(1).price(1.005)); // 1.00 with Math.round on the double
+
+                assertEquals(1.01, service.getGame(1).getPrice());
+                assertEquals(1.01, new CatalogCache(database.getPool()).getGame(1).getPrice());
+            }
+        }
+    }
+
+    @Test
+    void concurrentWritersRetryWithoutLosingUpdates() throws Exception {
+        int writers = 4;
+        int rounds = 5;
+        List<Integer> gameIds = Arrays.asList(1, 2, 3);
+        try (TestDatabase database = new TestDatabase(writers + 2)) {
+            database.seed(10, 10, 0);
+            CatalogCache before = new CatalogCache(database.getPool());
+            before.getGames(); // Keep the rows as they are before the writers start
+            try (GameStoreService service = new GameStoreService(database.getPool())) {
+                // All writers read the same versions in the first round, so all but one lose the race
+                CyclicBarrier firstRead = new CyclicBarrier(writers);
+                ExecutorService executor = Executors.newFixedThreadPool(writers);
+                List<Future<List<GameUpdater.UpdateResult>>> futures = new ArrayList<>();
+                for (int w = 0; w < writers; w++) {
+                    futures.add(executor.submit(() -> {
+                        List<GameUpdater.UpdateResult> results = new ArrayList<>();
+                        boolean[] waited = {false};
+                        for (int round = 0; round < rounds; round++) {
+                            results.add(service.updateGames(gameIds, game -> {
+                                if (!waited[0]) {
+                                    waited[0] = true;
+                                    try {
+                                        firstRead.await(10, TimeUnit.SECONDS);
+                                    } catch (Exception e) {
+                                        throw new IllegalStateException(e);
+                                    }
+                                }
+                                return new GameUpdater.GameUpdate(game.getGameId()).ageLimit(game.getAgeLimit() + 1);
+                            }));
+                        }
+                        return results;
+                    }));
+                }
+                executor.shutdown();
+
+                int updated = 0;
+                int retries = 0;
+                Map<Integer, Integer> conflicts = new HashMap<>(); // Game -> updates reported as conflicts
+                for (Future<List<GameUpdater.UpdateResult>> future : futures) {
+                    for (GameUpdater.UpdateResult result : future.get(60, TimeUnit.SECONDS)) {
+                        assertTrue(result.getMissing().isEmpty());
+                        assertEquals(gameIds.size(), result.getUpdated() + result.getConflicts().size());
+                        updated += result.getUpdated();
+                        retries += result.getRetries();
+                        for (int gameId : result.getConflicts()) {
+                            conflicts.merge(gameId, 1, Integer::sum);
+                        }
+                    }
+                }
+                assertTrue(retries > 0, "The first round must have retried");
+
+                CatalogCache after = new CatalogCache(database.getPool()); // Reads the database only
+                int applied = 0;
+                for (int gameId : gameIds) {
+                    int changes = writers * rounds - conflicts.getOrDefault(gameId, 0); // Every update that was not reported
+                    assertEquals(before.getGame(gameId).getAgeLimit() + changes, after.getGame(gameId).getAgeLimit());
+                    assertEquals(before.getGame(gameId).getVersion() + changes, after.getGame(gameId).getVersion());
+                    assertEquals(after.getGame(gameId).getVersion(), service.getGame(gameId).getVersion());
+                    applied += changes;
+                }
+                assertEquals(updated, applied);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InventoryTest {
+    @Test
+    void soldOutReportedAfterARestockIsIgnored() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            Inventory inventory = new Inventory(database.getPool());
+            inventory.setStock(1, 1);
+            inventory.setStock(2, 1);
+
+            try (Connection con = database.getPool().getConnection()) {
+                con.setAutoCommit(false);
+                Inventory.Reservation reservation = inventory.reserveAll(con, new int[] {1, 2}, 2);
+                assertTrue(reservation.isGranted(0));
+                assertTrue(reservation.isGranted(1));
+                con.commit();
+
+                inventory.restock(1, 5); // Lands between the stock read and the sold-out report
+                reservation.committed();
+
+                inventory.reserve(con, 1);
+                assertThrows(Inventory.OutOfStockException.class, () -> inventory.reserve(con, 2));
+                con.commit();
+            }
+            assertEquals(1, inventory.getFastRejectedCount()); // Only game 2 is remembered as sold out
+            assertEquals(4, inventory.getStock(1));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OperationMetricsTest {
+    @Test
+    void logsASlowQueryWhoseResultSetIsLeftOpen() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            OperationMetrics metrics = database.getPool().getMetrics();
+            metrics.setSlowQueryThresholdMillis(0); // Every execution is slow
+            metrics.reset();
+            List<String> written = new ArrayList<>();
+            metrics.setSlowQueryLog(written::add);
+
+            Connection con = database.getPool().getConnection();
+            PreparedStatement preparedStatement = con.prepareStatement("SELECT game_id FROM games ORDER BY game_id");
+            ResultSet resultSet = preparedStatement.executeQuery();
+            assertTrue(resultSet.next());
+            assertTrue(resultSet.next()); // Neither read to the end nor closed
+            assertEquals(0, metrics.getSlowQueryCount());
+
+            con.close();
+            List<String> logged = metrics.getRecentSlowQueries();
+            assertEquals(1, logged.size());
+            assertTrue(logged.get(0).contains(", 2 rows: SELECT game_id FROM games"), logged.get(0));
+            assertEquals(1, written.size());
+            assertTrue(logged.get(0).endsWith(written.get(0)), written.get(0)); // The kept line adds a timestamp
+        }
+    }
+
+    @Test
+    void countsTheRowsOfAFailedBatch() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            OperationMetrics metrics = database.getPool().getMetrics();
+            metrics.setSlowQueryThresholdMillis(0);
+            metrics.reset();
+
+            try (Connection con = database.getPool().getConnection();
+                 PreparedStatement preparedStatement = con.prepareStatement("UPDATE games SET price = ? WHERE game_id = ?")) {
+                for (int gameId = 1; gameId <= 3; gameId++) {
+                    preparedStatement.setString(1, gameId == 2 ? "not a price" : "1.00"); // Set price parameter
+                    preparedStatement.setInt(2, gameId); // Set game ID parameter
+                    preparedStatement.addBatch();
+                }
+                assertThrows(BatchUpdateException.class, preparedStatement::executeBatch);
+            }
+            List<String> logged = metrics.getRecentSlowQueries();
+            assertTrue(logged.get(logged.size() - 1).contains(", 2 rows, failed: UPDATE games"), logged.toString());
+        }
+    }
+}
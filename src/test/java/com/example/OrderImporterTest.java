@@ -0,0 +1,245 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderImporterTest {
+    @Test
+    void matchesCustomerNamesInAnyCase() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            try (GameStoreService service = new GameStoreService(database.getPool())) {
+                List<OrderImporter.OrderRequest> orders = new ArrayList<>();
+                orders.add(new OrderImporter.OrderRequest("Customer 3", 1, null));
+                orders.add(new OrderImporter.OrderRequest("customer 3", 2, null));
+                orders.add(new OrderImporter.OrderRequest("CUSTOMER 4", 3, null));
+                orders.add(new OrderImporter.OrderRequest("Nobody", 3, null));
+
+                OrderImporter.ImportResult result = service.importOrders(orders, 100, 1000);
+                assertEquals(3, result.getInserted());
+                assertEquals(1, result.getFailures().size());
+                assertEquals(4, result.getFailures().get(0).getRowNumber());
+                try (Connection con = database.getPool().getConnection()) {
+                    assertEquals(3, SchemaMigrations.countRows(con, "orders"));
+                }
+            }
+        }
+    }
+
+    @Test
+    void reportsNamesSharedBySeveralCustomers() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            try (GameStoreService service = new GameStoreService(database.getPool())) {
+                int first = service.addCustomer("Sam Lee", "sam.lee@example.com").getCustomerId();
+                int second = service.addCustomer("Sam Lee", "sam.lee@example.org").getCustomerId();
+                List<OrderImporter.OrderRequest> orders = new ArrayList<>();
+                orders.add(new OrderImporter.OrderRequest("Customer 3", 1, null));
+                orders.add(new OrderImporter.OrderRequest("SAM LEE", 2, null));
+
+                OrderImporter.ImportResult result = service.importOrders(orders, 100, 1000);
+                assertEquals(1, result.getInserted());
+                assertEquals(1, result.getFailures().size());
+                assertEquals(2, result.getFailures().get(0).getRowNumber());
+                assertTrue(result.getFailures().get(0).getReason().contains("[" + first + ", " + second + "]"),
+                        result.getFailures().get(0).getReason());
+                try (Connection con = database.getPool().getConnection()) {
+                    assertEquals(1, SchemaMigrations.countRows(con, "orders"));
+                }
+            }
+        }
+    }
+
+    @Test
+    void readsQuotedFieldsAsTheReportWritesThem(@TempDir Path directory) throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            try (GameStoreService service = new GameStoreService(database.getPool())) {
+                int comma = service.addCustomer("Lee, Sam", "lee.sam@example.com").getCustomerId();
+                int quote = service.addCustomer("Sam \"The Tank\" Lee", "tank@example.com").getCustomerId();
+                Path file = directory.resolve("orders.csv");
+                Files.write(file, Arrays.asList(
+                        "customer_name,game_id,order_date",
+                        OrderReport.csv("Lee, Sam") + ",1,2024-01-02",
+                        " " + OrderReport.csv("Sam \"The Tank\" Lee") + " , 2",
+                        "\"Lee, Sam,3",
+                        "\"Lee, Sam\" x,4",
+                        "Sam \"Tank,5"), StandardCharsets.UTF_8);
+
+                OrderImporter.ImportResult result = service.importOrders(file, 100, 1000);
+                assertEquals(2, result.getInserted());
+                assertEquals(Arrays.asList(4, 5, 6), failedRows(result));
+                assertTrue(result.getFailures().get(0).getReason().contains("unterminated"));
+                try (Connection con = database.getPool().getConnection();
+                     Statement statement = con.createStatement()) {
+                    ResultSet resultSet = statement.executeQuery("SELECT customer_id FROM orders ORDER BY game_id");
+                    assertTrue(resultSet.next());
+                    assertEquals(comma, resultSet.getInt(1));
+                    assertTrue(resultSet.next());
+                    assertEquals(quote, resultSet.getInt(1));
+                }
+            }
+        }
+    }
+
+    @Test
+    void commitIntervalAboveTheChunkSizeIsOneTransaction() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            try (GameStoreService service = new GameStoreService(database.getPool())) {
+                List<OrderImporter.OrderRequest> orders = new ArrayList<>();
+                for (int i = 0; i < 12_000; i++) {
+                    orders.add(new OrderImporter.OrderRequest(DataSeeder.customerName(1 + i % 10), 1 + i % 10, null));
+                }
+                service.getGames(); // Load the catalog before counting
+                long commits = commitCount(database);
+
+                OrderImporter.ImportResult result = service.importOrders(orders, 500, 20_000);
+                assertEquals(12_000, result.getInserted());
+                assertEquals(1, commitCount(database) - commits);
+            }
+        }
+    }
+
+    private static long commitCount(TestDatabase database) {
+        OperationMetrics.Stats stats = database.getPool().getMetrics().getStats("jdbc: COMMIT");
+        return stats == null ? 0 : stats.getCount();
+    }
+
+    private static List<Integer> failedRows(OrderImporter.ImportResult result) {
+        List<Integer> rows = new ArrayList<>();
+        for (OrderImporter.RowFailure failure : result.getFailures()) {
+            rows.add(failure.getRowNumber());
+        }
+        return rows;
+    }
+
+    @Test
+    void replaysARefusedBatchRowByRow() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            try (GameStoreService service = new GameStoreService(database.getPool())) {
+                try (Connection con = database.getPool().getConnection();
+                     Statement statement = con.createStatement()) {
+                    // Passes validation and reservation, refused only by the insert
+                    statement.executeUpdate("ALTER TABLE orders ADD CONSTRAINT no_game_10 CHECK (game_id <> 10)");
+                }
+
+                List<OrderImporter.OrderRequest> orders = new ArrayList<>();
+                for (int i = 1; i <= 10; i++) {
+                    orders.add(new OrderImporter.OrderRequest(DataSeeder.customerName(i), i, null));
+                }
+                OrderImporter.ImportResult result = service.importOrders(orders, 100, 1000);
+                assertEquals(9, result.getInserted());
+                assertEquals(1, result.getFailures().size());
+                assertEquals(10, result.getFailures().get(0).getRowNumber());
+            }
+        }
+    }
+
+    @Test
+    void reservesStockForImportedOrders() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            try (GameStoreService service = new GameStoreService(database.getPool())) {
+                service.setStock(1, 3);
+                service.setStock(2, 0);
+                try (Connection con = database.getPool().getConnection();
+                     Statement statement = con.createStatement()) {
+                    statement.executeUpdate("ALTER TABLE orders ADD CONSTRAINT no_game_10 CHECK (game_id <> 10)");
+                }
+
+                List<OrderImporter.OrderRequest> orders = new ArrayList<>();
+                for (int i = 1; i <= 5; i++) {
+                    orders.add(new OrderImporter.OrderRequest(DataSeeder.customerName(i), 1, null));
+                }
+                orders.add(new OrderImporter.OrderRequest(DataSeeder.customerName(6), 2, null));
+                orders.add(new OrderImporter.OrderRequest(DataSeeder.customerName(7), 3, null)); // Untracked
+                OrderImporter.ImportResult result = service.importOrders(orders, 2, 1000);
+                assertEquals(4, result.getInserted());
+                assertEquals(3, result.getFailures().size());
+                assertEquals(Integer.valueOf(0), service.getStock(1));
+
+                // A refused row replays its batch one by one, which must not reserve twice
+                service.restock(1, 5);
+                orders.clear();
+                orders.add(new OrderImporter.OrderRequest(DataSeeder.customerName(1), 1, null));
+                orders.add(new OrderImporter.OrderRequest(DataSeeder.customerName(2), 10, null));
+                orders.add(new OrderImporter.OrderRequest(DataSeeder.customerName(3), 1, null));
+                orders.add(new OrderImporter.OrderRequest(DataSeeder.customerName(4), 1, null));
+                result = service.importOrders(orders, 2, 1000);
+                assertEquals(3, result.getInserted());
+                assertEquals(1, result.getFailures().size());
+                assertEquals(Integer.valueOf(2), service.getStock(1));
+                try (Connection con = database.getPool().getConnection()) {
+                    assertEquals(7, SchemaMigrations.countRows(con, "orders"));
+                }
+            }
+        }
+    }
+
+    @Test
+    void replayedTransactionGetsTheCopiesTheBatchSoldOut() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            try (GameStoreService service = new GameStoreService(database.getPool())) {
+                service.setStock(1, 2);
+                try (Connection con = database.getPool().getConnection();
+                     Statement statement = con.createStatement()) {
+                    statement.executeUpdate("ALTER TABLE orders ADD CONSTRAINT no_game_10 CHECK (game_id <> 10)");
+                }
+
+                // The reservation takes both copies; the refused batch is rolled back and replayed without losing them
+                List<OrderImporter.OrderRequest> orders = new ArrayList<>();
+                orders.add(new OrderImporter.OrderRequest(DataSeeder.customerName(1), 1, null));
+                orders.add(new OrderImporter.OrderRequest(DataSeeder.customerName(2), 10, null));
+                orders.add(new OrderImporter.OrderRequest(DataSeeder.customerName(3), 1, null));
+                orders.add(new OrderImporter.OrderRequest(DataSeeder.customerName(4), 1, null));
+                OrderImporter.ImportResult result = service.importOrders(orders, 2, 1000);
+                assertEquals(2, result.getInserted());
+                assertEquals(2, result.getFailures().size());
+                assertEquals(Integer.valueOf(0), service.getStock(1));
+            }
+        }
+    }
+
+    @Test
+    void refusedRowGivesItsCopyBack() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            try (GameStoreService service = new GameStoreService(database.getPool())) {
+                service.setStock(1, 5);
+                service.setStock(10, 1);
+                try (Connection con = database.getPool().getConnection();
+                     Statement statement = con.createStatement()) {
+                    statement.executeUpdate("ALTER TABLE orders ADD CONSTRAINT no_game_10 CHECK (game_id <> 10)");
+                }
+
+                // Only the second batch is refused and replayed; its refused row must not keep the copy
+                List<OrderImporter.OrderRequest> orders = new ArrayList<>();
+                orders.add(new OrderImporter.OrderRequest(DataSeeder.customerName(1), 1, null));
+                orders.add(new OrderImporter.OrderRequest(DataSeeder.customerName(2), 1, null));
+                orders.add(new OrderImporter.OrderRequest(DataSeeder.customerName(3), 10, null));
+                orders.add(new OrderImporter.OrderRequest(DataSeeder.customerName(4), 1, null));
+                OrderImporter.ImportResult result = service.importOrders(orders, 2, 1000);
+                assertEquals(3, result.getInserted());
+                assertEquals(1, result.getFailures().size());
+                assertEquals(3, result.getFailures().get(0).getRowNumber());
+                assertEquals(Integer.valueOf(2), service.getStock(1));
+                assertEquals(Integer.valueOf(1), service.getStock(10));
+            }
+        }
+    }
+}
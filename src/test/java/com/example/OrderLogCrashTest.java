@@ -0,0 +1,125 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Kills a child JVM while its OrderLog flushes and checks that reopening the log stores every
+ * accepted order exactly once. The database is a file shared with the child through H2's
+ * automatic server, so the child's commits outlive it.
+ */
+class OrderLogCrashTest {
+    private static final int CUSTOMERS = 200;
+    private static final int GAMES = 50;
+    private static final int ORDERS = CUSTOMERS * GAMES; // Every order a different (customer, game) pair
+    private static final int BATCH_SIZE = 10; // Many small transactions, so the flush takes a while
+
+    @Test
+    void replayAfterKillMidFlushStoresEveryOrderOnce(@TempDir Path directory) throws Exception {
+        String url = "jdbc:h2:" + directory.resolve("store").toAbsolutePath() + ";MODE=MySQL;AUTO_SERVER=TRUE";
+        Path file = directory.resolve("orders.log");
+        String logName = OrderLog.checkpointKey(file);
+        try (ConnectionPool pool = new ConnectionPool(url, "sa", "", 4)) { // Opened first, so this JVM serves the database
+            try (Connection con = pool.getConnection()) {
+                SchemaMigrations.migrate(con);
+                DataSeeder.seed(con, GAMES, CUSTOMERS, 0);
+            }
+
+            List<String> command = new ArrayList<>();
+            command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+            command.add("-Dgamestore.slowQueryMillis=-1");
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(OrderLogCrashTest.class.getName());
+            command.add(url);
+            command.add(file.toString());
+            Process child = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+            long killedAt;
+            StringBuilder output = new StringBuilder();
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(child.getInputStream(), StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null && !line.startsWith("ACCEPTED")) {
+                    output.append(line).append('\n');
+                }
+                assertNotNull(line, "Child exited before accepting its orders:\n" + output);
+
+                // Kill it as soon as some batches are committed
+                long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+                killedAt = readCheckpoint(pool, logName);
+                while (killedAt == 0 && System.nanoTime() < deadline) {
+                    Thread.sleep(1);
+                    killedAt = readCheckpoint(pool, logName);
+                }
+            } finally {
+                child.destroyForcibly();
+                child.waitFor();
+            }
+            long storedByChild = readCheckpoint(pool, logName); // Batches may have committed between the read and the kill
+            assertTrue(killedAt > 0 && storedByChild < ORDERS,
+                    "Not killed mid-flush: checkpoint " + killedAt + " when killed, " + storedByChild + " after, of " + ORDERS);
+
+            try (GameStoreService service = new GameStoreService(pool);
+                 OrderLog log = new OrderLog(pool, service.getCustomerIndex(), service.getCatalog(), service.getAnalytics(),
+                         service.getInventory(), file, ORDERS, BATCH_SIZE, false, false)) {
+                assertEquals(ORDERS - storedByChild, log.getReplayedCount());
+                assertTrue(log.awaitFlushed(ORDERS, 5, TimeUnit.MINUTES), log.toString());
+                assertEquals(0, log.getLostCount());
+            }
+            try (Connection con = pool.getConnection();
+                 Statement statement = con.createStatement()) {
+                ResultSet resultSet = statement.executeQuery(
+                        "SELECT COUNT(*), COUNT(DISTINCT customer_id * " + (GAMES + 1) + " + game_id) FROM orders");
+                resultSet.next();
+                assertEquals(ORDERS, resultSet.getLong(1)); // None lost
+                assertEquals(ORDERS, resultSet.getLong(2)); // None stored twice
+            }
+        }
+    }
+
+    private static long readCheckpoint(ConnectionPool pool, String logName) throws Exception {
+        try (Connection con = pool.getConnection();
+             PreparedStatement preparedStatement = con.prepareStatement(
+                     "SELECT last_sequence FROM order_log_checkpoint WHERE log_name = ?")) {
+            preparedStatement.setString(1, logName); // Set log name parameter
+            ResultSet resultSet = preparedStatement.executeQuery(); // Execute query
+            return resultSet.next() ? resultSet.getLong(1) : 0; // No row until the child opened the log
+        }
+    }
+
+    /**
+     * Child JVM: accept every (customer, game) pair once, report, then keep flushing until killed
+     * @param args The JDBC URL of the seeded database and the log file
+     */
+    public static void main(String[] args) throws Exception {
+        ConnectionPool pool = new ConnectionPool(args[0], "sa", "", 2);
+        GameStoreService service = new GameStoreService(pool);
+        OrderLog log = new OrderLog(pool, service.getCustomerIndex(), service.getCatalog(), service.getAnalytics(),
+                service.getInventory(), Paths.get(args[1]), ORDERS, BATCH_SIZE, false, false);
+        for (int customerId = 1; customerId <= CUSTOMERS; customerId++) {
+            for (int gameId = 1; gameId <= GAMES; gameId++) {
+                log.accept(customerId, gameId);
+            }
+        }
+        System.out.println("ACCEPTED " + ORDERS);
+        System.out.flush();
+        Thread.sleep(Long.MAX_VALUE); // Never closed: the parent kills this process mid-flush
+    }
+}
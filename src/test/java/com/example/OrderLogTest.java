@@ -0,0 +1,78 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderLogTest {
+    @Test
+    void logsWithTheSameFileNameKeepSeparateCheckpoints(@TempDir Path directory) throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            try (GameStoreService service = new GameStoreService(database.getPool())) {
+                Path first = Files.createDirectory(directory.resolve("a")).resolve("orders.log");
+                Path second = Files.createDirectory(directory.resolve("b")).resolve("orders.log");
+                writeOrders(service, first, 5);
+                writeOrders(service, second, 3);
+
+                // Reopening finds each log fully stored, nothing is replayed or inserted twice
+                try (OrderLog log = open(service, first, false)) {
+                    assertEquals(0, log.getReplayedCount());
+                }
+                try (OrderLog log = open(service, second, false)) {
+                    assertEquals(0, log.getReplayedCount());
+                }
+                try (Connection con = database.getPool().getConnection()) {
+                    assertEquals(8, SchemaMigrations.countRows(con, "orders"));
+                    assertEquals(2, SchemaMigrations.countRows(con, "order_log_checkpoint"));
+                }
+            }
+        }
+    }
+
+    @Test
+    void refusesToReplayALogWithoutCheckpoint(@TempDir Path directory) throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            try (GameStoreService service = new GameStoreService(database.getPool())) {
+                Path file = directory.resolve("orders.log");
+                writeOrders(service, file, 5);
+                try (Connection con = database.getPool().getConnection();
+                     Statement statement = con.createStatement()) {
+                    statement.executeUpdate("DELETE FROM order_log_checkpoint"); // As after restoring a snapshot
+                }
+
+                assertThrows(IOException.class, () -> open(service, file, false));
+                try (OrderLog log = open(service, file, true)) {
+                    assertEquals(5, log.getReplayedCount());
+                    assertTrue(log.awaitFlushed(5, 1, TimeUnit.MINUTES));
+                }
+                try (Connection con = database.getPool().getConnection()) {
+                    assertEquals(10, SchemaMigrations.countRows(con, "orders")); // Stored again, as asked for
+                }
+            }
+        }
+    }
+
+    private static void writeOrders(GameStoreService service, Path file, int orders) throws Exception {
+        try (OrderLog log = open(service, file, false)) {
+            for (int i = 1; i <= orders; i++) {
+                log.accept(i, i);
+            }
+            assertTrue(log.awaitFlushed(orders, 1, TimeUnit.MINUTES));
+        }
+    }
+
+    private static OrderLog open(GameStoreService service, Path file, boolean replayWithoutCheckpoint) throws Exception {
+        return new OrderLog(service.getPool(), service.getCustomerIndex(), service.getCatalog(), service.getAnalytics(),
+                service.getInventory(), file, 64, 16, false, replayWithoutCheckpoint);
+    }
+}
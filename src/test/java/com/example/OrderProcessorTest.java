@@ -0,0 +1,145 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderProcessorTest {
+    @Test
+    void submitBlocksOnceTheLimitIsReached() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            CountDownLatch release = new CountDownLatch(1);
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            executor.execute(() -> awaitQuietly(release)); // Holds the only worker, so submitted orders stay pending
+            try (OrderProcessor processor = newProcessor(database, executor, 2)) {
+                CompletableFuture<Integer> first = processor.submit(1, 1);
+                CompletableFuture<Integer> second = processor.submit(2, 2);
+                assertEquals(2, processor.getInFlightCount());
+
+                FutureTask<CompletableFuture<Integer>> third = new FutureTask<>(() -> processor.submit(3, 3));
+                Thread producer = new Thread(third);
+                producer.start();
+                producer.join(200);
+                assertTrue(producer.isAlive(), "submit must block while 2 orders are in flight");
+                assertFalse(third.isDone());
+
+                release.countDown();
+                assertTrue(first.get(10, TimeUnit.SECONDS) > 0);
+                assertTrue(second.get(10, TimeUnit.SECONDS) > 0);
+                assertTrue(third.get(10, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS) > 0);
+                assertEquals(3, processor.getCompletedCount());
+                assertEquals(0, processor.getRejectedCount());
+            }
+        }
+    }
+
+    @Test
+    void timedSubmitIsRejectedAtTheLimit() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            String name = new CustomerIndex(database.getPool()).getCustomer(1).getCustomerName();
+            CountDownLatch release = new CountDownLatch(1);
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            executor.execute(() -> awaitQuietly(release));
+            try (OrderProcessor processor = newProcessor(database, executor, 1)) {
+                CompletableFuture<Integer> pending = processor.submit(name, 1, 1, TimeUnit.SECONDS);
+
+                assertThrows(RejectedExecutionException.class, () -> processor.submit(name, 2, 50, TimeUnit.MILLISECONDS));
+                assertEquals(1, processor.getRejectedCount());
+                assertEquals(1, processor.getSubmittedCount());
+
+                release.countDown();
+                assertTrue(pending.get(10, TimeUnit.SECONDS) > 0);
+                assertTrue(processor.submit(name, 2, 1, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS) > 0);
+            }
+        }
+    }
+
+    @Test
+    void failedInsertCompletesTheFutureExceptionally() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            try (OrderProcessor processor = newProcessor(database, Executors.newSingleThreadExecutor(), 4)) {
+                CompletableFuture<Integer> order = processor.submit(10_000, 1); // No such customer, the insert's FK check fails
+
+                ExecutionException failure = assertThrows(ExecutionException.class, () -> order.get(10, TimeUnit.SECONDS));
+                assertInstanceOf(SQLException.class, failure.getCause());
+                assertEquals(1, processor.getFailedCount());
+                assertEquals(0, processor.getInFlightCount()); // The permit is returned
+                assertTrue(processor.submit(1, 1).get(10, TimeUnit.SECONDS) > 0);
+            }
+        }
+    }
+
+    @Test
+    void nameSharedBySeveralCustomersFailsTheOrder() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            int first;
+            int second;
+            try (GameStoreService service = new GameStoreService(database.getPool())) {
+                first = service.addCustomer("Sam Lee", "sam.lee@example.com").getCustomerId();
+                second = service.addCustomer("Sam Lee", "sam.lee@example.org").getCustomerId();
+            }
+            try (OrderProcessor processor = newProcessor(database, Executors.newSingleThreadExecutor(), 4)) {
+                CompletableFuture<Integer> order = processor.submit("sam lee", 1);
+
+                ExecutionException failure = assertThrows(ExecutionException.class, () -> order.get(10, TimeUnit.SECONDS));
+                assertInstanceOf(SQLException.class, failure.getCause());
+                assertTrue(failure.getCause().getMessage().contains("ambiguous: sam lee (customers [" + first + ", " + second + "])"),
+                        failure.getCause().getMessage());
+                assertEquals(1, processor.getFailedCount());
+                try (Connection con = database.getPool().getConnection()) {
+                    assertEquals(0, SchemaMigrations.countRows(con, "orders"));
+                }
+            }
+        }
+    }
+
+    @Test
+    void namesakeAddedElsewhereFailsTheOrder() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 0);
+            String name = DataSeeder.customerName(1);
+            try (OrderProcessor processor = newProcessor(database, Executors.newSingleThreadExecutor(), 4)) {
+                assertTrue(processor.submit(name, 1).get(10, TimeUnit.SECONDS) > 0); // Loads the index with one match
+
+                try (Connection con = DriverManager.getConnection(database.getUrl(), "sa", ""); // Another process
+                     Statement statement = con.createStatement()) {
+                    statement.executeUpdate("INSERT INTO customers (customer_id, customer_name, email) " +
+                            "VALUES (100, '" + name + "', 'namesake@example.com')");
+                }
+
+                CompletableFuture<Integer> order = processor.submit(name, 1);
+                ExecutionException failure = assertThrows(ExecutionException.class, () -> order.get(10, TimeUnit.SECONDS));
+                assertTrue(failure.getCause().getMessage().contains("ambiguous: " + name + " (customers [1, 100])"),
+                        failure.getCause().getMessage());
+                try (Connection con = database.getPool().getConnection()) {
+                    assertEquals(1, SchemaMigrations.countRows(con, "orders"));
+                }
+            }
+        }
+    }
+
+    private static OrderProcessor newProcessor(TestDatabase database, ExecutorService executor, int maxInFlight) {
+        ConnectionPool pool = database.getPool();
+        CatalogCache catalog = new CatalogCache(pool);
+        return new OrderProcessor(pool, new CustomerIndex(pool), catalog, new SalesAnalytics(pool, catalog),
+                new Inventory(pool), executor, maxInFlight);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Streams the order history through OrderReport page by page. The default suite streams a
+ * small history in process. Run with -DorderReport.rows=2000000 to also stream a
+ * multi-million-row history in a child JVM whose heap is far smaller than the report, so
+ * holding more than a few pages fails with OutOfMemoryError; seeding that takes minutes.
+ */
+class OrderReportStreamingTest {
+    private static final int SMALL_ROWS = 25_000; // 25 pages of the default page size
+    private static final String HEAP = "-Xmx64m"; // Two million rows alone would need several hundred MB
+
+    @Test
+    void streamsEveryRowPageByPage() throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(100, 100, 0);
+            try (Connection con = database.getPool().getConnection()) {
+                insertOrders(con, SMALL_ROWS, 100, 100);
+            }
+            long exported = new OrderReport(database.getPool()).exportCsv(null, discard());
+            assertEquals(SMALL_ROWS, exported);
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "orderReport.rows", matches = "\\d+")
+    void streamsMillionsOfRowsInASmallHeap(@TempDir Path directory) throws Exception {
+        int rows = Integer.getInteger("orderReport.rows");
+        // A file database, so the rows live on disk rather than in the child's heap
+        String url = "jdbc:h2:" + directory.resolve("orders").toAbsolutePath() + ";MODE=MySQL;CACHE_SIZE=8192";
+        try (ConnectionPool pool = new ConnectionPool(url, "sa", "", 1, 30_000, 600_000, 0, 32); // The insert outlives the leak threshold
+             Connection con = pool.getConnection()) {
+            SchemaMigrations.migrate(con);
+            DataSeeder.seed(con, 1000, 10_000, 0);
+            insertOrders(con, rows, 10_000, 1000);
+        }
+
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add(HEAP);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(OrderReportStreamingTest.class.getName());
+        command.add(url);
+        command.add(String.valueOf(rows));
+        Process child = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+        StringBuilder output = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(child.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.append(line).append('\n');
+            }
+        }
+        assertTrue(child.waitFor(10, TimeUnit.MINUTES), "Streaming did not finish");
+        assertEquals(0, child.exitValue(), output.toString()); // The child checks the count itself
+    }
+
+    /**
+     * Method to insert orders with one set-based insert, much faster than seeding them through JDBC batches
+     */
+    private static void insertOrders(Connection con, int rows, int customers, int games) throws Exception {
+        try (Statement statement = con.createStatement()) {
+            statement.executeUpdate("INSERT INTO orders (customer_id, game_id, order_date) " +
+                    "SELECT MOD(X, " + customers + ") + 1, MOD(X, " + games + ") + 1, " +
+                    "DATEADD('DAY', -MOD(X, 365), CURRENT_DATE) FROM SYSTEM_RANGE(1, " + rows + ")");
+        }
+    }
+
+    /**
+     * Method to get a writer that discards the CSV; only the memory used while producing it matters
+     */
+    private static Writer discard() {
+        return new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) {
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Child JVM: export every order as CSV and exit with a failure unless every row was exported
+     * @param args The JDBC URL of the seeded database and the expected number of rows
+     */
+    public static void main(String[] args) throws Exception {
+        try (ConnectionPool pool = new ConnectionPool(args[0], "sa", "", 1)) {
+            long exported = new OrderReport(pool).exportCsv(null, discard());
+            if (exported != Long.parseLong(args[1])) {
+                throw new AssertionError("Exported " + exported + " of " + args[1] + " rows");
+            }
+        }
+    }
+}
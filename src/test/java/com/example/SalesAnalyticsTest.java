@@ -0,0 +1,85 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SalesAnalyticsTest {
+    private static final int GAMES = 20; // Few games, so concurrent orders collide on the same rollup keys
+
+    @Test
+    void rollupsMatchTheOrdersAfterConcurrentOrdering() throws Exception {
+        try (TestDatabase database = new TestDatabase(16)) {
+            database.seed(GAMES, 50, 500); // Seeded orders go into the rollups through rebuild
+            try (GameStoreService service = new GameStoreService(database.getPool())) {
+                ExecutorService orderers = Executors.newFixedThreadPool(8);
+                List<Future<?>> done = new ArrayList<>();
+                for (int thread = 0; thread < 8; thread++) {
+                    int seed = thread;
+                    done.add(orderers.submit(() -> {
+                        Random random = new Random(seed);
+                        if (seed % 2 == 0) {
+                            for (int i = 0; i < 150; i++) { // Group-committed by the order processor
+                                service.placeOrder(1 + random.nextInt(50), 1 + random.nextInt(GAMES));
+                            }
+                        } else {
+                            List<OrderImporter.OrderRequest> orders = new ArrayList<>();
+                            for (int i = 0; i < 300; i++) { // Batched by the importer
+                                orders.add(new OrderImporter.OrderRequest(DataSeeder.customerName(1 + random.nextInt(50)),
+                                        1 + random.nextInt(GAMES), null));
+                            }
+                            assertEquals(300, service.importOrders(orders, 25, 100).getInserted());
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : done) {
+                    future.get();
+                }
+                orderers.shutdown();
+            }
+
+            try (Connection con = database.getPool().getConnection()) {
+                assertEquals(500 + 4 * 150 + 4 * 300, SchemaMigrations.countRows(con, "orders"));
+                assertEquals(
+                        totals(con, "SELECT o.game_id, COUNT(*), SUM(g.price) FROM orders o " +
+                                "JOIN games g ON o.game_id = g.game_id GROUP BY o.game_id"),
+                        totals(con, "SELECT game_id, SUM(order_count), SUM(revenue) FROM sales_by_game GROUP BY game_id"));
+                assertEquals(
+                        totals(con, "SELECT g.genre_id, COUNT(*), SUM(g.price) FROM orders o " +
+                                "JOIN games g ON o.game_id = g.game_id GROUP BY g.genre_id"),
+                        totals(con, "SELECT genre_id, SUM(order_count), SUM(revenue) FROM sales_by_genre GROUP BY genre_id"));
+                assertEquals(
+                        totals(con, "SELECT o.order_date, COUNT(*), SUM(g.price) FROM orders o " +
+                                "JOIN games g ON o.game_id = g.game_id GROUP BY o.order_date"),
+                        totals(con, "SELECT order_date, SUM(order_count), SUM(revenue) FROM sales_by_day GROUP BY order_date"));
+            }
+        }
+    }
+
+    /**
+     * Method to read key, count and sum rows into a map comparable across queries
+     */
+    private static Map<String, String> totals(Connection con, String sql) throws Exception {
+        Map<String, String> totals = new TreeMap<>();
+        try (PreparedStatement preparedStatement = con.prepareStatement(sql);
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            while (resultSet.next()) {
+                totals.put(resultSet.getString(1), resultSet.getLong(2) + " orders, " + resultSet.getBigDecimal(3).setScale(2));
+            }
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaMigrationsTest {
+    @Test
+    void concurrentStartsApplyEachMigrationOnce() throws Exception {
+        String url = "jdbc:h2:mem:migrations;MODE=MySQL;IGNORECASE=TRUE;LOCK_TIMEOUT=10000";
+        try (Connection pin = DriverManager.getConnection(url, "sa", "")) {
+            ExecutorService instances = Executors.newFixedThreadPool(4);
+            List<Future<Integer>> applied = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                applied.add(instances.submit(() -> {
+                    try (Connection con = DriverManager.getConnection(url, "sa", "")) {
+                        return SchemaMigrations.migrate(con);
+                    }
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> future : applied) {
+                total += future.get();
+            }
+            instances.shutdown();
+
+            assertEquals(SchemaMigrations.getLatestVersion(), total);
+            assertEquals(SchemaMigrations.getLatestVersion(), SchemaMigrations.countRows(pin, "schema_version"));
+            assertEquals(9, SchemaMigrations.countRows(pin, "genres"));
+        }
+    }
+}
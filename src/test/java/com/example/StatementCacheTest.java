@@ -0,0 +1,100 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementCacheTest {
+    private static final String URL = "jdbc:h2:mem:statementCache;MODE=MySQL";
+
+    @Test
+    void lendsABusyStatementToOneCallerOnly() throws Exception {
+        try (Connection physical = DriverManager.getConnection(URL, "sa", "")) {
+            StatementCache cache = new StatementCache(physical, 4);
+            PreparedStatement first = cache.prepare("SELECT ?");
+            PreparedStatement second = cache.prepare("SELECT ?"); // Still in use, gets its own statement
+            first.setInt(1, 1);
+            second.setInt(1, 2);
+            assertEquals(1, single(first));
+            assertEquals(2, single(second));
+            first.close();
+            second.close();
+
+            cache.prepare("SELECT ?").close();
+            assertEquals(1, cache.size());
+            assertEquals(1, cache.getHitCount());
+        }
+    }
+
+    @Test
+    void neverEvictsABusyStatement() throws Exception {
+        try (Connection physical = DriverManager.getConnection(URL, "sa", "")) {
+            StatementCache cache = new StatementCache(physical, 1);
+            PreparedStatement busy = cache.prepare("SELECT 1");
+            PreparedStatement other = cache.prepare("SELECT 2"); // Over the limit while both are lent out
+            assertEquals(2, cache.size());
+            assertEquals(1, single(busy));
+            other.close();
+            busy.close();
+
+            cache.prepare("SELECT 3").close(); // Now the idle statements can go
+            assertEquals(1, cache.size());
+            assertEquals(2, cache.getEvictionCount());
+        }
+    }
+
+    @Test
+    void resetsSettingsWhenAStatementComesBack() throws Exception {
+        try (Connection physical = DriverManager.getConnection(URL, "sa", "")) {
+            StatementCache cache = new StatementCache(physical, 4);
+            PreparedStatement statement = cache.prepare("SELECT X FROM SYSTEM_RANGE(1, 10)");
+            int fetchSize = statement.getFetchSize();
+            statement.setMaxRows(3);
+            statement.setFetchSize(2);
+            statement.setQueryTimeout(7);
+            statement.close();
+
+            statement = cache.prepare("SELECT X FROM SYSTEM_RANGE(1, 10)");
+            assertEquals(1, cache.getHitCount());
+            assertEquals(0, statement.getMaxRows());
+            assertEquals(fetchSize, statement.getFetchSize());
+            assertEquals(0, statement.getQueryTimeout());
+            statement.close();
+        }
+    }
+
+    @Test
+    void releaseAllTakesBackUnclosedStatements() throws Exception {
+        try (Connection physical = DriverManager.getConnection(URL, "sa", "")) {
+            StatementCache cache = new StatementCache(physical, 4);
+            PreparedStatement leaked = cache.prepare("SELECT 1");
+            cache.releaseAll();
+            assertTrue(leaked.isClosed());
+            cache.prepare("SELECT 1").close();
+            assertEquals(1, cache.getHitCount());
+        }
+    }
+
+    @Test
+    void padsInListsToPowersOfTwo() {
+        assertEquals(1, StatementCache.inListSize(0));
+        assertEquals(1, StatementCache.inListSize(1));
+        assertEquals(2, StatementCache.inListSize(2));
+        assertEquals(4, StatementCache.inListSize(3));
+        assertEquals(512, StatementCache.inListSize(500));
+        assertEquals(512, StatementCache.inListSize(512));
+        assertEquals("?, ?, ?", StatementCache.placeholders(3));
+    }
+
+    private static int single(PreparedStatement statement) throws Exception {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            assertTrue(resultSet.next());
+            return resultSet.getInt(1);
+        }
+    }
+}
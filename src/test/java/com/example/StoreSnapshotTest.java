@@ -0,0 +1,144 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StoreSnapshotTest {
+    private static final int ORDERS = Integer.getInteger("storeSnapshot.orders", 200_000); // 10000000 for the full comparison
+    private static final int STOCK = 1_000_000; // Copies per game, never sold out during the test
+
+    @Test
+    void exportIsOnePointInTimeWhileOrdersArrive(@TempDir Path directory) throws Exception {
+        try (TestDatabase source = new TestDatabase(); TestDatabase target = new TestDatabase()) {
+            source.seed(20, 200, 0);
+            try (GameStoreService service = new GameStoreService(source.getPool())) {
+                for (int gameId = 1; gameId <= 20; gameId++) {
+                    service.setStock(gameId, STOCK); // Every order takes a copy in the transaction that inserts it
+                }
+                try (Connection con = source.getPool().getConnection();
+                     Statement statement = con.createStatement()) {
+                    statement.executeUpdate("INSERT INTO order_log_checkpoint (log_name, last_sequence) VALUES ('/var/orders.log', 42)");
+                }
+
+                AtomicBoolean done = new AtomicBoolean();
+                AtomicReference<Throwable> failure = new AtomicReference<>();
+                Thread orderer = new Thread(() -> {
+                    Random random = new Random(1);
+                    try {
+                        while (!done.get()) {
+                            service.placeOrder(1 + random.nextInt(200), 1 + random.nextInt(20));
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                });
+                orderer.start();
+                try {
+                    while (countOrders(source) < 2000) {
+                        Thread.sleep(10);
+                    }
+                    Path file = directory.resolve("store.snap");
+                    new StoreSnapshot(source.getPool(), 16, 100).export(file); // Small pages, so orders arrive between them
+                    new StoreSnapshot(target.getPool()).load(file);
+                } finally {
+                    done.set(true);
+                    orderer.join();
+                }
+                assertNull(failure.get());
+            }
+
+            try (Connection con = target.getPool().getConnection();
+                 Statement statement = con.createStatement()) {
+                // Stock and orders come from the same moment: every exported order took one exported copy
+                ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM games g WHERE " + STOCK + " - g.stock <> " +
+                        "(SELECT COUNT(*) FROM orders o WHERE o.game_id = g.game_id)");
+                resultSet.next();
+                assertEquals(0, resultSet.getInt(1));
+                assertTrue(SchemaMigrations.countRows(con, "orders") >= 2000);
+
+                resultSet = statement.executeQuery("SELECT last_sequence FROM order_log_checkpoint WHERE log_name = '/var/orders.log'");
+                assertTrue(resultSet.next());
+                assertEquals(42, resultSet.getLong(1));
+            }
+        }
+    }
+
+    @Test
+    void columnarSnapshotIsSmallerAndLoadsEveryRow() throws Exception {
+        String loadUrl = "jdbc:h2:mem:snapshotLoad;MODE=MySQL;IGNORECASE=TRUE;LOCK_TIMEOUT=10000";
+        try (TestDatabase database = new TestDatabase();
+             Connection loaded = DriverManager.getConnection(loadUrl, "root", "root")) { // Keeps the load target alive
+            GameStoreBenchmark benchmark = new GameStoreBenchmark(database.getPool());
+            benchmark.prepare(1000, 10_000, ORDERS);
+            List<Map<String, Object>> results;
+            System.setProperty("bench.loadUrl", loadUrl);
+            try {
+                results = benchmark.runAll(Pattern.compile("snapshot"), 0, 1, 1);
+            } finally {
+                System.clearProperty("bench.loadUrl");
+            }
+
+            Map<String, Map<String, Object>> byName = new HashMap<>();
+            for (Map<String, Object> result : results) {
+                byName.put((String) result.get("name"), result);
+            }
+            long rows = number(byName, "snapshot.export.columnar", "operations");
+            long csvRows = number(byName, "snapshot.export.csv", "operations");
+            assertTrue(rows >= csvRows && rows - csvRows <= 10, rows + " vs " + csvRows); // Plus the checkpoint rows
+            assertEquals(rows, number(byName, "snapshot.read.columnar", "operations"));
+            assertEquals(rows, number(byName, "snapshot.load.columnar", "operations"));
+            assertEquals(csvRows, number(byName, "snapshot.load.csv", "operations"));
+
+            long columnarBytes = number(byName, "snapshot.export.columnar", "fileBytes");
+            long csvBytes = number(byName, "snapshot.export.csv", "fileBytes");
+            assertTrue(columnarBytes * 2 < csvBytes, "Columnar " + columnarBytes + " bytes, CSV " + csvBytes + " bytes");
+
+            try (Connection con = database.getPool().getConnection()) {
+                assertEquals(SchemaMigrations.countRows(con, "orders"), SchemaMigrations.countRows(loaded, "orders"));
+            }
+        }
+    }
+
+    @Test
+    void exportReturnsConnectionsWithTheirOwnIsolation(@TempDir Path directory) throws Exception {
+        try (TestDatabase database = new TestDatabase()) {
+            database.seed(10, 10, 10);
+            // Opened at REPEATABLE READ like MySQL connections, not H2's default READ COMMITTED
+            String url = database.getUrl() + ";INIT=SET SESSION CHARACTERISTICS AS TRANSACTION ISOLATION LEVEL REPEATABLE READ";
+            try (ConnectionPool pool = new ConnectionPool(url, "sa", "", 1)) { // The export's connection is the one borrowed next
+                new StoreSnapshot(pool).export(directory.resolve("store.snap"));
+                try (Connection con = pool.getConnection()) {
+                    assertEquals(Connection.TRANSACTION_REPEATABLE_READ, con.getTransactionIsolation());
+                    assertTrue(con.getAutoCommit());
+                }
+                assertEquals(1, pool.getCreatedCount()); // Checked on the same physical connection
+            }
+        }
+    }
+
+    private static long countOrders(TestDatabase database) throws Exception {
+        try (Connection con = database.getPool().getConnection()) {
+            return SchemaMigrations.countRows(con, "orders");
+        }
+    }
+
+    private static long number(Map<String, Map<String, Object>> results, String name, String key) {
+        assertTrue(results.containsKey(name), "No result " + name + " in " + results.keySet());
+        return ((Number) results.get(name).get(key)).longValue();
+    }
+}
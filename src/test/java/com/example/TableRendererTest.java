@@ -0,0 +1,60 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TableRendererTest {
+    @Test
+    void formatsDecimalsLikePrintf() throws Exception {
+        double[] values = {0.0, -0.0, 1.005, -1.005, 2.675, 0.125, -0.004, -0.005, 0.995, 9.995, 19.994,
+                1234567.885, 1e15 + 0.5, 123456789012.345, -42.0, Double.NaN, Double.NEGATIVE_INFINITY};
+        for (double value : values) {
+            assertEquals(String.format(Locale.ROOT, "%-12.2f", value), render(value), "value " + value);
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            double value = (random.nextInt(2_000_000) - 1_000_000) / 1000.0; // Many exact ties at the third decimal
+            assertEquals(String.format(Locale.ROOT, "%-12.2f", value), render(value), "value " + value);
+            value = random.nextGaussian() * Math.pow(10, random.nextInt(14));
+            assertEquals(String.format(Locale.ROOT, "%-12.2f", value), render(value), "value " + value);
+        }
+    }
+
+    @Test
+    void usesOneDecimalSeparatorWhateverTheDefaultLocale() throws Exception {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY); // Formats 1.5 as 1,50
+        try {
+            assertEquals("1.50        ", render(1.5)); // Fast path
+            assertEquals("100000000000000000.00", render(1e17)); // Slow path
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    void padsCellsLikePrintf() throws Exception {
+        StringWriter out = new StringWriter();
+        try (TableRenderer table = new TableRenderer(out, 5, 8, 6)) {
+            table.cell(42L).cell("Name").cell(9.5);
+            table.cell(-7L).cell("A longer name").cell(-0.001);
+        }
+        assertEquals(String.format(Locale.ROOT, "%-5d %-8s %-6.2f\n", 42, "Name", 9.5)
+                + String.format(Locale.ROOT, "%-5d %-8s %-6.2f\n", -7, "A longer name", -0.001), out.toString());
+    }
+
+    private static String render(double value) throws Exception {
+        StringWriter out = new StringWriter();
+        try (TableRenderer table = new TableRenderer(out, 12)) {
+            table.cell(value);
+        }
+        String row = out.toString();
+        return row.substring(0, row.length() - 1); // Without the newline
+    }
+}
@@ -0,0 +1,60 @@
+package com.example;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Test Database
+ *
+ * A fresh, migrated in-memory H2 database in MySQL compatibility mode per test, with a
+ * connection pool over it. Text compares case-insensitively, like MySQL's default collation,
+ * and lock waits are allowed 10 s (H2's default is 1 s, MySQL waits 50 s). Slow queries are
+ * counted and kept as usual but not written to System.err, which would bury the test output.
+ * The database lives as long as the pinned connection and is dropped by close().
+ */
+final class TestDatabase implements AutoCloseable {
+    private static final AtomicLong IDS = new AtomicLong(); // Makes every database name unique
+
+    private final String url; // JDBC URL of the database
+    private final Connection pin; // Keeps the database alive while the pool recycles connections
+    private final ConnectionPool pool; // Pool over the database
+
+    TestDatabase() throws SQLException {
+        this(8);
+    }
+
+    TestDatabase(int poolSize) throws SQLException {
+        this.url = "jdbc:h2:mem:test" + IDS.incrementAndGet() + ";MODE=MySQL;IGNORECASE=TRUE;LOCK_TIMEOUT=10000";
+        this.pin = DriverManager.getConnection(url, "sa", "");
+        this.pool = new ConnectionPool(url, "sa", "", poolSize);
+        pool.getMetrics().setSlowQueryLog(line -> { });
+        try (Connection con = pool.getConnection()) {
+            SchemaMigrations.migrate(con);
+        }
+    }
+
+    /**
+     * Method to seed the database with the DataSeeder
+     */
+    DataSeeder.SeedResult seed(int games, int customers, int orders) throws SQLException {
+        try (Connection con = pool.getConnection()) {
+            return DataSeeder.seed(con, games, customers, orders);
+        }
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    ConnectionPool getPool() {
+        return pool;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        pool.close();
+        pin.close();
+    }
+}